@@ -0,0 +1,15 @@
+#!/usr/bin/env bash
+#
+# Runs the benchmarks of System Lambda. They print the time and the allocated
+# bytes per operation of some functions. Execute
+#
+#     scripts/benchmark.sh
+#
+# from the project directory.
+
+set -euo pipefail
+
+./mvnw -q -Dgpg.skip test-compile
+java \
+  -cp target/classes:target/test-classes \
+  com.github.stefanbirkner.systemlambda.Benchmarks
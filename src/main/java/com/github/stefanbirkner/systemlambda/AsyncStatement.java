@@ -0,0 +1,21 @@
+package com.github.stefanbirkner.systemlambda;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Code that should be executed by one of the asynchronous methods of
+ * {@link SystemLambda}. The code starts some work and returns a
+ * {@link CompletionStage} that completes when the work is done.
+ *
+ * @since 1.3.0
+ */
+public interface AsyncStatement {
+    /**
+     * Execute the statement.
+     *
+     * @return a {@code CompletionStage} that completes when the work of the
+     * statement is done. {@code null} means that the work is already done.
+     * @throws Exception the statement may throw an arbitrary exception.
+     */
+    CompletionStage<?> execute() throws Exception;
+}
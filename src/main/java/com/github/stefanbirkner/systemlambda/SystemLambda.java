@@ -1,17 +1,60 @@
 package com.github.stefanbirkner.systemlambda;
 
 import java.io.*;
+import java.lang.ProcessBuilder.Redirect;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigInteger;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.Permission;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static java.lang.Class.forName;
 import static java.lang.System.*;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
 import static java.nio.charset.Charset.defaultCharset;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.Arrays.asList;
 import static java.util.Arrays.stream;
+import static java.util.Collections.singletonList;
 import static java.util.Collections.singletonMap;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableSortedMap;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.stream.Collectors.joining;
 
 /**
@@ -308,8 +351,113 @@ import static java.util.stream.Collectors.joining;
 public class SystemLambda {
 
 	private static final boolean AUTO_FLUSH = true;
+	private static final int BUFFER_SIZE = 8192;
+	private static final long ASYNC_OUTPUT_CAPACITY = 1024 * 1024;
+	private static final int PUBLISHER_CAPACITY = 1024;
+	private static final Duration PUBLISHER_TIMEOUT = Duration.ofSeconds(10);
+	private static final int LOG_RECORDS_CAPACITY = 10_000;
+	private static final int PIPE_CAPACITY = 64 * 1024;
+	private static final Duration PIPE_TIMEOUT = Duration.ofSeconds(10);
+	private static final Route ERR_ROUTE = new Route(
+		() -> err,
+		System::setErr
+	);
+	private static final Route OUT_ROUTE = new Route(
+		() -> out,
+		System::setOut
+	);
+	private static final DirectBufferPool CAPTURE_SEGMENTS
+		= new DirectBufferPool(1024 * 1024, 16);
+	private static final DirectBufferPool SINK_BUFFERS
+		= new DirectBufferPool(BUFFER_SIZE, 16);
 	private static final String DEFAULT_ENCODING = defaultCharset().name();
 
+	/**
+	 * Executes the statement and fails (throws an {@code AssertionError}) if
+	 * the statement writes more to {@code System.err} than the budget allows.
+	 * The budget can limit the number of bytes, lines and writes.
+	 * <p>The following test fails
+	 * <pre>
+	 * &#064;Test
+	 * void fails_because_more_than_two_lines_are_written_to_System_err(
+	 * ) throws Exception {
+	 *   assertAtMostWrittenToSystemErr(
+	 *     OutputBudget.lines(2),
+	 *     (){@literal ->} {
+	 *       System.err.println("first line");
+	 *       System.err.println("second line");
+	 *       System.err.println("third line");
+	 *     }
+	 *   );
+	 * }
+	 * </pre>
+	 * The failure message contains the number of bytes, lines and writes and
+	 * the first lines that were written. Apart from these first lines the
+	 * text is not kept.
+	 *
+	 * @param budget the maximum output of the statement.
+	 * @param statement an arbitrary piece of code.
+	 * @throws AssertionError if the statement writes more to
+	 *                        {@code System.err} than the budget allows.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #assertAtMostWrittenToSystemOut(OutputBudget, Statement)
+	 * @since 1.3.0
+	 */
+	public static void assertAtMostWrittenToSystemErr(
+		OutputBudget budget,
+		Statement statement
+	) throws Exception {
+		CountingStream countingStream = new CountingStream();
+		executeWithSystemErrReplacement(
+			countingStream,
+			statement
+		);
+		budget.check(countingStream, "System.err");
+	}
+
+	/**
+	 * Executes the statement and fails (throws an {@code AssertionError}) if
+	 * the statement writes more to {@code System.out} than the budget allows.
+	 * The budget can limit the number of bytes, lines and writes.
+	 * <p>The following test fails
+	 * <pre>
+	 * &#064;Test
+	 * void fails_because_more_than_two_lines_are_written_to_System_out(
+	 * ) throws Exception {
+	 *   assertAtMostWrittenToSystemOut(
+	 *     OutputBudget.lines(2),
+	 *     (){@literal ->} {
+	 *       System.out.println("first line");
+	 *       System.out.println("second line");
+	 *       System.out.println("third line");
+	 *     }
+	 *   );
+	 * }
+	 * </pre>
+	 * The failure message contains the number of bytes, lines and writes and
+	 * the first lines that were written. Apart from these first lines the
+	 * text is not kept.
+	 *
+	 * @param budget the maximum output of the statement.
+	 * @param statement an arbitrary piece of code.
+	 * @throws AssertionError if the statement writes more to
+	 *                        {@code System.out} than the budget allows.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #assertAtMostWrittenToSystemErr(OutputBudget, Statement)
+	 * @since 1.3.0
+	 */
+	public static void assertAtMostWrittenToSystemOut(
+		OutputBudget budget,
+		Statement statement
+	) throws Exception {
+		CountingStream countingStream = new CountingStream();
+		executeWithSystemOutReplacement(
+			countingStream,
+			statement
+		);
+		budget.check(countingStream, "System.out");
+	}
+
 	/**
 	 * Executes the statement and fails (throws an {@code AssertionError}) if
 	 * the statement tries to write to {@code System.err}.
@@ -337,7 +485,7 @@ public class SystemLambda {
 		Statement statement
 	) throws Exception {
 		executeWithSystemErrReplacement(
-			new DisallowWriteStream(),
+			wrap(new DisallowWriteStream()),
 			statement
 		);
 	}
@@ -369,11 +517,114 @@ public class SystemLambda {
 		Statement statement
 	) throws Exception {
 		executeWithSystemOutReplacement(
-			new DisallowWriteStream(),
+			wrap(new DisallowWriteStream()),
 			statement
 		);
 	}
 
+	/**
+	 * Executes the statement and returns the text that is written to
+	 * {@code System.err} and {@code System.out} by the statement. The bytes
+	 * are stored outside of the Java heap. Therefore large outputs don't
+	 * cause garbage collections while the statement is executed.
+	 * <pre>
+	 * &#064;Test
+	 * void application_writes_a_lot_of_text_to_System_err_and_out(
+	 * ) throws Exception {
+	 *   try (OffHeapCapture capture = captureSystemErrAndOutOffHeap((){@literal ->} {
+	 *     for (int i = 0; i {@literal <} 10_000_000; ++i)
+	 *       System.out.print("0123456789");
+	 *   })) {
+	 *     assertEquals(100_000_000, capture.size());
+	 *   }
+	 * }
+	 * </pre>
+	 * <p>The memory is reused by subsequent captures after the capture has
+	 * been closed. Close the capture as soon as you don't need it anymore.
+	 *
+	 * @param statement an arbitrary piece of code.
+	 * @return the bytes that are written to {@code System.err} and
+	 * {@code System.out} by the statement.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #captureSystemErrOffHeap(Statement)
+	 * @see #captureSystemOutOffHeap(Statement)
+	 * @see #tapSystemErrAndOut(Statement)
+	 * @since 1.3.0
+	 */
+	public static OffHeapCapture captureSystemErrAndOutOffHeap(
+		Statement statement
+	) throws Exception {
+		return captureOffHeap(true, true, statement);
+	}
+
+	/**
+	 * Executes the statement and returns the text that is written to
+	 * {@code System.err} by the statement. The bytes are stored outside of the Java
+	 * heap. Therefore large outputs don't cause garbage collections while
+	 * the statement is executed.
+	 * <pre>
+	 * &#064;Test
+	 * void application_writes_a_lot_of_text_to_System_err(
+	 * ) throws Exception {
+	 *   try (OffHeapCapture capture = captureSystemErrOffHeap((){@literal ->} {
+	 *     for (int i = 0; i {@literal <} 10_000_000; ++i)
+	 *       System.err.print("0123456789");
+	 *   })) {
+	 *     assertEquals(100_000_000, capture.size());
+	 *   }
+	 * }
+	 * </pre>
+	 * <p>The memory is reused by subsequent captures after the capture has
+	 * been closed. Close the capture as soon as you don't need it anymore.
+	 *
+	 * @param statement an arbitrary piece of code.
+	 * @return the bytes that are written to {@code System.err} by the statement.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #captureSystemErrAndOutOffHeap(Statement)
+	 * @see #captureSystemOutOffHeap(Statement)
+	 * @see #tapSystemErr(Statement)
+	 * @since 1.3.0
+	 */
+	public static OffHeapCapture captureSystemErrOffHeap(
+		Statement statement
+	) throws Exception {
+		return captureOffHeap(true, false, statement);
+	}
+
+	/**
+	 * Executes the statement and returns the text that is written to
+	 * {@code System.out} by the statement. The bytes are stored outside of the Java
+	 * heap. Therefore large outputs don't cause garbage collections while
+	 * the statement is executed.
+	 * <pre>
+	 * &#064;Test
+	 * void application_writes_a_lot_of_text_to_System_out(
+	 * ) throws Exception {
+	 *   try (OffHeapCapture capture = captureSystemOutOffHeap((){@literal ->} {
+	 *     for (int i = 0; i {@literal <} 10_000_000; ++i)
+	 *       System.out.print("0123456789");
+	 *   })) {
+	 *     assertEquals(100_000_000, capture.size());
+	 *   }
+	 * }
+	 * </pre>
+	 * <p>The memory is reused by subsequent captures after the capture has
+	 * been closed. Close the capture as soon as you don't need it anymore.
+	 *
+	 * @param statement an arbitrary piece of code.
+	 * @return the bytes that are written to {@code System.out} by the statement.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #captureSystemErrAndOutOffHeap(Statement)
+	 * @see #captureSystemErrOffHeap(Statement)
+	 * @see #tapSystemOut(Statement)
+	 * @since 1.3.0
+	 */
+	public static OffHeapCapture captureSystemOutOffHeap(
+		Statement statement
+	) throws Exception {
+		return captureOffHeap(false, true, statement);
+	}
+
 	/**
 	 * Executes the statement and returns the status code that is provided to
 	 * {@code System.exit(int)} within the statement. Additionally it avoids
@@ -421,6 +672,10 @@ public class SystemLambda {
 	 *   );
 	 * }
 	 * </pre>
+	 * <p>The output is dropped as early as possible. Arguments of
+	 * {@code print}, {@code printf} etc. are neither converted to text nor
+	 * formatted. E.g. {@code toString()} is not called and invalid format
+	 * strings don't cause an exception.
 	 *
 	 * @param statement an arbitrary piece of code.
 	 * @throws Exception any exception thrown by the statement.
@@ -431,7 +686,7 @@ public class SystemLambda {
 		Statement statement
 	) throws Exception {
 		executeWithSystemErrReplacement(
-			new NoopStream(),
+			new MutedPrintStream(),
 			statement
 		);
 	}
@@ -449,6 +704,10 @@ public class SystemLambda {
 	 *   });
 	 * }
 	 * </pre>
+	 * <p>The output is dropped as early as possible. Arguments of
+	 * {@code print}, {@code printf} etc. are neither converted to text nor
+	 * formatted. E.g. {@code toString()} is not called and invalid format
+	 * strings don't cause an exception.
 	 *
 	 * @param statement an arbitrary piece of code.
 	 * @throws Exception any exception thrown by the statement.
@@ -459,670 +718,7731 @@ public class SystemLambda {
 		Statement statement
 	) throws Exception {
 		executeWithSystemOutReplacement(
-			new NoopStream(),
+			new MutedPrintStream(),
 			statement
 		);
 	}
 
 	/**
-	 * Executes the statement and restores the system properties after the
-	 * statement has been executed. This allows you to set or clear system
-	 * properties within the statement without affecting other tests.
+	 * Executes the statement and records every write to {@code System.err}
+	 * together with the writing thread, a timestamp, the number of bytes and
+	 * the call site. Use this to find the code that writes to
+	 * {@code System.err} most often or with the most bytes.
 	 * <pre>
 	 * &#064;Test
-	 * void execute_code_that_manipulates_system_properties(
+	 * void application_writes_to_System_err_in_a_loop(
 	 * ) throws Exception {
-	 *   System.clearProperty("some property");
-	 *   System.setProperty("another property", "value before test");
-	 *
-	 *   restoreSystemProperties((){@literal ->} {
-	 *     System.setProperty("some property", "some value");
-	 *     assertEquals(
-	 *       "some value",
-	 *       System.getProperty("some property")
-	 *     );
-	 *
-	 *     System.clearProperty("another property");
-	 *     assertNull(
-	 *       System.getProperty("another property")
-	 *     );
+	 *   OutputProfile profile = profileSystemErr((){@literal ->} {
+	 *     for (int i = 0; i {@literal <} 1000; ++i)
+	 *       System.err.print(i);
 	 *   });
-	 *
-	 *   //values are restored after test
-	 *   assertNull(
-	 *     System.getProperty("some property")
-	 *   );
-	 *   assertEquals(
-	 *     "value before test",
-	 *     System.getProperty("another property")
-	 *   );
+	 *   System.out.println(profile.report());
 	 * }
 	 * </pre>
+	 * <p>Every write is recorded. Determining the call site requires a stack
+	 * trace per write. Therefore the statement runs considerably slower than
+	 * without profiling.
+	 *
 	 * @param statement an arbitrary piece of code.
+	 * @return the recorded writes and the text that is written to
+	 * {@code System.err} by the statement.
 	 * @throws Exception any exception thrown by the statement.
-	 * @since 1.0.0
+	 * @see #profileSystemOut(Statement)
+	 * @since 1.3.0
 	 */
-	public static void restoreSystemProperties(
+	public static OutputProfile profileSystemErr(
 		Statement statement
 	) throws Exception {
-		Properties originalProperties = getProperties();
-		setProperties(copyOf(originalProperties));
-		try {
-			statement.execute();
-		} finally {
-			setProperties(originalProperties);
-		}
+		ProfilingStream profilingStream = new ProfilingStream();
+		executeWithSystemErrReplacement(
+			profilingStream,
+			statement
+		);
+		return profilingStream.profile();
 	}
 
 	/**
-	 * Executes the statement and returns the text that was written to
-	 * {@code System.err} by the statement.
+	 * Executes the statement and records every write to {@code System.out}
+	 * together with the writing thread, a timestamp, the number of bytes and
+	 * the call site. Use this to find the code that writes to
+	 * {@code System.out} most often or with the most bytes.
 	 * <pre>
 	 * &#064;Test
-	 * void application_writes_text_to_System_err(
+	 * void application_writes_to_System_out_in_a_loop(
 	 * ) throws Exception {
-	 *   String textWrittenToSystemErr = tapSystemErr((){@literal ->} {
-	 *     System.err.print("some text");
+	 *   OutputProfile profile = profileSystemOut((){@literal ->} {
+	 *     for (int i = 0; i {@literal <} 1000; ++i)
+	 *       System.out.print(i);
 	 *   });
-	 *   assertEquals("some text", textWrittenToSystemErr);
+	 *   System.err.println(profile.report());
 	 * }
 	 * </pre>
+	 * <p>Every write is recorded. Determining the call site requires a stack
+	 * trace per write. Therefore the statement runs considerably slower than
+	 * without profiling.
 	 *
 	 * @param statement an arbitrary piece of code.
-	 * @return text that is written to {@code System.err} by the statement.
+	 * @return the recorded writes and the text that is written to
+	 * {@code System.out} by the statement.
 	 * @throws Exception any exception thrown by the statement.
-	 * @see #tapSystemOut(Statement)
-	 * @see #tapSystemErrAndOut(Statement)
-	 * @see #tapSystemErrAndOutNormalized(Statement)
-	 * @since 1.0.0
+	 * @see #profileSystemErr(Statement)
+	 * @since 1.3.0
 	 */
-	public static String tapSystemErr(
+	public static OutputProfile profileSystemOut(
 		Statement statement
 	) throws Exception {
-		TapStream tapStream = new TapStream();
-		executeWithSystemErrReplacement(
-			tapStream,
+		ProfilingStream profilingStream = new ProfilingStream();
+		executeWithSystemOutReplacement(
+			profilingStream,
 			statement
 		);
-		return tapStream.textThatWasWritten();
+		return profilingStream.profile();
 	}
 
 	/**
-	 * Executes the statement and returns the text that was written to
-	 * {@code System.err} by the statement. New line characters are replaced
-	 * with a single {@code \n}.
+	 * Executes the statement and publishes each line that is written to
+	 * {@code System.err} by the statement to the subscriber. At most 1024 lines
+	 * are kept until they are requested by the subscriber. The statement
+	 * waits when the buffer is full. Use
+	 * {@link #publishSystemErr(int, OverflowPolicy, LineSubscriber, Statement)}
+	 * with {@link OverflowPolicy#FAIL} if it must not wait.
 	 * <pre>
 	 * &#064;Test
-	 * void application_writes_mutliple_lines_to_System_err(
+	 * void application_writes_lines_to_System_err(
 	 * ) throws Exception {
-	 *   String textWrittenToSystemErr = tapSystemErrNormalized((){@literal ->} {
-	 *     System.err.println("some text");
-	 *   });
-	 *   assertEquals("some text\n", textWrittenToSystemErr);
+	 *   {@literal List<String>} lines = new CopyOnWriteArrayList{@literal <>}();
+	 *   publishSystemErr(
+	 *     new LineSubscriber() {
+	 *       public void onSubscribe(LineSubscription subscription) {
+	 *         subscription.request(Long.MAX_VALUE);
+	 *       }
+	 *       public void onNext(String line) {
+	 *         lines.add(line);
+	 *       }
+	 *       public void onError(Throwable throwable) {
+	 *       }
+	 *       public void onComplete() {
+	 *       }
+	 *     },
+	 *     (){@literal ->} {
+	 *       System.err.println("first line");
+	 *       System.err.println("second line");
+	 *     }
+	 *   );
+	 *   assertEquals(asList("first line", "second line"), lines);
 	 * }
 	 * </pre>
+	 * <p>The subscriber is called by a background thread. Its
+	 * {@code onSubscribe} has been called before the statement is executed.
+	 * This method returns after the subscriber's {@code onComplete} or
+	 * {@code onError} has been called or after the subscription has been
+	 * cancelled. Therefore the subscriber must either request all lines or
+	 * cancel the subscription. While the statement is executed it may
+	 * request lines from any thread and take as long as it wants. After the
+	 * statement has been executed it has to request each waiting line
+	 * within ten seconds. Otherwise the subscription is cancelled and an
+	 * {@code AssertionError} is thrown. A line that does not end with a line
+	 * separator is published after the statement has been executed.
 	 *
+	 * @param subscriber receives the lines.
 	 * @param statement an arbitrary piece of code.
-	 * @return text that is written to {@code System.err} by the statement.
+	 * @return the number of lines that have been dropped. This is always 0
+	 * because the statement waits instead of dropping lines.
 	 * @throws Exception any exception thrown by the statement.
-	 * @see #tapSystemOut(Statement)
-	 * @see #tapSystemErrAndOut(Statement)
-	 * @see #tapSystemErrAndOutNormalized(Statement)
-	 * @since 1.0.0
+	 * @throws RuntimeException any exception thrown by the subscriber.
+	 * @throws AssertionError if the subscriber did not request a waiting
+	 * line within ten seconds after the statement had been executed.
+	 * @see #publishSystemErr(int, OverflowPolicy, LineSubscriber, Statement)
+	 * @see #publishSystemOut(LineSubscriber, Statement)
+	 * @since 1.3.0
 	 */
-	public static String tapSystemErrNormalized(
+	public static long publishSystemErr(
+		LineSubscriber subscriber,
 		Statement statement
 	) throws Exception {
-		return tapSystemErr(statement)
-			.replace(lineSeparator(), "\n");
+		return publishSystemErr(
+			PUBLISHER_CAPACITY,
+			OverflowPolicy.BLOCK,
+			subscriber,
+			statement
+		);
 	}
 
 	/**
-	 * Executes the statement and returns the text that was written to
-	 * {@code System.err} and {@code System.out} by the statement.
+	 * Executes the statement and publishes each line that is written to
+	 * {@code System.err} by the statement to the subscriber. At most
+	 * {@code capacity} lines are kept until they are requested by the
+	 * subscriber. The overflow policy determines what happens when the
+	 * buffer is full.
 	 * <pre>
 	 * &#064;Test
-	 * void application_writes_text_to_System_err_and_out(
+	 * void application_writes_many_lines_to_System_err(
 	 * ) throws Exception {
-	 *   String text = tapSystemErrAndOut((){@literal ->} {
-	 *     System.err.print("text from err");
-	 *     System.out.print("text from out");
-	 *   });
-	 *   assertEquals("text from errtext from out", text);
+	 *   long droppedLines = publishSystemErr(
+	 *     100,
+	 *     OverflowPolicy.DROP,
+	 *     new SamplingSubscriber(),
+	 *     (){@literal ->} {
+	 *       for (int i = 0; i {@literal <} 100_000; ++i)
+	 *         System.err.println(i);
+	 *     }
+	 *   );
 	 * }
 	 * </pre>
+	 * <p>The subscriber is called by a background thread. Its
+	 * {@code onSubscribe} has been called before the statement is executed.
+	 * This method returns after the subscriber's {@code onComplete} or
+	 * {@code onError} has been called or after the subscription has been
+	 * cancelled. Therefore the subscriber must either request all lines or
+	 * cancel the subscription. While the statement is executed it may
+	 * request lines from any thread and take as long as it wants. After the
+	 * statement has been executed it has to request each waiting line
+	 * within ten seconds. Otherwise the subscription is cancelled and an
+	 * {@code AssertionError} is thrown. A line that does not end with a line
+	 * separator is published after the statement has been executed.
 	 *
+	 * @param capacity the maximum number of lines that are kept until they
+	 * are requested.
+	 * @param overflowPolicy what happens when the buffer is full.
+	 * @param subscriber receives the lines.
 	 * @param statement an arbitrary piece of code.
-	 * @return text that is written to {@code System.err} and {@code System.out}
-	 * by the statement.
+	 * @return the number of lines that have been dropped.
+	 * @throws IllegalArgumentException if {@code capacity} is not positive.
 	 * @throws Exception any exception thrown by the statement.
-	 * @see #tapSystemErrAndOutNormalized(Statement)
-	 * @see #tapSystemErr(Statement)
-	 * @see #tapSystemErrNormalized(Statement)
-	 * @see #tapSystemOut(Statement)
-	 * @see #tapSystemOutNormalized(Statement)
-	 * @since 1.2.0
+	 * @throws RuntimeException any exception thrown by the subscriber.
+	 * @throws AssertionError if the subscriber did not request a waiting
+	 * line within ten seconds after the statement had been executed or if
+	 * the buffer was full and the overflow policy is
+	 * {@link OverflowPolicy#FAIL}.
+	 * @see #publishSystemErr(LineSubscriber, Statement)
+	 * @see #publishSystemErr(int, OverflowPolicy, Duration, LineSubscriber, Statement)
+	 * @see #publishSystemOut(int, OverflowPolicy, LineSubscriber, Statement)
+	 * @since 1.3.0
 	 */
-	public static String tapSystemErrAndOut(
+	public static long publishSystemErr(
+		int capacity,
+		OverflowPolicy overflowPolicy,
+		LineSubscriber subscriber,
 		Statement statement
 	) throws Exception {
-		TapStream tapStream = new TapStream();
-		executeWithSystemErrReplacement(
-			tapStream,
-			() -> executeWithSystemOutReplacement(
-					tapStream,
-					statement
-			)
+		return publishSystemErr(
+			capacity,
+			overflowPolicy,
+			PUBLISHER_TIMEOUT,
+			subscriber,
+			statement
 		);
-		return tapStream.textThatWasWritten();
 	}
 
 	/**
-	 * Executes the statement and returns the text that was written to
-	 * {@code System.err} and {@code System.out} by the statement. New line
-	 * characters are replaced with a single {@code \n}.
+	 * Executes the statement and publishes each line that is written to
+	 * {@code System.err} by the statement to the subscriber. At most
+	 * {@code capacity} lines are kept until they are requested by the
+	 * subscriber. The overflow policy determines what happens when the
+	 * buffer is full.
 	 * <pre>
 	 * &#064;Test
-	 * void application_writes_mutliple_lines_to_System_err_and_out(
+	 * void application_writes_many_lines_to_System_err(
 	 * ) throws Exception {
-	 *   String text = tapSystemErrAndOutNormalized((){@literal ->} {
-	 *     System.err.println("text from err");
-	 *     System.out.println("text from out");
-	 *   });
-	 *   assertEquals("text from err\ntext from out\n", text);
+	 *   long droppedLines = publishSystemErr(
+	 *     100,
+	 *     OverflowPolicy.DROP,
+	 *     Duration.ofMinutes(1),
+	 *     new SamplingSubscriber(),
+	 *     (){@literal ->} {
+	 *       for (int i = 0; i {@literal <} 100_000; ++i)
+	 *         System.err.println(i);
+	 *     }
+	 *   );
 	 * }
 	 * </pre>
+	 * <p>The subscriber is called by a background thread. Its
+	 * {@code onSubscribe} has been called before the statement is executed.
+	 * This method returns after the subscriber's {@code onComplete} or
+	 * {@code onError} has been called or after the subscription has been
+	 * cancelled. Therefore the subscriber must either request all lines or
+	 * cancel the subscription. While the statement is executed it may
+	 * request lines from any thread and take as long as it wants. After the
+	 * statement has been executed it has to request each waiting line
+	 * within the timeout. Otherwise the subscription is cancelled and an
+	 * {@code AssertionError} is thrown. A line that does not end with a line
+	 * separator is published after the statement has been executed.
 	 *
+	 * @param capacity the maximum number of lines that are kept until they
+	 * are requested.
+	 * @param overflowPolicy what happens when the buffer is full.
+	 * @param timeout the time that the subscriber may take for requesting a
+	 * waiting line after the statement has been executed.
+	 * @param subscriber receives the lines.
 	 * @param statement an arbitrary piece of code.
-	 * @return text that is written to {@code System.err} and {@code System.out}
-	 * by the statement.
+	 * @return the number of lines that have been dropped.
+	 * @throws IllegalArgumentException if {@code capacity} or
+	 * {@code timeout} is not positive.
 	 * @throws Exception any exception thrown by the statement.
-	 * @see #tapSystemErrAndOut(Statement)
-	 * @see #tapSystemErr(Statement)
-	 * @see #tapSystemErrNormalized(Statement)
-	 * @see #tapSystemOut(Statement)
-	 * @see #tapSystemOutNormalized(Statement)
-	 * @since 1.2.0
+	 * @throws RuntimeException any exception thrown by the subscriber.
+	 * @throws AssertionError if the subscriber did not request a waiting
+	 * line within the timeout after the statement had been executed or if
+	 * the buffer was full and the overflow policy is
+	 * {@link OverflowPolicy#FAIL}.
+	 * @see #publishSystemErr(int, OverflowPolicy, LineSubscriber, Statement)
+	 * @see #publishSystemOut(int, OverflowPolicy, Duration, LineSubscriber, Statement)
+	 * @since 1.3.0
 	 */
-	public static String tapSystemErrAndOutNormalized(
+	public static long publishSystemErr(
+		int capacity,
+		OverflowPolicy overflowPolicy,
+		Duration timeout,
+		LineSubscriber subscriber,
 		Statement statement
 	) throws Exception {
-		return tapSystemErrAndOut(statement)
-			.replace(lineSeparator(), "\n");
+		LinePublisher publisher = linePublisher(
+			capacity,
+			overflowPolicy,
+			timeout,
+			subscriber
+		);
+		Throwable failure = null;
+		try {
+			publisher.awaitSubscription();
+			executeWithSystemErrReplacement(publisher, statement);
+		} catch (Throwable t) {
+			failure = t;
+			throw t;
+		} finally {
+			publisher.complete(failure);
+		}
+		return publisher.finish();
 	}
 
 	/**
-	 * Executes the statement and returns the text that was written to
-	 * {@code System.out} by the statement.
+	 * Executes the statement and publishes each line that is written to
+	 * {@code System.out} by the statement to the subscriber. At most 1024 lines
+	 * are kept until they are requested by the subscriber. The statement
+	 * waits when the buffer is full. Use
+	 * {@link #publishSystemOut(int, OverflowPolicy, LineSubscriber, Statement)}
+	 * with {@link OverflowPolicy#FAIL} if it must not wait.
 	 * <pre>
 	 * &#064;Test
-	 * void application_writes_text_to_System_out(
+	 * void application_writes_lines_to_System_out(
 	 * ) throws Exception {
-	 *   String textWrittenToSystemOut = tapSystemOut((){@literal ->} {
-	 *     System.out.print("some text");
-	 *   });
-	 *   assertEquals("some text", textWrittenToSystemOut);
+	 *   {@literal List<String>} lines = new CopyOnWriteArrayList{@literal <>}();
+	 *   publishSystemOut(
+	 *     new LineSubscriber() {
+	 *       public void onSubscribe(LineSubscription subscription) {
+	 *         subscription.request(Long.MAX_VALUE);
+	 *       }
+	 *       public void onNext(String line) {
+	 *         lines.add(line);
+	 *       }
+	 *       public void onError(Throwable throwable) {
+	 *       }
+	 *       public void onComplete() {
+	 *       }
+	 *     },
+	 *     (){@literal ->} {
+	 *       System.out.println("first line");
+	 *       System.out.println("second line");
+	 *     }
+	 *   );
+	 *   assertEquals(asList("first line", "second line"), lines);
 	 * }
 	 * </pre>
+	 * <p>The subscriber is called by a background thread. Its
+	 * {@code onSubscribe} has been called before the statement is executed.
+	 * This method returns after the subscriber's {@code onComplete} or
+	 * {@code onError} has been called or after the subscription has been
+	 * cancelled. Therefore the subscriber must either request all lines or
+	 * cancel the subscription. While the statement is executed it may
+	 * request lines from any thread and take as long as it wants. After the
+	 * statement has been executed it has to request each waiting line
+	 * within ten seconds. Otherwise the subscription is cancelled and an
+	 * {@code AssertionError} is thrown. A line that does not end with a line
+	 * separator is published after the statement has been executed.
 	 *
+	 * @param subscriber receives the lines.
 	 * @param statement an arbitrary piece of code.
-	 * @return text that is written to {@code System.out} by the statement.
+	 * @return the number of lines that have been dropped. This is always 0
+	 * because the statement waits instead of dropping lines.
 	 * @throws Exception any exception thrown by the statement.
-	 * @see #tapSystemErr(Statement)
-	 * @see #tapSystemErrAndOut(Statement)
-	 * @see #tapSystemErrAndOutNormalized(Statement)
-	 * @since 1.0.0
+	 * @throws RuntimeException any exception thrown by the subscriber.
+	 * @throws AssertionError if the subscriber did not request a waiting
+	 * line within ten seconds after the statement had been executed.
+	 * @see #publishSystemOut(int, OverflowPolicy, LineSubscriber, Statement)
+	 * @see #publishSystemErr(LineSubscriber, Statement)
+	 * @since 1.3.0
 	 */
-	public static String tapSystemOut(
+	public static long publishSystemOut(
+		LineSubscriber subscriber,
 		Statement statement
 	) throws Exception {
-		TapStream tapStream = new TapStream();
-		executeWithSystemOutReplacement(
-			tapStream,
+		return publishSystemOut(
+			PUBLISHER_CAPACITY,
+			OverflowPolicy.BLOCK,
+			subscriber,
 			statement
 		);
-		return tapStream.textThatWasWritten();
 	}
 
 	/**
-	 * Executes the statement and returns the text that was written to
-	 * {@code System.out} by the statement. New line characters are replaced
-	 * with a single {@code \n}.
+	 * Executes the statement and publishes each line that is written to
+	 * {@code System.out} by the statement to the subscriber. At most
+	 * {@code capacity} lines are kept until they are requested by the
+	 * subscriber. The overflow policy determines what happens when the
+	 * buffer is full.
 	 * <pre>
 	 * &#064;Test
-	 * void application_writes_mutliple_lines_to_System_out(
+	 * void application_writes_many_lines_to_System_out(
 	 * ) throws Exception {
-	 *   String textWrittenToSystemOut = tapSystemOutNormalized((){@literal ->} {
-	 *     System.out.println("some text");
-	 *   });
-	 *   assertEquals("some text\n", textWrittenToSystemOut);
+	 *   long droppedLines = publishSystemOut(
+	 *     100,
+	 *     OverflowPolicy.DROP,
+	 *     new SamplingSubscriber(),
+	 *     (){@literal ->} {
+	 *       for (int i = 0; i {@literal <} 100_000; ++i)
+	 *         System.out.println(i);
+	 *     }
+	 *   );
 	 * }
 	 * </pre>
+	 * <p>The subscriber is called by a background thread. Its
+	 * {@code onSubscribe} has been called before the statement is executed.
+	 * This method returns after the subscriber's {@code onComplete} or
+	 * {@code onError} has been called or after the subscription has been
+	 * cancelled. Therefore the subscriber must either request all lines or
+	 * cancel the subscription. While the statement is executed it may
+	 * request lines from any thread and take as long as it wants. After the
+	 * statement has been executed it has to request each waiting line
+	 * within ten seconds. Otherwise the subscription is cancelled and an
+	 * {@code AssertionError} is thrown. A line that does not end with a line
+	 * separator is published after the statement has been executed.
 	 *
+	 * @param capacity the maximum number of lines that are kept until they
+	 * are requested.
+	 * @param overflowPolicy what happens when the buffer is full.
+	 * @param subscriber receives the lines.
 	 * @param statement an arbitrary piece of code.
-	 * @return text that is written to {@code System.out} by the statement.
+	 * @return the number of lines that have been dropped.
+	 * @throws IllegalArgumentException if {@code capacity} is not positive.
 	 * @throws Exception any exception thrown by the statement.
-	 * @see #tapSystemErr(Statement)
-	 * @see #tapSystemErrAndOut(Statement)
-	 * @see #tapSystemErrAndOutNormalized(Statement)
-	 * @since 1.0.0
+	 * @throws RuntimeException any exception thrown by the subscriber.
+	 * @throws AssertionError if the subscriber did not request a waiting
+	 * line within ten seconds after the statement had been executed or if
+	 * the buffer was full and the overflow policy is
+	 * {@link OverflowPolicy#FAIL}.
+	 * @see #publishSystemOut(LineSubscriber, Statement)
+	 * @see #publishSystemOut(int, OverflowPolicy, Duration, LineSubscriber, Statement)
+	 * @see #publishSystemErr(int, OverflowPolicy, LineSubscriber, Statement)
+	 * @since 1.3.0
 	 */
-	public static String tapSystemOutNormalized(
+	public static long publishSystemOut(
+		int capacity,
+		OverflowPolicy overflowPolicy,
+		LineSubscriber subscriber,
 		Statement statement
 	) throws Exception {
-		return tapSystemOut(statement)
-			.replace(lineSeparator(), "\n");
+		return publishSystemOut(
+			capacity,
+			overflowPolicy,
+			PUBLISHER_TIMEOUT,
+			subscriber,
+			statement
+		);
 	}
 
 	/**
-	 * Executes the statement with the specified environment variables. All
-	 * changes to environment variables are reverted after the statement has
-	 * been executed.
+	 * Executes the statement and publishes each line that is written to
+	 * {@code System.out} by the statement to the subscriber. At most
+	 * {@code capacity} lines are kept until they are requested by the
+	 * subscriber. The overflow policy determines what happens when the
+	 * buffer is full.
 	 * <pre>
 	 * &#064;Test
-	 * void execute_code_with_environment_variables(
+	 * void application_writes_many_lines_to_System_out(
 	 * ) throws Exception {
-	 *   {@literal List<String>} values = withEnvironmentVariable("first", "first value")
-	 *     .and("second", "second value")
-	 *     .and("third", null)
-	 *     .execute((){@literal ->} asList(
-	 *         System.getenv("first"),
-	 *         System.getenv("second"),
-	 *         System.getenv("third")
-	 *     ));
-	 *   assertEquals(
-	 *     asList("first value", "second value", null),
-	 *     values
+	 *   long droppedLines = publishSystemOut(
+	 *     100,
+	 *     OverflowPolicy.DROP,
+	 *     Duration.ofMinutes(1),
+	 *     new SamplingSubscriber(),
+	 *     (){@literal ->} {
+	 *       for (int i = 0; i {@literal <} 100_000; ++i)
+	 *         System.out.println(i);
+	 *     }
 	 *   );
 	 * }
 	 * </pre>
-	 * <p>You cannot specify the value of an an environment variable twice. An
-	 * {@code IllegalArgumentException} is thrown when you try.
-	 * <p><b>Warning:</b> This method uses reflection for modifying internals of the
-	 * environment variables map. It fails if your {@code SecurityManager} forbids
-	 * such modifications.
-	 * @param name the name of the environment variable.
-	 * @param value the value of the environment variable.
-	 * @return an {@link WithEnvironmentVariables} instance that can be used to
-	 * set more variables and run a statement with the specified environment
-	 * variables.
-	 * @since 1.0.0
-	 * @see WithEnvironmentVariables#and(String, String)
-	 * @see WithEnvironmentVariables#execute(Callable)
-	 * @see WithEnvironmentVariables#execute(Statement)
+	 * <p>The subscriber is called by a background thread. Its
+	 * {@code onSubscribe} has been called before the statement is executed.
+	 * This method returns after the subscriber's {@code onComplete} or
+	 * {@code onError} has been called or after the subscription has been
+	 * cancelled. Therefore the subscriber must either request all lines or
+	 * cancel the subscription. While the statement is executed it may
+	 * request lines from any thread and take as long as it wants. After the
+	 * statement has been executed it has to request each waiting line
+	 * within the timeout. Otherwise the subscription is cancelled and an
+	 * {@code AssertionError} is thrown. A line that does not end with a line
+	 * separator is published after the statement has been executed.
+	 *
+	 * @param capacity the maximum number of lines that are kept until they
+	 * are requested.
+	 * @param overflowPolicy what happens when the buffer is full.
+	 * @param timeout the time that the subscriber may take for requesting a
+	 * waiting line after the statement has been executed.
+	 * @param subscriber receives the lines.
+	 * @param statement an arbitrary piece of code.
+	 * @return the number of lines that have been dropped.
+	 * @throws IllegalArgumentException if {@code capacity} or
+	 * {@code timeout} is not positive.
+	 * @throws Exception any exception thrown by the statement.
+	 * @throws RuntimeException any exception thrown by the subscriber.
+	 * @throws AssertionError if the subscriber did not request a waiting
+	 * line within the timeout after the statement had been executed or if
+	 * the buffer was full and the overflow policy is
+	 * {@link OverflowPolicy#FAIL}.
+	 * @see #publishSystemOut(int, OverflowPolicy, LineSubscriber, Statement)
+	 * @see #publishSystemErr(int, OverflowPolicy, Duration, LineSubscriber, Statement)
+	 * @since 1.3.0
 	 */
-	public static WithEnvironmentVariables withEnvironmentVariable(
-		String name,
-		String value
-	) {
-		return new WithEnvironmentVariables(
-			singletonMap(name, value)
+	public static long publishSystemOut(
+		int capacity,
+		OverflowPolicy overflowPolicy,
+		Duration timeout,
+		LineSubscriber subscriber,
+		Statement statement
+	) throws Exception {
+		LinePublisher publisher = linePublisher(
+			capacity,
+			overflowPolicy,
+			timeout,
+			subscriber
 		);
+		Throwable failure = null;
+		try {
+			publisher.awaitSubscription();
+			executeWithSystemOutReplacement(publisher, statement);
+		} catch (Throwable t) {
+			failure = t;
+			throw t;
+		} finally {
+			publisher.complete(failure);
+		}
+		return publisher.finish();
 	}
 
-    /**
-     * Executes the statement with the provided security manager.
-     * <pre>
-     * &#064;Test
-     * void execute_code_with_specific_SecurityManager(
+	/**
+	 * Executes the statement and records the calls of {@code print},
+	 * {@code println}, {@code printf}, {@code format}, {@code append} and
+	 * {@code write} on {@code System.err} together with their arguments. The
+	 * arguments are neither formatted nor converted to text while the
+	 * statement is executed. This is only done when you ask for the text.
+	 * <pre>
+	 * &#064;Test
+	 * void application_writes_values_to_System_err(
 	 * ) throws Exception {
-     *   SecurityManager securityManager = new ASecurityManager();
-     *   withSecurityManager(
-     *     securityManager,
-     *     (){@literal ->} {
-	 *       //code under test
-	 *       //e.g. the following assertion is met
-     *       assertSame(securityManager, System.getSecurityManager())
-     *     }
-     *   );
-     * }
-     * </pre>
-     * The specified security manager is only present during the test.
-     * @param securityManager the security manager that is used while the
-     *                        statement is executed.
-     * @param statement an arbitrary piece of code.
-     * @throws Exception any exception thrown by the statement.
-     * @since 1.0.0
-     */
-    public static void withSecurityManager(
-        SecurityManager securityManager,
-        Statement statement
-    ) throws Exception {
-        SecurityManager originalSecurityManager = getSecurityManager();
-        setSecurityManager(securityManager);
-        try {
-            statement.execute();
-        } finally {
-            setSecurityManager(originalSecurityManager);
-        }
-    }
+	 *   PrintRecording recording = recordSystemErr((){@literal ->} {
+	 *     System.err.printf("%s: %d", "answer", 42);
+	 *   });
+	 *   PrintCall call = recording.calls().get(0);
+	 *   assertEquals("%s: %d", call.format());
+	 *   assertEquals(asList("answer", 42), call.arguments());
+	 * }
+	 * </pre>
+	 * <p>The recording keeps references to the arguments. Therefore the text
+	 * reflects the state of the arguments at the time the text is requested
+	 * and an invalid format string causes an exception when the text is
+	 * requested and not when {@code printf} is called.
+	 *
+	 * @param statement an arbitrary piece of code.
+	 * @return the calls on {@code System.err}.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #recordSystemOut(Statement)
+	 * @since 1.3.0
+	 */
+	public static PrintRecording recordSystemErr(
+		Statement statement
+	) throws Exception {
+		RecordingPrintStream recordingStream = new RecordingPrintStream();
+		executeWithSystemErrReplacement(
+			recordingStream,
+			statement
+		);
+		return recordingStream.recording();
+	}
 
 	/**
-	 * Executes the statement and lets {@code System.in} provide the specified
-	 * text during the execution. In addition several Exceptions can be
-	 * specified that are thrown when {@code System.in#read} is called.
-	 *
+	 * Executes the statement and records the calls of {@code print},
+	 * {@code println}, {@code printf}, {@code format}, {@code append} and
+	 * {@code write} on {@code System.out} together with their arguments. The
+	 * arguments are neither formatted nor converted to text while the
+	 * statement is executed. This is only done when you ask for the text.
 	 * <pre>
 	 * &#064;Test
-	 * void Scanner_reads_text_from_System_in(
+	 * void application_writes_values_to_System_out(
 	 * ) throws Exception {
-	 *   withTextFromSystemIn("first line", "second line")
-	 *     .execute((){@literal ->} {
-	 *       Scanner scanner = new Scanner(System.in);
-	 *       scanner.nextLine();
-	 *       assertEquals("first line", scanner.nextLine());
-	 *     });
+	 *   PrintRecording recording = recordSystemOut((){@literal ->} {
+	 *     System.out.printf("%s: %d", "answer", 42);
+	 *   });
+	 *   PrintCall call = recording.calls().get(0);
+	 *   assertEquals("%s: %d", call.format());
+	 *   assertEquals(asList("answer", 42), call.arguments());
 	 * }
 	 * </pre>
+	 * <p>The recording keeps references to the arguments. Therefore the text
+	 * reflects the state of the arguments at the time the text is requested
+	 * and an invalid format string causes an exception when the text is
+	 * requested and not when {@code printf} is called.
 	 *
-	 * <h3>Throwing Exceptions</h3>
-	 * <p>You can also simulate a {@code System.in} that throws an
-	 * {@code IOException} or {@code RuntimeException}. Use
+	 * @param statement an arbitrary piece of code.
+	 * @return the calls on {@code System.out}.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #recordSystemErr(Statement)
+	 * @since 1.3.0
+	 */
+	public static PrintRecording recordSystemOut(
+		Statement statement
+	) throws Exception {
+		RecordingPrintStream recordingStream = new RecordingPrintStream();
+		executeWithSystemOutReplacement(
+			recordingStream,
+			statement
+		);
+		return recordingStream.recording();
+	}
+
+	/**
+	 * Executes the statement and writes the output of the statement to
+	 * {@code System.err} into the sink instead. The bytes are written directly to
+	 * the sink. They are not collected in between.
+	 * <pre>
+	 * &#064;Test
+	 * void application_writes_text_to_System_err(
+	 * ) throws Exception {
+	 *   ByteArrayOutputStream sink = new ByteArrayOutputStream();
+	 *   redirectSystemErr(sink, (){@literal ->} {
+	 *     System.err.print("some text");
+	 *   });
+	 *   assertEquals("some text", sink.toString());
+	 * }
+	 * </pre>
+	 * <p>The sink is flushed after the statement has been executed but it is
+	 * not closed. If the sink throws an {@code IOException} then the
+	 * statement is continued and this method throws the first
+	 * {@code IOException} after the statement has been executed.
 	 *
+	 * @param sink the stream that receives the output.
+	 * @param statement an arbitrary piece of code.
+	 * @throws IOException the first exception thrown by the sink.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #redirectSystemErr(WritableByteChannel, Statement)
+	 * @see #redirectSystemErr(Appendable, Statement)
+	 * @see #redirectSystemOut(OutputStream, Statement)
+	 * @since 1.3.0
+	 */
+	public static void redirectSystemErr(
+		OutputStream sink,
+		Statement statement
+	) throws Exception {
+		executeWithSystemErrRedirectedTo(
+			new OutputStreamSink(sink),
+			defaultCharset(),
+			statement
+		);
+	}
+
+	/**
+	 * Executes the statement and writes the output of the statement to
+	 * {@code System.err} into the channel instead. The bytes are collected in a
+	 * pooled direct buffer and written to the channel when the buffer is full,
+	 * when the code under test flushes {@code System.err} and after the statement
+	 * has been executed.
 	 * <pre>
 	 * &#064;Test
-	 * void System_in_throws_IOException(
+	 * void application_writes_text_to_System_err(
 	 * ) throws Exception {
-	 *   withTextFromSystemIn()
-	 *     .andExceptionThrownOnInputEnd(new IOException())
-	 *     .execute((){@literal ->} {
-	 *       assertThrows(
-	 *         IOException.class,
-	 *         (){@literal ->} new Scanner(System.in).readLine())
-	 *       );
-	 *     )};
+	 *   Path file = Files.createTempFile("output", ".txt");
+	 *   try (FileChannel channel = FileChannel.open(file, WRITE)) {
+	 *     redirectSystemErr(channel, (){@literal ->} {
+	 *       System.err.print("some text");
+	 *     });
+	 *   }
+	 *   assertEquals("some text", new String(Files.readAllBytes(file)));
 	 * }
+	 * </pre>
+	 * <p>The channel is not closed. It must be in blocking mode. If the
+	 * channel throws an {@code IOException} then the statement is continued
+	 * and this method throws the first {@code IOException} after the
+	 * statement has been executed.
 	 *
+	 * @param sink the channel that receives the output.
+	 * @param statement an arbitrary piece of code.
+	 * @throws IOException the first exception thrown by the channel.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #redirectSystemErr(OutputStream, Statement)
+	 * @see #redirectSystemErr(Appendable, Statement)
+	 * @see #redirectSystemOut(WritableByteChannel, Statement)
+	 * @since 1.3.0
+	 */
+	public static void redirectSystemErr(
+		WritableByteChannel sink,
+		Statement statement
+	) throws Exception {
+		executeWithSystemErrRedirectedTo(
+			new ChannelSink(sink),
+			defaultCharset(),
+			statement
+		);
+	}
+
+	/**
+	 * Executes the statement and appends the text that is written to
+	 * {@code System.err} by the statement to the {@code Appendable} instead. The
+	 * bytes are decoded with the default charset while the statement is
+	 * executed. Use {@link #redirectSystemErr(Appendable, Charset, Statement)}
+	 * for another charset.
+	 * <pre>
 	 * &#064;Test
-	 * void System_in_throws_RuntimeException(
+	 * void application_writes_text_to_System_err(
 	 * ) throws Exception {
-	 *   withTextFromSystemIn()
-	 *    .andExceptionThrownOnInputEnd(new RuntimeException())
-	 *    .execute((){@literal ->} {
-	 *       assertThrows(
-	 *         RuntimeException.class,
-	 *         (){@literal ->} new Scanner(System.in).readLine())
-	 *       );
-	 *     )};
+	 *   StringBuilder sink = new StringBuilder();
+	 *   redirectSystemErr(sink, (){@literal ->} {
+	 *     System.err.print("some text");
+	 *   });
+	 *   assertEquals("some text", sink.toString());
 	 * }
 	 * </pre>
-	 * <p>If you provide text as parameters of {@code withTextFromSystemIn(...)}
-	 * in addition then the exception is thrown after the text has been read
-	 * from {@code System.in}.
-	 * @param lines the lines that are available from {@code System.in}.
-	 * @return an {@link SystemInStub} instance that is used to execute a
-	 * statement with its {@link SystemInStub#execute(Statement) execute}
-	 * method. In addition it can be used to specify an exception that is thrown
-	 * after the text is read.
-	 * @since 1.0.0
-	 * @see SystemInStub#execute(Statement)
-	 * @see SystemInStub#andExceptionThrownOnInputEnd(IOException)
-	 * @see SystemInStub#andExceptionThrownOnInputEnd(RuntimeException)
+	 * <p>Characters that are split across multiple writes are appended as
+	 * soon as they are complete. If the {@code Appendable} throws an
+	 * {@code IOException} then the statement is continued and this method
+	 * throws the first {@code IOException} after the statement has been
+	 * executed.
+	 *
+	 * @param sink the {@code Appendable} that receives the text.
+	 * @param statement an arbitrary piece of code.
+	 * @throws IOException the first exception thrown by the
+	 * {@code Appendable}.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #redirectSystemErr(OutputStream, Statement)
+	 * @see #redirectSystemErr(WritableByteChannel, Statement)
+	 * @see #redirectSystemOut(Appendable, Statement)
+	 * @since 1.3.0
 	 */
-    public static SystemInStub withTextFromSystemIn(
-    	String... lines
-	) {
-    	String text = stream(lines)
-			.map(line -> line + lineSeparator())
-			.collect(joining());
-    	return new SystemInStub(text);
+	public static void redirectSystemErr(
+		Appendable sink,
+		Statement statement
+	) throws Exception {
+		redirectSystemErr(sink, defaultCharset(), statement);
 	}
 
-	private static Properties copyOf(
-		Properties source
-	) {
-		Properties copy = new Properties();
-		copy.putAll(source);
-		return copy;
+	/**
+	 * Executes the statement and appends the text that is written to
+	 * {@code System.err} by the statement to the {@code Appendable} instead.
+	 * {@code System.err} encodes text with the specified charset and the
+	 * bytes are decoded with it. Apart from that it behaves like
+	 * {@link #redirectSystemErr(Appendable, Statement)}.
+	 * <pre>
+	 * &#064;Test
+	 * void application_writes_text_to_System_err(
+	 * ) throws Exception {
+	 *   StringBuilder sink = new StringBuilder();
+	 *   redirectSystemErr(sink, UTF_8, (){@literal ->} {
+	 *     System.err.print("\u00e4");
+	 *   });
+	 *   assertEquals("\u00e4", sink.toString());
+	 * }
+	 * </pre>
+	 *
+	 * @param sink the {@code Appendable} that receives the text.
+	 * @param charset the charset of the text.
+	 * @param statement an arbitrary piece of code.
+	 * @throws IOException the first exception thrown by the
+	 * {@code Appendable}.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #redirectSystemErr(Appendable, Statement)
+	 * @since 1.3.0
+	 */
+	public static void redirectSystemErr(
+		Appendable sink,
+		Charset charset,
+		Statement statement
+	) throws Exception {
+		executeWithSystemErrRedirectedTo(
+			new AppendableSink(sink, charset),
+			charset,
+			statement
+		);
 	}
 
-	private static void executeWithSystemErrReplacement(
-		OutputStream replacementForErr,
+	/**
+	 * Executes the statement and writes the output of the statement to
+	 * {@code System.out} into the sink instead. The bytes are written directly to
+	 * the sink. They are not collected in between.
+	 * <pre>
+	 * &#064;Test
+	 * void application_writes_text_to_System_out(
+	 * ) throws Exception {
+	 *   ByteArrayOutputStream sink = new ByteArrayOutputStream();
+	 *   redirectSystemOut(sink, (){@literal ->} {
+	 *     System.out.print("some text");
+	 *   });
+	 *   assertEquals("some text", sink.toString());
+	 * }
+	 * </pre>
+	 * <p>The sink is flushed after the statement has been executed but it is
+	 * not closed. If the sink throws an {@code IOException} then the
+	 * statement is continued and this method throws the first
+	 * {@code IOException} after the statement has been executed.
+	 *
+	 * @param sink the stream that receives the output.
+	 * @param statement an arbitrary piece of code.
+	 * @throws IOException the first exception thrown by the sink.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #redirectSystemOut(WritableByteChannel, Statement)
+	 * @see #redirectSystemOut(Appendable, Statement)
+	 * @see #redirectSystemErr(OutputStream, Statement)
+	 * @since 1.3.0
+	 */
+	public static void redirectSystemOut(
+		OutputStream sink,
 		Statement statement
 	) throws Exception {
-		PrintStream originalStream = err;
-		try {
-			setErr(wrap(replacementForErr));
-			statement.execute();
-		} finally {
-			setErr(originalStream);
-		}
+		executeWithSystemOutRedirectedTo(
+			new OutputStreamSink(sink),
+			defaultCharset(),
+			statement
+		);
 	}
 
-	private static void executeWithSystemOutReplacement(
-		OutputStream replacementForOut,
+	/**
+	 * Executes the statement and writes the output of the statement to
+	 * {@code System.out} into the channel instead. The bytes are collected in a
+	 * pooled direct buffer and written to the channel when the buffer is full,
+	 * when the code under test flushes {@code System.out} and after the statement
+	 * has been executed.
+	 * <pre>
+	 * &#064;Test
+	 * void application_writes_text_to_System_out(
+	 * ) throws Exception {
+	 *   Path file = Files.createTempFile("output", ".txt");
+	 *   try (FileChannel channel = FileChannel.open(file, WRITE)) {
+	 *     redirectSystemOut(channel, (){@literal ->} {
+	 *       System.out.print("some text");
+	 *     });
+	 *   }
+	 *   assertEquals("some text", new String(Files.readAllBytes(file)));
+	 * }
+	 * </pre>
+	 * <p>The channel is not closed. It must be in blocking mode. If the
+	 * channel throws an {@code IOException} then the statement is continued
+	 * and this method throws the first {@code IOException} after the
+	 * statement has been executed.
+	 *
+	 * @param sink the channel that receives the output.
+	 * @param statement an arbitrary piece of code.
+	 * @throws IOException the first exception thrown by the channel.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #redirectSystemOut(OutputStream, Statement)
+	 * @see #redirectSystemOut(Appendable, Statement)
+	 * @see #redirectSystemErr(WritableByteChannel, Statement)
+	 * @since 1.3.0
+	 */
+	public static void redirectSystemOut(
+		WritableByteChannel sink,
 		Statement statement
 	) throws Exception {
-		PrintStream originalStream = out;
+		executeWithSystemOutRedirectedTo(
+			new ChannelSink(sink),
+			defaultCharset(),
+			statement
+		);
+	}
+
+	/**
+	 * Executes the statement and appends the text that is written to
+	 * {@code System.out} by the statement to the {@code Appendable} instead. The
+	 * bytes are decoded with the default charset while the statement is
+	 * executed. Use {@link #redirectSystemOut(Appendable, Charset, Statement)}
+	 * for another charset.
+	 * <pre>
+	 * &#064;Test
+	 * void application_writes_text_to_System_out(
+	 * ) throws Exception {
+	 *   StringBuilder sink = new StringBuilder();
+	 *   redirectSystemOut(sink, (){@literal ->} {
+	 *     System.out.print("some text");
+	 *   });
+	 *   assertEquals("some text", sink.toString());
+	 * }
+	 * </pre>
+	 * <p>Characters that are split across multiple writes are appended as
+	 * soon as they are complete. If the {@code Appendable} throws an
+	 * {@code IOException} then the statement is continued and this method
+	 * throws the first {@code IOException} after the statement has been
+	 * executed.
+	 *
+	 * @param sink the {@code Appendable} that receives the text.
+	 * @param statement an arbitrary piece of code.
+	 * @throws IOException the first exception thrown by the
+	 * {@code Appendable}.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #redirectSystemOut(OutputStream, Statement)
+	 * @see #redirectSystemOut(WritableByteChannel, Statement)
+	 * @see #redirectSystemErr(Appendable, Statement)
+	 * @since 1.3.0
+	 */
+	public static void redirectSystemOut(
+		Appendable sink,
+		Statement statement
+	) throws Exception {
+		redirectSystemOut(sink, defaultCharset(), statement);
+	}
+
+	/**
+	 * Executes the statement and appends the text that is written to
+	 * {@code System.out} by the statement to the {@code Appendable} instead.
+	 * {@code System.out} encodes text with the specified charset and the
+	 * bytes are decoded with it. Apart from that it behaves like
+	 * {@link #redirectSystemOut(Appendable, Statement)}.
+	 * <pre>
+	 * &#064;Test
+	 * void application_writes_text_to_System_out(
+	 * ) throws Exception {
+	 *   StringBuilder sink = new StringBuilder();
+	 *   redirectSystemOut(sink, UTF_8, (){@literal ->} {
+	 *     System.out.print("\u00e4");
+	 *   });
+	 *   assertEquals("\u00e4", sink.toString());
+	 * }
+	 * </pre>
+	 *
+	 * @param sink the {@code Appendable} that receives the text.
+	 * @param charset the charset of the text.
+	 * @param statement an arbitrary piece of code.
+	 * @throws IOException the first exception thrown by the
+	 * {@code Appendable}.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #redirectSystemOut(Appendable, Statement)
+	 * @since 1.3.0
+	 */
+	public static void redirectSystemOut(
+		Appendable sink,
+		Charset charset,
+		Statement statement
+	) throws Exception {
+		executeWithSystemOutRedirectedTo(
+			new AppendableSink(sink, charset),
+			charset,
+			statement
+		);
+	}
+
+	/**
+	 * Executes the statement and restores the system properties after the
+	 * statement has been executed. This allows you to set or clear system
+	 * properties within the statement without affecting other tests.
+	 * <pre>
+	 * &#064;Test
+	 * void execute_code_that_manipulates_system_properties(
+	 * ) throws Exception {
+	 *   System.clearProperty("some property");
+	 *   System.setProperty("another property", "value before test");
+	 *
+	 *   restoreSystemProperties((){@literal ->} {
+	 *     System.setProperty("some property", "some value");
+	 *     assertEquals(
+	 *       "some value",
+	 *       System.getProperty("some property")
+	 *     );
+	 *
+	 *     System.clearProperty("another property");
+	 *     assertNull(
+	 *       System.getProperty("another property")
+	 *     );
+	 *   });
+	 *
+	 *   //values are restored after test
+	 *   assertNull(
+	 *     System.getProperty("some property")
+	 *   );
+	 *   assertEquals(
+	 *     "value before test",
+	 *     System.getProperty("another property")
+	 *   );
+	 * }
+	 * </pre>
+	 * @param statement an arbitrary piece of code.
+	 * @throws Exception any exception thrown by the statement.
+	 * @since 1.0.0
+	 */
+	public static void restoreSystemProperties(
+		Statement statement
+	) throws Exception {
+		Properties originalProperties = getProperties();
+		setProperties(copyOf(originalProperties));
 		try {
-			setOut(wrap(replacementForOut));
 			statement.execute();
 		} finally {
-			setOut(originalStream);
+			setProperties(originalProperties);
+		}
+	}
+
+	/**
+	 * Starts a process like {@link ProcessBuilder#start()} but writes the
+	 * output of the process to the current {@code System.err} and
+	 * {@code System.out} if the builder lets the process inherit them. This
+	 * allows you to tap the output of processes that are started with
+	 * {@link ProcessBuilder#inheritIO()}.
+	 * <pre>
+	 * &#064;Test
+	 * void child_process_writes_text_to_System_out(
+	 * ) throws Exception {
+	 *   String text = tapSystemOut((){@literal ->} {
+	 *     System.out.println("before");
+	 *     startProcess(
+	 *       new ProcessBuilder("echo", "from child").inheritIO()
+	 *     ).waitFor();
+	 *     System.out.println("after");
+	 *   });
+	 *   assertEquals("before\nfrom child\nafter\n", text);
+	 * }
+	 * </pre>
+	 * <p>A process that inherits {@code System.err} or {@code System.out}
+	 * writes to the file descriptor of the JVM and therefore bypasses
+	 * {@code System.err} and {@code System.out}. {@code startProcess} starts
+	 * the process with pipes instead and copies everything from the pipes to
+	 * the streams that are {@code System.err} and {@code System.out} when the
+	 * process is started. The copying is done by background threads.
+	 * {@link Process#waitFor() waitFor()} of the returned process does not
+	 * return before the pipes are drained. Therefore the output of the process
+	 * is in order with the output that is written after {@code waitFor()}.
+	 * Output that the process writes after the execution of an enclosing tap
+	 * has ended still goes to that tap. It does not end up in a later tap.
+	 * <p>On Java 9 and later {@code pid()} and {@code onExit()} of the
+	 * returned process work like the methods of the started process. The
+	 * future of {@code onExit()} completes after the pipes are drained.
+	 * {@code toHandle()}, {@code info()}, {@code children()} and
+	 * {@code descendants()} are not supported and throw an
+	 * {@code UnsupportedOperationException}, because this library is built
+	 * for Java 8. Use {@code ProcessHandle.of(process.pid())} instead.
+	 * <p>The JVM does not allow intercepting {@link ProcessBuilder#start()}.
+	 * Code under test has to start its processes with a function that can be
+	 * replaced by {@code startProcess} in tests.
+	 *
+	 * @param builder the builder of the process.
+	 * @return the started process.
+	 * @throws IOException if the process cannot be started.
+	 * @since 1.3.0
+	 */
+	public static Process startProcess(
+		ProcessBuilder builder
+	) throws IOException {
+		Redirect redirectOfErr = builder.redirectError();
+		Redirect redirectOfOut = builder.redirectOutput();
+		boolean drainErr = redirectOfErr == Redirect.INHERIT
+			&& !builder.redirectErrorStream();
+		boolean drainOut = redirectOfOut == Redirect.INHERIT;
+		if (drainErr)
+			builder.redirectError(Redirect.PIPE);
+		if (drainOut)
+			builder.redirectOutput(Redirect.PIPE);
+		Process process;
+		try {
+			process = builder.start();
+		} finally {
+			builder.redirectError(redirectOfErr);
+			builder.redirectOutput(redirectOfOut);
+		}
+		return new ProcessWithDrainedOutput(
+			process,
+			drainErr ? new OutputDrainer(process.getErrorStream(), err) : null,
+			drainOut ? new OutputDrainer(process.getInputStream(), out) : null
+		);
+	}
+
+	/**
+	 * Executes the statement and returns the {@link LogRecord}s that are
+	 * logged with {@code java.util.logging} by the statement. The records are
+	 * not formatted. Therefore you can assert their level, logger name and
+	 * message template. At most 10000 records are kept. If the statement logs
+	 * more records then the oldest records are dropped.
+	 * <pre>
+	 * &#064;Test
+	 * void application_logs_warning(
+	 * ) throws Exception {
+	 *   List&lt;LogRecord&gt; records = tapLogRecords((){@literal ->} {
+	 *     Logger.getLogger("app").log(WARNING, "Retry {0}", 3);
+	 *   });
+	 *   assertEquals(WARNING, records.get(0).getLevel());
+	 *   assertEquals("app", records.get(0).getLoggerName());
+	 *   assertEquals("Retry {0}", records.get(0).getMessage());
+	 * }
+	 * </pre>
+	 * <p>The records are tapped by a handler that is added to the root logger
+	 * while the statement is executed. It does not see records of loggers
+	 * that do not use their parent handlers, and records that are discarded
+	 * because of the level of their logger. Other handlers, e.g. a
+	 * {@code ConsoleHandler}, still get the records.
+	 *
+	 * @param statement an arbitrary piece of code.
+	 * @return the records that are logged by the statement in the order of
+	 * logging.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #tapLogRecords(int, Statement)
+	 * @since 1.3.0
+	 */
+	public static List<LogRecord> tapLogRecords(
+		Statement statement
+	) throws Exception {
+		return tapLogRecords(LOG_RECORDS_CAPACITY, statement);
+	}
+
+	/**
+	 * Executes the statement and returns the last {@code capacity}
+	 * {@link LogRecord}s that are logged with {@code java.util.logging} by the
+	 * statement. The records are kept in a ring buffer. If the statement logs
+	 * more records than the capacity then the oldest records are dropped.
+	 * <pre>
+	 * &#064;Test
+	 * void application_logs_progress(
+	 * ) throws Exception {
+	 *   List&lt;LogRecord&gt; records = tapLogRecords(
+	 *     2,
+	 *     (){@literal ->} {
+	 *       for (int i = 1; i &lt;= 100; ++i)
+	 *         Logger.getLogger("app").log(INFO, "Step {0}", i);
+	 *     }
+	 *   );
+	 *   assertEquals(99, records.get(0).getParameters()[0]);
+	 *   assertEquals(100, records.get(1).getParameters()[0]);
+	 * }
+	 * </pre>
+	 *
+	 * @param capacity the maximum number of records that are kept.
+	 * @param statement an arbitrary piece of code.
+	 * @return the last {@code capacity} records that are logged by the
+	 * statement in the order of logging.
+	 * @throws Exception any exception thrown by the statement.
+	 * @throws IllegalArgumentException if the capacity is not positive.
+	 * @see #tapLogRecords(Statement)
+	 * @since 1.3.0
+	 */
+	public static List<LogRecord> tapLogRecords(
+		int capacity,
+		Statement statement
+	) throws Exception {
+		if (capacity <= 0)
+			throw new IllegalArgumentException(
+				"The capacity must be positive but it is " + capacity + "."
+			);
+		LogRecordTap tap = new LogRecordTap(capacity);
+		Logger rootLogger = Logger.getLogger("");
+		rootLogger.addHandler(tap);
+		try {
+			statement.execute();
+		} finally {
+			rootLogger.removeHandler(tap);
+		}
+		return tap.records();
+	}
+
+	/**
+	 * Executes the statement and returns the text that was written to
+	 * {@code System.err} by the statement.
+	 * <pre>
+	 * &#064;Test
+	 * void application_writes_text_to_System_err(
+	 * ) throws Exception {
+	 *   String textWrittenToSystemErr = tapSystemErr((){@literal ->} {
+	 *     System.err.print("some text");
+	 *   });
+	 *   assertEquals("some text", textWrittenToSystemErr);
+	 * }
+	 * </pre>
+	 *
+	 * @param statement an arbitrary piece of code.
+	 * @return text that is written to {@code System.err} by the statement.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #tapSystemOut(Statement)
+	 * @see #tapSystemErrAndOut(Statement)
+	 * @see #tapSystemErrAndOutNormalized(Statement)
+	 * @since 1.0.0
+	 */
+	public static String tapSystemErr(
+		Statement statement
+	) throws Exception {
+		return new OutputTap(false, false, false).tapSystemErr(statement);
+	}
+
+	/**
+	 * Executes the statement and returns the text that was written to
+	 * {@code System.err} by the statement. New line characters are replaced
+	 * with a single {@code \n}.
+	 * <pre>
+	 * &#064;Test
+	 * void application_writes_mutliple_lines_to_System_err(
+	 * ) throws Exception {
+	 *   String textWrittenToSystemErr = tapSystemErrNormalized((){@literal ->} {
+	 *     System.err.println("some text");
+	 *   });
+	 *   assertEquals("some text\n", textWrittenToSystemErr);
+	 * }
+	 * </pre>
+	 *
+	 * @param statement an arbitrary piece of code.
+	 * @return text that is written to {@code System.err} by the statement.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #tapSystemOut(Statement)
+	 * @see #tapSystemErrAndOut(Statement)
+	 * @see #tapSystemErrAndOutNormalized(Statement)
+	 * @since 1.0.0
+	 */
+	public static String tapSystemErrNormalized(
+		Statement statement
+	) throws Exception {
+		return tapSystemErr(statement)
+			.replace(lineSeparator(), "\n");
+	}
+
+	/**
+	 * Executes the statement and returns the text that was written to
+	 * {@code System.err} and {@code System.out} by the statement.
+	 * <pre>
+	 * &#064;Test
+	 * void application_writes_text_to_System_err_and_out(
+	 * ) throws Exception {
+	 *   String text = tapSystemErrAndOut((){@literal ->} {
+	 *     System.err.print("text from err");
+	 *     System.out.print("text from out");
+	 *   });
+	 *   assertEquals("text from errtext from out", text);
+	 * }
+	 * </pre>
+	 * <p>Taps can be nested. The text that is tapped by a nested tap is not
+	 * part of the text of this tap. E.g. if the statement calls
+	 * {@code tapSystemOut} then the text that is written to
+	 * {@code System.out} within that call is only returned by the nested
+	 * call while the text that is written to {@code System.err} is still
+	 * returned by this tap. Create the nested tap with
+	 * {@link #withOutputPropagatedToEnclosingTap()} if this tap should get
+	 * the text of the nested tap, too.
+	 *
+	 * @param statement an arbitrary piece of code.
+	 * @return text that is written to {@code System.err} and {@code System.out}
+	 * by the statement.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #tapSystemErrAndOutNormalized(Statement)
+	 * @see #tapSystemErr(Statement)
+	 * @see #tapSystemErrNormalized(Statement)
+	 * @see #tapSystemOut(Statement)
+	 * @see #tapSystemOutNormalized(Statement)
+	 * @since 1.2.0
+	 */
+	public static String tapSystemErrAndOut(
+		Statement statement
+	) throws Exception {
+		return new OutputTap(false, false, false).tapSystemErrAndOut(statement);
+	}
+
+	/**
+	 * Executes the statement and returns the text that was written to
+	 * {@code System.err} and {@code System.out} by the statement. New line
+	 * characters are replaced with a single {@code \n}.
+	 * <pre>
+	 * &#064;Test
+	 * void application_writes_mutliple_lines_to_System_err_and_out(
+	 * ) throws Exception {
+	 *   String text = tapSystemErrAndOutNormalized((){@literal ->} {
+	 *     System.err.println("text from err");
+	 *     System.out.println("text from out");
+	 *   });
+	 *   assertEquals("text from err\ntext from out\n", text);
+	 * }
+	 * </pre>
+	 *
+	 * @param statement an arbitrary piece of code.
+	 * @return text that is written to {@code System.err} and {@code System.out}
+	 * by the statement.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #tapSystemErrAndOut(Statement)
+	 * @see #tapSystemErr(Statement)
+	 * @see #tapSystemErrNormalized(Statement)
+	 * @see #tapSystemOut(Statement)
+	 * @see #tapSystemOutNormalized(Statement)
+	 * @since 1.2.0
+	 */
+	public static String tapSystemErrAndOutNormalized(
+		Statement statement
+	) throws Exception {
+		return tapSystemErrAndOut(statement)
+			.replace(lineSeparator(), "\n");
+	}
+
+	/**
+	 * Executes the statement and returns a future of the text that is
+	 * written to {@code System.err} and {@code System.out} until the
+	 * {@code CompletionStage} that is returned by the statement completes.
+	 * The replacement is only removed when the stage completes. Therefore
+	 * output of work that is still running after the statement has returned
+	 * is tapped, too.
+	 * <pre>
+	 * &#064;Test
+	 * void application_writes_text_asynchronously(
+	 * ) throws Exception {
+	 *   String text = tapSystemErrAndOutAsync(
+	 *     (){@literal ->} CompletableFuture.runAsync(
+	 *       (){@literal ->} System.out.print("some text")
+	 *     )
+	 *   ).get();
+	 *   assertEquals("some text", text);
+	 * }
+	 * </pre>
+	 * <p>The replacement is active for all threads while the stage is not
+	 * completed. Don't execute other functions that replace
+	 * {@code System.err} or {@code System.out} until the future is
+	 * completed, unless they are executed completely within the work of the
+	 * statement.
+	 *
+	 * @param statement an arbitrary piece of code that returns a
+	 * {@code CompletionStage}.
+	 * @return a future of the text. It completes exceptionally with the
+	 * exception of the statement or of the stage.
+	 * @see #tapSystemErrAndOut(Statement)
+	 * @see #tapSystemErrAsync(AsyncStatement)
+	 * @see #tapSystemOutAsync(AsyncStatement)
+	 * @since 1.3.0
+	 */
+	public static CompletableFuture<String> tapSystemErrAndOutAsync(
+		AsyncStatement statement
+	) {
+		TapStream tapStream = new TapStream();
+		return executeWithSystemErrReplacementAsync(
+			tapStream,
+			() -> executeWithSystemOutReplacementAsync(tapStream, statement)
+		)
+			.thenApply(ignored -> tapStream.textThatWasWritten());
+	}
+
+	/**
+	 * Executes the statement and parses each line that is written to
+	 * {@code System.err} by the statement as a JSON object. The objects are
+	 * passed to the consumer as soon as their line is complete. Use this for
+	 * applications that write structured logs with one JSON object per line.
+	 * <pre>
+	 * &#064;Test
+	 * void application_logs_start_event(
+	 * ) throws Exception {
+	 *   {@literal List<Map<String, Object>>} records = new ArrayList{@literal <>}();
+	 *   tapSystemErrAsJsonLines(
+	 *     records::add,
+	 *     (){@literal ->} System.err.println("{\"event\": \"start\", \"pid\": 42}")
+	 *   );
+	 *   assertEquals("start", records.get(0).get("event"));
+	 *   assertEquals(42L, records.get(0).get("pid"));
+	 * }
+	 * </pre>
+	 * <p>Only the current line is kept in memory. Therefore the memory that
+	 * is needed does not grow with the amount of output. JSON objects are
+	 * passed as {@code Map}s that keep the order of the members, arrays as
+	 * {@code List}s, integers as {@code Long} (or {@code BigInteger} if
+	 * they are too large for a {@code Long}), other numbers as
+	 * {@code Double}. Blank lines are ignored.
+	 * <p>Lines that are not a JSON object are skipped. After the statement
+	 * has been executed an {@code AssertionError} is thrown that reports
+	 * the first of these lines with their number and their byte offset in
+	 * the output. If the consumer throws an exception then it is not called
+	 * anymore and the exception is thrown after the statement has been
+	 * executed.
+	 *
+	 * @param consumer receives the JSON object of each line.
+	 * @param statement an arbitrary piece of code.
+	 * @throws AssertionError if a line is not a JSON object.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #tapSystemOutAsJsonLines(Consumer, Statement)
+	 * @since 1.3.0
+	 */
+	public static void tapSystemErrAsJsonLines(
+		Consumer<Map<String, Object>> consumer,
+		Statement statement
+	) throws Exception {
+		JsonLinesStream jsonLinesStream = new JsonLinesStream(consumer);
+		executeWithSystemErrReplacement(
+			jsonLinesStream,
+			statement
+		);
+		jsonLinesStream.finish("System.err");
+	}
+
+	/**
+	 * Executes the statement and returns a future of the text that is
+	 * written to {@code System.err} until the {@code CompletionStage} that is
+	 * returned by the statement completes. The replacement is only removed
+	 * when the stage completes. Therefore output of work that is still
+	 * running after the statement has returned is tapped, too.
+	 * <pre>
+	 * &#064;Test
+	 * void application_writes_text_asynchronously(
+	 * ) throws Exception {
+	 *   String text = tapSystemErrAsync(
+	 *     (){@literal ->} CompletableFuture.runAsync(
+	 *       (){@literal ->} System.err.print("some text")
+	 *     )
+	 *   ).get();
+	 *   assertEquals("some text", text);
+	 * }
+	 * </pre>
+	 * <p>The replacement is active for all threads while the stage is not
+	 * completed. Don't execute other functions that replace
+	 * {@code System.err} or {@code System.out} until the future is
+	 * completed, unless they are executed completely within the work of the
+	 * statement.
+	 *
+	 * @param statement an arbitrary piece of code that returns a
+	 * {@code CompletionStage}.
+	 * @return a future of the text. It completes exceptionally with the
+	 * exception of the statement or of the stage.
+	 * @see #tapSystemErr(Statement)
+	 * @see #tapSystemErrAndOutAsync(AsyncStatement)
+	 * @see #tapSystemOutAsync(AsyncStatement)
+	 * @since 1.3.0
+	 */
+	public static CompletableFuture<String> tapSystemErrAsync(
+		AsyncStatement statement
+	) {
+		TapStream tapStream = new TapStream();
+		return executeWithSystemErrReplacementAsync(tapStream, statement)
+			.thenApply(ignored -> tapStream.textThatWasWritten());
+	}
+
+	/**
+	 * Executes the statement and returns the text that was written to
+	 * {@code System.out} by the statement.
+	 * <pre>
+	 * &#064;Test
+	 * void application_writes_text_to_System_out(
+	 * ) throws Exception {
+	 *   String textWrittenToSystemOut = tapSystemOut((){@literal ->} {
+	 *     System.out.print("some text");
+	 *   });
+	 *   assertEquals("some text", textWrittenToSystemOut);
+	 * }
+	 * </pre>
+	 *
+	 * @param statement an arbitrary piece of code.
+	 * @return text that is written to {@code System.out} by the statement.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #tapSystemErr(Statement)
+	 * @see #tapSystemErrAndOut(Statement)
+	 * @see #tapSystemErrAndOutNormalized(Statement)
+	 * @since 1.0.0
+	 */
+	public static String tapSystemOut(
+		Statement statement
+	) throws Exception {
+		return new OutputTap(false, false, false).tapSystemOut(statement);
+	}
+
+	/**
+	 * Executes the statement and returns the text that was written to
+	 * {@code System.out} by the statement. New line characters are replaced
+	 * with a single {@code \n}.
+	 * <pre>
+	 * &#064;Test
+	 * void application_writes_mutliple_lines_to_System_out(
+	 * ) throws Exception {
+	 *   String textWrittenToSystemOut = tapSystemOutNormalized((){@literal ->} {
+	 *     System.out.println("some text");
+	 *   });
+	 *   assertEquals("some text\n", textWrittenToSystemOut);
+	 * }
+	 * </pre>
+	 *
+	 * @param statement an arbitrary piece of code.
+	 * @return text that is written to {@code System.out} by the statement.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #tapSystemErr(Statement)
+	 * @see #tapSystemErrAndOut(Statement)
+	 * @see #tapSystemErrAndOutNormalized(Statement)
+	 * @since 1.0.0
+	 */
+	public static String tapSystemOutNormalized(
+		Statement statement
+	) throws Exception {
+		return tapSystemOut(statement)
+			.replace(lineSeparator(), "\n");
+	}
+
+	/**
+	 * Executes the statement and parses each line that is written to
+	 * {@code System.out} by the statement as a JSON object. The objects are
+	 * passed to the consumer as soon as their line is complete. Use this for
+	 * applications that write structured logs with one JSON object per line.
+	 * <pre>
+	 * &#064;Test
+	 * void application_logs_start_event(
+	 * ) throws Exception {
+	 *   {@literal List<Map<String, Object>>} records = new ArrayList{@literal <>}();
+	 *   tapSystemOutAsJsonLines(
+	 *     records::add,
+	 *     (){@literal ->} System.out.println("{\"event\": \"start\", \"pid\": 42}")
+	 *   );
+	 *   assertEquals("start", records.get(0).get("event"));
+	 *   assertEquals(42L, records.get(0).get("pid"));
+	 * }
+	 * </pre>
+	 * <p>Only the current line is kept in memory. Therefore the memory that
+	 * is needed does not grow with the amount of output. JSON objects are
+	 * passed as {@code Map}s that keep the order of the members, arrays as
+	 * {@code List}s, integers as {@code Long} (or {@code BigInteger} if
+	 * they are too large for a {@code Long}), other numbers as
+	 * {@code Double}. Blank lines are ignored.
+	 * <p>Lines that are not a JSON object are skipped. After the statement
+	 * has been executed an {@code AssertionError} is thrown that reports
+	 * the first of these lines with their number and their byte offset in
+	 * the output. If the consumer throws an exception then it is not called
+	 * anymore and the exception is thrown after the statement has been
+	 * executed.
+	 *
+	 * @param consumer receives the JSON object of each line.
+	 * @param statement an arbitrary piece of code.
+	 * @throws AssertionError if a line is not a JSON object.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #tapSystemErrAsJsonLines(Consumer, Statement)
+	 * @since 1.3.0
+	 */
+	public static void tapSystemOutAsJsonLines(
+		Consumer<Map<String, Object>> consumer,
+		Statement statement
+	) throws Exception {
+		JsonLinesStream jsonLinesStream = new JsonLinesStream(consumer);
+		executeWithSystemOutReplacement(
+			jsonLinesStream,
+			statement
+		);
+		jsonLinesStream.finish("System.out");
+	}
+
+	/**
+	 * Executes the statement and returns a future of the text that is
+	 * written to {@code System.out} until the {@code CompletionStage} that is
+	 * returned by the statement completes. The replacement is only removed
+	 * when the stage completes. Therefore output of work that is still
+	 * running after the statement has returned is tapped, too.
+	 * <pre>
+	 * &#064;Test
+	 * void application_writes_text_asynchronously(
+	 * ) throws Exception {
+	 *   String text = tapSystemOutAsync(
+	 *     (){@literal ->} CompletableFuture.runAsync(
+	 *       (){@literal ->} System.out.print("some text")
+	 *     )
+	 *   ).get();
+	 *   assertEquals("some text", text);
+	 * }
+	 * </pre>
+	 * <p>The replacement is active for all threads while the stage is not
+	 * completed. Don't execute other functions that replace
+	 * {@code System.err} or {@code System.out} until the future is
+	 * completed, unless they are executed completely within the work of the
+	 * statement.
+	 *
+	 * @param statement an arbitrary piece of code that returns a
+	 * {@code CompletionStage}.
+	 * @return a future of the text. It completes exceptionally with the
+	 * exception of the statement or of the stage.
+	 * @see #tapSystemOut(Statement)
+	 * @see #tapSystemErrAsync(AsyncStatement)
+	 * @see #tapSystemErrAndOutAsync(AsyncStatement)
+	 * @since 1.3.0
+	 */
+	public static CompletableFuture<String> tapSystemOutAsync(
+		AsyncStatement statement
+	) {
+		TapStream tapStream = new TapStream();
+		return executeWithSystemOutReplacementAsync(tapStream, statement)
+			.thenApply(ignored -> tapStream.textThatWasWritten());
+	}
+
+	/**
+	 * Executes the statement with a {@code System.err} that does not block.
+	 * The output is put into a queue and a background thread writes it to
+	 * the original {@code System.err}. The queue holds at most 1 MiB. The
+	 * code under test waits when the queue is full.
+	 * <pre>
+	 * &#064;Test
+	 * void application_writes_to_System_err_without_waiting_for_the_console(
+	 * ) throws Exception {
+	 *   AsyncOutputStatistics statistics = withAsyncSystemErr((){@literal ->} {
+	 *     System.err.print("some text");
+	 *   });
+	 *   assertEquals(9, statistics.flushedBytes());
+	 * }
+	 * </pre>
+	 * <p>All output is written to the original {@code System.err} before
+	 * this method returns. Output that is written after the statement has
+	 * been executed (e.g. by a thread that has been started by the
+	 * statement) is dropped.
+	 *
+	 * @param statement an arbitrary piece of code.
+	 * @return the number of queued, dropped and flushed bytes.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #withAsyncSystemErr(long, OverflowPolicy, Statement)
+	 * @see #withAsyncSystemOut(Statement)
+	 * @since 1.3.0
+	 */
+	public static AsyncOutputStatistics withAsyncSystemErr(
+		Statement statement
+	) throws Exception {
+		return withAsyncSystemErr(
+			ASYNC_OUTPUT_CAPACITY,
+			OverflowPolicy.BLOCK,
+			statement
+		);
+	}
+
+	/**
+	 * Executes the statement with a {@code System.err} that does not block.
+	 * The output is put into a queue and a background thread writes it to
+	 * the original {@code System.err}. The overflow policy determines what
+	 * happens when the queue is full.
+	 * <pre>
+	 * &#064;Test
+	 * void application_writes_to_System_err_without_waiting_for_the_console(
+	 * ) throws Exception {
+	 *   AsyncOutputStatistics statistics = withAsyncSystemErr(
+	 *     64 * 1024,
+	 *     OverflowPolicy.DROP,
+	 *     (){@literal ->} {
+	 *       System.err.print("some text");
+	 *     }
+	 *   );
+	 *   assertEquals(0, statistics.droppedBytes());
+	 * }
+	 * </pre>
+	 * <p>All output is written to the original {@code System.err} before
+	 * this method returns. Output that is written after the statement has
+	 * been executed (e.g. by a thread that has been started by the
+	 * statement) is dropped.
+	 *
+	 * @param capacity the maximum number of bytes in the queue.
+	 * @param overflowPolicy what happens when the queue is full.
+	 * @param statement an arbitrary piece of code.
+	 * @return the number of queued, dropped and flushed bytes.
+	 * @throws IllegalArgumentException if {@code capacity} is not positive.
+	 * @throws Exception any exception thrown by the statement.
+	 * @throws AssertionError if the queue was full and the overflow policy
+	 * is {@link OverflowPolicy#FAIL}.
+	 * @see #withAsyncSystemErr(Statement)
+	 * @see #withAsyncSystemOut(long, OverflowPolicy, Statement)
+	 * @since 1.3.0
+	 */
+	public static AsyncOutputStatistics withAsyncSystemErr(
+		long capacity,
+		OverflowPolicy overflowPolicy,
+		Statement statement
+	) throws Exception {
+		AsyncForwarder forwarder = asyncForwarder(capacity, overflowPolicy);
+		try {
+			executeWithSystemErrReplacement(
+				new AsyncStream(streamBehind(err), forwarder),
+				statement
+			);
+		} finally {
+			forwarder.close();
+		}
+		forwarder.checkOverflow();
+		return forwarder.statistics();
+	}
+
+	/**
+	 * Executes the statement with a {@code System.out} that does not block.
+	 * The output is put into a queue and a background thread writes it to
+	 * the original {@code System.out}. The queue holds at most 1 MiB. The
+	 * code under test waits when the queue is full.
+	 * <pre>
+	 * &#064;Test
+	 * void application_writes_to_System_out_without_waiting_for_the_console(
+	 * ) throws Exception {
+	 *   AsyncOutputStatistics statistics = withAsyncSystemOut((){@literal ->} {
+	 *     System.out.print("some text");
+	 *   });
+	 *   assertEquals(9, statistics.flushedBytes());
+	 * }
+	 * </pre>
+	 * <p>All output is written to the original {@code System.out} before
+	 * this method returns. Output that is written after the statement has
+	 * been executed (e.g. by a thread that has been started by the
+	 * statement) is dropped.
+	 *
+	 * @param statement an arbitrary piece of code.
+	 * @return the number of queued, dropped and flushed bytes.
+	 * @throws Exception any exception thrown by the statement.
+	 * @see #withAsyncSystemOut(long, OverflowPolicy, Statement)
+	 * @see #withAsyncSystemErr(Statement)
+	 * @since 1.3.0
+	 */
+	public static AsyncOutputStatistics withAsyncSystemOut(
+		Statement statement
+	) throws Exception {
+		return withAsyncSystemOut(
+			ASYNC_OUTPUT_CAPACITY,
+			OverflowPolicy.BLOCK,
+			statement
+		);
+	}
+
+	/**
+	 * Executes the statement with a {@code System.out} that does not block.
+	 * The output is put into a queue and a background thread writes it to
+	 * the original {@code System.out}. The overflow policy determines what
+	 * happens when the queue is full.
+	 * <pre>
+	 * &#064;Test
+	 * void application_writes_to_System_out_without_waiting_for_the_console(
+	 * ) throws Exception {
+	 *   AsyncOutputStatistics statistics = withAsyncSystemOut(
+	 *     64 * 1024,
+	 *     OverflowPolicy.DROP,
+	 *     (){@literal ->} {
+	 *       System.out.print("some text");
+	 *     }
+	 *   );
+	 *   assertEquals(0, statistics.droppedBytes());
+	 * }
+	 * </pre>
+	 * <p>All output is written to the original {@code System.out} before
+	 * this method returns. Output that is written after the statement has
+	 * been executed (e.g. by a thread that has been started by the
+	 * statement) is dropped.
+	 *
+	 * @param capacity the maximum number of bytes in the queue.
+	 * @param overflowPolicy what happens when the queue is full.
+	 * @param statement an arbitrary piece of code.
+	 * @return the number of queued, dropped and flushed bytes.
+	 * @throws IllegalArgumentException if {@code capacity} is not positive.
+	 * @throws Exception any exception thrown by the statement.
+	 * @throws AssertionError if the queue was full and the overflow policy
+	 * is {@link OverflowPolicy#FAIL}.
+	 * @see #withAsyncSystemOut(Statement)
+	 * @see #withAsyncSystemErr(long, OverflowPolicy, Statement)
+	 * @since 1.3.0
+	 */
+	public static AsyncOutputStatistics withAsyncSystemOut(
+		long capacity,
+		OverflowPolicy overflowPolicy,
+		Statement statement
+	) throws Exception {
+		AsyncForwarder forwarder = asyncForwarder(capacity, overflowPolicy);
+		try {
+			executeWithSystemOutReplacement(
+				new AsyncStream(streamBehind(out), forwarder),
+				statement
+			);
+		} finally {
+			forwarder.close();
+		}
+		forwarder.checkOverflow();
+		return forwarder.statistics();
+	}
+
+	/**
+	 * Creates an {@link OutputTap} that writes the output of the statement to
+	 * a buffer and not directly to the tap. The buffer is flushed once after
+	 * the statement has been executed. Use this for statements that write a
+	 * lot, because the default taps flush each line and the buffered tap
+	 * doesn't.
+	 * <pre>
+	 * &#064;Test
+	 * void application_writes_many_lines_to_System_out(
+	 * ) throws Exception {
+	 *   String text = withBufferedOutput().tapSystemOutNormalized((){@literal ->} {
+	 *     for (int i = 0; i {@literal <} 100_000; ++i)
+	 *       System.out.println(i);
+	 *   });
+	 *   assertTrue(text.endsWith("99999\n"));
+	 * }
+	 * </pre>
+	 * <p>The code under test can still flush the buffer while it is executed
+	 * by calling {@code System.out.flush()}/{@code System.err.flush()}.
+	 *
+	 * @return an {@code OutputTap} that buffers the output.
+	 * @since 1.3.0
+	 */
+	public static OutputTap withBufferedOutput() {
+		return new OutputTap(true, false, false);
+	}
+
+	/**
+	 * Executes the statement and lets {@code System.in} provide the bytes.
+	 * The bytes are provided exactly as they are. No line separator is added
+	 * and no charset is applied. Use this for applications that read binary
+	 * data.
+	 * <pre>
+	 * &#064;Test
+	 * void application_reads_length_prefixed_frame(
+	 * ) throws Exception {
+	 *   withBytesFromSystemIn(new byte[] { 0, 0, 0, 2, (byte) 0xca, (byte) 0xfe })
+	 *     .execute((){@literal ->} {
+	 *       DataInputStream in = new DataInputStream(System.in);
+	 *       byte[] frame = new byte[in.readInt()];
+	 *       in.readFully(frame);
+	 *       assertArrayEquals(new byte[] { (byte) 0xca, (byte) 0xfe }, frame);
+	 *     });
+	 * }
+	 * </pre>
+	 * <p>The array is not copied. Therefore changes to the array affect
+	 * statements that are executed afterwards.
+	 *
+	 * @param bytes the bytes that are available from {@code System.in}.
+	 * @return an {@link SystemInStub} instance that is used to execute a
+	 * statement with its {@link SystemInStub#execute(Statement) execute}
+	 * method. In addition it can be used to specify an exception that is thrown
+	 * after the bytes are read.
+	 * @see #withBytesFromSystemIn(ByteBuffer)
+	 * @since 1.3.0
+	 */
+	public static SystemInStub withBytesFromSystemIn(
+		byte[] bytes
+	) {
+		return withBytesFromSystemIn(ByteBuffer.wrap(bytes));
+	}
+
+	/**
+	 * Executes the statement and lets {@code System.in} provide the bytes
+	 * between the position and the limit of the buffer. The bytes are
+	 * provided exactly as they are. No line separator is added and no charset
+	 * is applied. Use this for applications that read binary data.
+	 * <pre>
+	 * &#064;Test
+	 * void application_reads_length_prefixed_frame(
+	 * ) throws Exception {
+	 *   ByteBuffer frame = ByteBuffer.allocate(6).putInt(2).put(new byte[] { 1, 2 });
+	 *   frame.flip();
+	 *   withBytesFromSystemIn(frame)
+	 *     .execute((){@literal ->} {
+	 *       //code under test that reads the frame from System.in
+	 *     });
+	 * }
+	 * </pre>
+	 * <p>The position of the buffer is not changed and its bytes are not
+	 * copied. Each execution of the statement reads the bytes from the
+	 * position that the buffer had when this method was called.
+	 *
+	 * @param bytes the buffer with the bytes that are available from
+	 * {@code System.in}.
+	 * @return an {@link SystemInStub} instance that is used to execute a
+	 * statement with its {@link SystemInStub#execute(Statement) execute}
+	 * method. In addition it can be used to specify an exception that is thrown
+	 * after the bytes are read.
+	 * @see #withBytesFromSystemIn(byte[])
+	 * @since 1.3.0
+	 */
+	public static SystemInStub withBytesFromSystemIn(
+		ByteBuffer bytes
+	) {
+		ByteBuffer readOnlyBytes = bytes.asReadOnlyBuffer();
+		return new SystemInStub(
+			charset -> new BytesSource(readOnlyBytes.duplicate())
+		);
+	}
+
+	/**
+	 * Executes the statement and lets {@code System.in} provide the bytes of
+	 * the buffers that are returned by the supplier. The supplier is called
+	 * when the code under test has read all bytes of the previous buffer. It
+	 * returns {@code null} at the end of the input. Therefore only one buffer
+	 * has to be in memory at a time, no matter how much input is provided.
+	 * <pre>
+	 * &#064;Test
+	 * void application_reads_generated_records(
+	 * ) throws Exception {
+	 *   AtomicInteger counter = new AtomicInteger();
+	 *   withBytesFromSystemIn((){@literal ->} counter.incrementAndGet() {@literal <}= 1_000_000
+	 *       ? ByteBuffer.wrap(nextRecord())
+	 *       : null)
+	 *     .execute((){@literal ->} {
+	 *       //code under test that reads the records from System.in
+	 *     });
+	 * }
+	 * </pre>
+	 * <p>The positions of the buffers are not changed. A charset that is set
+	 * by {@link SystemInStub#andCharset(Charset)} has no effect.
+	 *
+	 * @param buffers the supplier of the buffers that are read from
+	 * {@code System.in}. It returns {@code null} at the end of the input.
+	 * @return an {@link SystemInStub} instance that is used to execute a
+	 * statement with its {@link SystemInStub#execute(Statement) execute}
+	 * method. In addition it can be used to specify an exception that is thrown
+	 * after the input is read.
+	 * @see #withLinesFromSystemIn(Iterator)
+	 * @since 1.3.0
+	 */
+	public static SystemInStub withBytesFromSystemIn(
+		Supplier<ByteBuffer> buffers
+	) {
+		return new SystemInStub(charset -> new SupplierSource(buffers));
+	}
+
+	/**
+	 * Executes the statement with the specified environment variables. All
+	 * changes to environment variables are reverted after the statement has
+	 * been executed.
+	 * <pre>
+	 * &#064;Test
+	 * void execute_code_with_environment_variables(
+	 * ) throws Exception {
+	 *   {@literal List<String>} values = withEnvironmentVariable("first", "first value")
+	 *     .and("second", "second value")
+	 *     .and("third", null)
+	 *     .execute((){@literal ->} asList(
+	 *         System.getenv("first"),
+	 *         System.getenv("second"),
+	 *         System.getenv("third")
+	 *     ));
+	 *   assertEquals(
+	 *     asList("first value", "second value", null),
+	 *     values
+	 *   );
+	 * }
+	 * </pre>
+	 * <p>You cannot specify the value of an an environment variable twice. An
+	 * {@code IllegalArgumentException} is thrown when you try.
+	 * <p><b>Warning:</b> This method uses reflection for modifying internals of the
+	 * environment variables map. It fails if your {@code SecurityManager} forbids
+	 * such modifications.
+	 * @param name the name of the environment variable.
+	 * @param value the value of the environment variable.
+	 * @return an {@link WithEnvironmentVariables} instance that can be used to
+	 * set more variables and run a statement with the specified environment
+	 * variables.
+	 * @since 1.0.0
+	 * @see WithEnvironmentVariables#and(String, String)
+	 * @see WithEnvironmentVariables#execute(Callable)
+	 * @see WithEnvironmentVariables#execute(Statement)
+	 */
+	public static WithEnvironmentVariables withEnvironmentVariable(
+		String name,
+		String value
+	) {
+		return new WithEnvironmentVariables(
+			singletonMap(name, value)
+		);
+	}
+
+	/**
+	 * Executes the statement and lets {@code System.in} provide the content
+	 * of the file. The file is mapped into memory and not read into the heap.
+	 * Therefore you can provide files of several gigabytes.
+	 * <pre>
+	 * &#064;Test
+	 * void importer_reads_captured_input(
+	 * ) throws Exception {
+	 *   withFileAsSystemIn(Paths.get("captured-input.txt"))
+	 *     .execute((){@literal ->} {
+	 *       //code under test that reads from System.in
+	 *     });
+	 * }
+	 * </pre>
+	 * <p>{@code System.in} supports {@code mark} and {@code reset}. The read
+	 * limit of {@code mark} is ignored. {@code skip} moves to the new position
+	 * without reading the skipped bytes. A charset that is set by
+	 * {@link SystemInStub#andCharset(Charset)} has no effect.
+	 * <p>The file is opened when the statement is executed and closed
+	 * afterwards. It must not be truncated while it is mapped.
+	 *
+	 * @param file the file that is available from {@code System.in}.
+	 * @return an {@link SystemInStub} instance that is used to execute a
+	 * statement with its {@link SystemInStub#execute(Statement) execute}
+	 * method. In addition it can be used to specify an exception that is thrown
+	 * after the file is read.
+	 * @since 1.3.0
+	 */
+	public static SystemInStub withFileAsSystemIn(
+		Path file
+	) {
+		return new SystemInStub(charset -> new MappedFileSource(file));
+	}
+
+	/**
+	 * Executes the statement and lets {@code System.in} provide lines that
+	 * are generated from the template. The lines are generated while the code
+	 * under test reads them. Therefore you can provide gigabytes of input
+	 * without fixture files. The template may contain the following fields:
+	 * <dl>
+	 * <dt>{@code {int}}</dt>
+	 * <dd>a random non-negative {@code int}</dd>
+	 * <dt>{@code {word}}</dt>
+	 * <dd>a random lower-case English word</dd>
+	 * <dt>{@code {timestamp}}</dt>
+	 * <dd>a timestamp like {@code 2020-01-01T00:00:00.417Z}. The timestamps
+	 * start at 2020-01-01 and each timestamp is less than a second after the
+	 * previous one, like the timestamps of a log file.</dd>
+	 * <dt>{@code {csv:N}}</dt>
+	 * <dd>N comma-separated random ints and words. N is between 1 and
+	 * 9999.</dd>
+	 * </dl>
+	 * <p>All other text of the template is copied to each line. Each line is
+	 * followed by the line separator.
+	 * <pre>
+	 * &#064;Test
+	 * void parser_handles_a_million_log_lines(
+	 * ) throws Exception {
+	 *   withGeneratedLinesFromSystemIn(
+	 *     42L,
+	 *     1_000_000,
+	 *     "{timestamp} INFO user={word} id={int}"
+	 *   ).execute((){@literal ->} {
+	 *     //code under test that parses the lines from System.in
+	 *   });
+	 * }
+	 * </pre>
+	 * <p>The lines are determined by the seed. Each execution of the
+	 * statement reads the same lines. The fields consist of ASCII characters.
+	 * Therefore the charset that is set by
+	 * {@link SystemInStub#andCharset(Charset)} must encode ASCII characters
+	 * like ASCII does.
+	 *
+	 * @param seed the seed of the random fields.
+	 * @param numberOfLines the number of lines that are available from
+	 * {@code System.in}.
+	 * @param template the template of the lines.
+	 * @return an {@link SystemInStub} instance that is used to execute a
+	 * statement with its {@link SystemInStub#execute(Statement) execute}
+	 * method. In addition it can be used to specify an exception that is thrown
+	 * after the lines are read.
+	 * @throws IllegalArgumentException if the number of lines is negative.
+	 * @see #withLinesFromSystemIn(Iterator)
+	 * @since 1.3.0
+	 */
+	public static SystemInStub withGeneratedLinesFromSystemIn(
+		long seed,
+		long numberOfLines,
+		String template
+	) {
+		if (numberOfLines < 0)
+			throw new IllegalArgumentException(
+				"The number of lines must not be negative but it is "
+					+ numberOfLines + ".");
+		LineTemplate lineTemplate = new LineTemplate(template);
+		return new SystemInStub(
+			charset -> new GeneratedLinesSource(
+				lineTemplate,
+				seed,
+				numberOfLines,
+				charset,
+				lineSeparator().getBytes(charset)
+			)
+		);
+	}
+
+	/**
+	 * Executes the statement and lets {@code System.in} provide the lines of
+	 * the iterator. Each line is followed by the line separator. The lines are
+	 * encoded when the code under test reads them. Therefore only a few lines
+	 * have to be in memory at a time, no matter how many lines are provided.
+	 * <pre>
+	 * &#064;Test
+	 * void application_reads_a_million_lines(
+	 * ) throws Exception {
+	 *   Iterator&lt;String&gt; lines = IntStream.range(0, 1_000_000)
+	 *     .mapToObj(i {@literal ->} "record " + i)
+	 *     .iterator();
+	 *   withLinesFromSystemIn(lines)
+	 *     .execute((){@literal ->} {
+	 *       //code under test that reads the lines from System.in
+	 *     });
+	 * }
+	 * </pre>
+	 * <p>The iterator is consumed by the first execution of the statement.
+	 *
+	 * @param lines the lines that are available from {@code System.in}.
+	 * @return an {@link SystemInStub} instance that is used to execute a
+	 * statement with its {@link SystemInStub#execute(Statement) execute}
+	 * method. In addition it can be used to specify an exception that is thrown
+	 * after the lines are read.
+	 * @see #withLinesFromSystemIn(Stream)
+	 * @see #withTextFromSystemIn(String...)
+	 * @since 1.3.0
+	 */
+	public static SystemInStub withLinesFromSystemIn(
+		Iterator<String> lines
+	) {
+		return new SystemInStub(
+			charset -> new LinesSource(
+				lines, charset, lineSeparator().getBytes(charset))
+		);
+	}
+
+	/**
+	 * Executes the statement and lets {@code System.in} provide the lines of
+	 * the stream. Each line is followed by the line separator. The lines are
+	 * taken from the stream and encoded when the code under test reads them.
+	 * Therefore only a few lines have to be in memory at a time, no matter how
+	 * many lines are provided.
+	 * <pre>
+	 * &#064;Test
+	 * void application_reads_a_million_lines(
+	 * ) throws Exception {
+	 *   withLinesFromSystemIn(
+	 *     IntStream.range(0, 1_000_000).mapToObj(i {@literal ->} "record " + i)
+	 *   ).execute((){@literal ->} {
+	 *     //code under test that reads the lines from System.in
+	 *   });
+	 * }
+	 * </pre>
+	 * <p>The stream is consumed by the first execution of the statement. It
+	 * is not closed.
+	 *
+	 * @param lines the lines that are available from {@code System.in}.
+	 * @return an {@link SystemInStub} instance that is used to execute a
+	 * statement with its {@link SystemInStub#execute(Statement) execute}
+	 * method. In addition it can be used to specify an exception that is thrown
+	 * after the lines are read.
+	 * @see #withLinesFromSystemIn(Iterator)
+	 * @see #withTextFromSystemIn(String...)
+	 * @since 1.3.0
+	 */
+	public static SystemInStub withLinesFromSystemIn(
+		Stream<String> lines
+	) {
+		return withLinesFromSystemIn(lines.iterator());
+	}
+
+	/**
+	 * Creates an {@link OutputTap} that also forwards the output of the
+	 * statement to the original {@code System.err}/{@code System.out}. Use
+	 * this if you need to see the output while the statement is executed,
+	 * e.g. because a long running test hangs.
+	 * <pre>
+	 * &#064;Test
+	 * void application_writes_text_to_System_out(
+	 * ) throws Exception {
+	 *   String text = withOutputForwardedToConsole().tapSystemOut((){@literal ->} {
+	 *     System.out.print("some text");
+	 *   });
+	 *   assertEquals("some text", text);
+	 * }
+	 * </pre>
+	 * <p>The output is forwarded asynchronously by a background thread.
+	 * Therefore a slow console does not slow down the statement unless the
+	 * statement writes more than 1 MiB that is not forwarded yet. The
+	 * tap methods wait until all output has been forwarded before they
+	 * return.
+	 *
+	 * @return an {@code OutputTap} that forwards the output to the console.
+	 * @since 1.3.0
+	 */
+	public static OutputTap withOutputForwardedToConsole() {
+		return new OutputTap(false, true, false);
+	}
+
+	/**
+	 * Creates an {@link OutputTap} that passes the output on to the
+	 * enclosing tap after the statement has been executed. Usually a tap
+	 * hides the output of the statement from an enclosing tap. Use this for
+	 * helpers that tap output within tests that tap output, too.
+	 * <pre>
+	 * &#064;Test
+	 * void enclosing_tap_gets_text_of_nested_tap(
+	 * ) throws Exception {
+	 *   String outerText = tapSystemOut((){@literal ->} {
+	 *     String innerText = withOutputPropagatedToEnclosingTap()
+	 *       .tapSystemOut((){@literal ->} System.out.print("some text"));
+	 *     assertEquals("some text", innerText);
+	 *   });
+	 *   assertEquals("some text", outerText);
+	 * }
+	 * </pre>
+	 * <p>The bytes are appended to the enclosing tap as a whole when the
+	 * statement has been executed, even if it throws an exception. They are
+	 * shared with the enclosing tap and neither copied nor decoded again.
+	 * If the stream is not tapped by an enclosing tap but e.g. by
+	 * {@link #captureSystemOutOffHeap(Statement)} or not at all then the
+	 * bytes are written to the enclosing stream.
+	 * <p>The output of {@code tapSystemErrAndOut} is passed on to the tap
+	 * that encloses {@code System.out}. If {@code System.out} is not tapped
+	 * by an enclosing tap then the output is passed on to the tap that
+	 * encloses {@code System.err}. If neither is tapped then the output is
+	 * written to {@code System.out}.
+	 * <p>Output that is forwarded to the console is already written to the
+	 * enclosing tap while the statement is executed. Therefore a tap that
+	 * is {@link OutputTap#andForwardedToConsole() forwarded to the console}
+	 * does not propagate its output a second time.
+	 *
+	 * @return an {@code OutputTap} that propagates the output to the
+	 * enclosing tap.
+	 * @since 1.3.0
+	 */
+	public static OutputTap withOutputPropagatedToEnclosingTap() {
+		return new OutputTap(false, false, true);
+	}
+
+    /**
+     * Executes the statement with the provided security manager.
+     * <pre>
+     * &#064;Test
+     * void execute_code_with_specific_SecurityManager(
+	 * ) throws Exception {
+     *   SecurityManager securityManager = new ASecurityManager();
+     *   withSecurityManager(
+     *     securityManager,
+     *     (){@literal ->} {
+	 *       //code under test
+	 *       //e.g. the following assertion is met
+     *       assertSame(securityManager, System.getSecurityManager())
+     *     }
+     *   );
+     * }
+     * </pre>
+     * The specified security manager is only present during the test.
+     * @param securityManager the security manager that is used while the
+     *                        statement is executed.
+     * @param statement an arbitrary piece of code.
+     * @throws Exception any exception thrown by the statement.
+     * @since 1.0.0
+     */
+    public static void withSecurityManager(
+        SecurityManager securityManager,
+        Statement statement
+    ) throws Exception {
+        SecurityManager originalSecurityManager = getSecurityManager();
+        setSecurityManager(securityManager);
+        try {
+            statement.execute();
+        } finally {
+            setSecurityManager(originalSecurityManager);
+        }
+    }
+
+	/**
+	 * Executes the statement in a background thread and lets
+	 * {@code System.in} provide the input that the feeder writes to a
+	 * {@link SystemInPipe}. The feeder is executed by the current thread while
+	 * the statement is executed. {@code System.in} blocks until input is
+	 * available and provides the end of the input after the feeder has
+	 * closed the pipe or returned. Use this for interactive applications that
+	 * respond to each line.
+	 * <pre>
+	 * &#064;Test
+	 * void repl_answers_each_line(
+	 * ) throws Exception {
+	 *   SystemInPipe pipe = withSystemInPipe(
+	 *     feeder {@literal ->} {
+	 *       feeder.writeLine("1 + 1");
+	 *       feeder.writeLine("quit");
+	 *     },
+	 *     (){@literal ->} new Repl().run()
+	 *   );
+	 *   assertEquals(2, pipe.lineLatencies().size());
+	 * }
+	 * </pre>
+	 * <p>At most 64 KiB are kept until they are read. The feeder waits when
+	 * the buffer is full.
+	 * <p>The function waits until the statement has been executed. It
+	 * rethrows an exception of the feeder or, if the feeder did not throw an
+	 * exception, an exception of the statement. While the statement is
+	 * executed {@code System.in} is replaced for the whole JVM.
+	 * <p>The statement must finish within 10 seconds after the feeder has
+	 * returned. Otherwise it is interrupted and the function throws an
+	 * {@code AssertionError}.
+	 *
+	 * @param feeder writes the input to the pipe.
+	 * @param statement an arbitrary piece of code.
+	 * @return the closed pipe. It provides the latencies of the lines.
+	 * @throws Exception any exception thrown by the feeder or the statement.
+	 * @throws AssertionError if the statement does not finish within 10
+	 * seconds after the feeder has returned.
+	 * @see #withSystemInPipe(int, PipeFeeder, Statement)
+	 * @see #withSystemInPipe(int, Duration, PipeFeeder, Statement)
+	 * @since 1.3.0
+	 */
+	public static SystemInPipe withSystemInPipe(
+		PipeFeeder feeder,
+		Statement statement
+	) throws Exception {
+		return withSystemInPipe(PIPE_CAPACITY, feeder, statement);
+	}
+
+	/**
+	 * Executes the statement in a background thread and lets
+	 * {@code System.in} provide the input that the feeder writes to a
+	 * {@link SystemInPipe}. At most {@code capacity} bytes are kept until they
+	 * are read. Apart from that it behaves like
+	 * {@link #withSystemInPipe(PipeFeeder, Statement)}.
+	 * <pre>
+	 * &#064;Test
+	 * void repl_answers_each_line(
+	 * ) throws Exception {
+	 *   SystemInPipe pipe = withSystemInPipe(
+	 *     16,
+	 *     feeder {@literal ->} {
+	 *       feeder.writeLine("1 + 1");
+	 *       feeder.writeLine("quit");
+	 *     },
+	 *     (){@literal ->} new Repl().run()
+	 *   );
+	 *   assertEquals(2, pipe.lineLatencies().size());
+	 * }
+	 * </pre>
+	 *
+	 * @param capacity the maximum number of bytes that are kept until they
+	 * are read.
+	 * @param feeder writes the input to the pipe.
+	 * @param statement an arbitrary piece of code.
+	 * @return the closed pipe. It provides the latencies of the lines.
+	 * @throws Exception any exception thrown by the feeder or the statement.
+	 * @throws AssertionError if the statement does not finish within 10
+	 * seconds after the feeder has returned.
+	 * @throws IllegalArgumentException if the capacity is not positive.
+	 * @see #withSystemInPipe(PipeFeeder, Statement)
+	 * @see #withSystemInPipe(int, Duration, PipeFeeder, Statement)
+	 * @since 1.3.0
+	 */
+	public static SystemInPipe withSystemInPipe(
+		int capacity,
+		PipeFeeder feeder,
+		Statement statement
+	) throws Exception {
+		return withSystemInPipe(capacity, PIPE_TIMEOUT, feeder, statement);
+	}
+
+	/**
+	 * Executes the statement in a background thread and lets
+	 * {@code System.in} provide the input that the feeder writes to a
+	 * {@link SystemInPipe}. At most {@code capacity} bytes are kept until they
+	 * are read. The statement must finish within the specified timeout after
+	 * the feeder has returned. Otherwise it is interrupted and the function
+	 * throws an {@code AssertionError}. Apart from that it behaves like
+	 * {@link #withSystemInPipe(PipeFeeder, Statement)}.
+	 * <pre>
+	 * &#064;Test
+	 * void repl_stops_at_end_of_input(
+	 * ) throws Exception {
+	 *   withSystemInPipe(
+	 *     16,
+	 *     Duration.ofSeconds(1),
+	 *     feeder {@literal ->} feeder.writeLine("1 + 1"),
+	 *     (){@literal ->} new Repl().run()
+	 *   );
+	 * }
+	 * </pre>
+	 *
+	 * @param capacity the maximum number of bytes that are kept until they
+	 * are read.
+	 * @param timeout the time that the statement may need after the feeder
+	 * has returned.
+	 * @param feeder writes the input to the pipe.
+	 * @param statement an arbitrary piece of code.
+	 * @return the closed pipe. It provides the latencies of the lines.
+	 * @throws Exception any exception thrown by the feeder or the statement.
+	 * @throws AssertionError if the statement does not finish within the
+	 * timeout after the feeder has returned.
+	 * @throws IllegalArgumentException if the capacity or the timeout is not
+	 * positive.
+	 * @see #withSystemInPipe(int, PipeFeeder, Statement)
+	 * @since 1.3.0
+	 */
+	public static SystemInPipe withSystemInPipe(
+		int capacity,
+		Duration timeout,
+		PipeFeeder feeder,
+		Statement statement
+	) throws Exception {
+		if (capacity <= 0)
+			throw new IllegalArgumentException(
+				"The capacity must be positive but it is " + capacity + "."
+			);
+		if (timeout.isZero() || timeout.isNegative())
+			throw new IllegalArgumentException(
+				"The timeout must be positive but it is " + timeout + "."
+			);
+		SystemInPipe pipe = new SystemInPipe(capacity);
+		InputStream originalIn = System.in;
+		setIn(pipe.stream);
+		boolean statementStuck = false;
+		try {
+			Thread statementThread = new Thread(
+				() -> {
+					try {
+						statement.execute();
+					} catch (Throwable t) {
+						pipe.statementFailed(t);
+					} finally {
+						pipe.statementFinished();
+					}
+				},
+				"System Lambda statement"
+			);
+			statementThread.setDaemon(true);
+			statementThread.start();
+			try {
+				feeder.feed(pipe);
+			} finally {
+				pipe.close();
+				statementThread.join(timeout.toMillis());
+				if (statementThread.isAlive()) {
+					statementStuck = true;
+					statementThread.interrupt();
+				}
+			}
+		} finally {
+			setIn(originalIn);
+		}
+		if (statementStuck)
+			throw new AssertionError(
+				"The statement did not finish within " + timeout.toMillis()
+					+ " ms after the feeder had returned. It has been"
+					+ " interrupted."
+			);
+		pipe.throwFailureOfStatement();
+		return pipe;
+	}
+
+	/**
+	 * Executes the statement and lets {@code System.in} provide the specified
+	 * text during the execution. In addition several Exceptions can be
+	 * specified that are thrown when {@code System.in#read} is called.
+	 *
+	 * <pre>
+	 * &#064;Test
+	 * void Scanner_reads_text_from_System_in(
+	 * ) throws Exception {
+	 *   withTextFromSystemIn("first line", "second line")
+	 *     .execute((){@literal ->} {
+	 *       Scanner scanner = new Scanner(System.in);
+	 *       scanner.nextLine();
+	 *       assertEquals("first line", scanner.nextLine());
+	 *     });
+	 * }
+	 * </pre>
+	 *
+	 * <h3>Throwing Exceptions</h3>
+	 * <p>You can also simulate a {@code System.in} that throws an
+	 * {@code IOException} or {@code RuntimeException}. Use
+	 *
+	 * <pre>
+	 * &#064;Test
+	 * void System_in_throws_IOException(
+	 * ) throws Exception {
+	 *   withTextFromSystemIn()
+	 *     .andExceptionThrownOnInputEnd(new IOException())
+	 *     .execute((){@literal ->} {
+	 *       assertThrows(
+	 *         IOException.class,
+	 *         (){@literal ->} new Scanner(System.in).readLine())
+	 *       );
+	 *     )};
+	 * }
+	 *
+	 * &#064;Test
+	 * void System_in_throws_RuntimeException(
+	 * ) throws Exception {
+	 *   withTextFromSystemIn()
+	 *    .andExceptionThrownOnInputEnd(new RuntimeException())
+	 *    .execute((){@literal ->} {
+	 *       assertThrows(
+	 *         RuntimeException.class,
+	 *         (){@literal ->} new Scanner(System.in).readLine())
+	 *       );
+	 *     )};
+	 * }
+	 * </pre>
+	 * <p>If you provide text as parameters of {@code withTextFromSystemIn(...)}
+	 * in addition then the exception is thrown after the text has been read
+	 * from {@code System.in}.
+	 *
+	 * <h3>Bulk Reads</h3>
+	 * <p>Each call of {@code System.in.read(byte[], int, int)} provides at
+	 * most one line. Therefore the statement can wrap {@code System.in} with
+	 * multiple readers. If it uses a single reader then
+	 * {@link SystemInStub#andBulkReads() andBulkReads()} lets each read
+	 * provide as many bytes as possible.
+	 * @param lines the lines that are available from {@code System.in}.
+	 * @return an {@link SystemInStub} instance that is used to execute a
+	 * statement with its {@link SystemInStub#execute(Statement) execute}
+	 * method. In addition it can be used to specify an exception that is thrown
+	 * after the text is read.
+	 * @since 1.0.0
+	 * @see SystemInStub#andBulkReads()
+	 * @see SystemInStub#execute(Statement)
+	 * @see SystemInStub#andExceptionThrownOnInputEnd(IOException)
+	 * @see SystemInStub#andExceptionThrownOnInputEnd(RuntimeException)
+	 */
+    public static SystemInStub withTextFromSystemIn(
+    	String... lines
+	) {
+    	String text = stream(lines)
+			.map(line -> line + lineSeparator())
+			.collect(joining());
+    	return new SystemInStub(new EncodedText(text)).andOneLinePerRead();
+	}
+
+	private static OffHeapCapture captureOffHeap(
+		boolean captureErr,
+		boolean captureOut,
+		Statement statement
+	) throws Exception {
+		SegmentStream segmentStream = new SegmentStream(CAPTURE_SEGMENTS);
+		Statement statementWithCapturedOut = captureOut
+			? () -> executeWithSystemOutReplacement(segmentStream, statement)
+			: statement;
+		boolean completed = false;
+		try {
+			if (captureErr)
+				executeWithSystemErrReplacement(
+					segmentStream,
+					statementWithCapturedOut
+				);
+			else
+				statementWithCapturedOut.execute();
+			completed = true;
+		} finally {
+			if (!completed)
+				segmentStream.release();
+		}
+		return new OffHeapCapture(segmentStream);
+	}
+
+	private static Properties copyOf(
+		Properties source
+	) {
+		Properties copy = new Properties();
+		copy.putAll(source);
+		return copy;
+	}
+
+	private static void executeWithSystemErrReplacement(
+		OutputStream replacementForErr,
+		Statement statement
+	) throws Exception {
+		ERR_ROUTE.execute(
+			replacementForErr,
+			statement
+		);
+	}
+
+	private static void executeWithSystemErrReplacement(
+		PrintStream replacementForErr,
+		Statement statement
+	) throws Exception {
+		PrintStream originalStream = err;
+		try {
+			setErr(replacementForErr);
+			statement.execute();
+		} finally {
+			setErr(originalStream);
+		}
+	}
+
+	private static void executeWithSystemOutReplacement(
+		OutputStream replacementForOut,
+		Statement statement
+	) throws Exception {
+		OUT_ROUTE.execute(
+			replacementForOut,
+			statement
+		);
+	}
+
+	private static void executeWithSystemOutReplacement(
+		PrintStream replacementForOut,
+		Statement statement
+	) throws Exception {
+		PrintStream originalStream = out;
+		try {
+			setOut(replacementForOut);
+			statement.execute();
+		} finally {
+			setOut(originalStream);
+		}
+	}
+
+	/*
+	 * The sink may throw exceptions. Therefore it is not used as target of
+	 * the route.
+	 */
+	private static void executeWithSystemErrRedirectedTo(
+		SinkStream sink,
+		Charset charset,
+		Statement statement
+	) throws Exception {
+		PrintStream printStream = new PrintStream(
+			sink,
+			AUTO_FLUSH,
+			charset.name()
+		);
+		try {
+			executeWithSystemErrReplacement(
+				printStream,
+				statement
+			);
+		} finally {
+			printStream.close();
+		}
+		sink.throwFirstFailure();
+	}
+
+	/*
+	 * The sink may throw exceptions. Therefore it is not used as target of
+	 * the route.
+	 */
+	private static void executeWithSystemOutRedirectedTo(
+		SinkStream sink,
+		Charset charset,
+		Statement statement
+	) throws Exception {
+		PrintStream printStream = new PrintStream(
+			sink,
+			AUTO_FLUSH,
+			charset.name()
+		);
+		try {
+			executeWithSystemOutReplacement(
+				printStream,
+				statement
+			);
+		} finally {
+			printStream.close();
+		}
+		sink.throwFirstFailure();
+	}
+
+	private static CompletableFuture<Void> executeWithSystemErrReplacementAsync(
+		OutputStream replacementForErr,
+		AsyncStatement statement
+	) {
+		return ERR_ROUTE.executeAsync(
+			replacementForErr,
+			statement
+		);
+	}
+
+	private static CompletableFuture<Void> executeWithSystemOutReplacementAsync(
+		OutputStream replacementForOut,
+		AsyncStatement statement
+	) {
+		return OUT_ROUTE.executeAsync(
+			replacementForOut,
+			statement
+		);
+	}
+
+	/*
+	 * Executes the statement and calls the cleanup with the failure or
+	 * null when the stage that is returned by the statement completes. The
+	 * returned future completes after the cleanup.
+	 */
+	private static CompletableFuture<Void> executeAndCleanUpAsync(
+		AsyncStatement statement,
+		Consumer<Throwable> cleanup
+	) {
+		CompletableFuture<Void> result = new CompletableFuture<>();
+		CompletionStage<?> stage;
+		try {
+			stage = statement.execute();
+		} catch (Exception | Error e) {
+			completeAfterCleanup(result, e, cleanup);
+			return result;
+		}
+		if (stage == null)
+			completeAfterCleanup(result, null, cleanup);
+		else
+			stage.whenComplete(
+				(value, failure) -> completeAfterCleanup(
+					result,
+					failure,
+					cleanup
+				)
+			);
+		return result;
+	}
+
+	private static void completeAfterCleanup(
+		CompletableFuture<Void> result,
+		Throwable failure,
+		Consumer<Throwable> cleanup
+	) {
+		Throwable failureOfCleanup = null;
+		try {
+			cleanup.accept(failure);
+		} catch (RuntimeException | Error e) {
+			failureOfCleanup = e;
+		}
+		if (failure != null)
+			result.completeExceptionally(failure);
+		else if (failureOfCleanup != null)
+			result.completeExceptionally(failureOfCleanup);
+		else
+			result.complete(null);
+	}
+
+	private static LinePublisher linePublisher(
+		int capacity,
+		OverflowPolicy overflowPolicy,
+		Duration timeout,
+		LineSubscriber subscriber
+	) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException(
+				"The capacity must be positive but it is " + capacity + "."
+			);
+		if (timeout.isNegative() || timeout.isZero())
+			throw new IllegalArgumentException(
+				"The timeout must be positive but it is " + timeout + "."
+			);
+		return new LinePublisher(
+			capacity,
+			overflowPolicy,
+			timeout,
+			subscriber
+		);
+	}
+
+	private static AsyncForwarder asyncForwarder(
+		long capacity,
+		OverflowPolicy overflowPolicy
+	) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException(
+				"The capacity must be positive but it is " + capacity + "."
+			);
+		return new AsyncForwarder(capacity, overflowPolicy);
+	}
+
+	/*
+	 * Nested replacements write to the target of the enclosing route
+	 * directly. This avoids a second PrintStream and lets nested taps find
+	 * the enclosing tap.
+	 */
+	private static OutputStream streamBehind(
+		PrintStream stream
+	) {
+		if (stream instanceof RoutingPrintStream)
+			return ((RoutingPrintStream) stream).target;
+		else
+			return stream;
+	}
+
+	private static PrintStream wrap(
+		OutputStream outputStream
+	) throws UnsupportedEncodingException {
+		return new PrintStream(
+			outputStream,
+			AUTO_FLUSH,
+			DEFAULT_ENCODING
+		);
+	}
+
+	/**
+	 * A {@code Route} replaces {@code System.err} or {@code System.out} with a
+	 * {@code PrintStream} that writes to the target. Each execution gets its
+	 * own {@code PrintStream}. Code that kept a reference to it, e.g. a
+	 * {@code ConsoleHandler} or a thread that is still running, writes to
+	 * the target of that execution and not to the target of a later
+	 * execution.
+	 */
+	private static class Route {
+		private final Supplier<PrintStream> installedStream;
+		private final Consumer<PrintStream> install;
+
+		Route(
+			Supplier<PrintStream> installedStream,
+			Consumer<PrintStream> install
+		) {
+			this.installedStream = installedStream;
+			this.install = install;
+		}
+
+		void execute(
+			OutputStream target,
+			Statement statement
+		) throws Exception {
+			PrintStream originalStream = installedStream.get();
+			try {
+				install.accept(new RoutingPrintStream(target));
+				statement.execute();
+			} finally {
+				install.accept(originalStream);
+			}
+		}
+
+		/*
+		 * Same as execute(...) but the original stream is installed again
+		 * when the stage that is returned by the statement completes.
+		 */
+		CompletableFuture<Void> executeAsync(
+			OutputStream target,
+			AsyncStatement statement
+		) {
+			PrintStream originalStream = installedStream.get();
+			try {
+				install.accept(new RoutingPrintStream(target));
+			} catch (UnsupportedEncodingException e) {
+				CompletableFuture<Void> result = new CompletableFuture<>();
+				result.completeExceptionally(e);
+				return result;
+			}
+			return executeAndCleanUpAsync(
+				statement,
+				failure -> install.accept(originalStream)
+			);
+		}
+	}
+
+	private static class RoutingPrintStream extends PrintStream {
+		private final OutputStream target;
+
+		RoutingPrintStream(
+			OutputStream target
+		) throws UnsupportedEncodingException {
+			super(target, AUTO_FLUSH, DEFAULT_ENCODING);
+			this.target = target;
+		}
+	}
+
+	/**
+	 * A {@code SinkStream} writes to a sink that is provided by the user.
+	 * {@code PrintStream} swallows {@code IOException}s. Therefore the
+	 * {@code SinkStream} keeps the first exception so that it can be
+	 * reported after the statement has been executed. Closing a
+	 * {@code SinkStream} writes pending bytes but does not close the sink.
+	 */
+	private abstract static class SinkStream extends OutputStream {
+		private IOException firstFailure;
+
+		@Override
+		public void write(
+			int b
+		) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(
+			byte[] b,
+			int off,
+			int len
+		) throws IOException {
+			try {
+				writeToSink(b, off, len);
+			} catch (IOException e) {
+				throw recorded(e);
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			try {
+				flushSink();
+			} catch (IOException e) {
+				throw recorded(e);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				finish();
+			} catch (IOException e) {
+				throw recorded(e);
+			}
+		}
+
+		abstract void writeToSink(
+			byte[] b,
+			int off,
+			int len
+		) throws IOException;
+
+		abstract void flushSink() throws IOException;
+
+		abstract void finish() throws IOException;
+
+		private IOException recorded(
+			IOException failure
+		) {
+			if (firstFailure == null)
+				firstFailure = failure;
+			return failure;
+		}
+
+		void throwFirstFailure() throws IOException {
+			if (firstFailure != null)
+				throw firstFailure;
+		}
+	}
+
+	private static class OutputStreamSink extends SinkStream {
+		private final OutputStream sink;
+
+		OutputStreamSink(
+			OutputStream sink
+		) {
+			this.sink = sink;
+		}
+
+		@Override
+		void writeToSink(
+			byte[] b,
+			int off,
+			int len
+		) throws IOException {
+			sink.write(b, off, len);
+		}
+
+		@Override
+		void flushSink() throws IOException {
+			sink.flush();
+		}
+
+		@Override
+		void finish() throws IOException {
+			sink.flush();
+		}
+	}
+
+	private static class ChannelSink extends SinkStream {
+		private final WritableByteChannel sink;
+		private ByteBuffer buffer = SINK_BUFFERS.acquire();
+
+		ChannelSink(
+			WritableByteChannel sink
+		) {
+			this.sink = sink;
+		}
+
+		@Override
+		void writeToSink(
+			byte[] b,
+			int off,
+			int len
+		) throws IOException {
+			int written = 0;
+			while (written < len) {
+				int length = Math.min(buffer.remaining(), len - written);
+				buffer.put(b, off + written, length);
+				written += length;
+				if (!buffer.hasRemaining())
+					writeBuffer();
+			}
+		}
+
+		@Override
+		void flushSink() throws IOException {
+			writeBuffer();
+		}
+
+		@Override
+		void finish() throws IOException {
+			if (buffer != null)
+				try {
+					writeBuffer();
+				} finally {
+					SINK_BUFFERS.release(buffer);
+					buffer = null;
+				}
+		}
+
+		private void writeBuffer() throws IOException {
+			buffer.flip();
+			try {
+				while (buffer.hasRemaining())
+					sink.write(buffer);
+			} finally {
+				buffer.clear();
+			}
+		}
+	}
+
+	private static class AppendableSink extends SinkStream {
+		private final Appendable sink;
+		private final CharsetDecoder decoder;
+		private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+		private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+		private boolean finished = false;
+
+		AppendableSink(
+			Appendable sink,
+			Charset charset
+		) {
+			this.sink = sink;
+			this.decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		}
+
+		@Override
+		void writeToSink(
+			byte[] b,
+			int off,
+			int len
+		) throws IOException {
+			int written = 0;
+			while (written < len) {
+				int length = Math.min(bytes.remaining(), len - written);
+				bytes.put(b, off + written, length);
+				written += length;
+				decode(false);
+			}
+		}
+
+		@Override
+		void flushSink() {
+		}
+
+		@Override
+		void finish() throws IOException {
+			if (!finished) {
+				finished = true;
+				decode(true);
+				while (decoder.flush(chars).isOverflow())
+					appendChars();
+				appendChars();
+			}
+		}
+
+		/*
+		 * Bytes of an incomplete character stay in the byte buffer until
+		 * the next write.
+		 */
+		private void decode(
+			boolean endOfInput
+		) throws IOException {
+			bytes.flip();
+			try {
+				while (decoder.decode(bytes, chars, endOfInput).isOverflow())
+					appendChars();
+				appendChars();
+			} finally {
+				bytes.compact();
+			}
+		}
+
+		/*
+		 * The chars buffer is reused. Therefore the sink gets a String,
+		 * which it may keep.
+		 */
+		private void appendChars() throws IOException {
+			chars.flip();
+			try {
+				if (chars.hasRemaining())
+					sink.append(chars.toString());
+			} finally {
+				chars.clear();
+			}
+		}
+	}
+
+	/**
+	 * A pool of direct {@code ByteBuffer}s. Allocating a direct buffer is
+	 * expensive. Therefore released buffers are reused. The pool keeps at
+	 * most {@code maxPooledBuffers} buffers. The memory of further released
+	 * buffers is freed immediately. This needs internal APIs of the JDK. If
+	 * they are not accessible then the memory is freed by the garbage
+	 * collector.
+	 */
+	private static class DirectBufferPool {
+		private static final Consumer<ByteBuffer> FREE = freeFunction();
+
+		private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger numberOfPooledBuffers = new AtomicInteger();
+		private final int bufferSize;
+		private final int maxPooledBuffers;
+
+		DirectBufferPool(
+			int bufferSize,
+			int maxPooledBuffers
+		) {
+			this.bufferSize = bufferSize;
+			this.maxPooledBuffers = maxPooledBuffers;
+		}
+
+		ByteBuffer acquire() {
+			ByteBuffer buffer = buffers.poll();
+			if (buffer == null)
+				return ByteBuffer.allocateDirect(bufferSize);
+			numberOfPooledBuffers.decrementAndGet();
+			return buffer;
+		}
+
+		void release(
+			ByteBuffer buffer
+		) {
+			buffer.clear();
+			if (numberOfPooledBuffers.incrementAndGet() <= maxPooledBuffers)
+				buffers.add(buffer);
+			else {
+				numberOfPooledBuffers.decrementAndGet();
+				FREE.accept(buffer);
+			}
+		}
+
+		/*
+		 * Java 9 and later provide Unsafe.invokeCleaner. Java 8 has a
+		 * cleaner for each direct buffer.
+		 */
+		private static Consumer<ByteBuffer> freeFunction() {
+			try {
+				Class<?> unsafeClass = forName("sun.misc.Unsafe");
+				Method invokeCleaner = unsafeClass.getMethod(
+					"invokeCleaner", ByteBuffer.class);
+				Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+				theUnsafe.setAccessible(true);
+				Object unsafe = theUnsafe.get(null);
+				return buffer -> invokeQuietly(invokeCleaner, unsafe, buffer);
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				return DirectBufferPool::cleanWithCleanerOfBuffer;
+			}
+		}
+
+		private static void cleanWithCleanerOfBuffer(
+			ByteBuffer buffer
+		) {
+			try {
+				Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(buffer);
+				if (cleaner != null)
+					invokeQuietly(
+						cleaner.getClass().getMethod("clean"), cleaner);
+			} catch (ReflectiveOperationException | RuntimeException ignored) {
+				//the garbage collector frees the memory
+			}
+		}
+
+		private static void invokeQuietly(
+			Method method,
+			Object object,
+			Object... args
+		) {
+			try {
+				method.invoke(object, args);
+			} catch (ReflectiveOperationException | RuntimeException ignored) {
+				//the garbage collector frees the memory
+			}
+		}
+	}
+
+	/**
+	 * A {@code SegmentStream} stores the bytes in direct {@code ByteBuffer}s
+	 * that are taken from a pool. The buffers are returned to the pool by
+	 * {@link #release()}.
+	 */
+	private static class SegmentStream extends OutputStream {
+		private final DirectBufferPool pool;
+		private final List<ByteBuffer> segments = new ArrayList<>();
+		private long size = 0;
+		private boolean released = false;
+
+		SegmentStream(
+			DirectBufferPool pool
+		) {
+			this.pool = pool;
+		}
+
+		@Override
+		public void write(
+			int b
+		) {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public synchronized void write(
+			byte[] b,
+			int off,
+			int len
+		) {
+			if (released)
+				return;
+			int written = 0;
+			while (written < len) {
+				ByteBuffer segment = segmentWithSpace();
+				int length = Math.min(segment.remaining(), len - written);
+				segment.put(b, off + written, length);
+				written += length;
+			}
+			size += len;
+		}
+
+		private ByteBuffer segmentWithSpace() {
+			if (segments.isEmpty()
+				|| !segments.get(segments.size() - 1).hasRemaining())
+				segments.add(pool.acquire());
+			return segments.get(segments.size() - 1);
+		}
+
+		synchronized long size() {
+			return size;
+		}
+
+		/*
+		 * Returns read-only views of the segments so that readers don't
+		 * interfere with each other.
+		 */
+		synchronized List<ByteBuffer> segments() {
+			if (released)
+				throw new IllegalStateException(
+					"The capture has been closed."
+				);
+			List<ByteBuffer> views = new ArrayList<>(segments.size());
+			for (ByteBuffer segment: segments) {
+				ByteBuffer view = segment.asReadOnlyBuffer();
+				view.flip();
+				views.add(view);
+			}
+			return views;
+		}
+
+		synchronized void release() {
+			if (!released) {
+				released = true;
+				segments.forEach(pool::release);
+				segments.clear();
+			}
+		}
+	}
+
+	/**
+	 * The bytes that have been written to {@code System.err} and/or
+	 * {@code System.out} by a statement. They are stored outside of the Java
+	 * heap until the capture is closed.
+	 *
+	 * @see #captureSystemErrAndOutOffHeap(Statement)
+	 * @see #captureSystemErrOffHeap(Statement)
+	 * @see #captureSystemOutOffHeap(Statement)
+	 * @since 1.3.0
+	 */
+	public static final class OffHeapCapture implements AutoCloseable {
+		private final SegmentStream segmentStream;
+
+		private OffHeapCapture(
+			SegmentStream segmentStream
+		) {
+			this.segmentStream = segmentStream;
+		}
+
+		/**
+		 * Returns the number of bytes that have been captured.
+		 * @return the number of bytes that have been captured.
+		 */
+		public long size() {
+			return segmentStream.size();
+		}
+
+		/**
+		 * Returns the captured text. The text is copied to the heap. Use
+		 * {@link #writeTo(OutputStream)} if you only need to pass the
+		 * text on.
+		 * @return the captured text.
+		 * @throws IllegalStateException if the capture has been closed or
+		 * if it is too large for a {@code String}.
+		 */
+		public synchronized String text() {
+			List<ByteBuffer> segments = segmentStream.segments();
+			long size = segments.stream().mapToLong(ByteBuffer::remaining).sum();
+			if (size > Integer.MAX_VALUE - 8)
+				throw new IllegalStateException(
+					"The capture has " + size + " bytes. This is too much"
+						+ " for a String. Use writeTo(...) instead."
+				);
+			byte[] bytes = new byte[(int) size];
+			int offset = 0;
+			for (ByteBuffer segment: segments) {
+				int length = segment.remaining();
+				segment.get(bytes, offset, length);
+				offset += length;
+			}
+			return new String(bytes, defaultCharset());
+		}
+
+		/**
+		 * Returns the captured text with each line separator replaced by
+		 * {@code \n}. This is the same text as the one that is returned by
+		 * {@link #tapSystemOutNormalized(Statement)}.
+		 * @return the captured text with normalized line separators.
+		 * @throws IllegalStateException if the capture has been closed or
+		 * if it is too large for a {@code String}.
+		 */
+		public String textNormalized() {
+			return text().replace(lineSeparator(), "\n");
+		}
+
+		/**
+		 * Writes the captured bytes to the stream.
+		 * @param stream the stream that receives the bytes.
+		 * @throws IOException if the stream throws an exception.
+		 * @throws IllegalStateException if the capture has been closed.
+		 */
+		public synchronized void writeTo(
+			OutputStream stream
+		) throws IOException {
+			byte[] chunk = new byte[BUFFER_SIZE];
+			for (ByteBuffer segment: segmentStream.segments())
+				while (segment.hasRemaining()) {
+					int length = Math.min(chunk.length, segment.remaining());
+					segment.get(chunk, 0, length);
+					stream.write(chunk, 0, length);
+				}
+		}
+
+		/**
+		 * Writes the captured bytes to the channel. The channel must be in
+		 * blocking mode.
+		 * @param channel the channel that receives the bytes.
+		 * @throws IOException if the channel throws an exception.
+		 * @throws IllegalStateException if the capture has been closed.
+		 */
+		public synchronized void writeTo(
+			WritableByteChannel channel
+		) throws IOException {
+			for (ByteBuffer segment: segmentStream.segments())
+				while (segment.hasRemaining())
+					channel.write(segment);
+		}
+
+		/**
+		 * Releases the memory of the capture. The capture cannot be read
+		 * anymore after it has been closed. Closing waits until reads of
+		 * other threads have finished. Closing a capture that is
+		 * already closed has no effect.
+		 */
+		@Override
+		public synchronized void close() {
+			segmentStream.release();
+		}
+	}
+
+	private static class DisallowWriteStream extends OutputStream {
+		@Override
+		public void write(
+			int b
+		) {
+			throw new AssertionError(
+				"Tried to write '"
+					+ (char) b
+					+ "' although this is not allowed."
+			);
+		}
+	}
+
+	private static class NoopStream extends OutputStream {
+		@Override
+		public void write(
+			int b
+		) {
+		}
+	}
+
+	/**
+	 * A stub that defines the text provided by {@code System.in}. The methods
+	 * {@link #andExceptionThrownOnInputEnd(IOException)} and
+	 * {@link #andExceptionThrownOnInputEnd(RuntimeException)} can be used to
+	 * simulate a {@code System.in} that throws an exception.
+	 * <p>The specified behaviour of {@code System.in} is applied to an
+	 * arbitrary piece of code that is provided to {@link #execute(Statement)}.
+	 * <p>A stub can execute many statements. The text of
+	 * {@link #withTextFromSystemIn(String...)} is encoded by the first
+	 * execution only. Later executions read the same bytes again.
+	 */
+	public static class SystemInStub {
+		private IOException ioException;
+		private RuntimeException runtimeException;
+		private final InputSourceFactory source;
+		private Charset charset = defaultCharset();
+		private String lineSeparator = System.lineSeparator();
+		private byte[] encodedLineSeparator = null;
+		private boolean oneLinePerRead = false;
+		private long bytesPerSecond = 0;
+		//creates the read sizes for each execution so that every execution
+		//starts with the same sequence
+		private Supplier<IntSupplier> readSizes = null;
+		private long pauseBetweenLinesNanos = 0;
+
+		private SystemInStub(
+			InputSourceFactory source
+		) {
+			this.source = source;
+		}
+
+		/**
+		 * Sets an exception that is thrown after the text is read.
+		 * @param exception the {@code IOException} to be thrown.
+		 * @return the {@code SystemInStub} itself.
+		 * @throws IllegalStateException if a {@code RuntimeException} was
+		 * already set by
+		 * {@link #andExceptionThrownOnInputEnd(RuntimeException)}
+		 */
+		public SystemInStub andExceptionThrownOnInputEnd(
+			IOException exception
+		) {
+			if (runtimeException != null)
+				throw new IllegalStateException("You cannot call"
+					+ " andExceptionThrownOnInputEnd(IOException) because"
+					+ " andExceptionThrownOnInputEnd(RuntimeException) has"
+					+ " already been called.");
+			this.ioException = exception;
+			return this;
+		}
+
+		/**
+		 * Sets an exception that is thrown after the text is read.
+		 * @param exception the {@code RuntimeException} to be thrown.
+		 * @return the {@code SystemInStub} itself.
+		 * @throws IllegalStateException if an {@code IOException} was already
+		 * set by {@link #andExceptionThrownOnInputEnd(IOException)}
+		 */
+		public SystemInStub andExceptionThrownOnInputEnd(
+			RuntimeException exception
+		) {
+			if (ioException != null)
+				throw new IllegalStateException("You cannot call"
+					+ " andExceptionThrownOnInputEnd(RuntimeException) because"
+					+ " andExceptionThrownOnInputEnd(IOException) has already"
+					+ " been called.");
+			this.runtimeException = exception;
+			return this;
+		}
+
+		/**
+		 * Sets the charset that is used for encoding the text. The default
+		 * charset is used if no charset is set.
+		 * @param charset the charset that is used for encoding the text.
+		 * @return the {@code SystemInStub} itself.
+		 * @since 1.3.0
+		 */
+		public SystemInStub andCharset(
+			Charset charset
+		) {
+			this.charset = charset;
+			this.encodedLineSeparator = null;
+			return this;
+		}
+
+		/**
+		 * Sets the line separator that ends the lines of the input if
+		 * {@code System.in} provides one line per read or pauses between
+		 * lines. Use it for input with line separators of another platform,
+		 * e.g. {@code "\r\n"} on Linux. The separator may be split across
+		 * the buffers of the input. The line separator of the platform is
+		 * used if no line separator is set. It does not change the line
+		 * separators that are added to lines of
+		 * {@link SystemLambda#withTextFromSystemIn(String...)}.
+		 * @param lineSeparator the line separator.
+		 * @return the {@code SystemInStub} itself.
+		 * @throws IllegalArgumentException if the line separator is empty.
+		 * @since 1.3.0
+		 */
+		public SystemInStub andLineSeparator(
+			String lineSeparator
+		) {
+			if (lineSeparator.isEmpty())
+				throw new IllegalArgumentException(
+					"The line separator must not be empty."
+				);
+			this.lineSeparator = lineSeparator;
+			this.encodedLineSeparator = null;
+			return this;
+		}
+
+		/**
+		 * Lets {@code System.in} provide at most one line per call of
+		 * {@code System.in.read(byte[], int, int)}. This is the default for
+		 * {@link SystemLambda#withTextFromSystemIn(String...)}. The other
+		 * stubs provide as many bytes as possible by default. Code that wraps
+		 * {@code System.in} with multiple readers, e.g. multiple
+		 * {@code Scanner}s, needs this because each reader buffers the bytes
+		 * that it has read. In this mode {@code System.in.available()} always
+		 * returns 0 so that readers do not read ahead.
+		 * @return the {@code SystemInStub} itself.
+		 * @see #andBulkReads()
+		 * @since 1.3.0
+		 */
+		public SystemInStub andOneLinePerRead() {
+			this.oneLinePerRead = true;
+			return this;
+		}
+
+		/**
+		 * Lets {@code System.in} provide as many bytes as possible per call
+		 * of {@code System.in.read(byte[], int, int)}. This is the default
+		 * for all stubs except the one of
+		 * {@link SystemLambda#withTextFromSystemIn(String...)}. Use it if
+		 * the code under test reads {@code System.in} with a single reader
+		 * and you want the reads to be fast.
+		 * @return the {@code SystemInStub} itself.
+		 * @see #andOneLinePerRead()
+		 * @since 1.3.0
+		 */
+		public SystemInStub andBulkReads() {
+			this.oneLinePerRead = false;
+			return this;
+		}
+
+		/**
+		 * Lets {@code System.in} provide at most the specified number of
+		 * bytes per second. Reads wait until the bytes are due. This
+		 * simulates a slow upstream pipe.
+		 * @param bytesPerSecond the maximum number of bytes per second.
+		 * @return the {@code SystemInStub} itself.
+		 * @throws IllegalArgumentException if the rate is not positive.
+		 * @since 1.3.0
+		 */
+		public SystemInStub andBytesPerSecond(
+			long bytesPerSecond
+		) {
+			if (bytesPerSecond <= 0)
+				throw new IllegalArgumentException(
+					"The byte rate must be positive but it is "
+						+ bytesPerSecond + "."
+				);
+			this.bytesPerSecond = bytesPerSecond;
+			return this;
+		}
+
+		/**
+		 * Lets each call of {@code System.in.read(byte[], int, int)} provide
+		 * at most the specified number of bytes. This simulates the short
+		 * reads of a pipe.
+		 * @param readSize the maximum number of bytes per read.
+		 * @return the {@code SystemInStub} itself.
+		 * @throws IllegalArgumentException if the read size is not positive.
+		 * @since 1.3.0
+		 */
+		public SystemInStub andReadSize(
+			int readSize
+		) {
+			checkReadSize(readSize);
+			this.readSizes = () -> () -> readSize;
+			return this;
+		}
+
+		/**
+		 * Lets each call of {@code System.in.read(byte[], int, int)} provide
+		 * at most a random number of bytes between {@code minimum} and
+		 * {@code maximum} (both inclusive). The sizes are determined by the
+		 * seed, so that a test that fails can be repeated.
+		 * @param minimum the minimum of the maximum number of bytes per read.
+		 * @param maximum the maximum number of bytes per read.
+		 * @param seed the seed of the random numbers.
+		 * @return the {@code SystemInStub} itself.
+		 * @throws IllegalArgumentException if a read size is not positive or
+		 * if the minimum is greater than the maximum.
+		 * @since 1.3.0
+		 */
+		public SystemInStub andRandomReadSizes(
+			int minimum,
+			int maximum,
+			long seed
+		) {
+			checkReadSize(minimum);
+			checkReadSize(maximum);
+			if (minimum > maximum)
+				throw new IllegalArgumentException(
+					"The minimum read size " + minimum + " is greater than"
+						+ " the maximum read size " + maximum + "."
+				);
+			this.readSizes = () -> {
+				SplittableRandom random = new SplittableRandom(seed);
+				return () -> random.nextInt(minimum, maximum + 1);
+			};
+			return this;
+		}
+
+		private void checkReadSize(
+			int readSize
+		) {
+			if (readSize <= 0)
+				throw new IllegalArgumentException(
+					"The read size must be positive but it is " + readSize + "."
+				);
+		}
+
+		/**
+		 * Lets {@code System.in} wait before it provides the next line. Each
+		 * read provides at most one line, like with
+		 * {@link #andOneLinePerRead()}.
+		 * @param pause the time between two lines.
+		 * @return the {@code SystemInStub} itself.
+		 * @throws IllegalArgumentException if the pause is negative.
+		 * @since 1.3.0
+		 */
+		public SystemInStub andPauseBetweenLines(
+			Duration pause
+		) {
+			if (pause.isNegative())
+				throw new IllegalArgumentException(
+					"The pause must not be negative but it is " + pause + "."
+				);
+			this.pauseBetweenLinesNanos = pause.toNanos();
+			return this;
+		}
+
+		/**
+		 * Executes the statement and lets {@code System.in} provide the
+		 * specified text during the execution. After the text was read it
+		 * throws and exception when {@code System.in#read} is called and an
+		 * exception was specified by
+		 * {@link #andExceptionThrownOnInputEnd(IOException)} or
+		 * {@link #andExceptionThrownOnInputEnd(RuntimeException)}.
+		 * @param statement an arbitrary piece of code.
+		 * @throws Exception any exception thrown by the statement.
+		 */
+		public void execute(
+			Statement statement
+		) throws Exception {
+			execute(statement, null);
+		}
+
+		/**
+		 * Executes the statement like {@link #execute(Statement)} and
+		 * records how the statement reads from {@code System.in}.
+		 * <pre>
+		 * &#064;Test
+		 * void application_reads_System_in_buffered(
+		 * ) throws Exception {
+		 *   InputStatistics statistics = withTextFromSystemIn("some text")
+		 *     .executeWithStatistics((){@literal ->} {
+		 *       //code under test that reads from System.in
+		 *     });
+		 *   statistics.assertAllInputConsumed();
+		 *   statistics.assertNoSingleByteReads();
+		 * }
+		 * </pre>
+		 * <p>If the statement has read the current chunk of a lazy source
+		 * completely then one more chunk is pulled from the source after the
+		 * statement has finished so that the end of the input is detected.
+		 * The lazy sources are the iterator of
+		 * {@link SystemLambda#withLinesFromSystemIn(Iterator)} and the
+		 * supplier of {@link SystemLambda#withBytesFromSystemIn(Supplier)}.
+		 * This pull may block and an exception thrown by it is thrown by this
+		 * method. It is skipped if the statement throws an exception.
+		 * @param statement an arbitrary piece of code.
+		 * @return the statistics of the reads.
+		 * @throws Exception any exception thrown by the statement or by the
+		 * source when the chunk after the statement is pulled.
+		 * @since 1.3.0
+		 */
+		public InputStatistics executeWithStatistics(
+			Statement statement
+		) throws Exception {
+			ReadRecorder recorder = new ReadRecorder();
+			execute(statement, recorder);
+			return recorder.statistics();
+		}
+
+		private void execute(
+			Statement statement,
+			ReadRecorder recorder
+		) throws Exception {
+			InputSource inputSource = source.open(charset);
+			ReplacementInputStream stubStream = new ReplacementInputStream(
+				inputSource,
+				oneLinePerRead || pauseBetweenLinesNanos > 0
+					? encodedLineSeparator()
+					: null,
+				isThrottled()
+					? new Throttle(
+						bytesPerSecond,
+						readSizes == null ? null : readSizes.get(),
+						pauseBetweenLinesNanos)
+					: null,
+				recorder,
+				ioException,
+				runtimeException
+			);
+			InputStream originalIn = System.in;
+			try {
+				try {
+					setIn(stubStream);
+					statement.execute();
+				} finally {
+					setIn(originalIn);
+				}
+				//only after the statement succeeded so that an exception of
+				//the source cannot hide an exception of the statement
+				if (recorder != null)
+					recorder.unreadBytes(stubStream.unreadBytes());
+			} finally {
+				inputSource.close();
+			}
+		}
+
+		private byte[] encodedLineSeparator() {
+			if (encodedLineSeparator == null)
+				encodedLineSeparator = lineSeparator.getBytes(charset);
+			return encodedLineSeparator;
+		}
+
+		private boolean isThrottled() {
+			return bytesPerSecond > 0
+				|| readSizes != null
+				|| pauseBetweenLinesNanos > 0;
+		}
+
+
+		private static class ReplacementInputStream extends InputStream {
+			private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+			private final InputSource source;
+			private final byte[] lineSeparator;
+			private final Throttle throttle;
+			private final ReadRecorder recorder;
+			private final IOException ioException;
+			private final RuntimeException runtimeException;
+			private final byte[] singleByte = new byte[1];
+			private ByteBuffer chunk = EMPTY;
+			private boolean endOfSource = false;
+			private boolean lineCompleted = false;
+			//the number of bytes at the end of the bytes that have been read
+			//so far that are the start of the line separator. The separator
+			//can be split across chunks and reads.
+			private int matchedSeparatorBytes = 0;
+			private long markedPosition = 0;
+			private int markedMatchedSeparatorBytes = 0;
+
+			ReplacementInputStream(
+				InputSource source,
+				byte[] lineSeparator,
+				Throttle throttle,
+				ReadRecorder recorder,
+				IOException ioException,
+				RuntimeException runtimeException
+			) {
+				this.source = source;
+				this.lineSeparator = lineSeparator;
+				this.throttle = throttle;
+				this.recorder = recorder;
+				this.ioException = ioException;
+				this.runtimeException = runtimeException;
+			}
+
+			@Override
+			public synchronized int read(
+			) throws IOException {
+				if (recorder != null)
+					recorder.singleByteRead();
+				if (throttle != null) {
+					int numberOfBytes = readBytes(singleByte, 0, 1);
+					return numberOfBytes == -1 ? -1 : singleByte[0] & 0xFF;
+				} else if (nextChunkAvailable()) {
+					if (recorder != null)
+						recorder.consumed(1);
+					byte value = chunk.get();
+					if (lineSeparator != null)
+						lineCompleted = matchSeparator(value);
+					return value & 0xFF;
+				}
+				handleEndOfInput();
+				return -1;
+			}
+
+			private boolean nextChunkAvailable(
+			) throws IOException {
+				while (!chunk.hasRemaining() && !endOfSource) {
+					long start = recorder == null ? 0 : nanoTime();
+					ByteBuffer nextChunk = source.nextChunk();
+					if (recorder != null)
+						recorder.blocked(nanoTime() - start);
+					if (nextChunk == null)
+						endOfSource = true;
+					else
+						chunk = nextChunk;
+				}
+				return chunk.hasRemaining();
+			}
+
+			private void handleEndOfInput(
+			) throws IOException {
+				if (ioException != null)
+					throw ioException;
+				else if (runtimeException != null)
+					throw runtimeException;
+			}
+
+			@Override
+			public synchronized int read(
+				byte[] buffer,
+				int offset,
+				int len
+			) throws IOException {
+				if (buffer == null)
+					throw new NullPointerException();
+				else if (offset < 0 || len < 0 || len > buffer.length - offset)
+					throw new IndexOutOfBoundsException();
+				if (recorder == null)
+					return readBytes(buffer, offset, len);
+				recorder.bulkReadRequested(len);
+				int numberOfBytes = readBytes(buffer, offset, len);
+				recorder.bulkReadReturned(numberOfBytes);
+				return numberOfBytes;
+			}
+
+			private int readBytes(
+				byte[] buffer,
+				int offset,
+				int len
+			) throws IOException {
+				if (len == 0)
+					return 0;
+				else if (!nextChunkAvailable()) {
+					handleEndOfInput();
+					return -1;
+				}
+				int end = lineSeparator == null
+					? chunk.limit()
+					: endOfLine();
+				int numberOfBytes = Math.min(len, end - chunk.position());
+				if (throttle != null) {
+					numberOfBytes = throttle.limit(numberOfBytes);
+					long start = recorder == null ? 0 : nanoTime();
+					throttle.awaitDelivery(numberOfBytes, lineCompleted);
+					if (recorder != null)
+						recorder.blocked(nanoTime() - start);
+				}
+				if (recorder != null)
+					recorder.consumed(numberOfBytes);
+				chunk.get(buffer, offset, numberOfBytes);
+				if (lineSeparator != null)
+					for (int i = offset; i < offset + numberOfBytes; ++i)
+						lineCompleted = matchSeparator(buffer[i]);
+				return numberOfBytes;
+			}
+
+			/*
+			 * Returns the position after the end of the current line or the
+			 * limit of the chunk if the line does not end in this chunk.
+			 */
+			private int endOfLine() {
+				int matched = matchedSeparatorBytes;
+				for (int i = chunk.position(); i < chunk.limit(); ++i) {
+					matched = separatorBytesMatchedAfter(matched, chunk.get(i));
+					if (matched == lineSeparator.length)
+						return i + 1;
+				}
+				return chunk.limit();
+			}
+
+			/*
+			 * Updates the number of matched separator bytes with a byte that
+			 * has been read. Returns whether the byte completes a line.
+			 */
+			private boolean matchSeparator(
+				byte value
+			) {
+				matchedSeparatorBytes = separatorBytesMatchedAfter(
+					matchedSeparatorBytes, value);
+				if (matchedSeparatorBytes == lineSeparator.length) {
+					matchedSeparatorBytes = 0;
+					return true;
+				} else
+					return false;
+			}
+
+			/*
+			 * Returns the length of the longest start of the separator that
+			 * ends with the value and the matched bytes before it.
+			 */
+			private int separatorBytesMatchedAfter(
+				int matched,
+				byte value
+			) {
+				for (int length = matched + 1; length > 0; --length)
+					if (lineSeparator[length - 1] == value
+						&& isSeparatorStartAt(matched - length + 1, length - 1))
+						return length;
+				return 0;
+			}
+
+			private boolean isSeparatorStartAt(
+				int index,
+				int length
+			) {
+				for (int i = 0; i < length; ++i)
+					if (lineSeparator[index + i] != lineSeparator[i])
+						return false;
+				return true;
+			}
+
+			@Override
+			public synchronized long skip(
+				long n
+			) throws IOException {
+				long skipped = skipBytes(n);
+				if (recorder != null)
+					recorder.consumed(skipped);
+				matchedSeparatorBytes = 0;
+				return skipped;
+			}
+
+			private long skipBytes(
+				long n
+			) throws IOException {
+				if (source.seekable() && n > chunk.remaining()) {
+					long position = source.position(chunk);
+					chunk = source.chunkAt(position + n);
+					endOfSource = false;
+					return source.position(chunk) - position;
+				}
+				long skipped = 0;
+				while (skipped < n && nextChunkAvailable()) {
+					int numberOfBytes = (int) Math.min(
+						n - skipped, chunk.remaining());
+					chunk.position(chunk.position() + numberOfBytes);
+					skipped += numberOfBytes;
+				}
+				return skipped;
+			}
+
+			@Override
+			public synchronized int available() {
+				//readers like InputStreamReader continue reading as long as
+				//bytes are available. They would read more than one line.
+				if (lineSeparator != null)
+					return 0;
+				else
+					return (int) Math.min(
+						Integer.MAX_VALUE,
+						chunk.remaining() + source.available()
+					);
+			}
+
+			/*
+			 * Pulls the next chunk if the current one has been read, so that
+			 * the end of the input is detected.
+			 */
+			synchronized long unreadBytes() throws IOException {
+				nextChunkAvailable();
+				return chunk.remaining() + source.available();
+			}
+
+			@Override
+			public boolean markSupported() {
+				return source.seekable();
+			}
+
+			@Override
+			public synchronized void mark(
+				int readlimit
+			) {
+				if (source.seekable()) {
+					markedPosition = source.position(chunk);
+					markedMatchedSeparatorBytes = matchedSeparatorBytes;
+				}
+			}
+
+			@Override
+			public synchronized void reset(
+			) throws IOException {
+				if (!source.seekable())
+					throw new IOException("mark/reset not supported");
+				chunk = source.chunkAt(markedPosition);
+				endOfSource = false;
+				matchedSeparatorBytes = markedMatchedSeparatorBytes;
+			}
+		}
+	}
+
+	/**
+	 * Statistics of the reads from {@code System.in} that are recorded by
+	 * {@link SystemInStub#executeWithStatistics(Statement)}. The sizes of
+	 * reads are counted in buckets of powers of two. The key of a bucket is
+	 * its lower bound, e.g. the bucket 8 counts the sizes 8 to 15.
+	 *
+	 * @since 1.3.0
+	 */
+	public static final class InputStatistics {
+		private final long singleByteReads;
+		private final long bulkReads;
+		private final SortedMap<Integer, Long> requestedSizes;
+		private final SortedMap<Integer, Long> returnedSizes;
+		private final long consumedBytes;
+		private final long blockedNanos;
+		private final long unreadBytes;
+
+		private InputStatistics(
+			long singleByteReads,
+			long bulkReads,
+			SortedMap<Integer, Long> requestedSizes,
+			SortedMap<Integer, Long> returnedSizes,
+			long consumedBytes,
+			long blockedNanos,
+			long unreadBytes
+		) {
+			this.singleByteReads = singleByteReads;
+			this.bulkReads = bulkReads;
+			this.requestedSizes = unmodifiableSortedMap(requestedSizes);
+			this.returnedSizes = unmodifiableSortedMap(returnedSizes);
+			this.consumedBytes = consumedBytes;
+			this.blockedNanos = blockedNanos;
+			this.unreadBytes = unreadBytes;
+		}
+
+		/**
+		 * Returns the number of calls of {@code System.in.read()}.
+		 * @return the number of calls of {@code System.in.read()}.
+		 */
+		public long singleByteReads() {
+			return singleByteReads;
+		}
+
+		/**
+		 * Returns the number of calls of
+		 * {@code System.in.read(byte[], int, int)} and
+		 * {@code System.in.read(byte[])}.
+		 * @return the number of reads into an array.
+		 */
+		public long bulkReads() {
+			return bulkReads;
+		}
+
+		/**
+		 * Returns the number of reads into an array per bucket of the
+		 * requested number of bytes.
+		 * @return the number of reads per bucket of requested sizes.
+		 */
+		public SortedMap<Integer, Long> requestedSizes() {
+			return requestedSizes;
+		}
+
+		/**
+		 * Returns the number of reads into an array per bucket of the
+		 * returned number of bytes. Reads at the end of the input, which
+		 * return -1, are not counted.
+		 * @return the number of reads per bucket of returned sizes.
+		 */
+		public SortedMap<Integer, Long> returnedSizes() {
+			return returnedSizes;
+		}
+
+		/**
+		 * Returns the number of bytes that have been read or skipped.
+		 * @return the number of bytes that have been read or skipped.
+		 */
+		public long consumedBytes() {
+			return consumedBytes;
+		}
+
+		/**
+		 * Returns the time that reads waited for input, either for the
+		 * next chunk of a lazy source or because of throttling.
+		 * @return the time that reads waited for input.
+		 */
+		public Duration blockedTime() {
+			return Duration.ofNanos(blockedNanos);
+		}
+
+		/**
+		 * Returns the number of bytes that have not been read when the
+		 * statement finished. For the lazy sources of
+		 * {@link SystemLambda#withLinesFromSystemIn(Iterator)} and
+		 * {@link SystemLambda#withBytesFromSystemIn(Supplier)} only the bytes
+		 * of the current chunk are counted.
+		 * @return the number of bytes that have not been read.
+		 */
+		public long unreadBytes() {
+			return unreadBytes;
+		}
+
+		/**
+		 * Throws an {@link AssertionError} if the statement did not read all
+		 * input.
+		 * @throws AssertionError if the statement did not read all input.
+		 */
+		public void assertAllInputConsumed() {
+			if (unreadBytes != 0)
+				throw new AssertionError(
+					"The statement did not read " + unreadBytes + " bytes"
+						+ " from System.in."
+				);
+		}
+
+		/**
+		 * Throws an {@link AssertionError} if the statement called
+		 * {@code System.in.read()}. Reading one byte at a time is slow for
+		 * streams that are not buffered.
+		 * @throws AssertionError if the statement called
+		 * {@code System.in.read()}.
+		 */
+		public void assertNoSingleByteReads() {
+			if (singleByteReads != 0)
+				throw new AssertionError(
+					"The statement called System.in.read() "
+						+ singleByteReads + " times. Use a buffered stream"
+						+ " or read into an array instead."
+				);
+		}
+	}
+
+	private static class ReadRecorder {
+		private final long[] requestedSizes = new long[32];
+		private final long[] returnedSizes = new long[32];
+		private long singleByteReads = 0;
+		private long bulkReads = 0;
+		private long consumedBytes = 0;
+		private long blockedNanos = 0;
+		private long unreadBytes = 0;
+
+		void singleByteRead() {
+			++singleByteReads;
+		}
+
+		void bulkReadRequested(
+			int size
+		) {
+			++bulkReads;
+			++requestedSizes[bucket(size)];
+		}
+
+		void bulkReadReturned(
+			int size
+		) {
+			if (size != -1)
+				++returnedSizes[bucket(size)];
+		}
+
+		private int bucket(
+			int size
+		) {
+			return size == 0 ? 0 : 32 - Integer.numberOfLeadingZeros(size);
+		}
+
+		void consumed(
+			long numberOfBytes
+		) {
+			consumedBytes += numberOfBytes;
+		}
+
+		void blocked(
+			long nanos
+		) {
+			blockedNanos += nanos;
+		}
+
+		void unreadBytes(
+			long numberOfBytes
+		) {
+			unreadBytes = numberOfBytes;
+		}
+
+		InputStatistics statistics() {
+			return new InputStatistics(
+				singleByteReads,
+				bulkReads,
+				histogram(requestedSizes),
+				histogram(returnedSizes),
+				consumedBytes,
+				blockedNanos,
+				unreadBytes
+			);
+		}
+
+		private SortedMap<Integer, Long> histogram(
+			long[] buckets
+		) {
+			SortedMap<Integer, Long> histogram = new TreeMap<>();
+			for (int i = 0; i < buckets.length; ++i)
+				if (buckets[i] != 0)
+					histogram.put(i == 0 ? 0 : 1 << (i - 1), buckets[i]);
+			return histogram;
+		}
+	}
+
+	private static class Throttle {
+		private final long bytesPerSecond;
+		private final IntSupplier readSizes;
+		private final long pauseBetweenLinesNanos;
+		private long start = 0;
+		private long deliveredBytes = 0;
+
+		Throttle(
+			long bytesPerSecond,
+			IntSupplier readSizes,
+			long pauseBetweenLinesNanos
+		) {
+			this.bytesPerSecond = bytesPerSecond;
+			this.readSizes = readSizes;
+			this.pauseBetweenLinesNanos = pauseBetweenLinesNanos;
+		}
+
+		int limit(
+			int numberOfBytes
+		) {
+			return readSizes == null
+				? numberOfBytes
+				: Math.min(numberOfBytes, readSizes.getAsInt());
+		}
+
+		void awaitDelivery(
+			int numberOfBytes,
+			boolean startOfLine
+		) throws InterruptedIOException {
+			if (startOfLine && pauseBetweenLinesNanos > 0) {
+				waitUntil(nanoTime() + pauseBetweenLinesNanos);
+				//the pause does not count as time for delivering bytes
+				start += pauseBetweenLinesNanos;
+			}
+			if (bytesPerSecond > 0) {
+				if (deliveredBytes == 0)
+					start = nanoTime();
+				deliveredBytes += numberOfBytes;
+				waitUntil(
+					start + (long) (deliveredBytes * 1e9 / bytesPerSecond)
+				);
+			}
+		}
+
+		private void waitUntil(
+			long deadline
+		) throws InterruptedIOException {
+			long remaining = deadline - nanoTime();
+			while (remaining > 0) {
+				LockSupport.parkNanos(remaining);
+				if (Thread.interrupted()) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException();
+				}
+				remaining = deadline - nanoTime();
+			}
+		}
+	}
+
+	private interface InputSourceFactory {
+		InputSource open(
+			Charset charset
+		) throws IOException;
+	}
+
+	private interface InputSource {
+		/**
+		 * Returns the next bytes of the input or {@code null} at the end of
+		 * the input. The buffer may be reused after all its bytes are read.
+		 */
+		ByteBuffer nextChunk() throws IOException;
+
+		/**
+		 * Returns the number of bytes after the current chunk that can be
+		 * read without blocking.
+		 */
+		default long available() {
+			return 0;
+		}
+
+		/**
+		 * Returns {@code true} if the source supports {@link #position}
+		 * and {@link #chunkAt(long)}.
+		 */
+		default boolean seekable() {
+			return false;
+		}
+
+		/**
+		 * Returns the position of the next byte of the chunk within the
+		 * input.
+		 */
+		default long position(
+			ByteBuffer chunk
+		) {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * Returns the chunk that contains the specified position of the
+		 * input. The position of the chunk is set to this position, or to
+		 * its end if the input is shorter.
+		 */
+		default ByteBuffer chunkAt(
+			long position
+		) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		default void close() throws IOException {
+		}
+	}
+
+	/*
+	 * Encodes the text only once for all executions of a stub. Each execution
+	 * gets its own view of the same bytes.
+	 */
+	private static class EncodedText implements InputSourceFactory {
+		private final String text;
+		private Charset charset;
+		private ByteBuffer bytes;
+
+		EncodedText(
+			String text
+		) {
+			this.text = text;
+		}
+
+		@Override
+		public synchronized InputSource open(
+			Charset charset
+		) {
+			if (!charset.equals(this.charset)) {
+				bytes = ByteBuffer.wrap(text.getBytes(charset))
+					.asReadOnlyBuffer();
+				this.charset = charset;
+			}
+			return new BytesSource(bytes.duplicate());
+		}
+	}
+
+	private static class BytesSource implements InputSource {
+		private ByteBuffer bytes;
+
+		BytesSource(
+			ByteBuffer bytes
+		) {
+			this.bytes = bytes;
+		}
+
+		@Override
+		public ByteBuffer nextChunk() {
+			ByteBuffer chunk = bytes;
+			bytes = null;
+			return chunk;
+		}
+
+		@Override
+		public long available() {
+			return bytes == null ? 0 : bytes.remaining();
+		}
+	}
+
+	private static class GeneratedLinesSource implements InputSource {
+		private static final long START_OF_TIMESTAMPS = 1_577_836_800_000L;
+		private static final long MILLIS_PER_DAY = 86_400_000L;
+		private static final int MAX_INT_LENGTH = 10;
+		private static final int TIMESTAMP_LENGTH = 24;
+		private static final String ASCII_CHARACTERS
+			= " !\"#$%&'()*+,-./0123456789:;<=>?@ABCDEFGHIJKLMNOPQRSTUVWXYZ"
+				+ "[\\]^_`abcdefghijklmnopqrstuvwxyz{|}~";
+		private static final byte[][] WORDS = stream(new String[] {
+				"able", "about", "account", "acid", "across", "addition",
+				"after", "again", "air", "almost", "amount", "angle", "answer",
+				"apple", "army", "attack", "balance", "basket", "beautiful",
+				"because", "before", "between", "bird", "blood", "board",
+				"boat", "brain", "bread", "bridge", "brother", "brush",
+				"building", "butter", "camera", "card", "carriage", "cause",
+				"chain", "chance", "cheese", "church", "circle", "clock",
+				"cloud", "coat", "collar", "color", "comfort", "company",
+				"copper", "cotton", "country", "cover", "credit", "crime",
+				"current", "curtain", "damage", "danger", "daughter",
+				"decision", "degree", "design", "desire"
+			})
+			.map(word -> word.getBytes(US_ASCII))
+			.toArray(byte[][]::new);
+		private static final int MAX_WORD_LENGTH = stream(WORDS)
+			.mapToInt(word -> word.length)
+			.max()
+			.getAsInt();
+
+		private final int[] fields;
+		private final byte[][] literals;
+		private final byte[] lineSeparator;
+		private final SplittableRandom random;
+		private final byte[] chunk;
+		private final int maxLineLength;
+		private long remainingLines;
+		private long timestamp = START_OF_TIMESTAMPS;
+		private long dayOfDate = -1;
+		private byte[] date;
+
+		GeneratedLinesSource(
+			LineTemplate template,
+			long seed,
+			long numberOfLines,
+			Charset charset,
+			byte[] lineSeparator
+		) {
+			if (!Arrays.equals(
+				ASCII_CHARACTERS.getBytes(charset),
+				ASCII_CHARACTERS.getBytes(US_ASCII)
+			))
+				throw new IllegalArgumentException(
+					"Lines cannot be generated with the charset " + charset
+						+ " because it does not encode ASCII characters like"
+						+ " ASCII does.");
+			this.fields = template.fields;
+			this.literals = stream(template.literals)
+				.map(literal -> literal.getBytes(charset))
+				.toArray(byte[][]::new);
+			this.lineSeparator = lineSeparator;
+			this.random = new SplittableRandom(seed);
+			this.remainingLines = numberOfLines;
+			this.maxLineLength = maxLineLength();
+			this.chunk = new byte[Math.max(BUFFER_SIZE, maxLineLength)];
+		}
+
+		private int maxLineLength() {
+			int length = lineSeparator.length;
+			for (byte[] literal: literals)
+				length += literal.length;
+			for (int field: fields)
+				length += maxFieldLength(field);
+			return length;
+		}
+
+		private int maxFieldLength(
+			int field
+		) {
+			switch (field) {
+				case LineTemplate.INT:
+					return MAX_INT_LENGTH;
+				case LineTemplate.WORD:
+					return MAX_WORD_LENGTH;
+				case LineTemplate.TIMESTAMP:
+					return TIMESTAMP_LENGTH;
+				default:
+					return field * (Math.max(MAX_INT_LENGTH, MAX_WORD_LENGTH) + 1);
+			}
+		}
+
+		@Override
+		public ByteBuffer nextChunk() {
+			if (remainingLines == 0)
+				return null;
+			int length = 0;
+			while (remainingLines > 0 && chunk.length - length >= maxLineLength) {
+				length = writeLine(length);
+				--remainingLines;
+			}
+			return ByteBuffer.wrap(chunk, 0, length);
+		}
+
+		private int writeLine(
+			int offset
+		) {
+			int position = offset;
+			for (int i = 0; i < fields.length; ++i) {
+				position = write(literals[i], position);
+				position = writeField(fields[i], position);
+			}
+			position = write(literals[fields.length], position);
+			return write(lineSeparator, position);
+		}
+
+		private int writeField(
+			int field,
+			int offset
+		) {
+			switch (field) {
+				case LineTemplate.INT:
+					return writeInt(offset);
+				case LineTemplate.WORD:
+					return writeWord(offset);
+				case LineTemplate.TIMESTAMP:
+					return writeTimestamp(offset);
+				default:
+					return writeCsv(field, offset);
+			}
+		}
+
+		private int writeInt(
+			int offset
+		) {
+			int value = random.nextInt(Integer.MAX_VALUE);
+			int end = offset + numberOfDigits(value);
+			int position = end;
+			do {
+				chunk[--position] = (byte) ('0' + value % 10);
+				value /= 10;
+			} while (value != 0);
+			return end;
+		}
+
+		private int numberOfDigits(
+			int value
+		) {
+			int digits = 1;
+			for (int remaining = value; remaining >= 10; remaining /= 10)
+				++digits;
+			return digits;
+		}
+
+		private int writeWord(
+			int offset
+		) {
+			return write(WORDS[random.nextInt(WORDS.length)], offset);
+		}
+
+		private int writeTimestamp(
+			int offset
+		) {
+			timestamp += random.nextInt(1000);
+			long day = timestamp / MILLIS_PER_DAY;
+			if (day != dayOfDate) {
+				date = (LocalDate.ofEpochDay(day) + "T").getBytes(US_ASCII);
+				dayOfDate = day;
+			}
+			int millisOfDay = (int) (timestamp % MILLIS_PER_DAY);
+			int position = write(date, offset);
+			position = writeTwoDigits(millisOfDay / 3_600_000, position);
+			chunk[position++] = ':';
+			position = writeTwoDigits(millisOfDay / 60_000 % 60, position);
+			chunk[position++] = ':';
+			position = writeTwoDigits(millisOfDay / 1000 % 60, position);
+			chunk[position++] = '.';
+			chunk[position++] = (byte) ('0' + millisOfDay / 100 % 10);
+			position = writeTwoDigits(millisOfDay % 100, position);
+			chunk[position++] = 'Z';
+			return position;
+		}
+
+		private int writeTwoDigits(
+			int value,
+			int offset
+		) {
+			chunk[offset] = (byte) ('0' + value / 10);
+			chunk[offset + 1] = (byte) ('0' + value % 10);
+			return offset + 2;
+		}
+
+		private int writeCsv(
+			int numberOfColumns,
+			int offset
+		) {
+			int position = offset;
+			for (int column = 0; column < numberOfColumns; ++column) {
+				if (column > 0)
+					chunk[position++] = ',';
+				position = random.nextBoolean()
+					? writeInt(position)
+					: writeWord(position);
+			}
+			return position;
+		}
+
+		private int write(
+			byte[] bytes,
+			int offset
+		) {
+			arraycopy(bytes, 0, chunk, offset, bytes.length);
+			return offset + bytes.length;
+		}
+	}
+
+	/*
+	 * A template of generated lines. The literal text before the i-th field
+	 * is literals[i]. The text after the last field is the last literal.
+	 * A field is INT, WORD, TIMESTAMP or the number of columns of a CSV row.
+	 */
+	private static class LineTemplate {
+		static final int INT = -1;
+		static final int WORD = -2;
+		static final int TIMESTAMP = -3;
+		private static final Pattern FIELD = Pattern.compile(
+			"\\{(int|word|timestamp|csv:([1-9][0-9]{0,3}))}");
+
+		final int[] fields;
+		final String[] literals;
+
+		LineTemplate(
+			String template
+		) {
+			List<Integer> fields = new ArrayList<>();
+			List<String> literals = new ArrayList<>();
+			Matcher matcher = FIELD.matcher(template);
+			int endOfPreviousField = 0;
+			while (matcher.find()) {
+				literals.add(
+					template.substring(endOfPreviousField, matcher.start()));
+				fields.add(field(matcher));
+				endOfPreviousField = matcher.end();
+			}
+			literals.add(template.substring(endOfPreviousField));
+			this.fields = fields.stream().mapToInt(Integer::intValue).toArray();
+			this.literals = literals.toArray(new String[0]);
+		}
+
+		private static int field(
+			Matcher matcher
+		) {
+			switch (matcher.group(1)) {
+				case "int":
+					return INT;
+				case "word":
+					return WORD;
+				case "timestamp":
+					return TIMESTAMP;
+				default:
+					return Integer.parseInt(matcher.group(2));
+			}
+		}
+	}
+
+	private static class LinesSource implements InputSource {
+		private final Iterator<String> lines;
+		private final Charset charset;
+		private final byte[] lineSeparator;
+		private ByteBuffer chunk = ByteBuffer.allocate(BUFFER_SIZE);
+
+		LinesSource(
+			Iterator<String> lines,
+			Charset charset,
+			byte[] lineSeparator
+		) {
+			this.lines = lines;
+			this.charset = charset;
+			this.lineSeparator = lineSeparator;
+		}
+
+		@Override
+		public ByteBuffer nextChunk() {
+			if (!lines.hasNext())
+				return null;
+			chunk.clear();
+			while (lines.hasNext() && chunk.position() < BUFFER_SIZE) {
+				byte[] line = lines.next().getBytes(charset);
+				ensureRemaining(line.length + lineSeparator.length);
+				chunk.put(line).put(lineSeparator);
+			}
+			chunk.flip();
+			return chunk;
+		}
+
+		private void ensureRemaining(
+			int numberOfBytes
+		) {
+			if (chunk.remaining() < numberOfBytes) {
+				ByteBuffer largerChunk = ByteBuffer.allocate(
+					Math.max(2 * chunk.capacity(), chunk.position() + numberOfBytes));
+				chunk.flip();
+				largerChunk.put(chunk);
+				chunk = largerChunk;
+			}
+		}
+	}
+
+	private static class MappedFileSource implements InputSource {
+		private static final long MAPPING_SIZE = 1 << 28;
+		private final FileChannel channel;
+		private final long size;
+		private MappedByteBuffer chunk;
+		private long startOfChunk = 0;
+		private long endOfChunk = 0;
+
+		MappedFileSource(
+			Path file
+		) throws IOException {
+			channel = FileChannel.open(file, StandardOpenOption.READ);
+			size = channel.size();
+		}
+
+		@Override
+		public ByteBuffer nextChunk() throws IOException {
+			return endOfChunk < size ? chunkAt(endOfChunk) : null;
+		}
+
+		@Override
+		public long available() {
+			return size - endOfChunk;
+		}
+
+		@Override
+		public boolean seekable() {
+			return true;
+		}
+
+		@Override
+		public long position(
+			ByteBuffer chunk
+		) {
+			return startOfChunk + chunk.position();
+		}
+
+		/*
+		 * The current mapping is reused if it contains the position. Each
+		 * mapping stays until it is garbage collected. Too many mappings
+		 * would exceed the limit of the operating system.
+		 */
+		@Override
+		public ByteBuffer chunkAt(
+			long position
+		) throws IOException {
+			long clampedPosition = Math.min(position, size);
+			if (!isInCurrentChunk(clampedPosition)) {
+				startOfChunk = clampedPosition - clampedPosition % MAPPING_SIZE;
+				endOfChunk = Math.min(startOfChunk + MAPPING_SIZE, size);
+				chunk = channel.map(
+					READ_ONLY, startOfChunk, endOfChunk - startOfChunk);
+			}
+			chunk.position((int) (clampedPosition - startOfChunk));
+			return chunk;
+		}
+
+		private boolean isInCurrentChunk(
+			long position
+		) {
+			return chunk != null
+				&& position >= startOfChunk
+				&& (position < endOfChunk || endOfChunk == size);
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	private static class SupplierSource implements InputSource {
+		private final Supplier<ByteBuffer> buffers;
+
+		SupplierSource(
+			Supplier<ByteBuffer> buffers
+		) {
+			this.buffers = buffers;
+		}
+
+		@Override
+		public ByteBuffer nextChunk() {
+			ByteBuffer buffer = buffers.get();
+			return buffer == null ? null : buffer.duplicate();
+		}
+	}
+
+	/**
+	 * A {@code TapStream} stores the bytes in segments. Segments of a nested
+	 * {@code TapStream} can be appended to the enclosing {@code TapStream}
+	 * without copying them. A segment is not written anymore after it has
+	 * been shared.
+	 */
+	private static class TapStream extends OutputStream {
+		private static final int MIN_SEGMENT_SIZE = 256;
+		private static final int MAX_SEGMENT_SIZE = 1024 * 1024;
+
+		private final List<Segment> segments = new ArrayList<>();
+		private Segment writableSegment;
+		private long size = 0;
+
+		@Override
+		public void write(
+			int b
+		) {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public synchronized void write(
+			byte[] b,
+			int off,
+			int len
+		) {
+			int written = 0;
+			while (written < len) {
+				if (writableSegment == null || writableSegment.isFull())
+					addWritableSegment(len - written);
+				written += writableSegment.append(b, off + written, len - written);
+			}
+			size += len;
+		}
+
+		private void addWritableSegment(
+			int minCapacity
+		) {
+			int capacity = (int) Math.min(
+				Math.max(size, MIN_SEGMENT_SIZE),
+				MAX_SEGMENT_SIZE
+			);
+			writableSegment = new Segment(Math.max(capacity, minCapacity));
+			segments.add(writableSegment);
+		}
+
+		void propagateTo(
+			OutputStream enclosingStream
+		) throws IOException {
+			List<Segment> segments = segments();
+			if (enclosingStream instanceof TapStream)
+				((TapStream) enclosingStream).appendShared(segments);
+			else
+				for (Segment segment: segments)
+					enclosingStream.write(segment.bytes, 0, segment.length);
+		}
+
+		private synchronized void appendShared(
+			List<Segment> sharedSegments
+		) {
+			for (Segment segment: sharedSegments) {
+				segments.add(segment);
+				size += segment.length;
+			}
+			writableSegment = null;
+		}
+
+		private synchronized List<Segment> segments() {
+			writableSegment = null;
+			return new ArrayList<>(segments);
+		}
+
+		synchronized String textThatWasWritten() {
+			byte[] bytes = new byte[(int) size];
+			int offset = 0;
+			for (Segment segment: segments) {
+				arraycopy(segment.bytes, 0, bytes, offset, segment.length);
+				offset += segment.length;
+			}
+			return new String(bytes, defaultCharset());
+		}
+
+		private static class Segment {
+			final byte[] bytes;
+			int length = 0;
+
+			Segment(
+				int capacity
+			) {
+				bytes = new byte[capacity];
+			}
+
+			boolean isFull() {
+				return length == bytes.length;
+			}
+
+			int append(
+				byte[] b,
+				int off,
+				int len
+			) {
+				int appended = Math.min(bytes.length - length, len);
+				arraycopy(b, off, bytes, length, appended);
+				length += appended;
+				return appended;
+			}
+		}
+	}
+
+	/**
+	 * A {@code LineStream} collects the bytes of the current line and passes
+	 * the line on when it is complete. Line separators are {@code \n} and
+	 * {@code \r\n}. They are not part of the line.
+	 */
+	private abstract static class LineStream extends OutputStream {
+		private byte[] line = new byte[128];
+		private int lineLength = 0;
+
+		@Override
+		public void write(
+			int b
+		) {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public synchronized void write(
+			byte[] b,
+			int off,
+			int len
+		) {
+			int startOfPart = off;
+			for (int i = off; i < off + len; ++i)
+				if (b[i] == '\n') {
+					appendToLine(b, startOfPart, i - startOfPart);
+					completeLine(1);
+					startOfPart = i + 1;
+				}
+			appendToLine(b, startOfPart, off + len - startOfPart);
+		}
+
+		private void appendToLine(
+			byte[] b,
+			int off,
+			int len
+		) {
+			if (lineLength + len > line.length)
+				line = Arrays.copyOf(
+					line,
+					Math.max(2 * line.length, lineLength + len)
+				);
+			arraycopy(b, off, line, lineLength, len);
+			lineLength += len;
+		}
+
+		private void completeLine(
+			int lengthOfLineBreak
+		) {
+			int length = lineLength;
+			if (length > 0 && line[length - 1] == '\r')
+				--length;
+			String text = new String(line, 0, length, defaultCharset());
+			int numberOfBytes = lineLength + lengthOfLineBreak;
+			lineLength = 0;
+			lineCompleted(text, numberOfBytes);
+		}
+
+		/*
+		 * Passes the last line on if it does not end with a line separator.
+		 */
+		synchronized void completeLastLine() {
+			if (lineLength > 0)
+				completeLine(0);
+		}
+
+		/**
+		 * Called for each line.
+		 * @param line the text of the line without the line separator.
+		 * @param numberOfBytes the number of bytes of the line including
+		 * the line separator.
+		 */
+		abstract void lineCompleted(
+			String line,
+			int numberOfBytes
+		);
+	}
+
+	/**
+	 * A {@code JsonLinesStream} parses each line when it is complete. It must
+	 * not throw exceptions because it is the target of a route. Therefore
+	 * failures are kept and reported by {@link #finish(String)}.
+	 */
+	private static class JsonLinesStream extends LineStream {
+		private static final int MAX_NUMBER_OF_REPORTED_LINES = 10;
+		private static final int MAX_LENGTH_OF_REPORTED_LINE = 100;
+
+		private final Consumer<Map<String, Object>> consumer;
+		private final List<String> reportedMalformedLines = new ArrayList<>();
+		private long lineNumber = 1;
+		private long offsetOfLine = 0;
+		private long numberOfMalformedLines = 0;
+		private Throwable failureOfConsumer;
+
+		JsonLinesStream(
+			Consumer<Map<String, Object>> consumer
+		) {
+			this.consumer = consumer;
+		}
+
+		@Override
+		synchronized void lineCompleted(
+			String line,
+			int numberOfBytes
+		) {
+			if (!line.trim().isEmpty())
+				parse(line);
+			offsetOfLine += numberOfBytes;
+			++lineNumber;
+		}
+
+		private void parse(
+			String text
+		) {
+			Map<String, Object> object;
+			try {
+				object = JsonParser.parseObject(text);
+			} catch (MalformedJsonException e) {
+				reportMalformedLine(text, e);
+				return;
+			}
+			if (failureOfConsumer == null)
+				try {
+					consumer.accept(object);
+				} catch (RuntimeException | Error e) {
+					failureOfConsumer = e;
+				}
+		}
+
+		private void reportMalformedLine(
+			String text,
+			MalformedJsonException exception
+		) {
+			++numberOfMalformedLines;
+			if (reportedMalformedLines.size() < MAX_NUMBER_OF_REPORTED_LINES)
+				reportedMalformedLines.add(
+					"line " + lineNumber + " (offset " + offsetOfLine + "): "
+						+ exception.getMessage() + ": "
+						+ abbreviated(text)
+				);
+		}
+
+		private String abbreviated(
+			String text
+		) {
+			if (text.length() > MAX_LENGTH_OF_REPORTED_LINE)
+				return text.substring(0, MAX_LENGTH_OF_REPORTED_LINE) + "...";
+			else
+				return text;
+		}
+
+		synchronized void finish(
+			String nameOfStream
+		) {
+			completeLastLine();
+			if (failureOfConsumer instanceof Error)
+				throw (Error) failureOfConsumer;
+			if (failureOfConsumer instanceof RuntimeException)
+				throw (RuntimeException) failureOfConsumer;
+			if (numberOfMalformedLines > 0)
+				throw new AssertionError(
+					"Found " + numberOfMalformedLines + " lines in the output"
+						+ " of " + nameOfStream + " that are not a JSON"
+						+ " object:"
+						+ lineSeparator()
+						+ String.join(lineSeparator(), reportedMalformedLines)
+				);
+		}
+	}
+
+	/**
+	 * Receives the lines that are published by
+	 * {@link #publishSystemErr(LineSubscriber, Statement)} or
+	 * {@link #publishSystemOut(LineSubscriber, Statement)}. It has the same
+	 * methods as {@code java.util.concurrent.Flow.Subscriber<String>} of
+	 * Java 9 and follows the same rules. All methods are called by a single
+	 * background thread.
+	 *
+	 * @since 1.3.0
+	 */
+	public interface LineSubscriber {
+		/**
+		 * Called before any other method is called.
+		 * @param subscription the subscription that is used for requesting
+		 * lines.
+		 */
+		void onSubscribe(
+			LineSubscription subscription
+		);
+
+		/**
+		 * Called with the next line. It is not called more often than lines
+		 * have been requested.
+		 * @param line the text of the line without the line separator.
+		 */
+		void onNext(
+			String line
+		);
+
+		/**
+		 * Called after the last line if the statement threw an exception or
+		 * if an invalid number of lines has been requested.
+		 * @param throwable the exception.
+		 */
+		void onError(
+			Throwable throwable
+		);
+
+		/**
+		 * Called after the last line if the statement has been executed
+		 * successfully.
+		 */
+		void onComplete();
+	}
+
+	/**
+	 * Used by a {@link LineSubscriber} for requesting lines. It has the same
+	 * methods as {@code java.util.concurrent.Flow.Subscription} of Java 9.
+	 *
+	 * @since 1.3.0
+	 */
+	public interface LineSubscription {
+		/**
+		 * Requests more lines.
+		 * @param n the number of additional lines. A non-positive number
+		 * causes {@link LineSubscriber#onError(Throwable)} to be called with
+		 * an {@code IllegalArgumentException}.
+		 */
+		void request(
+			long n
+		);
+
+		/**
+		 * Stops the delivery of lines. Lines that are written afterwards are
+		 * discarded.
+		 */
+		void cancel();
+	}
+
+	/**
+	 * A {@code LinePublisher} keeps the lines in a bounded buffer until they
+	 * are requested and passes them to the subscriber in its own thread.
+	 * The overflow policy determines what the writing thread does when the
+	 * buffer is full.
+	 * <p>After the statement has been executed the subscription is
+	 * cancelled when the subscriber does not request a waiting line within
+	 * the timeout. Otherwise a subscriber that stopped requesting would
+	 * block the completion of the publisher forever. The timeout is not
+	 * applied while the statement is executed, because a slow subscriber
+	 * is what backpressure is for.
+	 */
+	private static class LinePublisher
+		extends LineStream
+		implements LineSubscription
+	{
+		private final Deque<String> lines = new ArrayDeque<>();
+		private final int capacity;
+		private final OverflowPolicy overflowPolicy;
+		private final Duration timeout;
+		private final LineSubscriber subscriber;
+		private final Thread thread;
+		private long demand = 0;
+		private long droppedLines = 0;
+		private boolean subscriptionDone = false;
+		private boolean cancelled = false;
+		private boolean completed = false;
+		private Throwable failureOfStatement;
+		private IllegalArgumentException invalidRequest;
+		private Throwable failureOfSubscriber;
+		private IllegalStateException overflow;
+		private int linesWaitingWhenStalled = -1;
+
+		LinePublisher(
+			int capacity,
+			OverflowPolicy overflowPolicy,
+			Duration timeout,
+			LineSubscriber subscriber
+		) {
+			this.capacity = capacity;
+			this.overflowPolicy = overflowPolicy;
+			this.timeout = timeout;
+			this.subscriber = subscriber;
+			thread = new Thread(this::publishLines, "System Lambda line publisher");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		@Override
+		synchronized void lineCompleted(
+			String line,
+			int numberOfBytes
+		) {
+			while (!cancelled && lines.size() >= capacity)
+				if (overflowPolicy == OverflowPolicy.DROP) {
+					++droppedLines;
+					return;
+				} else if (overflowPolicy == OverflowPolicy.FAIL) {
+					++droppedLines;
+					if (overflow == null) {
+						overflow = new IllegalStateException(
+							"The buffer of " + capacity + " lines is full."
+						);
+						notifyAll();
+					}
+					return;
+				} else
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						++droppedLines;
+						return;
+					}
+			if (!cancelled) {
+				lines.add(line);
+				notifyAll();
+			}
+		}
+
+		@Override
+		public synchronized void request(
+			long n
+		) {
+			if (n <= 0)
+				invalidRequest = new IllegalArgumentException(
+					"The number of requested lines must be positive but it is "
+						+ n + "."
+				);
+			else if (demand + n < 0)
+				demand = Long.MAX_VALUE;
+			else
+				demand += n;
+			notifyAll();
+		}
+
+		@Override
+		public synchronized void cancel() {
+			cancelled = true;
+			lines.clear();
+			notifyAll();
+		}
+
+		private void publishLines() {
+			boolean subscribed = call(() -> subscriber.onSubscribe(this));
+			synchronized (this) {
+				subscriptionDone = true;
+				notifyAll();
+			}
+			if (subscribed)
+				while (true) {
+					String line = nextLine();
+					if (line == null || !call(() -> subscriber.onNext(line)))
+						break;
+				}
+			publishEnd();
+		}
+
+		/*
+		 * Returns null if there are no more lines that can be published.
+		 */
+		private synchronized String nextLine() {
+			long deadline = 0;
+			try {
+				while (!cancelled
+					&& invalidRequest == null
+					&& overflow == null
+					&& !(demand > 0 && !lines.isEmpty())
+					&& !(completed && lines.isEmpty()))
+					if (lines.isEmpty() || !completed)
+						wait();
+					else {
+						if (deadline == 0)
+							deadline = nanoTime() + timeout.toNanos();
+						long remaining = deadline - nanoTime();
+						if (remaining <= 0) {
+							linesWaitingWhenStalled = lines.size();
+							cancel();
+						} else
+							NANOSECONDS.timedWait(this, remaining);
+					}
+			} catch (InterruptedException e) {
+				cancel();
+			}
+			if (cancelled
+				|| invalidRequest != null
+				|| overflow != null
+				|| lines.isEmpty())
+				return null;
+			if (demand != Long.MAX_VALUE)
+				--demand;
+			String line = lines.poll();
+			notifyAll();
+			return line;
+		}
+
+		private void publishEnd() {
+			Throwable error;
+			synchronized (this) {
+				if (cancelled && invalidRequest == null)
+					return;
+				cancel();
+				if (invalidRequest != null)
+					error = invalidRequest;
+				else if (overflow != null)
+					error = overflow;
+				else
+					error = failureOfStatement;
+			}
+			if (error == null)
+				call(subscriber::onComplete);
+			else
+				call(() -> subscriber.onError(error));
+		}
+
+		/*
+		 * The subscription is cancelled when the subscriber throws an
+		 * exception.
+		 */
+		private boolean call(
+			Runnable method
+		) {
+			try {
+				method.run();
+				return true;
+			} catch (RuntimeException | Error e) {
+				subscriberFailed(e);
+				return false;
+			}
+		}
+
+		private synchronized void subscriberFailed(
+			Throwable failure
+		) {
+			if (failureOfSubscriber == null)
+				failureOfSubscriber = failure;
+			cancel();
+		}
+
+		synchronized void awaitSubscription() throws InterruptedException {
+			while (!subscriptionDone)
+				wait();
+		}
+
+		/*
+		 * Waits until the last line has been published or the subscription
+		 * has been cancelled.
+		 */
+		void complete(
+			Throwable failureOfStatement
+		) throws InterruptedException {
+			completeLastLine();
+			synchronized (this) {
+				this.failureOfStatement = failureOfStatement;
+				completed = true;
+				notifyAll();
+			}
+			thread.join();
+		}
+
+		synchronized long finish() {
+			if (failureOfSubscriber instanceof Error)
+				throw (Error) failureOfSubscriber;
+			if (failureOfSubscriber instanceof RuntimeException)
+				throw (RuntimeException) failureOfSubscriber;
+			if (overflow != null)
+				throw new AssertionError(
+					"The subscriber did not request lines fast enough. The"
+						+ " buffer of " + capacity + " lines was full and the"
+						+ " subscription has been cancelled.",
+					overflow
+				);
+			if (linesWaitingWhenStalled >= 0)
+				throw new AssertionError(
+					"The subscriber did not request lines for "
+						+ timeout.toMillis() + " ms after the statement had"
+						+ " been executed although lines were waiting. The"
+						+ " subscription has been cancelled. Unpublished lines: "
+						+ linesWaitingWhenStalled + "."
+				);
+			return droppedLines;
+		}
+	}
+
+	/**
+	 * A {@code JsonParser} parses a JSON text
+	 * (<a href="https://tools.ietf.org/html/rfc8259">RFC 8259</a>) whose
+	 * top-level value is an object. The parser is recursive. Therefore it
+	 * rejects texts whose objects and arrays are nested deeper than
+	 * {@link #MAX_DEPTH} levels instead of overflowing the stack.
+	 */
+	private static class JsonParser {
+		private static final int MAX_DEPTH = 512;
+		private final String text;
+		private int position = 0;
+		private int depth = 0;
+
+		private JsonParser(
+			String text
+		) {
+			this.text = text;
+		}
+
+		static Map<String, Object> parseObject(
+			String text
+		) throws MalformedJsonException {
+			JsonParser parser = new JsonParser(text);
+			parser.skipWhitespace();
+			if (!parser.isAt('{'))
+				throw parser.error("Expected '{'");
+			Map<String, Object> object = parser.object();
+			parser.skipWhitespace();
+			if (parser.position < text.length())
+				throw parser.error("Unexpected character");
+			return object;
+		}
+
+		private Object value() throws MalformedJsonException {
+			skipWhitespace();
+			if (position == text.length())
+				throw error("Unexpected end of line");
+			char c = text.charAt(position);
+			switch (c) {
+				case '{':
+					return object();
+				case '[':
+					return array();
+				case '"':
+					return string();
+				case 't':
+					literal("true");
+					return Boolean.TRUE;
+				case 'f':
+					literal("false");
+					return Boolean.FALSE;
+				case 'n':
+					literal("null");
+					return null;
+				default:
+					if (c == '-' || isDigit(c))
+						return number();
+					else
+						throw error("Unexpected character");
+			}
+		}
+
+		private Map<String, Object> object() throws MalformedJsonException {
+			Map<String, Object> object = new LinkedHashMap<>();
+			enterNestedValue();
+			expect('{');
+			skipWhitespace();
+			if (isAt('}')) {
+				++position;
+				--depth;
+				return object;
+			}
+			do {
+				skipWhitespace();
+				if (!isAt('"'))
+					throw error("Expected '\"'");
+				String name = string();
+				skipWhitespace();
+				expect(':');
+				object.put(name, value());
+				skipWhitespace();
+			} while (nextIsSeparator('}'));
+			--depth;
+			return object;
+		}
+
+		private List<Object> array() throws MalformedJsonException {
+			List<Object> array = new ArrayList<>();
+			enterNestedValue();
+			expect('[');
+			skipWhitespace();
+			if (isAt(']')) {
+				++position;
+				--depth;
+				return array;
+			}
+			do {
+				array.add(value());
+				skipWhitespace();
+			} while (nextIsSeparator(']'));
+			--depth;
+			return array;
+		}
+
+		private void enterNestedValue() throws MalformedJsonException {
+			if (++depth > MAX_DEPTH)
+				throw error(
+					"Objects and arrays are nested deeper than " + MAX_DEPTH
+						+ " levels");
+		}
+
+		private boolean nextIsSeparator(
+			char end
+		) throws MalformedJsonException {
+			if (isAt(',')) {
+				++position;
+				return true;
+			} else if (isAt(end)) {
+				++position;
+				return false;
+			} else
+				throw error("Expected ',' or '" + end + "'");
+		}
+
+		private String string() throws MalformedJsonException {
+			expect('"');
+			StringBuilder string = new StringBuilder();
+			while (true) {
+				if (position == text.length())
+					throw error("Unterminated string");
+				char c = text.charAt(position++);
+				if (c == '"')
+					return string.toString();
+				else if (c == '\\')
+					string.append(escapedCharacter());
+				else if (c < 0x20)
+					throw error("Control character in string");
+				else
+					string.append(c);
+			}
+		}
+
+		private char escapedCharacter() throws MalformedJsonException {
+			if (position == text.length())
+				throw error("Unterminated string");
+			char c = text.charAt(position++);
+			switch (c) {
+				case '"':
+				case '\\':
+				case '/':
+					return c;
+				case 'b':
+					return '\b';
+				case 'f':
+					return '\f';
+				case 'n':
+					return '\n';
+				case 'r':
+					return '\r';
+				case 't':
+					return '\t';
+				case 'u':
+					return unicodeEscape();
+				default:
+					--position;
+					throw error("Invalid escape sequence");
+			}
+		}
+
+		private char unicodeEscape() throws MalformedJsonException {
+			if (position + 4 > text.length())
+				throw error("Invalid unicode escape sequence");
+			int c = 0;
+			for (int end = position + 4; position < end; ++position) {
+				int digit = hexDigit(text.charAt(position));
+				if (digit < 0)
+					throw error("Invalid unicode escape sequence");
+				c = 16 * c + digit;
+			}
+			return (char) c;
+		}
+
+		/*
+		 * Returns -1 if the character is not a hexadecimal digit.
+		 */
+		private int hexDigit(
+			char c
+		) {
+			if (c >= '0' && c <= '9')
+				return c - '0';
+			else if (c >= 'a' && c <= 'f')
+				return c - 'a' + 10;
+			else if (c >= 'A' && c <= 'F')
+				return c - 'A' + 10;
+			else
+				return -1;
+		}
+
+		private Number number() throws MalformedJsonException {
+			int start = position;
+			if (isAt('-'))
+				++position;
+			if (isAt('0'))
+				++position;
+			else
+				digits();
+			boolean integer = true;
+			if (isAt('.')) {
+				++position;
+				digits();
+				integer = false;
+			}
+			if (isAt('e') || isAt('E')) {
+				++position;
+				if (isAt('+') || isAt('-'))
+					++position;
+				digits();
+				integer = false;
+			}
+			String number = text.substring(start, position);
+			if (!integer)
+				return Double.parseDouble(number);
+			try {
+				return Long.parseLong(number);
+			} catch (NumberFormatException e) {
+				return new BigInteger(number);
+			}
+		}
+
+		private void digits() throws MalformedJsonException {
+			if (position == text.length() || !isDigit(text.charAt(position)))
+				throw error("Expected digit");
+			while (position < text.length() && isDigit(text.charAt(position)))
+				++position;
+		}
+
+		private void literal(
+			String literal
+		) throws MalformedJsonException {
+			if (!text.startsWith(literal, position))
+				throw error("Unexpected character");
+			position += literal.length();
+		}
+
+		private void expect(
+			char c
+		) throws MalformedJsonException {
+			if (!isAt(c))
+				throw error("Expected '" + c + "'");
+			++position;
+		}
+
+		private boolean isAt(
+			char c
+		) {
+			return position < text.length() && text.charAt(position) == c;
+		}
+
+		private static boolean isDigit(
+			char c
+		) {
+			return c >= '0' && c <= '9';
+		}
+
+		private void skipWhitespace() {
+			while (position < text.length()
+				&& " \t\r\n".indexOf(text.charAt(position)) >= 0)
+				++position;
+		}
+
+		private MalformedJsonException error(
+			String message
+		) {
+			return new MalformedJsonException(
+				message + " at column " + (position + 1)
+			);
+		}
+	}
+
+	private static class MalformedJsonException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		MalformedJsonException(
+			String message
+		) {
+			super(message);
+		}
+	}
+
+	private static class CountingStream extends OutputStream {
+		private static final int MAX_NUMBER_OF_FIRST_LINES = 5;
+		private static final int MAX_BYTES_OF_FIRST_LINES = 1024;
+
+		private final ByteArrayOutputStream firstLines
+			= new ByteArrayOutputStream();
+		private long bytes = 0;
+		private long lineBreaks = 0;
+		private long writes = 0;
+		private int lastByte = '\n';
+
+		@Override
+		public synchronized void write(
+			int b
+		) {
+			++writes;
+			count(b);
+		}
+
+		@Override
+		public synchronized void write(
+			byte[] b,
+			int off,
+			int len
+		) {
+			++writes;
+			for (int i = off; i < off + len; ++i)
+				count(b[i]);
+		}
+
+		private void count(
+			int b
+		) {
+			if (lineBreaks < MAX_NUMBER_OF_FIRST_LINES
+				&& firstLines.size() < MAX_BYTES_OF_FIRST_LINES)
+				firstLines.write(b);
+			++bytes;
+			if (b == '\n')
+				++lineBreaks;
+			lastByte = b;
+		}
+
+		synchronized long bytes() {
+			return bytes;
+		}
+
+		synchronized long lines() {
+			return lastByte == '\n' ? lineBreaks : lineBreaks + 1;
+		}
+
+		synchronized long writes() {
+			return writes;
+		}
+
+		synchronized String firstLines() {
+			return new String(firstLines.toByteArray(), defaultCharset());
+		}
+	}
+
+	/**
+	 * Writes the input for {@code System.in} to a {@link SystemInPipe}.
+	 *
+	 * @see #withSystemInPipe(PipeFeeder, Statement)
+	 * @since 1.3.0
+	 */
+	public interface PipeFeeder {
+		/**
+		 * Writes the input to the pipe.
+		 * @param pipe the pipe that provides its input to {@code System.in}.
+		 * @throws Exception any exception.
+		 */
+		void feed(
+			SystemInPipe pipe
+		) throws Exception;
+	}
+
+	/**
+	 * A pipe whose input is read from {@code System.in} by a statement that is
+	 * executed by {@link #withSystemInPipe(PipeFeeder, Statement)}. The input
+	 * is kept in a bounded ring buffer that is written by a single thread
+	 * (the feeder) and read by a single thread (the statement) without
+	 * locks.
+	 *
+	 * @since 1.3.0
+	 */
+	public static final class SystemInPipe {
+		private static final long WAIT_NANOS = 100_000;
+		private final byte[] buffer;
+		private final AtomicLong writePosition = new AtomicLong();
+		private final AtomicLong readPosition = new AtomicLong();
+		private final Queue<PendingLine> pendingLines
+			= new ConcurrentLinkedQueue<>();
+		private final Queue<Duration> lineLatencies
+			= new ConcurrentLinkedQueue<>();
+		private final InputStream stream = new PipeInputStream();
+		private volatile boolean closed = false;
+		private volatile boolean statementFinished = false;
+		private volatile Thread reader;
+		private volatile Thread feeder;
+		private Throwable failureOfStatement;
+
+		private SystemInPipe(
+			int capacity
+		) {
+			buffer = new byte[capacity];
+		}
+
+		/**
+		 * Writes the text encoded with the default charset. The method waits
+		 * while the buffer is full.
+		 * @param text the text that is provided by {@code System.in}.
+		 * @throws InterruptedException if the thread is interrupted while
+		 * it waits.
+		 * @throws IllegalStateException if the pipe is closed or if the
+		 * buffer is full and the statement has been executed.
+		 */
+		public void write(
+			String text
+		) throws InterruptedException {
+			write(text.getBytes(defaultCharset()));
+		}
+
+		/**
+		 * Writes the line and the line separator encoded with the default
+		 * charset. The method waits while the buffer is full. The time until
+		 * the statement has read the line separator is reported by
+		 * {@link #lineLatencies()}.
+		 * @param line the line that is provided by {@code System.in}.
+		 * @throws InterruptedException if the thread is interrupted while
+		 * it waits.
+		 * @throws IllegalStateException if the pipe is closed or if the
+		 * buffer is full and the statement has been executed.
+		 */
+		public void writeLine(
+			String line
+		) throws InterruptedException {
+			byte[] bytes = (line + lineSeparator()).getBytes(defaultCharset());
+			pendingLines.add(
+				new PendingLine(writePosition.get() + bytes.length, nanoTime())
+			);
+			write(bytes);
+		}
+
+		/**
+		 * Writes the bytes. The method waits while the buffer is full.
+		 * @param bytes the bytes that are provided by {@code System.in}.
+		 * @throws InterruptedException if the thread is interrupted while
+		 * it waits.
+		 * @throws IllegalStateException if the pipe is closed or if the
+		 * buffer is full and the statement has been executed.
+		 */
+		public void write(
+			byte[] bytes
+		) throws InterruptedException {
+			int offset = 0;
+			if (closed)
+				throw new IllegalStateException("The pipe has been closed.");
+			while (offset < bytes.length) {
+				long write = writePosition.get();
+				int free = buffer.length - (int) (write - readPosition.get());
+				if (free == 0) {
+					if (statementFinished)
+						throw new IllegalStateException(
+							"The statement has been executed and does not read"
+								+ " from System.in anymore.");
+					feeder = Thread.currentThread();
+					LockSupport.unpark(reader);
+					LockSupport.parkNanos(WAIT_NANOS);
+					if (Thread.interrupted())
+						throw new InterruptedException();
+				} else {
+					int index = (int) (write % buffer.length);
+					int length = Math.min(
+						Math.min(free, bytes.length - offset),
+						buffer.length - index
+					);
+					arraycopy(bytes, offset, buffer, index, length);
+					writePosition.set(write + length);
+					offset += length;
+					LockSupport.unpark(reader);
+				}
+			}
+		}
+
+		/**
+		 * Closes the pipe. {@code System.in} provides the end of the input
+		 * after the remaining bytes have been read.
+		 */
+		public void close() {
+			closed = true;
+			LockSupport.unpark(reader);
+		}
+
+		/**
+		 * Returns the latencies of the lines that are written by
+		 * {@link #writeLine(String)} and have been read by the statement.
+		 * The latency of a line is the time from calling
+		 * {@code writeLine(...)} until the statement has read the line
+		 * separator. Readers like {@code BufferedReader} read the line before
+		 * the code under test processes it.
+		 * @return the latencies in the order of the lines.
+		 */
+		public List<Duration> lineLatencies() {
+			return unmodifiableList(new ArrayList<>(lineLatencies));
+		}
+
+		private synchronized void statementFailed(
+			Throwable failure
+		) {
+			failureOfStatement = failure;
+		}
+
+		private void statementFinished() {
+			statementFinished = true;
+			LockSupport.unpark(feeder);
+		}
+
+		private synchronized void throwFailureOfStatement() throws Exception {
+			if (failureOfStatement instanceof Exception)
+				throw (Exception) failureOfStatement;
+			else if (failureOfStatement instanceof Error)
+				throw (Error) failureOfStatement;
+			else if (failureOfStatement != null)
+				throw new RuntimeException(failureOfStatement);
+		}
+
+		private class PipeInputStream extends InputStream {
+			@Override
+			public int read(
+			) throws IOException {
+				long read = readPosition.get();
+				long write = awaitInput(read);
+				if (write == read)
+					return -1;
+				int value = buffer[(int) (read % buffer.length)] & 0xFF;
+				consumed(read + 1);
+				return value;
+			}
+
+			@Override
+			public int read(
+				byte[] bytes,
+				int offset,
+				int len
+			) throws IOException {
+				if (bytes == null)
+					throw new NullPointerException();
+				else if (offset < 0 || len < 0 || len > bytes.length - offset)
+					throw new IndexOutOfBoundsException();
+				else if (len == 0)
+					return 0;
+				long read = readPosition.get();
+				long write = awaitInput(read);
+				if (write == read)
+					return -1;
+				int index = (int) (read % buffer.length);
+				int length = (int) Math.min(
+					Math.min(write - read, len),
+					buffer.length - index
+				);
+				arraycopy(buffer, index, bytes, offset, length);
+				consumed(read + length);
+				return length;
+			}
+
+			private void consumed(
+				long read
+			) {
+				readPosition.set(read);
+				LockSupport.unpark(feeder);
+				recordLatencies(read);
+			}
+
+			/*
+			 * Returns the write position. It is the same as the read position
+			 * at the end of the input.
+			 */
+			private long awaitInput(
+				long read
+			) throws InterruptedIOException {
+				reader = Thread.currentThread();
+				long write = writePosition.get();
+				while (write == read && !closed) {
+					LockSupport.parkNanos(WAIT_NANOS);
+					if (Thread.interrupted())
+						throw new InterruptedIOException();
+					write = writePosition.get();
+				}
+				//the feeder may have written bytes before it closed the pipe
+				return write == read ? writePosition.get() : write;
+			}
+
+			private void recordLatencies(
+				long read
+			) {
+				PendingLine line = pendingLines.peek();
+				while (line != null && line.end <= read) {
+					pendingLines.remove();
+					lineLatencies.add(
+						Duration.ofNanos(nanoTime() - line.writtenNanos)
+					);
+					line = pendingLines.peek();
+				}
+			}
+
+			@Override
+			public int available() {
+				return (int) (writePosition.get() - readPosition.get());
+			}
+		}
+
+		private static class PendingLine {
+			final long end;
+			final long writtenNanos;
+
+			PendingLine(
+				long end,
+				long writtenNanos
+			) {
+				this.end = end;
+				this.writtenNanos = writtenNanos;
+			}
+		}
+	}
+
+	/**
+	 * The maximum number of bytes, lines and writes that a statement may
+	 * write to {@code System.err} or {@code System.out}. It is used by
+	 * {@link #assertAtMostWrittenToSystemErr(OutputBudget, Statement)} and
+	 * {@link #assertAtMostWrittenToSystemOut(OutputBudget, Statement)}.
+	 * <pre>
+	 * OutputBudget.lines(2).andBytes(200)
+	 * </pre>
+	 * <p>A write is a chunk of bytes that reaches the stream that is wrapped
+	 * by {@code System.err}/{@code System.out}. E.g. a single call of
+	 * {@code print(String)} is a single write while {@code println(String)}
+	 * is a write of the text followed by a write of the line separator. A
+	 * line is counted for each {@code \n} and for text after the last
+	 * {@code \n}.
+	 */
+	public static final class OutputBudget {
+		private static final long UNLIMITED = Long.MAX_VALUE;
+
+		private final long bytes;
+		private final long lines;
+		private final long writes;
+
+		private OutputBudget(
+			long bytes,
+			long lines,
+			long writes
+		) {
+			validateNotNegative(bytes, "bytes");
+			validateNotNegative(lines, "lines");
+			validateNotNegative(writes, "writes");
+			this.bytes = bytes;
+			this.lines = lines;
+			this.writes = writes;
+		}
+
+		private static void validateNotNegative(
+			long value,
+			String name
+		) {
+			if (value < 0)
+				throw new IllegalArgumentException(
+					"The maximum number of " + name + " must not be negative"
+						+ " but it is " + value + "."
+				);
+		}
+
+		/**
+		 * Creates a budget that allows at most the specified number of
+		 * bytes.
+		 * @param bytes the maximum number of bytes.
+		 * @return a new {@code OutputBudget}.
+		 * @throws IllegalArgumentException if {@code bytes} is negative.
+		 */
+		public static OutputBudget bytes(
+			long bytes
+		) {
+			return new OutputBudget(bytes, UNLIMITED, UNLIMITED);
+		}
+
+		/**
+		 * Creates a budget that allows at most the specified number of
+		 * lines.
+		 * @param lines the maximum number of lines.
+		 * @return a new {@code OutputBudget}.
+		 * @throws IllegalArgumentException if {@code lines} is negative.
+		 */
+		public static OutputBudget lines(
+			long lines
+		) {
+			return new OutputBudget(UNLIMITED, lines, UNLIMITED);
+		}
+
+		/**
+		 * Creates a budget that allows at most the specified number of
+		 * writes.
+		 * @param writes the maximum number of writes.
+		 * @return a new {@code OutputBudget}.
+		 * @throws IllegalArgumentException if {@code writes} is negative.
+		 */
+		public static OutputBudget writes(
+			long writes
+		) {
+			return new OutputBudget(UNLIMITED, UNLIMITED, writes);
+		}
+
+		/**
+		 * Creates a new {@code OutputBudget} that additionally limits the
+		 * number of bytes.
+		 * @param bytes the maximum number of bytes.
+		 * @return a new {@code OutputBudget}.
+		 * @throws IllegalArgumentException if {@code bytes} is negative.
+		 */
+		public OutputBudget andBytes(
+			long bytes
+		) {
+			return new OutputBudget(bytes, lines, writes);
+		}
+
+		/**
+		 * Creates a new {@code OutputBudget} that additionally limits the
+		 * number of lines.
+		 * @param lines the maximum number of lines.
+		 * @return a new {@code OutputBudget}.
+		 * @throws IllegalArgumentException if {@code lines} is negative.
+		 */
+		public OutputBudget andLines(
+			long lines
+		) {
+			return new OutputBudget(bytes, lines, writes);
+		}
+
+		/**
+		 * Creates a new {@code OutputBudget} that additionally limits the
+		 * number of writes.
+		 * @param writes the maximum number of writes.
+		 * @return a new {@code OutputBudget}.
+		 * @throws IllegalArgumentException if {@code writes} is negative.
+		 */
+		public OutputBudget andWrites(
+			long writes
+		) {
+			return new OutputBudget(bytes, lines, writes);
+		}
+
+		private void check(
+			CountingStream stream,
+			String nameOfStream
+		) {
+			List<String> exceededLimits = new ArrayList<>();
+			if (stream.bytes() > bytes)
+				exceededLimits.add(bytes + " bytes");
+			if (stream.lines() > lines)
+				exceededLimits.add(lines + " lines");
+			if (stream.writes() > writes)
+				exceededLimits.add(writes + " writes");
+			if (!exceededLimits.isEmpty())
+				throw new AssertionError(
+					"Wrote " + stream.bytes() + " bytes, " + stream.lines()
+						+ " lines and " + stream.writes() + " writes to "
+						+ nameOfStream + " although at most "
+						+ String.join(" and ", exceededLimits)
+						+ " are allowed. The first lines are:"
+						+ lineSeparator()
+						+ stream.firstLines()
+				);
+		}
+	}
+
+	/**
+	 * An {@code OutputTap} executes statements and returns the text that was
+	 * written to {@code System.err} and/or {@code System.out}. It is created
+	 * by {@link #withBufferedOutput()},
+	 * {@link #withOutputForwardedToConsole()} or
+	 * {@link #withOutputPropagatedToEnclosingTap()}.
+	 * <p>The methods are the counterparts of the functions with the same name
+	 * that are provided by {@link SystemLambda}, e.g.
+	 * {@link #tapSystemOut(Statement)} is the counterpart of
+	 * {@link SystemLambda#tapSystemOut(Statement)}.
+	 */
+	public static final class OutputTap {
+		private static final long FORWARDER_CAPACITY = 1024 * 1024;
+
+		private final boolean buffered;
+		private final boolean forwardedToConsole;
+		private final boolean propagatedToEnclosingTap;
+
+		private OutputTap(
+			boolean buffered,
+			boolean forwardedToConsole,
+			boolean propagatedToEnclosingTap
+		) {
+			this.buffered = buffered;
+			this.forwardedToConsole = forwardedToConsole;
+			this.propagatedToEnclosingTap = propagatedToEnclosingTap;
+		}
+
+		/**
+		 * Creates a new {@code OutputTap} that additionally buffers the
+		 * output.
+		 * @return a new {@code OutputTap}.
+		 * @see #withBufferedOutput()
+		 */
+		public OutputTap andBuffered() {
+			return new OutputTap(
+				true,
+				forwardedToConsole,
+				propagatedToEnclosingTap
+			);
+		}
+
+		/**
+		 * Creates a new {@code OutputTap} that additionally forwards the
+		 * output to the original {@code System.err}/{@code System.out}.
+		 * @return a new {@code OutputTap}.
+		 * @see #withOutputForwardedToConsole()
+		 */
+		public OutputTap andForwardedToConsole() {
+			return new OutputTap(buffered, true, propagatedToEnclosingTap);
+		}
+
+		/**
+		 * Creates a new {@code OutputTap} that additionally passes the
+		 * output on to an enclosing tap after the statement has been
+		 * executed.
+		 * @return a new {@code OutputTap}.
+		 * @see #withOutputPropagatedToEnclosingTap()
+		 */
+		public OutputTap andPropagatedToEnclosingTap() {
+			return new OutputTap(buffered, forwardedToConsole, true);
+		}
+
+		/**
+		 * Executes the statement and returns the text that was written to
+		 * {@code System.err} by the statement.
+		 * @param statement an arbitrary piece of code.
+		 * @return text that is written to {@code System.err} by the
+		 * statement.
+		 * @throws Exception any exception thrown by the statement.
+		 * @see SystemLambda#tapSystemErr(Statement)
+		 */
+		public String tapSystemErr(
+			Statement statement
+		) throws Exception {
+			return tap(true, false, statement);
+		}
+
+		/**
+		 * Executes the statement and returns the text that was written to
+		 * {@code System.err} by the statement. New line characters are
+		 * replaced with a single {@code \n}.
+		 * @param statement an arbitrary piece of code.
+		 * @return text that is written to {@code System.err} by the
+		 * statement.
+		 * @throws Exception any exception thrown by the statement.
+		 * @see SystemLambda#tapSystemErrNormalized(Statement)
+		 */
+		public String tapSystemErrNormalized(
+			Statement statement
+		) throws Exception {
+			return tapSystemErr(statement)
+				.replace(lineSeparator(), "\n");
+		}
+
+		/**
+		 * Executes the statement and returns the text that was written to
+		 * {@code System.err} and {@code System.out} by the statement.
+		 * @param statement an arbitrary piece of code.
+		 * @return text that is written to {@code System.err} and
+		 * {@code System.out} by the statement.
+		 * @throws Exception any exception thrown by the statement.
+		 * @see SystemLambda#tapSystemErrAndOut(Statement)
+		 */
+		public String tapSystemErrAndOut(
+			Statement statement
+		) throws Exception {
+			return tap(true, true, statement);
+		}
+
+		/**
+		 * Executes the statement and returns the text that was written to
+		 * {@code System.err} and {@code System.out} by the statement. New
+		 * line characters are replaced with a single {@code \n}.
+		 * @param statement an arbitrary piece of code.
+		 * @return text that is written to {@code System.err} and
+		 * {@code System.out} by the statement.
+		 * @throws Exception any exception thrown by the statement.
+		 * @see SystemLambda#tapSystemErrAndOutNormalized(Statement)
+		 */
+		public String tapSystemErrAndOutNormalized(
+			Statement statement
+		) throws Exception {
+			return tapSystemErrAndOut(statement)
+				.replace(lineSeparator(), "\n");
+		}
+
+		/**
+		 * Executes the statement and returns the text that was written to
+		 * {@code System.out} by the statement.
+		 * @param statement an arbitrary piece of code.
+		 * @return text that is written to {@code System.out} by the
+		 * statement.
+		 * @throws Exception any exception thrown by the statement.
+		 * @see SystemLambda#tapSystemOut(Statement)
+		 */
+		public String tapSystemOut(
+			Statement statement
+		) throws Exception {
+			return tap(false, true, statement);
+		}
+
+		/**
+		 * Executes the statement and returns the text that was written to
+		 * {@code System.out} by the statement. New line characters are
+		 * replaced with a single {@code \n}.
+		 * @param statement an arbitrary piece of code.
+		 * @return text that is written to {@code System.out} by the
+		 * statement.
+		 * @throws Exception any exception thrown by the statement.
+		 * @see SystemLambda#tapSystemOutNormalized(Statement)
+		 */
+		public String tapSystemOutNormalized(
+			Statement statement
+		) throws Exception {
+			return tapSystemOut(statement)
+				.replace(lineSeparator(), "\n");
+		}
+
+		private String tap(
+			boolean tapErr,
+			boolean tapOut,
+			Statement statement
+		) throws Exception {
+			OutputStream enclosingStream = propagatedToEnclosingTap
+				&& !forwardedToConsole
+					? enclosingStream(tapErr, tapOut)
+					: null;
+			TapStream tapStream = new TapStream();
+			OutputStream target = buffered
+				? new BufferedOutputStream(tapStream, BUFFER_SIZE)
+				: tapStream;
+			AsyncForwarder forwarder = forwardedToConsole
+				? new AsyncForwarder(FORWARDER_CAPACITY, OverflowPolicy.BLOCK)
+				: null;
+			Statement statementWithTappedOut = tapOut
+				? () -> executeWithSystemOutTap(
+					teeIfForwarded(target, out, forwarder),
+					statement
+				)
+				: statement;
+			try {
+				if (tapErr)
+					executeWithSystemErrTap(
+						teeIfForwarded(target, err, forwarder),
+						statementWithTappedOut
+					);
+				else
+					statementWithTappedOut.execute();
+			} finally {
+				target.flush();
+				if (forwarder != null)
+					forwarder.close();
+				if (enclosingStream != null)
+					tapStream.propagateTo(enclosingStream);
+			}
+			return tapStream.textThatWasWritten();
+		}
+
+		/*
+		 * The output of a tap of System.err and System.out is propagated as
+		 * a whole. It goes to the tap that encloses System.out. If
+		 * System.out is not tapped then it goes to the tap that encloses
+		 * System.err.
+		 */
+		private OutputStream enclosingStream(
+			boolean tapErr,
+			boolean tapOut
+		) {
+			OutputStream enclosingErr = streamBehind(err);
+			OutputStream enclosingOut = streamBehind(out);
+			if (!tapOut)
+				return enclosingErr;
+			else if (tapErr
+				&& !(enclosingOut instanceof TapStream)
+				&& enclosingErr instanceof TapStream)
+				return enclosingErr;
+			else
+				return enclosingOut;
+		}
+
+		private OutputStream teeIfForwarded(
+			OutputStream target,
+			PrintStream console,
+			AsyncForwarder forwarder
+		) {
+			if (forwarder == null)
+				return target;
+			else
+				return new TeeStream(target, streamBehind(console), forwarder);
+		}
+
+		private void executeWithSystemErrTap(
+			OutputStream target,
+			Statement statement
+		) throws Exception {
+			if (buffered)
+				executeWithSystemErrReplacement(
+					new PrintStream(target, !AUTO_FLUSH, DEFAULT_ENCODING),
+					statement
+				);
+			else
+				executeWithSystemErrReplacement(target, statement);
+		}
+
+		private void executeWithSystemOutTap(
+			OutputStream target,
+			Statement statement
+		) throws Exception {
+			if (buffered)
+				executeWithSystemOutReplacement(
+					new PrintStream(target, !AUTO_FLUSH, DEFAULT_ENCODING),
+					statement
+				);
+			else
+				executeWithSystemOutReplacement(target, statement);
+		}
+	}
+
+	private static class TeeStream extends OutputStream {
+		private final OutputStream target;
+		private final OutputStream console;
+		private final AsyncForwarder forwarder;
+
+		TeeStream(
+			OutputStream target,
+			OutputStream console,
+			AsyncForwarder forwarder
+		) {
+			this.target = target;
+			this.console = console;
+			this.forwarder = forwarder;
+		}
+
+		@Override
+		public void write(
+			int b
+		) throws IOException {
+			target.write(b);
+			forwarder.forward(console, b);
+		}
+
+		@Override
+		public void write(
+			byte[] b,
+			int off,
+			int len
+		) throws IOException {
+			target.write(b, off, len);
+			forwarder.forward(console, b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			target.flush();
+		}
+	}
+
+	/**
+	 * An {@code AsyncForwarder} writes chunks of bytes to an
+	 * {@code OutputStream} in a background thread. The chunks are stored in a
+	 * lock-free queue. Chunks that are forwarded to the same stream one after
+	 * another are written as a single batch. Forwarding is best effort.
+	 * Chunks that cannot be written are dropped.
+	 * <p>The bytes of small writes are copied into shared segments of 1 KiB,
+	 * so that a write does not need an array of its own. A write is appended
+	 * to the last chunk if it goes to the same stream and the background
+	 * thread has not taken the chunk yet.
+	 * <p>The queue holds at most {@code capacity} bytes. The
+	 * {@link OverflowPolicy} determines what happens to a chunk when the
+	 * queue is full. A single chunk that is larger than the capacity is
+	 * accepted when the queue is empty.
+	 */
+	private static class AsyncForwarder {
+		private static final long WAIT_FOR_CAPACITY_NANOS = 100_000;
+		private static final int SEGMENT_SIZE = 1024;
+
+		private final Queue<Chunk> chunks = new ConcurrentLinkedQueue<>();
+		private final AtomicLong pendingBytes = new AtomicLong();
+		private final AtomicLong queuedBytes = new AtomicLong();
+		private final AtomicLong droppedBytes = new AtomicLong();
+		private final AtomicLong flushedBytes = new AtomicLong();
+		private final byte[] batch = new byte[BUFFER_SIZE];
+		private final long capacity;
+		private final OverflowPolicy overflowPolicy;
+		private final Thread thread;
+		private volatile boolean closed = false;
+		private volatile boolean overflowed = false;
+		//guarded by the forwarder. Only writers use them.
+		private final byte[] singleByte = new byte[1];
+		private byte[] segment = null;
+		private int segmentPosition = 0;
+		private Chunk lastChunk = null;
+
+		AsyncForwarder(
+			long capacity,
+			OverflowPolicy overflowPolicy
+		) {
+			this.capacity = capacity;
+			this.overflowPolicy = overflowPolicy;
+			thread = new Thread(this::forwardChunks, "System Lambda async forwarder");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		synchronized void forward(
+			OutputStream destination,
+			int b
+		) {
+			singleByte[0] = (byte) b;
+			forward(destination, singleByte, 0, 1);
+		}
+
+		synchronized void forward(
+			OutputStream destination,
+			byte[] bytes,
+			int offset,
+			int length
+		) {
+			if (closed || !reserveCapacity(length))
+				droppedBytes.addAndGet(length);
+			else if (length > SEGMENT_SIZE) {
+				lastChunk = null;
+				enqueue(
+					new Chunk(
+						destination,
+						Arrays.copyOfRange(bytes, offset, offset + length),
+						0,
+						length
+					)
+				);
+			} else {
+				if (segment == null || segmentPosition + length > SEGMENT_SIZE) {
+					segment = new byte[SEGMENT_SIZE];
+					segmentPosition = 0;
+					lastChunk = null;
+				}
+				int start = segmentPosition;
+				arraycopy(bytes, offset, segment, start, length);
+				segmentPosition += length;
+				if (lastChunk != null
+					&& lastChunk.destination == destination
+					&& lastChunk.append(length))
+					queuedBytes.addAndGet(length);
+				else {
+					lastChunk = new Chunk(destination, segment, start, length);
+					enqueue(lastChunk);
+				}
+			}
+		}
+
+		private void enqueue(
+			Chunk chunk
+		) {
+			chunks.add(chunk);
+			int length = chunk.length.get();
+			if (closed && chunks.remove(chunk)) {
+				//the forwarder may have finished before the chunk was added
+				lastChunk = null;
+				pendingBytes.addAndGet(-length);
+				droppedBytes.addAndGet(length);
+			} else {
+				queuedBytes.addAndGet(length);
+				LockSupport.unpark(thread);
+			}
+		}
+
+		private boolean reserveCapacity(
+			int length
+		) {
+			while (true) {
+				long pending = pendingBytes.get();
+				if (pending == 0 || pending + length <= capacity) {
+					if (pendingBytes.compareAndSet(pending, pending + length))
+						return true;
+				} else if (overflowPolicy == OverflowPolicy.FAIL) {
+					overflowed = true;
+					return false;
+				} else if (overflowPolicy == OverflowPolicy.DROP
+					|| closed
+					|| Thread.currentThread().isInterrupted())
+					return false;
+				else
+					LockSupport.parkNanos(WAIT_FOR_CAPACITY_NANOS);
+			}
+		}
+
+		/*
+		 * The queue is forwarded once more after the forwarder has been
+		 * closed. This forwards chunks that have been added by writers that
+		 * did not see the forwarder closed.
+		 */
+		private void forwardChunks() {
+			while (!closed)
+				if (!forwardQueuedChunks())
+					LockSupport.park(this);
+			forwardQueuedChunks();
+		}
+
+		/*
+		 * Returns false if the queue was empty.
+		 */
+		private boolean forwardQueuedChunks() {
+			Chunk chunk = chunks.poll();
+			if (chunk == null)
+				return false;
+			while (chunk != null)
+				chunk = writeBatchStartingWith(chunk);
+			return true;
+		}
+
+		/*
+		 * Returns the first chunk that is not part of the batch or null if
+		 * the queue is empty.
+		 */
+		private Chunk writeBatchStartingWith(
+			Chunk first
+		) {
+			OutputStream destination = first.destination;
+			int batchLength = 0;
+			long forwardedBytes = 0;
+			Chunk chunk = first;
+			do {
+				int length = chunk.take();
+				if (batchLength + length > batch.length) {
+					write(destination, batch, 0, batchLength);
+					batchLength = 0;
+				}
+				if (length > batch.length)
+					write(destination, chunk.bytes, chunk.offset, length);
+				else {
+					arraycopy(chunk.bytes, chunk.offset, batch, batchLength, length);
+					batchLength += length;
+				}
+				forwardedBytes += length;
+				chunk = chunks.poll();
+			} while (chunk != null && chunk.destination == destination);
+			write(destination, batch, 0, batchLength);
+			flush(destination);
+			pendingBytes.addAndGet(-forwardedBytes);
+			flushedBytes.addAndGet(forwardedBytes);
+			return chunk;
+		}
+
+		private void write(
+			OutputStream destination,
+			byte[] bytes,
+			int offset,
+			int length
+		) {
+			try {
+				if (length != 0)
+					destination.write(bytes, offset, length);
+			} catch (IOException | RuntimeException ignored) {
+			}
+		}
+
+		private void flush(
+			OutputStream destination
+		) {
+			try {
+				destination.flush();
+			} catch (IOException | RuntimeException ignored) {
+			}
+		}
+
+		/*
+		 * Waits until all chunks have been written.
+		 */
+		void close() throws InterruptedException {
+			closed = true;
+			LockSupport.unpark(thread);
+			thread.join();
+		}
+
+		/*
+		 * Throws an AssertionError if output has been dropped because the
+		 * queue was full and the overflow policy is FAIL.
+		 */
+		void checkOverflow() {
+			if (overflowed)
+				throw new AssertionError(
+					"The queue of " + capacity + " bytes was full. Dropped"
+						+ " bytes: " + droppedBytes.get() + "."
+				);
+		}
+
+		AsyncOutputStatistics statistics() {
+			return new AsyncOutputStatistics(
+				queuedBytes.get(),
+				droppedBytes.get(),
+				flushedBytes.get()
+			);
+		}
+
+		private static class Chunk {
+			final OutputStream destination;
+			final byte[] bytes;
+			final int offset;
+			//negative after the background thread has taken the chunk
+			final AtomicInteger length;
+
+			Chunk(
+				OutputStream destination,
+				byte[] bytes,
+				int offset,
+				int length
+			) {
+				this.destination = destination;
+				this.bytes = bytes;
+				this.offset = offset;
+				this.length = new AtomicInteger(length);
+			}
+
+			/*
+			 * Adds the bytes after the end of the chunk. They must have been
+			 * copied before. Returns false if the background thread has
+			 * already taken the chunk.
+			 */
+			boolean append(
+				int additionalLength
+			) {
+				int current = length.get();
+				while (current >= 0)
+					if (length.compareAndSet(current, current + additionalLength))
+						return true;
+					else
+						current = length.get();
+				return false;
+			}
+
+			/*
+			 * Returns the length and prevents further appends.
+			 */
+			int take() {
+				return length.getAndSet(-1);
+			}
+		}
+	}
+
+	private static class AsyncStream extends OutputStream {
+		private final OutputStream destination;
+		private final AsyncForwarder forwarder;
+
+		AsyncStream(
+			OutputStream destination,
+			AsyncForwarder forwarder
+		) {
+			this.destination = destination;
+			this.forwarder = forwarder;
+		}
+
+		@Override
+		public void write(
+			int b
+		) {
+			forwarder.forward(destination, b);
+		}
+
+		@Override
+		public void write(
+			byte[] b,
+			int off,
+			int len
+		) {
+			forwarder.forward(destination, b, off, len);
+		}
+	}
+
+	/**
+	 * Determines what happens to output of
+	 * {@link #withAsyncSystemErr(long, OverflowPolicy, Statement)},
+	 * {@link #withAsyncSystemOut(long, OverflowPolicy, Statement)},
+	 * {@link #publishSystemErr(int, OverflowPolicy, LineSubscriber, Statement)}
+	 * and
+	 * {@link #publishSystemOut(int, OverflowPolicy, LineSubscriber, Statement)}
+	 * when the buffer is full.
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * The code under test waits until there is enough space in the
+		 * queue.
+		 */
+		BLOCK,
+
+		/**
+		 * The output is dropped. The number of dropped bytes is available
+		 * from {@link AsyncOutputStatistics#droppedBytes()}. The number of
+		 * dropped lines is returned by the publishers.
+		 */
+		DROP,
+
+		/**
+		 * The output is dropped and an {@code AssertionError} is thrown
+		 * after the statement has been executed. A publisher also cancels
+		 * the subscription and calls the subscriber's {@code onError} with
+		 * an {@code IllegalStateException}.
+		 */
+		FAIL
+	}
+
+	/**
+	 * The number of bytes that have been handled by
+	 * {@link #withAsyncSystemErr(Statement)} or
+	 * {@link #withAsyncSystemOut(Statement)}.
+	 */
+	public static final class AsyncOutputStatistics {
+		private final long queuedBytes;
+		private final long droppedBytes;
+		private final long flushedBytes;
+
+		private AsyncOutputStatistics(
+			long queuedBytes,
+			long droppedBytes,
+			long flushedBytes
+		) {
+			this.queuedBytes = queuedBytes;
+			this.droppedBytes = droppedBytes;
+			this.flushedBytes = flushedBytes;
+		}
+
+		/**
+		 * Returns the number of bytes that have been put into the queue.
+		 * @return the number of bytes that have been put into the queue.
+		 */
+		public long queuedBytes() {
+			return queuedBytes;
+		}
+
+		/**
+		 * Returns the number of bytes that have been dropped because the
+		 * queue was full.
+		 * @return the number of bytes that have been dropped.
+		 */
+		public long droppedBytes() {
+			return droppedBytes;
+		}
+
+		/**
+		 * Returns the number of bytes that have been written to the original
+		 * stream.
+		 * @return the number of bytes that have been written to the original
+		 * stream.
+		 */
+		public long flushedBytes() {
+			return flushedBytes;
+		}
+	}
+
+	private static class ProfilingStream extends OutputStream {
+		private final TapStream tapStream = new TapStream();
+		private final List<OutputProfile.WriteEvent> events = new ArrayList<>();
+
+		@Override
+		public synchronized void write(
+			int b
+		) {
+			record(1);
+			tapStream.write(b);
+		}
+
+		@Override
+		public synchronized void write(
+			byte[] b,
+			int off,
+			int len
+		) {
+			record(len);
+			tapStream.write(b, off, len);
+		}
+
+		private void record(
+			int byteCount
+		) {
+			events.add(
+				new OutputProfile.WriteEvent(
+					Thread.currentThread().getName(),
+					nanoTime(),
+					byteCount,
+					callSite()
+				)
+			);
+		}
+
+		private StackTraceElement callSite() {
+			for (StackTraceElement element: new Throwable().getStackTrace())
+				if (!isInternalFrame(element.getClassName()))
+					return element;
+			return null;
+		}
+
+		private boolean isInternalFrame(
+			String className
+		) {
+			return className.startsWith("java.")
+				|| className.startsWith("sun.")
+				|| className.startsWith("jdk.")
+				|| className.equals(SystemLambda.class.getName())
+				|| className.startsWith(SystemLambda.class.getName() + "$");
+		}
+
+		synchronized OutputProfile profile() {
+			return new OutputProfile(
+				tapStream.textThatWasWritten(),
+				new ArrayList<>(events)
+			);
+		}
+	}
+
+	/**
+	 * The writes to {@code System.err} or {@code System.out} that were
+	 * recorded by {@link #profileSystemErr(Statement)} or
+	 * {@link #profileSystemOut(Statement)}.
+	 * <p>A write is a chunk of bytes that reaches the stream that is wrapped
+	 * by {@code System.err}/{@code System.out}. E.g. a single call of
+	 * {@code print(String)} is a single write while {@code println(String)}
+	 * is a write of the text followed by a write of the line separator.
+	 */
+	public static final class OutputProfile {
+		private final String text;
+		private final List<WriteEvent> writeEvents;
+
+		private OutputProfile(
+			String text,
+			List<WriteEvent> writeEvents
+		) {
+			this.text = text;
+			this.writeEvents = unmodifiableList(writeEvents);
+		}
+
+		/**
+		 * Returns the text that was written by the statement.
+		 * @return the text that was written by the statement.
+		 */
+		public String text() {
+			return text;
+		}
+
+		/**
+		 * Returns all writes in the order they happened.
+		 * @return all writes in the order they happened.
+		 */
+		public List<WriteEvent> writeEvents() {
+			return writeEvents;
+		}
+
+		/**
+		 * Returns the number of bytes and writes per call site. The call
+		 * site with the most bytes is the first element of the list.
+		 * @return the number of bytes and writes per call site.
+		 */
+		public List<CallSite> callSites() {
+			Map<StackTraceElement, CallSite> callSites = new LinkedHashMap<>();
+			for (WriteEvent event: writeEvents)
+				callSites
+					.computeIfAbsent(
+						event.callSite,
+						CallSite::new
+					)
+					.add(event);
+			List<CallSite> sortedCallSites = new ArrayList<>(callSites.values());
+			sortedCallSites.sort(
+				Comparator.comparingLong(CallSite::bytes)
+					.thenComparingLong(CallSite::writes)
+					.reversed()
+			);
+			return sortedCallSites;
+		}
+
+		/**
+		 * Returns a human readable summary of {@link #callSites()}. It has a
+		 * line with bytes, writes and the call site for each call site.
+		 * @return a human readable summary of the call sites.
+		 */
+		public String report() {
+			StringBuilder report = new StringBuilder();
+			report.append(writeEvents.size())
+				.append(" writes with ")
+				.append(totalBytes())
+				.append(" bytes")
+				.append(lineSeparator());
+			for (CallSite callSite: callSites())
+				report.append(callSite.bytes())
+					.append(" bytes, ")
+					.append(callSite.writes())
+					.append(" writes: ")
+					.append(
+						callSite.callSite() == null
+							? "unknown call site"
+							: callSite.callSite().toString()
+					)
+					.append(lineSeparator());
+			return report.toString();
+		}
+
+		private long totalBytes() {
+			long bytes = 0;
+			for (WriteEvent event: writeEvents)
+				bytes += event.byteCount;
+			return bytes;
+		}
+
+		/**
+		 * A single write to {@code System.err} or {@code System.out}.
+		 */
+		public static final class WriteEvent {
+			private final String threadName;
+			private final long timestampNanos;
+			private final int byteCount;
+			private final StackTraceElement callSite;
+
+			private WriteEvent(
+				String threadName,
+				long timestampNanos,
+				int byteCount,
+				StackTraceElement callSite
+			) {
+				this.threadName = threadName;
+				this.timestampNanos = timestampNanos;
+				this.byteCount = byteCount;
+				this.callSite = callSite;
+			}
+
+			/**
+			 * Returns the name of the thread that wrote the bytes.
+			 * @return the name of the thread that wrote the bytes.
+			 */
+			public String threadName() {
+				return threadName;
+			}
+
+			/**
+			 * Returns the value of {@link System#nanoTime()} at the time of
+			 * the write.
+			 * @return the value of {@code System.nanoTime()} at the time of
+			 * the write.
+			 */
+			public long timestampNanos() {
+				return timestampNanos;
+			}
+
+			/**
+			 * Returns the number of bytes that were written.
+			 * @return the number of bytes that were written.
+			 */
+			public int byteCount() {
+				return byteCount;
+			}
+
+			/**
+			 * Returns the first stack frame outside of the JDK and System
+			 * Lambda or {@code null} if there is no such frame.
+			 * @return the code that wrote the bytes.
+			 */
+			public StackTraceElement callSite() {
+				return callSite;
+			}
+		}
+
+		/**
+		 * The number of bytes and writes of a single call site.
+		 */
+		public static final class CallSite {
+			private final StackTraceElement callSite;
+			private long bytes;
+			private long writes;
+
+			private CallSite(
+				StackTraceElement callSite
+			) {
+				this.callSite = callSite;
+			}
+
+			private void add(
+				WriteEvent event
+			) {
+				bytes += event.byteCount;
+				++writes;
+			}
+
+			/**
+			 * Returns the code that wrote the bytes or {@code null} if it is
+			 * unknown.
+			 * @return the code that wrote the bytes.
+			 */
+			public StackTraceElement callSite() {
+				return callSite;
+			}
+
+			/**
+			 * Returns the number of bytes that were written by the call
+			 * site.
+			 * @return the number of bytes that were written by the call site.
+			 */
+			public long bytes() {
+				return bytes;
+			}
+
+			/**
+			 * Returns the number of writes by the call site.
+			 * @return the number of writes by the call site.
+			 */
+			public long writes() {
+				return writes;
+			}
+		}
+	}
+
+	/**
+	 * A {@code MutedPrintStream} ignores all calls. Other than a
+	 * {@code PrintStream} that wraps a {@link NoopStream} it neither converts
+	 * arguments to text nor encodes text nor flushes.
+	 */
+	private static class MutedPrintStream extends PrintStream {
+		MutedPrintStream() {
+			super(new NoopStream());
+		}
+
+		@Override
+		public void print(boolean b) {
+		}
+
+		@Override
+		public void print(char c) {
+		}
+
+		@Override
+		public void print(int i) {
+		}
+
+		@Override
+		public void print(long l) {
+		}
+
+		@Override
+		public void print(float f) {
+		}
+
+		@Override
+		public void print(double d) {
+		}
+
+		@Override
+		public void print(char[] s) {
+		}
+
+		@Override
+		public void print(String s) {
+		}
+
+		@Override
+		public void print(Object obj) {
+		}
+
+		@Override
+		public void println() {
+		}
+
+		@Override
+		public void println(boolean x) {
+		}
+
+		@Override
+		public void println(char x) {
+		}
+
+		@Override
+		public void println(int x) {
+		}
+
+		@Override
+		public void println(long x) {
+		}
+
+		@Override
+		public void println(float x) {
+		}
+
+		@Override
+		public void println(double x) {
+		}
+
+		@Override
+		public void println(char[] x) {
+		}
+
+		@Override
+		public void println(String x) {
+		}
+
+		@Override
+		public void println(Object x) {
+		}
+
+		@Override
+		public PrintStream printf(
+			String format,
+			Object... args
+		) {
+			return this;
+		}
+
+		@Override
+		public PrintStream printf(
+			Locale l,
+			String format,
+			Object... args
+		) {
+			return this;
+		}
+
+		@Override
+		public PrintStream format(
+			String format,
+			Object... args
+		) {
+			return this;
+		}
+
+		@Override
+		public PrintStream format(
+			Locale l,
+			String format,
+			Object... args
+		) {
+			return this;
+		}
+
+		@Override
+		public PrintStream append(
+			CharSequence csq
+		) {
+			return this;
+		}
+
+		@Override
+		public PrintStream append(
+			CharSequence csq,
+			int start,
+			int end
+		) {
+			return this;
+		}
+
+		@Override
+		public PrintStream append(
+			char c
+		) {
+			return this;
+		}
+
+		@Override
+		public void write(
+			int b
+		) {
+		}
+
+		@Override
+		public void write(
+			byte[] b
+		) {
+		}
+
+		@Override
+		public void write(
+			byte[] buf,
+			int off,
+			int len
+		) {
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private static class RecordingPrintStream extends PrintStream {
+		private final List<PrintRecording.PrintCall> calls = new ArrayList<>();
+
+		RecordingPrintStream() {
+			super(new NoopStream());
+		}
+
+		private synchronized void record(
+			String method,
+			Locale locale,
+			String format,
+			Object... arguments
+		) {
+			calls.add(
+				new PrintRecording.PrintCall(method, locale, format, arguments)
+			);
+		}
+
+		synchronized PrintRecording recording() {
+			return new PrintRecording(new ArrayList<>(calls));
+		}
+
+		@Override
+		public void print(boolean b) {
+			record("print", null, null, b);
+		}
+
+		@Override
+		public void print(char c) {
+			record("print", null, null, c);
+		}
+
+		@Override
+		public void print(int i) {
+			record("print", null, null, i);
+		}
+
+		@Override
+		public void print(long l) {
+			record("print", null, null, l);
+		}
+
+		@Override
+		public void print(float f) {
+			record("print", null, null, f);
+		}
+
+		@Override
+		public void print(double d) {
+			record("print", null, null, d);
+		}
+
+		@Override
+		public void print(char[] s) {
+			if (s == null)
+				throw new NullPointerException();
+			record("print", null, null, (Object) s);
+		}
+
+		@Override
+		public void print(String s) {
+			record("print", null, null, s);
+		}
+
+		@Override
+		public void print(Object obj) {
+			record("print", null, null, obj);
+		}
+
+		@Override
+		public void println() {
+			record("println", null, null);
+		}
+
+		@Override
+		public void println(boolean x) {
+			record("println", null, null, x);
+		}
+
+		@Override
+		public void println(char x) {
+			record("println", null, null, x);
+		}
+
+		@Override
+		public void println(int x) {
+			record("println", null, null, x);
+		}
+
+		@Override
+		public void println(long x) {
+			record("println", null, null, x);
+		}
+
+		@Override
+		public void println(float x) {
+			record("println", null, null, x);
+		}
+
+		@Override
+		public void println(double x) {
+			record("println", null, null, x);
+		}
+
+		@Override
+		public void println(char[] x) {
+			if (x == null)
+				throw new NullPointerException();
+			record("println", null, null, (Object) x);
+		}
+
+		@Override
+		public void println(String x) {
+			record("println", null, null, x);
+		}
+
+		@Override
+		public void println(Object x) {
+			record("println", null, null, x);
+		}
+
+		@Override
+		public PrintStream printf(
+			String format,
+			Object... args
+		) {
+			return printf(Locale.getDefault(Locale.Category.FORMAT), format, args);
+		}
+
+		@Override
+		public PrintStream printf(
+			Locale l,
+			String format,
+			Object... args
+		) {
+			if (format == null)
+				throw new NullPointerException();
+			record("printf", l, format, args);
+			return this;
+		}
+
+		@Override
+		public PrintStream format(
+			String format,
+			Object... args
+		) {
+			return format(Locale.getDefault(Locale.Category.FORMAT), format, args);
+		}
+
+		@Override
+		public PrintStream format(
+			Locale l,
+			String format,
+			Object... args
+		) {
+			if (format == null)
+				throw new NullPointerException();
+			record("format", l, format, args);
+			return this;
+		}
+
+		@Override
+		public PrintStream append(
+			CharSequence csq
+		) {
+			record("append", null, null, String.valueOf(csq));
+			return this;
 		}
-	}
 
-	private static PrintStream wrap(
-		OutputStream outputStream
-	) throws UnsupportedEncodingException {
-		return new PrintStream(
-			outputStream,
-			AUTO_FLUSH,
-			DEFAULT_ENCODING
-		);
-	}
+		@Override
+		public PrintStream append(
+			CharSequence csq,
+			int start,
+			int end
+		) {
+			CharSequence cs = csq == null ? "null" : csq;
+			record("append", null, null, cs.subSequence(start, end).toString());
+			return this;
+		}
+
+		@Override
+		public PrintStream append(
+			char c
+		) {
+			record("append", null, null, c);
+			return this;
+		}
 
-	private static class DisallowWriteStream extends OutputStream {
 		@Override
 		public void write(
 			int b
 		) {
-			throw new AssertionError(
-				"Tried to write '"
-					+ (char) b
-					+ "' although this is not allowed."
-			);
+			record("write", null, null, new byte[] { (byte) b });
 		}
-	}
 
-	private static class NoopStream extends OutputStream {
 		@Override
 		public void write(
-			int b
+			byte[] buf,
+			int off,
+			int len
 		) {
+			record("write", null, null, Arrays.copyOfRange(buf, off, off + len));
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
 		}
 	}
 
 	/**
-	 * A stub that defines the text provided by {@code System.in}. The methods
-	 * {@link #andExceptionThrownOnInputEnd(IOException)} and
-	 * {@link #andExceptionThrownOnInputEnd(RuntimeException)} can be used to
-	 * simulate a {@code System.in} that throws an exception.
-	 * <p>The specified behaviour of {@code System.in} is applied to an
-	 * arbitrary piece of code that is provided to {@link #execute(Statement)}.
+	 * The calls on {@code System.err} or {@code System.out} that were recorded
+	 * by {@link #recordSystemErr(Statement)} or
+	 * {@link #recordSystemOut(Statement)}.
 	 */
-	public static class SystemInStub {
-		private IOException ioException;
-		private RuntimeException runtimeException;
-		private final String text;
+	public static final class PrintRecording {
+		private final List<PrintCall> calls;
 
-		private SystemInStub(
-			String text
+		private PrintRecording(
+			List<PrintCall> calls
 		) {
-			this.text = text;
+			this.calls = unmodifiableList(calls);
 		}
 
 		/**
-		 * Sets an exception that is thrown after the text is read.
-		 * @param exception the {@code IOException} to be thrown.
-		 * @return the {@code SystemInStub} itself.
-		 * @throws IllegalStateException if a {@code RuntimeException} was
-		 * already set by
-		 * {@link #andExceptionThrownOnInputEnd(RuntimeException)}
+		 * Returns all calls in the order they happened.
+		 * @return all calls in the order they happened.
 		 */
-		public SystemInStub andExceptionThrownOnInputEnd(
-			IOException exception
-		) {
-			if (runtimeException != null)
-				throw new IllegalStateException("You cannot call"
-					+ " andExceptionThrownOnInputEnd(IOException) because"
-					+ " andExceptionThrownOnInputEnd(RuntimeException) has"
-					+ " already been called.");
-			this.ioException = exception;
-			return this;
+		public List<PrintCall> calls() {
+			return calls;
 		}
 
 		/**
-		 * Sets an exception that is thrown after the text is read.
-		 * @param exception the {@code RuntimeException} to be thrown.
-		 * @return the {@code SystemInStub} itself.
-		 * @throws IllegalStateException if an {@code IOException} was already
-		 * set by {@link #andExceptionThrownOnInputEnd(IOException)}
+		 * Returns the text that would have been written by the calls. The
+		 * arguments are formatted when this method is called.
+		 * @return the text that would have been written by the calls.
 		 */
-		public SystemInStub andExceptionThrownOnInputEnd(
-			RuntimeException exception
-		) {
-			if (ioException != null)
-				throw new IllegalStateException("You cannot call"
-					+ " andExceptionThrownOnInputEnd(RuntimeException) because"
-					+ " andExceptionThrownOnInputEnd(IOException) has already"
-					+ " been called.");
-			this.runtimeException = exception;
-			return this;
+		public String text() {
+			StringBuilder text = new StringBuilder();
+			ByteArrayOutputStream pendingBytes = new ByteArrayOutputStream();
+			for (PrintCall call: calls)
+				if (call.method.equals("write"))
+					pendingBytes.write(
+						(byte[]) call.arguments[0],
+						0,
+						((byte[]) call.arguments[0]).length
+					);
+				else {
+					appendAndReset(text, pendingBytes);
+					call.appendTextTo(text);
+				}
+			appendAndReset(text, pendingBytes);
+			return text.toString();
 		}
 
-		/**
-		 * Executes the statement and lets {@code System.in} provide the
-		 * specified text during the execution. After the text was read it
-		 * throws and exception when {@code System.in#read} is called and an
-		 * exception was specified by
-		 * {@link #andExceptionThrownOnInputEnd(IOException)} or
-		 * {@link #andExceptionThrownOnInputEnd(RuntimeException)}.
-		 * @param statement an arbitrary piece of code.
-		 * @throws Exception any exception thrown by the statement.
-		 */
-		public void execute(
-			Statement statement
-		) throws Exception {
-			InputStream stubStream = new ReplacementInputStream(
-				text, ioException, runtimeException
-			);
-			InputStream originalIn = System.in;
-			try {
-				setIn(stubStream);
-				statement.execute();
-			} finally {
-				setIn(originalIn);
+		private void appendAndReset(
+			StringBuilder text,
+			ByteArrayOutputStream pendingBytes
+		) {
+			if (pendingBytes.size() != 0) {
+				text.append(
+					new String(pendingBytes.toByteArray(), defaultCharset())
+				);
+				pendingBytes.reset();
 			}
 		}
 
+		/**
+		 * A single call of a method of {@code PrintStream}.
+		 */
+		public static final class PrintCall {
+			private final String method;
+			private final Locale locale;
+			private final String format;
+			private final Object[] arguments;
 
-		private static class ReplacementInputStream extends InputStream {
-			private final StringReader reader;
-			private final IOException ioException;
-			private final RuntimeException runtimeException;
-
-			ReplacementInputStream(
-				String text,
-				IOException ioException,
-				RuntimeException runtimeException
+			private PrintCall(
+				String method,
+				Locale locale,
+				String format,
+				Object[] arguments
 			) {
-				this.reader = new StringReader(text);
-				this.ioException = ioException;
-				this.runtimeException = runtimeException;
+				this.method = method;
+				this.locale = locale;
+				this.format = format;
+				this.arguments = arguments;
 			}
 
-			@Override
-			public int read(
-			) throws IOException {
-				int character = reader.read();
-				if (character == -1)
-					handleEmptyReader();
-				return character;
+			/**
+			 * Returns the name of the method, e.g. {@code println}.
+			 * @return the name of the method.
+			 */
+			public String method() {
+				return method;
 			}
 
-			private void handleEmptyReader(
-			) throws IOException {
-				if (ioException != null)
-					throw ioException;
-				else if (runtimeException != null)
-					throw runtimeException;
+			/**
+			 * Returns the locale that is used by {@code printf} and
+			 * {@code format} or {@code null} for all other methods.
+			 * @return the locale that is used for formatting.
+			 */
+			public Locale locale() {
+				return locale;
 			}
 
-			@Override
-			public int read(
-				byte[] buffer,
-				int offset,
-				int len
-			) throws IOException {
-				if (buffer == null)
-					throw new NullPointerException();
-				else if (offset < 0 || len < 0 || len > buffer.length - offset)
-					throw new IndexOutOfBoundsException();
-				else if (len == 0)
-					return 0;
-				else
-					return readNextLine(buffer, offset, len);
+			/**
+			 * Returns the format string of {@code printf} and
+			 * {@code format} or {@code null} for all other methods.
+			 * @return the format string.
+			 */
+			public String format() {
+				return format;
 			}
 
-			private int readNextLine(
-				byte[] buffer,
-				int offset,
-				int len
-			) throws IOException {
-				int c = read();
-				if (c == -1)
-					return -1;
-				buffer[offset] = (byte) c;
+			/**
+			 * Returns the arguments of the call. Primitive values are boxed.
+			 * The arguments of {@code write} are copied into a single
+			 * {@code byte[]}.
+			 * @return the arguments of the call.
+			 */
+			public List<Object> arguments() {
+				return arguments == null
+					? singletonList(null)
+					: unmodifiableList(asList(arguments));
+			}
+
+			/**
+			 * Returns the text that is written by this call. The arguments
+			 * are formatted when this method is called.
+			 * @return the text that is written by this call.
+			 */
+			public String text() {
+				StringBuilder text = new StringBuilder();
+				appendTextTo(text);
+				return text.toString();
+			}
 
-				int i = 1;
-				for (; (i < len) && !isCompleteLineWritten(buffer, i - 1); ++i) {
-					byte read = (byte) read();
-					if (read == -1)
+			private void appendTextTo(
+				StringBuilder text
+			) {
+				switch (method) {
+					case "printf":
+					case "format":
+						text.append(String.format(locale, format, arguments));
 						break;
-					else
-						buffer[offset + i] = read;
+					case "write":
+						text.append(
+							new String((byte[]) arguments[0], defaultCharset())
+						);
+						break;
+					default:
+						if (arguments.length == 1)
+							appendValue(text, arguments[0]);
+						if (method.equals("println"))
+							text.append(lineSeparator());
 				}
-				return i;
 			}
 
-			private boolean isCompleteLineWritten(
-				byte[] buffer,
-				int indexLastByteWritten
+			private void appendValue(
+				StringBuilder text,
+				Object value
 			) {
-				byte[] separator = getProperty("line.separator")
-					.getBytes(defaultCharset());
-				int indexFirstByteOfSeparator = indexLastByteWritten
-					- separator.length + 1;
-				return indexFirstByteOfSeparator >= 0
-					&& contains(buffer, separator, indexFirstByteOfSeparator);
-			}
-
-			private boolean contains(
-				byte[] array,
-				byte[] pattern,
-				int indexStart
-			) {
-				for (int i = 0; i < pattern.length; ++i)
-					if (array[indexStart + i] != pattern[i])
-						return false;
-				return true;
+				if (value instanceof char[])
+					text.append((char[]) value);
+				else
+					text.append(value);
 			}
 		}
 	}
 
-	private static class TapStream extends OutputStream {
-		final ByteArrayOutputStream text = new ByteArrayOutputStream();
+	private static class LogRecordTap extends Handler {
+		private final LogRecord[] records;
+		private long numberOfRecords = 0;
+
+		LogRecordTap(
+			int capacity
+		) {
+			records = new LogRecord[capacity];
+			setLevel(Level.ALL);
+		}
 
 		@Override
-		public void write(
-			int b
+		public synchronized void publish(
+			LogRecord record
 		) {
-			text.write(b);
+			if (record != null) {
+				records[(int) (numberOfRecords % records.length)] = record;
+				++numberOfRecords;
+			}
 		}
 
-		String textThatWasWritten() {
-			return text.toString();
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+
+		synchronized List<LogRecord> records() {
+			int size = (int) Math.min(numberOfRecords, records.length);
+			List<LogRecord> list = new ArrayList<>(size);
+			for (long i = numberOfRecords - size; i < numberOfRecords; ++i)
+				list.add(records[(int) (i % records.length)]);
+			return unmodifiableList(list);
+		}
+	}
+
+	private static class ProcessWithDrainedOutput extends Process {
+		private final Process process;
+		private final OutputDrainer drainerOfErr;
+		private final OutputDrainer drainerOfOut;
+
+		ProcessWithDrainedOutput(
+			Process process,
+			OutputDrainer drainerOfErr,
+			OutputDrainer drainerOfOut
+		) {
+			this.process = process;
+			this.drainerOfErr = drainerOfErr;
+			this.drainerOfOut = drainerOfOut;
+		}
+
+		@Override
+		public OutputStream getOutputStream() {
+			return process.getOutputStream();
+		}
+
+		@Override
+		public InputStream getInputStream() {
+			return drainerOfOut == null
+				? process.getInputStream()
+				: EmptyInputStream.INSTANCE;
+		}
+
+		@Override
+		public InputStream getErrorStream() {
+			return drainerOfErr == null
+				? process.getErrorStream()
+				: EmptyInputStream.INSTANCE;
+		}
+
+		@Override
+		public int waitFor() throws InterruptedException {
+			int exitValue = process.waitFor();
+			awaitDrained(drainerOfErr);
+			awaitDrained(drainerOfOut);
+			return exitValue;
+		}
+
+		@Override
+		public boolean waitFor(
+			long timeout,
+			TimeUnit unit
+		) throws InterruptedException {
+			long deadline = nanoTime() + unit.toNanos(timeout);
+			return process.waitFor(timeout, unit)
+				&& awaitDrained(drainerOfErr, deadline)
+				&& awaitDrained(drainerOfOut, deadline);
+		}
+
+		@Override
+		public int exitValue() {
+			return process.exitValue();
+		}
+
+		@Override
+		public void destroy() {
+			process.destroy();
+		}
+
+		@Override
+		public Process destroyForcibly() {
+			process.destroyForcibly();
+			return this;
+		}
+
+		@Override
+		public boolean isAlive() {
+			return process.isAlive();
+		}
+
+		/*
+		 * Overrides Process.pid() of Java 9 and later. The method of the
+		 * started process is called by reflection because this library is
+		 * built for Java 8.
+		 */
+		public long pid() {
+			try {
+				return (Long) Process.class.getMethod("pid").invoke(process);
+			} catch (InvocationTargetException e) {
+				Throwable failure = e.getCause();
+				if (failure instanceof RuntimeException)
+					throw (RuntimeException) failure;
+				else
+					throw new UnsupportedOperationException(failure);
+			} catch (ReflectiveOperationException e) {
+				throw new UnsupportedOperationException(e);
+			}
+		}
+
+		private void awaitDrained(
+			OutputDrainer drainer
+		) throws InterruptedException {
+			if (drainer != null)
+				drainer.join();
+		}
+
+		private boolean awaitDrained(
+			OutputDrainer drainer,
+			long deadline
+		) throws InterruptedException {
+			if (drainer != null) {
+				long remainingMillis = MILLISECONDS.convert(
+					deadline - nanoTime(), NANOSECONDS);
+				if (remainingMillis > 0)
+					drainer.join(remainingMillis);
+				return !drainer.isAlive();
+			} else
+				return true;
+		}
+	}
+
+	private static class OutputDrainer extends Thread {
+		private final ReadableByteChannel pipe;
+		private final PrintStream target;
+
+		OutputDrainer(
+			InputStream pipe,
+			PrintStream target
+		) {
+			super("System Lambda output drainer");
+			this.pipe = Channels.newChannel(pipe);
+			this.target = target;
+			setDaemon(true);
+			start();
+		}
+
+		@Override
+		public void run() {
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			try {
+				while (pipe.read(buffer) != -1) {
+					target.write(buffer.array(), 0, buffer.position());
+					buffer.clear();
+				}
+				pipe.close();
+			} catch (IOException e) {
+				//the pipe is closed when the process is destroyed. There is
+				//no more output in this case.
+			}
+		}
+	}
+
+	private static class EmptyInputStream extends InputStream {
+		static final EmptyInputStream INSTANCE = new EmptyInputStream();
+
+		@Override
+		public int read() {
+			return -1;
+		}
+
+		@Override
+		public int available() {
+			return 0;
 		}
 	}
 
@@ -1282,6 +8602,57 @@ public class SystemLambda {
 			}
 		}
 
+		/**
+		 * Executes a statement with environment variable values according to
+		 * what was set before. The changes to environment variables are
+		 * reverted when the {@code CompletionStage} that is returned by the
+		 * statement completes. Therefore work that is still running after the
+		 * statement has returned sees the environment variables, too.
+		 * <pre>
+		 * &#064;Test
+		 * void execute_asynchronous_code_with_environment_variables(
+		 * ) throws Exception {
+		 *   withEnvironmentVariable("first", "first value")
+		 *     .executeAsync((){@literal ->} CompletableFuture.runAsync(
+		 *       (){@literal ->} assertEquals(
+		 *         "first value",
+		 *         System.getenv("first")
+		 *       )
+		 *     ))
+		 *     .get();
+		 * }
+		 * </pre>
+		 * <p>The environment variables are changed for all threads while the
+		 * stage is not completed.
+		 * <p><b>Warning:</b> This method uses reflection for modifying internals of the
+		 * environment variables map. It fails if your {@code SecurityManager} forbids
+		 * such modifications.
+		 * @param statement an arbitrary piece of code that returns a
+		 * {@code CompletionStage}.
+		 * @return a future that completes after the environment variables
+		 * have been reverted. It completes exceptionally with the exception
+		 * of the statement or of the stage.
+		 * @since 1.3.0
+		 * @see #withEnvironmentVariable(String, String)
+		 * @see WithEnvironmentVariables#and(String, String)
+		 * @see #execute(Statement)
+		 */
+		public CompletableFuture<Void> executeAsync(
+			AsyncStatement statement
+		) {
+			Map<String, String> originalVariables = new HashMap<>(getenv());
+			try {
+				setEnvironmentVariables();
+			} catch (RuntimeException e) {
+				restoreOriginalVariables(originalVariables);
+				throw e;
+			}
+			return executeAndCleanUpAsync(
+				statement,
+				failure -> restoreOriginalVariables(originalVariables)
+			);
+		}
+
 		private void setEnvironmentVariables() {
 			overrideVariables(
 				getEditableMapOfVariables()
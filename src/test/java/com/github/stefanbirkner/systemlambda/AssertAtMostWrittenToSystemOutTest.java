@@ -0,0 +1,153 @@
+package com.github.stefanbirkner.systemlambda;
+
+import com.github.stefanbirkner.systemlambda.SystemLambda.OutputBudget;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static com.github.stefanbirkner.systemlambda.SystemLambda.assertAtMostWrittenToSystemOut;
+import static java.lang.System.lineSeparator;
+import static java.lang.System.out;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class AssertAtMostWrittenToSystemOutTest {
+
+	@Test
+	void execution_of_statement_is_not_intercepted_when_it_stays_within_budget(
+	) throws Exception {
+		assertAtMostWrittenToSystemOut(
+			OutputBudget.lines(2).andBytes(100).andWrites(4),
+			() -> {
+				out.println("first line");
+				out.println("second line");
+			}
+		);
+	}
+
+	@Test
+	void text_after_last_line_break_counts_as_line(
+	) {
+		Throwable exception = catchThrowable(
+			() -> assertAtMostWrittenToSystemOut(
+				OutputBudget.lines(1),
+				() -> {
+					out.println("first line");
+					out.print("second line");
+				}
+			)
+		);
+		assertThat(exception)
+			.isInstanceOf(AssertionError.class);
+	}
+
+	@Nested
+	class throws_AssertionError_with_first_lines_when_statement_writes_too_many {
+		@Test
+		void bytes(
+		) {
+			Throwable exception = catchThrowable(
+				() -> assertAtMostWrittenToSystemOut(
+					OutputBudget.bytes(3),
+					() -> out.print("text")
+				)
+			);
+			assertThat(exception)
+				.isInstanceOf(AssertionError.class)
+				.hasMessage(
+					"Wrote 4 bytes, 1 lines and 1 writes to System.out"
+						+ " although at most 3 bytes are allowed. The first"
+						+ " lines are:" + lineSeparator() + "text"
+				);
+		}
+
+		@Test
+		void lines(
+		) {
+			Throwable exception = catchThrowable(
+				() -> assertAtMostWrittenToSystemOut(
+					OutputBudget.lines(1),
+					() -> {
+						out.print("first line\n");
+						out.print("second line\n");
+					}
+				)
+			);
+			assertThat(exception)
+				.isInstanceOf(AssertionError.class)
+				.hasMessage(
+					"Wrote 23 bytes, 2 lines and 2 writes to System.out"
+						+ " although at most 1 lines are allowed. The first"
+						+ " lines are:" + lineSeparator()
+						+ "first line\nsecond line\n"
+				);
+		}
+
+		@Test
+		void writes(
+		) {
+			Throwable exception = catchThrowable(
+				() -> assertAtMostWrittenToSystemOut(
+					OutputBudget.writes(1),
+					() -> {
+						out.print("a");
+						out.print("b");
+					}
+				)
+			);
+			assertThat(exception)
+				.isInstanceOf(AssertionError.class)
+				.hasMessageStartingWith(
+					"Wrote 2 bytes, 1 lines and 2 writes to System.out"
+						+ " although at most 1 writes are allowed."
+				);
+		}
+	}
+
+	@Test
+	void failure_message_contains_only_the_first_five_lines(
+	) {
+		Throwable exception = catchThrowable(
+			() -> assertAtMostWrittenToSystemOut(
+				OutputBudget.lines(0),
+				() -> {
+					for (int i = 1; i <= 10; ++i)
+						out.print("line " + i + "\n");
+				}
+			)
+		);
+		assertThat(exception)
+			.hasMessageEndingWith(
+				"line 1\nline 2\nline 3\nline 4\nline 5\n"
+			);
+	}
+
+	@Test
+	void budget_cannot_be_negative(
+	) {
+		Throwable exception = catchThrowable(
+			() -> OutputBudget.lines(-1)
+		);
+		assertThat(exception)
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage(
+				"The maximum number of lines must not be negative but it is -1."
+			);
+	}
+
+	@Nested
+	class System_out_is_same_as_before
+		extends RestoreSystemOutChecks
+	{
+		System_out_is_same_as_before() {
+			super(
+				statement -> assertAtMostWrittenToSystemOut(
+					OutputBudget.bytes(0),
+					statement
+				)
+			);
+		}
+	}
+}
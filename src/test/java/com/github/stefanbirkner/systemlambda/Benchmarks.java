@@ -0,0 +1,145 @@
+package com.github.stefanbirkner.systemlambda;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+import static com.github.stefanbirkner.systemlambda.SystemLambda.tapSystemOut;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.withAsyncSystemOut;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.withOutputForwardedToConsole;
+import static java.lang.System.nanoTime;
+import static java.lang.System.out;
+import static java.lang.System.setOut;
+
+/**
+ * Measures the time and the bytes that the calling thread allocates for
+ * some functions of System Lambda. The benchmarks are not executed by the
+ * build. Run them with
+ * <pre>
+ * scripts/benchmark.sh
+ * </pre>
+ * <p>Each benchmark is warmed up before it is measured. The results are
+ * the medians of the measured rounds. The allocated bytes are only
+ * available on JVMs that provide {@code com.sun.management.ThreadMXBean}.
+ * <p>{@code System.out} discards the output of the benchmarks, so that
+ * forwarded output does not mix with the results.
+ */
+class Benchmarks {
+	private static final int WARM_UP_ROUNDS = 10;
+	private static final int MEASURED_ROUNDS = 10;
+	private static final int OPERATIONS_PER_ROUND = 10_000;
+	private static final String LINE = "0123456789012345678901234567890123456789";
+
+	private static final PrintStream RESULTS = out;
+
+	public static void main(
+		String... args
+	) throws Exception {
+		setOut(new PrintStream(new DiscardingStream()));
+		measure(
+			"tapSystemOut without output",
+			() -> tapSystemOut(() -> {})
+		);
+		measure(
+			"tapSystemOut with 10 lines",
+			() -> tapSystemOut(() -> printLines(10))
+		);
+		measure(
+			"nested tapSystemOut",
+			() -> tapSystemOut(() -> tapSystemOut(() -> printLines(1)))
+		);
+		measure(
+			"withAsyncSystemOut with 10 lines",
+			() -> withAsyncSystemOut(() -> printLines(10))
+		);
+		measure(
+			"withAsyncSystemOut with 1,000 single bytes",
+			() -> withAsyncSystemOut(() -> writeSingleBytes(1_000))
+		);
+		measure(
+			"forwarded tapSystemOut with 10 lines",
+			() -> withOutputForwardedToConsole()
+				.tapSystemOut(() -> printLines(10))
+		);
+		setOut(RESULTS);
+	}
+
+	private static void printLines(
+		int numberOfLines
+	) {
+		for (int i = 0; i < numberOfLines; ++i)
+			out.println(LINE);
+	}
+
+	private static void writeSingleBytes(
+		int numberOfBytes
+	) {
+		for (int i = 0; i < numberOfBytes; ++i)
+			out.write('x');
+	}
+
+	private static void measure(
+		String name,
+		Statement operation
+	) throws Exception {
+		for (int i = 0; i < WARM_UP_ROUNDS; ++i)
+			executeRound(operation);
+		long[] nanos = new long[MEASURED_ROUNDS];
+		long[] allocatedBytes = new long[MEASURED_ROUNDS];
+		for (int i = 0; i < MEASURED_ROUNDS; ++i) {
+			long bytesBefore = allocatedBytes();
+			long start = nanoTime();
+			executeRound(operation);
+			nanos[i] = nanoTime() - start;
+			allocatedBytes[i] = allocatedBytes() - bytesBefore;
+		}
+		RESULTS.printf(
+			"%-45s %,10d ns/op %,10d B/op%n",
+			name,
+			median(nanos) / OPERATIONS_PER_ROUND,
+			median(allocatedBytes) / OPERATIONS_PER_ROUND
+		);
+	}
+
+	private static void executeRound(
+		Statement operation
+	) throws Exception {
+		for (int i = 0; i < OPERATIONS_PER_ROUND; ++i)
+			operation.execute();
+	}
+
+	private static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) bean)
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+		else
+			return 0;
+	}
+
+	private static long median(
+		long[] values
+	) {
+		long[] sortedValues = values.clone();
+		Arrays.sort(sortedValues);
+		return sortedValues[sortedValues.length / 2];
+	}
+
+	private static class DiscardingStream extends OutputStream {
+		@Override
+		public void write(
+			int b
+		) {
+		}
+
+		@Override
+		public void write(
+			byte[] b,
+			int off,
+			int len
+		) {
+		}
+	}
+}
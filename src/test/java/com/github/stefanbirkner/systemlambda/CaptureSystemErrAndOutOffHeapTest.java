@@ -0,0 +1,53 @@
+package com.github.stefanbirkner.systemlambda;
+
+import com.github.stefanbirkner.systemlambda.SystemLambda.OffHeapCapture;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static com.github.stefanbirkner.systemlambda.SystemLambda.captureSystemErrAndOutOffHeap;
+import static java.lang.System.err;
+import static java.lang.System.out;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class CaptureSystemErrAndOutOffHeapTest {
+
+	@Test
+	void captures_text_that_is_written_to_System_err_and_out_by_statement(
+	) throws Exception {
+		try (OffHeapCapture capture = captureSystemErrAndOutOffHeap(
+			() -> {
+				err.print("word1 ");
+				out.print("word2 ");
+				err.print("word3 ");
+				out.print("word4 ");
+			}
+		)) {
+			assertThat(capture.text()).isEqualTo("word1 word2 word3 word4 ");
+		}
+	}
+
+	@Nested
+	class System_err_is_same_as_before
+		extends RestoreSystemErrChecks
+	{
+		System_err_is_same_as_before() {
+			super(
+				statement -> captureSystemErrAndOutOffHeap(statement).close()
+			);
+		}
+	}
+
+	@Nested
+	class System_out_is_same_as_before
+		extends RestoreSystemOutChecks
+	{
+		System_out_is_same_as_before() {
+			super(
+				statement -> captureSystemErrAndOutOffHeap(statement).close()
+			);
+		}
+	}
+}
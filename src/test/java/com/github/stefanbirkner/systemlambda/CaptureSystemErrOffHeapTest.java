@@ -0,0 +1,124 @@
+package com.github.stefanbirkner.systemlambda;
+
+import com.github.stefanbirkner.systemlambda.SystemLambda.OffHeapCapture;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static com.github.stefanbirkner.fishbowl.Fishbowl.exceptionThrownBy;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.captureSystemErrOffHeap;
+import static java.lang.System.err;
+import static java.nio.channels.Channels.newChannel;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class CaptureSystemErrOffHeapTest {
+
+	@Test
+	void captures_text_that_is_written_to_System_err_by_statement(
+	) throws Exception {
+		try (OffHeapCapture capture = captureSystemErrOffHeap(
+			() -> err.print("some text")
+		)) {
+			assertThat(capture.text()).isEqualTo("some text");
+			assertThat(capture.size()).isEqualTo(9);
+		}
+	}
+
+	@Test
+	void captures_text_that_is_larger_than_a_segment(
+	) throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 300_000; ++i)
+			text.append(i);
+
+		try (OffHeapCapture capture = captureSystemErrOffHeap(
+			() -> err.print(text)
+		)) {
+			assertThat(capture.text()).isEqualTo(text.toString());
+			assertThat(capture.size()).isEqualTo(text.length());
+		}
+	}
+
+	@Test
+	void line_separators_are_replaced_in_normalized_text(
+	) throws Exception {
+		try (OffHeapCapture capture = captureSystemErrOffHeap(
+			() -> {
+				err.println("first line");
+				err.println("second line");
+			}
+		)) {
+			assertThat(capture.textNormalized())
+				.isEqualTo("first line\nsecond line\n");
+		}
+	}
+
+	@Test
+	void captured_bytes_can_be_written_to_OutputStream(
+	) throws Exception {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+		try (OffHeapCapture capture = captureSystemErrOffHeap(
+			() -> err.print("some text")
+		)) {
+			capture.writeTo(stream);
+		}
+
+		assertThat(stream).hasToString("some text");
+	}
+
+	@Test
+	void captured_bytes_can_be_written_to_WritableByteChannel(
+	) throws Exception {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+		try (OffHeapCapture capture = captureSystemErrOffHeap(
+			() -> err.print("some text")
+		)) {
+			capture.writeTo(newChannel(stream));
+		}
+
+		assertThat(stream).hasToString("some text");
+	}
+
+	@Test
+	void captured_bytes_can_be_read_more_than_once(
+	) throws Exception {
+		try (OffHeapCapture capture = captureSystemErrOffHeap(
+			() -> err.print("some text")
+		)) {
+			capture.text();
+			assertThat(capture.text()).isEqualTo("some text");
+		}
+	}
+
+	@Test
+	void closed_capture_cannot_be_read(
+	) throws Exception {
+		OffHeapCapture capture = captureSystemErrOffHeap(
+			() -> err.print("some text")
+		);
+		capture.close();
+
+		Throwable exception = exceptionThrownBy(capture::text);
+
+		assertThat(exception)
+			.isInstanceOf(IllegalStateException.class)
+			.hasMessage("The capture has been closed.");
+	}
+
+	@Nested
+	class System_err_is_same_as_before
+		extends RestoreSystemErrChecks
+	{
+		System_err_is_same_as_before() {
+			super(
+				statement -> captureSystemErrOffHeap(statement).close()
+			);
+		}
+	}
+}
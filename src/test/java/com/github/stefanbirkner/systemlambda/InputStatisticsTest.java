@@ -0,0 +1,205 @@
+package com.github.stefanbirkner.systemlambda;
+
+import com.github.stefanbirkner.systemlambda.SystemLambda.InputStatistics;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static com.github.stefanbirkner.fishbowl.Fishbowl.exceptionThrownBy;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.withBytesFromSystemIn;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.withLinesFromSystemIn;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.withTextFromSystemIn;
+import static java.lang.System.in;
+import static java.lang.System.lineSeparator;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class InputStatisticsTest {
+	private static final int TEXT_LENGTH = "0123456789".length()
+		+ lineSeparator().length();
+	private static final int CHUNK_LENGTH = 10;
+
+	@Test
+	void single_byte_reads_are_counted(
+	) throws Exception {
+		InputStatistics statistics = withTextFromSystemIn("0123456789")
+			.executeWithStatistics(() -> {
+				while (in.read() != -1);
+			});
+
+		assertThat(statistics.singleByteReads()).isEqualTo(TEXT_LENGTH + 1);
+		assertThat(statistics.bulkReads()).isZero();
+		assertThat(statistics.consumedBytes()).isEqualTo(TEXT_LENGTH);
+	}
+
+	@Test
+	void bulk_reads_are_counted_with_requested_and_returned_sizes(
+	) throws Exception {
+		InputStatistics statistics = withTextFromSystemIn("0123456789")
+			.executeWithStatistics(() -> {
+				byte[] buffer = new byte[8];
+				while (in.read(buffer) != -1);
+			});
+
+		assertThat(statistics.singleByteReads()).isZero();
+		assertThat(statistics.bulkReads()).isEqualTo(3);
+		assertThat(statistics.requestedSizes()).containsExactly(entry(8, 3L));
+		assertThat(statistics.returnedSizes())
+			.containsEntry(8, 1L)
+			.hasSize(2);
+		assertThat(statistics.consumedBytes()).isEqualTo(TEXT_LENGTH);
+	}
+
+	@Test
+	void skipped_bytes_are_consumed(
+	) throws Exception {
+		InputStatistics statistics = withTextFromSystemIn("0123456789")
+			.executeWithStatistics(() -> in.skip(4));
+
+		assertThat(statistics.consumedBytes()).isEqualTo(4);
+		assertThat(statistics.unreadBytes()).isEqualTo(TEXT_LENGTH - 4);
+	}
+
+	@Test
+	void unread_bytes_are_counted(
+	) throws Exception {
+		InputStatistics statistics = withTextFromSystemIn("0123456789")
+			.executeWithStatistics(() -> in.read(new byte[3]));
+
+		assertThat(statistics.unreadBytes()).isEqualTo(TEXT_LENGTH - 3);
+	}
+
+	@Test
+	void all_input_is_consumed_when_statement_reads_every_byte_without_reaching_end(
+	) throws Exception {
+		InputStatistics statistics = withTextFromSystemIn("0123456789")
+			.executeWithStatistics(() -> in.read(new byte[TEXT_LENGTH]));
+
+		statistics.assertAllInputConsumed();
+	}
+
+	@Test
+	void assertAllInputConsumed_fails_when_input_is_left(
+	) throws Exception {
+		InputStatistics statistics = withTextFromSystemIn("0123456789")
+			.executeWithStatistics(() -> in.read(new byte[3]));
+
+		Throwable error = exceptionThrownBy(
+			statistics::assertAllInputConsumed
+		);
+
+		assertThat(error)
+			.isInstanceOf(AssertionError.class)
+			.hasMessage(
+				"The statement did not read " + (TEXT_LENGTH - 3)
+					+ " bytes from System.in.");
+	}
+
+	@Test
+	void assertAllInputConsumed_fails_when_lines_are_left(
+	) throws Exception {
+		InputStatistics statistics = withLinesFromSystemIn(
+			Stream.of("first line", "second line")
+		).executeWithStatistics(() -> {});
+
+		Throwable error = exceptionThrownBy(
+			statistics::assertAllInputConsumed
+		);
+
+		assertThat(error).isInstanceOf(AssertionError.class);
+	}
+
+	@Test
+	void exception_of_statement_is_not_hidden_by_failing_source(
+	) throws Exception {
+		Exception exception = new Exception("some exception");
+
+		Throwable thrown = exceptionThrownBy(
+			() -> withBytesFromSystemIn(failingAfterFirstChunk())
+				.executeWithStatistics(() -> {
+					in.read(new byte[CHUNK_LENGTH]);
+					throw exception;
+				})
+		);
+
+		assertThat(thrown).isSameAs(exception);
+	}
+
+	@Test
+	void exception_of_source_is_thrown_when_next_chunk_is_pulled_after_statement(
+	) throws Exception {
+		Throwable thrown = exceptionThrownBy(
+			() -> withBytesFromSystemIn(failingAfterFirstChunk())
+				.executeWithStatistics(
+					() -> in.read(new byte[CHUNK_LENGTH]))
+		);
+
+		assertThat(thrown)
+			.isInstanceOf(IllegalStateException.class)
+			.hasMessage("source failed");
+	}
+
+	@Test
+	void assertNoSingleByteReads_fails_when_statement_reads_single_bytes(
+	) throws Exception {
+		InputStatistics statistics = withTextFromSystemIn("0123456789")
+			.executeWithStatistics(() -> {
+				in.read();
+				in.read();
+			});
+
+		Throwable error = exceptionThrownBy(
+			statistics::assertNoSingleByteReads
+		);
+
+		assertThat(error)
+			.isInstanceOf(AssertionError.class)
+			.hasMessage(
+				"The statement called System.in.read() 2 times. Use a"
+					+ " buffered stream or read into an array instead.");
+	}
+
+	@Test
+	void assertions_succeed_for_buffered_reader_that_reads_all_lines(
+	) throws Exception {
+		InputStatistics statistics = withTextFromSystemIn(
+			"first line",
+			"second line"
+		).executeWithStatistics(() -> {
+			BufferedReader reader = new BufferedReader(
+				new InputStreamReader(in));
+			while (reader.readLine() != null);
+		});
+
+		statistics.assertAllInputConsumed();
+		statistics.assertNoSingleByteReads();
+	}
+
+	@Test
+	void time_waiting_for_throttled_input_is_recorded(
+	) throws Exception {
+		InputStatistics statistics = withTextFromSystemIn("0123456789")
+			.andBytesPerSecond(100)
+			.executeWithStatistics(() -> in.read(new byte[TEXT_LENGTH]));
+
+		assertThat(statistics.blockedTime().toMillis())
+			.isGreaterThanOrEqualTo(100);
+	}
+
+	private static Supplier<ByteBuffer> failingAfterFirstChunk() {
+		AtomicBoolean firstChunkProvided = new AtomicBoolean();
+		return () -> {
+			if (firstChunkProvided.getAndSet(true))
+				throw new IllegalStateException("source failed");
+			return ByteBuffer.wrap(new byte[CHUNK_LENGTH]);
+		};
+	}
+}
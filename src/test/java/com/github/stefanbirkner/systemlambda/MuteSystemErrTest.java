@@ -2,6 +2,7 @@ package com.github.stefanbirkner.systemlambda;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.DisplayNameGeneration;
 import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
@@ -27,6 +28,26 @@ class MuteSystemErrTest {
 			.hasToString("");
 	}
 
+	@Test
+	void arguments_are_not_converted_to_text(
+	) throws Exception {
+		AtomicInteger toStringCalls = new AtomicInteger();
+		Object value = new Object() {
+			@Override
+			public String toString() {
+				toStringCalls.incrementAndGet();
+				return "value";
+			}
+		};
+		muteSystemErr(
+			() -> {
+				err.println(value);
+				err.printf("%s", value);
+			}
+		);
+		assertThat(toStringCalls).hasValue(0);
+	}
+
 	@Nested
 	class System_err_is_same_as_before
 		extends RestoreSystemErrChecks
@@ -2,6 +2,7 @@ package com.github.stefanbirkner.systemlambda;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.DisplayNameGeneration;
 import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
@@ -28,6 +29,26 @@ class MuteSystemOutTest {
 			.hasToString("");
 	}
 
+	@Test
+	void arguments_are_not_converted_to_text(
+	) throws Exception {
+		AtomicInteger toStringCalls = new AtomicInteger();
+		Object value = new Object() {
+			@Override
+			public String toString() {
+				toStringCalls.incrementAndGet();
+				return "value";
+			}
+		};
+		muteSystemOut(
+			() -> {
+				out.println(value);
+				out.printf("%s", value);
+			}
+		);
+		assertThat(toStringCalls).hasValue(0);
+	}
+
 	@Nested
 	class System_out_is_same_as_before
 		extends RestoreSystemOutChecks
@@ -0,0 +1,111 @@
+package com.github.stefanbirkner.systemlambda;
+
+import com.github.stefanbirkner.systemlambda.SystemLambda.OutputProfile;
+import com.github.stefanbirkner.systemlambda.SystemLambda.OutputProfile.CallSite;
+import com.github.stefanbirkner.systemlambda.SystemLambda.OutputProfile.WriteEvent;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.github.stefanbirkner.systemlambda.SystemLambda.profileSystemErr;
+import static java.lang.System.err;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class ProfileSystemErrTest {
+
+	@Test
+	void taps_text_that_is_written_to_System_err_by_statement(
+	) throws Exception {
+		OutputProfile profile = profileSystemErr(
+			() -> err.print("some text")
+		);
+
+		assertThat(profile.text())
+			.isEqualTo("some text");
+	}
+
+	@Test
+	void records_thread_and_number_of_bytes_of_each_write(
+	) throws Exception {
+		OutputProfile profile = profileSystemErr(
+			() -> {
+				err.print("first");
+				err.print("second");
+			}
+		);
+
+		assertThat(profile.writeEvents())
+			.extracting(WriteEvent::byteCount)
+			.containsExactly(5, 6);
+		assertThat(profile.writeEvents())
+			.extracting(WriteEvent::threadName)
+			.containsOnly(Thread.currentThread().getName());
+	}
+
+	@Test
+	void records_the_code_that_writes_as_call_site(
+	) throws Exception {
+		OutputProfile profile = profileSystemErr(
+			this::writeText
+		);
+
+		WriteEvent event = profile.writeEvents().get(0);
+		assertThat(event.callSite().getClassName())
+			.isEqualTo(ProfileSystemErrTest.class.getName());
+		assertThat(event.callSite().getMethodName())
+			.isEqualTo("writeText");
+	}
+
+	@Test
+	void aggregates_bytes_and_writes_per_call_site_with_most_bytes_first(
+	) throws Exception {
+		OutputProfile profile = profileSystemErr(
+			() -> {
+				writeText();
+				for (int i = 0; i < 3; ++i)
+					writeLongText();
+			}
+		);
+
+		List<CallSite> callSites = profile.callSites();
+		assertThat(callSites)
+			.extracting(callSite -> callSite.callSite().getMethodName())
+			.containsExactly("writeLongText", "writeText");
+		assertThat(callSites.get(0).bytes()).isEqualTo(30);
+		assertThat(callSites.get(0).writes()).isEqualTo(3);
+	}
+
+	@Test
+	void report_contains_bytes_and_writes_of_each_call_site(
+	) throws Exception {
+		OutputProfile profile = profileSystemErr(
+			this::writeLongText
+		);
+
+		assertThat(profile.report())
+			.contains("1 writes with 10 bytes")
+			.contains("10 bytes, 1 writes: ")
+			.contains("writeLongText");
+	}
+
+	private void writeText() {
+		err.print("text");
+	}
+
+	private void writeLongText() {
+		err.print("0123456789");
+	}
+
+	@Nested
+	class System_err_is_same_as_before
+		extends RestoreSystemErrChecks
+	{
+		System_err_is_same_as_before() {
+			super(SystemLambda::profileSystemErr);
+		}
+	}
+}
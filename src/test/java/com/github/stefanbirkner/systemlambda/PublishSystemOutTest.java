@@ -0,0 +1,392 @@
+package com.github.stefanbirkner.systemlambda;
+
+import com.github.stefanbirkner.systemlambda.SystemLambda.LineSubscriber;
+import com.github.stefanbirkner.systemlambda.SystemLambda.LineSubscription;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+import static com.github.stefanbirkner.fishbowl.Fishbowl.exceptionThrownBy;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.OverflowPolicy.BLOCK;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.OverflowPolicy.DROP;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.OverflowPolicy.FAIL;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.publishSystemOut;
+import static java.lang.System.out;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+@Timeout(value = 10, unit = SECONDS)
+class PublishSystemOutTest {
+
+	@Test
+	void lines_are_published_to_subscriber(
+	) throws Exception {
+		RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+
+		publishSystemOut(
+			subscriber,
+			() -> {
+				out.println("first line");
+				out.print("second line\r\nthird ");
+				out.print("line");
+			}
+		);
+
+		assertThat(subscriber.lines)
+			.containsExactly("first line", "second line", "third line");
+		assertThat(subscriber.completed).isTrue();
+	}
+
+	@Test
+	void line_is_published_while_statement_is_executed(
+	) throws Exception {
+		CountDownLatch lineHasBeenPublished = new CountDownLatch(1);
+		RecordingSubscriber subscriber = new RecordingSubscriber(
+			Long.MAX_VALUE,
+			line -> lineHasBeenPublished.countDown()
+		);
+
+		publishSystemOut(
+			subscriber,
+			() -> {
+				out.println("some line");
+				lineHasBeenPublished.await();
+			}
+		);
+
+		assertThat(subscriber.lines).containsExactly("some line");
+	}
+
+	@Test
+	void no_more_lines_than_requested_are_published(
+	) throws Exception {
+		CountDownLatch twoLinesHaveBeenPublished = new CountDownLatch(2);
+		RecordingSubscriber subscriber = new RecordingSubscriber(
+			2,
+			line -> twoLinesHaveBeenPublished.countDown()
+		);
+
+		publishSystemOut(
+			subscriber,
+			() -> {
+				out.println("first line");
+				out.println("second line");
+				out.println("third line");
+				twoLinesHaveBeenPublished.await();
+				subscriber.subscription.cancel();
+			}
+		);
+
+		assertThat(subscriber.lines)
+			.containsExactly("first line", "second line");
+		assertThat(subscriber.completed).isFalse();
+	}
+
+	@Test
+	void lines_are_dropped_when_buffer_is_full_and_policy_is_DROP(
+	) throws Exception {
+		RecordingSubscriber subscriber = new RecordingSubscriber(0);
+
+		long droppedLines = publishSystemOut(
+			1,
+			DROP,
+			subscriber,
+			() -> {
+				out.println("first line");
+				out.println("second line");
+				out.println("third line");
+				subscriber.subscription.request(Long.MAX_VALUE);
+			}
+		);
+
+		assertThat(subscriber.lines).containsExactly("first line");
+		assertThat(droppedLines).isEqualTo(2);
+	}
+
+	@Test
+	void statement_waits_when_buffer_is_full_and_policy_is_BLOCK(
+	) throws Exception {
+		RecordingSubscriber subscriber = new RecordingSubscriber(1);
+		subscriber.requestAfterEachLine = true;
+
+		long droppedLines = publishSystemOut(
+			1,
+			BLOCK,
+			subscriber,
+			() -> {
+				for (int i = 0; i < 100; ++i)
+					out.println(i);
+			}
+		);
+
+		assertThat(subscriber.lines).hasSize(100);
+		assertThat(droppedLines).isZero();
+	}
+
+	@Test
+	void statement_waits_for_subscriber_that_requests_later_than_timeout(
+	) throws Exception {
+		RecordingSubscriber subscriber = new RecordingSubscriber(0);
+
+		long droppedLines = publishSystemOut(
+			1,
+			BLOCK,
+			Duration.ofMillis(100),
+			subscriber,
+			() -> {
+				requestAllLinesLater(subscriber, 500);
+				out.println("first line");
+				out.println("second line");
+				out.println("third line");
+			}
+		);
+
+		assertThat(subscriber.lines)
+			.containsExactly("first line", "second line", "third line");
+		assertThat(droppedLines).isZero();
+	}
+
+	@Test
+	void subscription_is_cancelled_when_subscriber_stops_requesting_after_statement() {
+		RecordingSubscriber subscriber = new RecordingSubscriber(1);
+
+		Throwable exception = exceptionThrownBy(
+			() -> publishSystemOut(
+				10,
+				BLOCK,
+				Duration.ofMillis(100),
+				subscriber,
+				() -> {
+					out.println("first line");
+					out.println("second line");
+				}
+			)
+		);
+
+		assertThat(exception)
+			.isInstanceOf(AssertionError.class)
+			.hasMessage(
+				"The subscriber did not request lines for 100 ms after the"
+					+ " statement had been executed although lines were"
+					+ " waiting. The subscription has been cancelled."
+					+ " Unpublished lines: 1."
+			);
+		assertThat(subscriber.lines).containsExactly("first line");
+	}
+
+	@Test
+	void subscription_is_cancelled_and_assertion_error_is_thrown_when_buffer_is_full_and_policy_is_FAIL() {
+		RecordingSubscriber subscriber = new RecordingSubscriber(0);
+
+		Throwable exception = exceptionThrownBy(
+			() -> publishSystemOut(
+				1,
+				FAIL,
+				subscriber,
+				() -> {
+					for (int i = 0; i < 100; ++i)
+						out.println(i);
+				}
+			)
+		);
+
+		assertThat(exception)
+			.isInstanceOf(AssertionError.class)
+			.hasMessage(
+				"The subscriber did not request lines fast enough. The buffer"
+					+ " of 1 lines was full and the subscription has been"
+					+ " cancelled."
+			);
+		assertThat(subscriber.lines).isEmpty();
+		assertThat(subscriber.error)
+			.isInstanceOf(IllegalStateException.class)
+			.hasMessage("The buffer of 1 lines is full.");
+	}
+
+	@Test
+	void exception_of_statement_is_published_and_thrown() {
+		Exception exceptionOfStatement = new Exception("some exception");
+		RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+
+		Throwable exception = exceptionThrownBy(
+			() -> publishSystemOut(
+				subscriber,
+				() -> {
+					out.println("some line");
+					throw exceptionOfStatement;
+				}
+			)
+		);
+
+		assertThat(exception).isSameAs(exceptionOfStatement);
+		assertThat(subscriber.lines).containsExactly("some line");
+		assertThat(subscriber.error).isSameAs(exceptionOfStatement);
+	}
+
+	@Test
+	void request_of_non_positive_number_of_lines_is_published_as_error(
+	) throws Exception {
+		RecordingSubscriber subscriber = new RecordingSubscriber(0);
+
+		publishSystemOut(
+			subscriber,
+			() -> subscriber.subscription.request(0)
+		);
+
+		assertThat(subscriber.error)
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage(
+				"The number of requested lines must be positive but it is 0."
+			);
+	}
+
+	@Test
+	void exception_of_subscriber_is_thrown_after_statement_has_been_executed() {
+		RuntimeException failure = new RuntimeException("some failure");
+		RecordingSubscriber subscriber = new RecordingSubscriber(
+			Long.MAX_VALUE,
+			line -> {
+				throw failure;
+			}
+		);
+
+		Throwable exception = exceptionThrownBy(
+			() -> publishSystemOut(
+				subscriber,
+				() -> {
+					out.println("first line");
+					out.println("second line");
+				}
+			)
+		);
+
+		assertThat(exception).isSameAs(failure);
+	}
+
+	@Test
+	void capacity_must_be_positive() {
+		Throwable exception = exceptionThrownBy(
+			() -> publishSystemOut(
+				0,
+				BLOCK,
+				new RecordingSubscriber(Long.MAX_VALUE),
+				() -> {}
+			)
+		);
+
+		assertThat(exception)
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage("The capacity must be positive but it is 0.");
+	}
+
+	@Test
+	void timeout_must_be_positive() {
+		Throwable exception = exceptionThrownBy(
+			() -> publishSystemOut(
+				1,
+				BLOCK,
+				Duration.ZERO,
+				new RecordingSubscriber(Long.MAX_VALUE),
+				() -> {}
+			)
+		);
+
+		assertThat(exception)
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage("The timeout must be positive but it is PT0S.");
+	}
+
+	@Nested
+	class System_out_is_same_as_before
+		extends RestoreSystemOutChecks
+	{
+		System_out_is_same_as_before() {
+			super(
+				statement -> publishSystemOut(
+					new RecordingSubscriber(Long.MAX_VALUE),
+					statement
+				)
+			);
+		}
+	}
+
+	private static void requestAllLinesLater(
+		RecordingSubscriber subscriber,
+		long delayMillis
+	) {
+		Thread thread = new Thread(() -> {
+			try {
+				Thread.sleep(delayMillis);
+			} catch (InterruptedException e) {
+				return;
+			}
+			subscriber.subscription.request(Long.MAX_VALUE);
+		});
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private static class RecordingSubscriber implements LineSubscriber {
+		final List<String> lines = new CopyOnWriteArrayList<>();
+		final long initialRequest;
+		final Consumer<String> lineConsumer;
+		volatile LineSubscription subscription;
+		volatile boolean requestAfterEachLine = false;
+		volatile boolean completed = false;
+		volatile Throwable error;
+
+		RecordingSubscriber(
+			long initialRequest
+		) {
+			this(initialRequest, line -> {});
+		}
+
+		RecordingSubscriber(
+			long initialRequest,
+			Consumer<String> lineConsumer
+		) {
+			this.initialRequest = initialRequest;
+			this.lineConsumer = lineConsumer;
+		}
+
+		@Override
+		public void onSubscribe(
+			LineSubscription subscription
+		) {
+			this.subscription = subscription;
+			if (initialRequest > 0)
+				subscription.request(initialRequest);
+		}
+
+		@Override
+		public void onNext(
+			String line
+		) {
+			lines.add(line);
+			lineConsumer.accept(line);
+			if (requestAfterEachLine)
+				subscription.request(1);
+		}
+
+		@Override
+		public void onError(
+			Throwable throwable
+		) {
+			error = throwable;
+		}
+
+		@Override
+		public void onComplete() {
+			completed = true;
+		}
+	}
+}
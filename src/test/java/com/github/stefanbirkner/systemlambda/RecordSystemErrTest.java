@@ -0,0 +1,118 @@
+package com.github.stefanbirkner.systemlambda;
+
+import com.github.stefanbirkner.systemlambda.SystemLambda.PrintRecording;
+import com.github.stefanbirkner.systemlambda.SystemLambda.PrintRecording.PrintCall;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.stefanbirkner.systemlambda.SystemLambda.recordSystemErr;
+import static java.lang.System.lineSeparator;
+import static java.lang.System.err;
+import static java.util.Locale.GERMANY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class RecordSystemErrTest {
+
+	@Test
+	void records_format_string_and_arguments_of_printf(
+	) throws Exception {
+		PrintRecording recording = recordSystemErr(
+			() -> err.printf(GERMANY, "%s: %.1f", "value", 1.5)
+		);
+
+		PrintCall call = recording.calls().get(0);
+		assertThat(call.method()).isEqualTo("printf");
+		assertThat(call.locale()).isEqualTo(GERMANY);
+		assertThat(call.format()).isEqualTo("%s: %.1f");
+		assertThat(call.arguments()).containsExactly("value", 1.5);
+	}
+
+	@Test
+	void records_reference_of_object_that_is_printed(
+	) throws Exception {
+		Object value = new Object();
+
+		PrintRecording recording = recordSystemErr(
+			() -> err.println(value)
+		);
+
+		PrintCall call = recording.calls().get(0);
+		assertThat(call.method()).isEqualTo("println");
+		assertThat(call.arguments()).hasSize(1);
+		assertThat(call.arguments().get(0)).isSameAs(value);
+	}
+
+	@Test
+	void does_not_convert_arguments_to_text_while_statement_is_executed(
+	) throws Exception {
+		AtomicInteger toStringCalls = new AtomicInteger();
+		Object value = new Object() {
+			@Override
+			public String toString() {
+				toStringCalls.incrementAndGet();
+				return "value";
+			}
+		};
+
+		PrintRecording recording = recordSystemErr(
+			() -> {
+				err.print(value);
+				err.format("%s", value);
+			}
+		);
+
+		assertThat(toStringCalls).hasValue(0);
+		assertThat(recording.text()).isEqualTo("valuevalue");
+		assertThat(toStringCalls).hasValue(2);
+	}
+
+	@Test
+	void text_is_the_same_as_the_text_written_by_a_PrintStream(
+	) throws Exception {
+		PrintRecording recording = recordSystemErr(
+			() -> {
+				err.print(true);
+				err.print('c');
+				err.print(1);
+				err.print(2L);
+				err.print(new char[] { 'a', 'b' });
+				err.println("text");
+				err.println();
+				err.append("sequence", 1, 3);
+				err.append('x');
+				err.write("bytes".getBytes());
+			}
+		);
+
+		assertThat(recording.text())
+			.isEqualTo(
+				"truec12abtext" + lineSeparator() + lineSeparator()
+					+ "eqxbytes"
+			);
+	}
+
+	@Test
+	void recording_is_empty_when_statement_does_not_write_to_System_err(
+	) throws Exception {
+		PrintRecording recording = recordSystemErr(
+			() -> {}
+		);
+
+		assertThat(recording.calls()).isEmpty();
+		assertThat(recording.text()).isEmpty();
+	}
+
+	@Nested
+	class System_err_is_same_as_before
+		extends RestoreSystemErrChecks
+	{
+		System_err_is_same_as_before() {
+			super(SystemLambda::recordSystemErr);
+		}
+	}
+}
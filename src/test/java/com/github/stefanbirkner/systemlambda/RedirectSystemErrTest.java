@@ -0,0 +1,252 @@
+package com.github.stefanbirkner.systemlambda;
+
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.github.stefanbirkner.fishbowl.Fishbowl.exceptionThrownBy;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.redirectSystemErr;
+import static java.lang.System.err;
+import static java.nio.channels.Channels.newChannel;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class RedirectSystemErrTest {
+
+	@Test
+	void text_is_written_to_OutputStream(
+	) throws Exception {
+		ByteArrayOutputStream sink = new ByteArrayOutputStream();
+
+		redirectSystemErr(
+			sink,
+			() -> err.print("some text")
+		);
+
+		assertThat(sink).hasToString("some text");
+	}
+
+	@Test
+	void text_is_written_to_WritableByteChannel(
+	) throws Exception {
+		ByteArrayOutputStream sink = new ByteArrayOutputStream();
+
+		redirectSystemErr(
+			newChannel(sink),
+			() -> err.print("some text")
+		);
+
+		assertThat(sink).hasToString("some text");
+	}
+
+	@Test
+	void text_that_is_larger_than_buffer_is_written_to_WritableByteChannel(
+	) throws Exception {
+		ByteArrayOutputStream sink = new ByteArrayOutputStream();
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 10_000; ++i)
+			text.append(i);
+
+		redirectSystemErr(
+			newChannel(sink),
+			() -> err.print(text)
+		);
+
+		assertThat(sink).hasToString(text.toString());
+	}
+
+	@Test
+	void text_is_appended_to_Appendable(
+	) throws Exception {
+		StringBuilder sink = new StringBuilder("existing text ");
+
+		redirectSystemErr(
+			sink,
+			() -> err.print("some text")
+		);
+
+		assertThat(sink).hasToString("existing text some text");
+	}
+
+	@Test
+	void text_that_is_kept_by_Appendable_is_not_changed_by_later_writes(
+	) throws Exception {
+		List<CharSequence> appendedTexts = new ArrayList<>();
+		Appendable sink = new Appendable() {
+			@Override
+			public Appendable append(
+				CharSequence csq
+			) {
+				appendedTexts.add(csq);
+				return this;
+			}
+
+			@Override
+			public Appendable append(
+				CharSequence csq,
+				int start,
+				int end
+			) {
+				return append(csq.subSequence(start, end));
+			}
+
+			@Override
+			public Appendable append(
+				char c
+			) {
+				return append(String.valueOf(c));
+			}
+		};
+
+		redirectSystemErr(
+			sink,
+			() -> {
+				err.print("first text");
+				err.print("second text");
+			}
+		);
+
+		assertThat(String.join("", appendedTexts))
+			.isEqualTo("first textsecond text");
+	}
+
+	@Test
+	void character_that_is_split_across_writes_is_appended_to_Appendable(
+	) throws Exception {
+		StringBuilder sink = new StringBuilder();
+		byte[] bytes = "\u00e4".getBytes(UTF_8);
+
+		redirectSystemErr(
+			sink,
+			UTF_8,
+			() -> {
+				for (byte b: bytes)
+					err.write(b);
+			}
+		);
+
+		assertThat(sink).hasToString("\u00e4");
+	}
+
+	@Test
+	void text_is_encoded_and_decoded_with_specified_charset(
+	) throws Exception {
+		StringBuilder sink = new StringBuilder();
+
+		redirectSystemErr(
+			sink,
+			UTF_8,
+			() -> err.print("\u00e4\u20ac")
+		);
+
+		assertThat(sink).hasToString("\u00e4\u20ac");
+	}
+
+	@Test
+	void sink_is_not_closed(
+	) throws Exception {
+		AtomicBoolean closed = new AtomicBoolean();
+		Writer sink = new Writer() {
+			@Override
+			public void write(
+				char[] cbuf,
+				int off,
+				int len
+			) {
+			}
+
+			@Override
+			public void flush() {
+			}
+
+			@Override
+			public void close() {
+				closed.set(true);
+			}
+		};
+
+		redirectSystemErr(
+			sink,
+			() -> err.print("some text")
+		);
+
+		assertThat(closed).isFalse();
+	}
+
+	@Test
+	void first_exception_of_sink_is_thrown_after_statement_has_been_executed() {
+		IOException failure = new IOException("some failure");
+		AtomicBoolean statementCompleted = new AtomicBoolean();
+		OutputStream sink = new OutputStream() {
+			@Override
+			public void write(
+				int b
+			) throws IOException {
+				throw failure;
+			}
+		};
+
+		Throwable exception = exceptionThrownBy(
+			() -> redirectSystemErr(
+				sink,
+				() -> {
+					err.println("first line");
+					err.println("second line");
+					statementCompleted.set(true);
+				}
+			)
+		);
+
+		assertThat(exception).isSameAs(failure);
+		assertThat(statementCompleted).isTrue();
+	}
+
+	@Test
+	void exception_of_statement_is_thrown_although_sink_failed() {
+		Exception exceptionOfStatement = new Exception("some exception");
+		OutputStream sink = new OutputStream() {
+			@Override
+			public void write(
+				int b
+			) throws IOException {
+				throw new IOException("some failure");
+			}
+		};
+
+		Throwable exception = exceptionThrownBy(
+			() -> redirectSystemErr(
+				sink,
+				() -> {
+					err.println("some text");
+					throw exceptionOfStatement;
+				}
+			)
+		);
+
+		assertThat(exception).isSameAs(exceptionOfStatement);
+	}
+
+	@Nested
+	class System_err_is_same_as_before
+		extends RestoreSystemErrChecks
+	{
+		System_err_is_same_as_before() {
+			super(
+				statement -> redirectSystemErr(
+					new ByteArrayOutputStream(),
+					statement
+				)
+			);
+		}
+	}
+}
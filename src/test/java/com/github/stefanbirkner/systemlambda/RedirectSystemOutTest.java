@@ -0,0 +1,252 @@
+package com.github.stefanbirkner.systemlambda;
+
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.github.stefanbirkner.fishbowl.Fishbowl.exceptionThrownBy;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.redirectSystemOut;
+import static java.lang.System.out;
+import static java.nio.channels.Channels.newChannel;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class RedirectSystemOutTest {
+
+	@Test
+	void text_is_written_to_OutputStream(
+	) throws Exception {
+		ByteArrayOutputStream sink = new ByteArrayOutputStream();
+
+		redirectSystemOut(
+			sink,
+			() -> out.print("some text")
+		);
+
+		assertThat(sink).hasToString("some text");
+	}
+
+	@Test
+	void text_is_written_to_WritableByteChannel(
+	) throws Exception {
+		ByteArrayOutputStream sink = new ByteArrayOutputStream();
+
+		redirectSystemOut(
+			newChannel(sink),
+			() -> out.print("some text")
+		);
+
+		assertThat(sink).hasToString("some text");
+	}
+
+	@Test
+	void text_that_is_larger_than_buffer_is_written_to_WritableByteChannel(
+	) throws Exception {
+		ByteArrayOutputStream sink = new ByteArrayOutputStream();
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 10_000; ++i)
+			text.append(i);
+
+		redirectSystemOut(
+			newChannel(sink),
+			() -> out.print(text)
+		);
+
+		assertThat(sink).hasToString(text.toString());
+	}
+
+	@Test
+	void text_is_appended_to_Appendable(
+	) throws Exception {
+		StringBuilder sink = new StringBuilder("existing text ");
+
+		redirectSystemOut(
+			sink,
+			() -> out.print("some text")
+		);
+
+		assertThat(sink).hasToString("existing text some text");
+	}
+
+	@Test
+	void text_that_is_kept_by_Appendable_is_not_changed_by_later_writes(
+	) throws Exception {
+		List<CharSequence> appendedTexts = new ArrayList<>();
+		Appendable sink = new Appendable() {
+			@Override
+			public Appendable append(
+				CharSequence csq
+			) {
+				appendedTexts.add(csq);
+				return this;
+			}
+
+			@Override
+			public Appendable append(
+				CharSequence csq,
+				int start,
+				int end
+			) {
+				return append(csq.subSequence(start, end));
+			}
+
+			@Override
+			public Appendable append(
+				char c
+			) {
+				return append(String.valueOf(c));
+			}
+		};
+
+		redirectSystemOut(
+			sink,
+			() -> {
+				out.print("first text");
+				out.print("second text");
+			}
+		);
+
+		assertThat(String.join("", appendedTexts))
+			.isEqualTo("first textsecond text");
+	}
+
+	@Test
+	void character_that_is_split_across_writes_is_appended_to_Appendable(
+	) throws Exception {
+		StringBuilder sink = new StringBuilder();
+		byte[] bytes = "\u00e4".getBytes(UTF_8);
+
+		redirectSystemOut(
+			sink,
+			UTF_8,
+			() -> {
+				for (byte b: bytes)
+					out.write(b);
+			}
+		);
+
+		assertThat(sink).hasToString("\u00e4");
+	}
+
+	@Test
+	void text_is_encoded_and_decoded_with_specified_charset(
+	) throws Exception {
+		StringBuilder sink = new StringBuilder();
+
+		redirectSystemOut(
+			sink,
+			UTF_8,
+			() -> out.print("\u00e4\u20ac")
+		);
+
+		assertThat(sink).hasToString("\u00e4\u20ac");
+	}
+
+	@Test
+	void sink_is_not_closed(
+	) throws Exception {
+		AtomicBoolean closed = new AtomicBoolean();
+		Writer sink = new Writer() {
+			@Override
+			public void write(
+				char[] cbuf,
+				int off,
+				int len
+			) {
+			}
+
+			@Override
+			public void flush() {
+			}
+
+			@Override
+			public void close() {
+				closed.set(true);
+			}
+		};
+
+		redirectSystemOut(
+			sink,
+			() -> out.print("some text")
+		);
+
+		assertThat(closed).isFalse();
+	}
+
+	@Test
+	void first_exception_of_sink_is_thrown_after_statement_has_been_executed() {
+		IOException failure = new IOException("some failure");
+		AtomicBoolean statementCompleted = new AtomicBoolean();
+		OutputStream sink = new OutputStream() {
+			@Override
+			public void write(
+				int b
+			) throws IOException {
+				throw failure;
+			}
+		};
+
+		Throwable exception = exceptionThrownBy(
+			() -> redirectSystemOut(
+				sink,
+				() -> {
+					out.println("first line");
+					out.println("second line");
+					statementCompleted.set(true);
+				}
+			)
+		);
+
+		assertThat(exception).isSameAs(failure);
+		assertThat(statementCompleted).isTrue();
+	}
+
+	@Test
+	void exception_of_statement_is_thrown_although_sink_failed() {
+		Exception exceptionOfStatement = new Exception("some exception");
+		OutputStream sink = new OutputStream() {
+			@Override
+			public void write(
+				int b
+			) throws IOException {
+				throw new IOException("some failure");
+			}
+		};
+
+		Throwable exception = exceptionThrownBy(
+			() -> redirectSystemOut(
+				sink,
+				() -> {
+					out.println("some text");
+					throw exceptionOfStatement;
+				}
+			)
+		);
+
+		assertThat(exception).isSameAs(exceptionOfStatement);
+	}
+
+	@Nested
+	class System_out_is_same_as_before
+		extends RestoreSystemOutChecks
+	{
+		System_out_is_same_as_before() {
+			super(
+				statement -> redirectSystemOut(
+					new ByteArrayOutputStream(),
+					statement
+				)
+			);
+		}
+	}
+}
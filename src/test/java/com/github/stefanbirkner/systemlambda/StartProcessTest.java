@@ -0,0 +1,235 @@
+package com.github.stefanbirkner.systemlambda;
+
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.lang.ProcessBuilder.Redirect;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.stefanbirkner.systemlambda.SystemLambda.startProcess;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.tapSystemErr;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.tapSystemOut;
+import static java.lang.System.err;
+import static java.lang.System.getProperty;
+import static java.lang.System.out;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assumptions.assumeThat;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+@Timeout(value = 10, unit = SECONDS)
+class StartProcessTest {
+
+	@Test
+	void output_of_process_with_inherited_System_out_is_tapped_in_order(
+	) throws Exception {
+		String text = tapSystemOut(
+			() -> {
+				out.print("before ");
+				startProcess(
+					childProcess("from child", "").inheritIO()
+				).waitFor();
+				out.print(" after");
+			}
+		);
+
+		assertThat(text).isEqualTo("before from child after");
+	}
+
+	@Test
+	void output_of_process_with_inherited_System_err_is_tapped_in_order(
+	) throws Exception {
+		String text = tapSystemErr(
+			() -> {
+				err.print("before ");
+				startProcess(
+					childProcess("", "from child").inheritIO()
+				).waitFor();
+				err.print(" after");
+			}
+		);
+
+		assertThat(text).isEqualTo("before from child after");
+	}
+
+	@Test
+	void merged_error_stream_of_process_is_written_to_System_out(
+	) throws Exception {
+		ProcessBuilder builder = childProcess("out ", "err")
+			.inheritIO()
+			.redirectErrorStream(true);
+
+		String text = tapSystemOut(
+			() -> startProcess(builder).waitFor()
+		);
+
+		assertThat(text).isEqualTo("out err");
+	}
+
+	@Test
+	void waitFor_with_timeout_returns_true_when_output_is_drained(
+	) throws Exception {
+		String text = tapSystemOut(
+			() -> assertThat(
+				startProcess(
+					childProcess("from child", "").inheritIO()
+				).waitFor(5, SECONDS)
+			).isTrue()
+		);
+
+		assertThat(text).isEqualTo("from child");
+	}
+
+	@Test
+	void exit_value_of_process_is_returned(
+	) throws Exception {
+		Process process = startProcess(
+			childProcess("", "").inheritIO()
+		);
+
+		assertThat(process.waitFor()).isEqualTo(0);
+		assertThat(process.exitValue()).isEqualTo(0);
+	}
+
+	@Test
+	void drained_output_is_not_provided_by_the_stream_of_the_process(
+	) throws Exception {
+		InputStream[] streams = new InputStream[2];
+		tapSystemOut(
+			() -> {
+				Process process = startProcess(
+					childProcess("from child", "").inheritIO()
+				);
+				process.waitFor();
+				streams[0] = process.getInputStream();
+				streams[1] = process.getErrorStream();
+			}
+		);
+
+		assertThat(streams[0].read()).isEqualTo(-1);
+		assertThat(streams[1].read()).isEqualTo(-1);
+	}
+
+	@Test
+	void output_of_process_that_does_not_inherit_System_out_is_not_tapped(
+	) throws Exception {
+		ByteArrayOutputStream outputOfProcess = new ByteArrayOutputStream();
+
+		String text = tapSystemOut(
+			() -> {
+				Process process = startProcess(
+					childProcess("from child", "")
+				);
+				copy(process.getInputStream(), outputOfProcess);
+				process.waitFor();
+			}
+		);
+
+		assertThat(text).isEmpty();
+		assertThat(outputOfProcess).hasToString("from child");
+	}
+
+	@Test
+	void redirects_of_builder_are_not_changed(
+	) throws Exception {
+		ProcessBuilder builder = childProcess("", "").inheritIO();
+
+		startProcess(builder).waitFor();
+
+		assertThat(builder.redirectOutput()).isEqualTo(Redirect.INHERIT);
+		assertThat(builder.redirectError()).isEqualTo(Redirect.INHERIT);
+	}
+
+	@Test
+	void output_of_process_after_tap_has_ended_is_not_written_to_later_tap(
+	) throws Exception {
+		Process[] process = new Process[1];
+		tapSystemOut(
+			() -> process[0] = startProcess(
+				childProcess("", "", "500", "late text").inheritIO()
+			)
+		);
+
+		String text = tapSystemOut(
+			() -> process[0].waitFor()
+		);
+
+		assertThat(text).isEmpty();
+	}
+
+	@Test
+	void pid_of_started_process_is_returned(
+	) throws Exception {
+		Method pid = pidMethod();
+		assumeThat(pid).isNotNull();
+		ProcessBuilder builder = childProcess("", "").inheritIO();
+		Process process = startProcess(builder);
+		try {
+			assertThat((Long) pid.invoke(process)).isPositive();
+		} finally {
+			process.waitFor();
+		}
+	}
+
+	private Method pidMethod() {
+		try {
+			return Process.class.getMethod("pid");
+		} catch (NoSuchMethodException e) {
+			//Process.pid() exists since Java 9
+			return null;
+		}
+	}
+
+	private ProcessBuilder childProcess(
+		String... args
+	) {
+		String java = getProperty("java.home")
+			+ File.separator + "bin" + File.separator + "java";
+		List<String> command = new ArrayList<>(asList(
+			java,
+			"-cp",
+			getProperty("java.class.path"),
+			ChildProcess.class.getName()
+		));
+		command.addAll(asList(args));
+		return new ProcessBuilder(command);
+	}
+
+	private void copy(
+		InputStream source,
+		ByteArrayOutputStream target
+	) throws Exception {
+		int b;
+		while ((b = source.read()) != -1)
+			target.write(b);
+	}
+
+	public static class ChildProcess {
+		/*
+		 * Writes args[0] to System.out and args[1] to System.err. If more
+		 * arguments are present, waits args[2] milliseconds and writes
+		 * args[3] to System.out.
+		 */
+		public static void main(
+			String[] args
+		) throws InterruptedException {
+			System.out.print(args[0]);
+			System.out.flush();
+			System.err.print(args[1]);
+			System.err.flush();
+			if (args.length > 2) {
+				Thread.sleep(Long.parseLong(args[2]));
+				System.out.print(args[3]);
+				System.out.flush();
+			}
+		}
+	}
+}
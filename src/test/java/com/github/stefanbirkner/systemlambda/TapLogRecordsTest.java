@@ -0,0 +1,148 @@
+package com.github.stefanbirkner.systemlambda;
+
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static com.github.stefanbirkner.fishbowl.Fishbowl.exceptionThrownBy;
+import static com.github.stefanbirkner.fishbowl.Fishbowl.ignoreException;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.tapLogRecords;
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Level.WARNING;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class TapLogRecordsTest {
+	private static final Logger LOGGER = Logger.getLogger(
+		TapLogRecordsTest.class.getName()
+	);
+
+	@Test
+	void records_are_returned_unformatted_in_order_of_logging(
+	) throws Exception {
+		List<LogRecord> records = tapLogRecords(
+			() -> {
+				LOGGER.log(WARNING, "Retry {0}", 3);
+				LOGGER.info("done");
+			}
+		);
+
+		assertThat(records)
+			.extracting(
+				LogRecord::getLevel,
+				LogRecord::getLoggerName,
+				LogRecord::getMessage
+			)
+			.containsExactly(
+				tuple(WARNING, LOGGER.getName(), "Retry {0}"),
+				tuple(INFO, LOGGER.getName(), "done")
+			);
+		assertThat(records.get(0).getParameters()).containsExactly(3);
+	}
+
+	@Test
+	void no_records_are_returned_when_statement_does_not_log(
+	) throws Exception {
+		List<LogRecord> records = tapLogRecords(
+			() -> {}
+		);
+
+		assertThat(records).isEmpty();
+	}
+
+	@Test
+	void only_the_last_records_are_returned_when_capacity_is_exceeded(
+	) throws Exception {
+		List<LogRecord> records = tapLogRecords(
+			2,
+			() -> {
+				for (int i = 1; i <= 5; ++i)
+					LOGGER.log(INFO, "Step {0}", i);
+			}
+		);
+
+		assertThat(records)
+			.extracting(record -> record.getParameters()[0])
+			.containsExactly(4, 5);
+	}
+
+	@Test
+	void records_that_are_logged_after_the_statement_are_not_tapped(
+	) throws Exception {
+		List<LogRecord> records = tapLogRecords(
+			() -> LOGGER.info("during statement")
+		);
+		LOGGER.info("after statement");
+
+		assertThat(records)
+			.extracting(LogRecord::getMessage)
+			.containsExactly("during statement");
+	}
+
+	@Test
+	void handler_is_removed_after_statement_is_executed(
+	) throws Exception {
+		Handler[] handlersBefore = Logger.getLogger("").getHandlers();
+
+		tapLogRecords(
+			() -> LOGGER.info("some message")
+		);
+
+		assertThat(Logger.getLogger("").getHandlers())
+			.containsExactly(handlersBefore);
+	}
+
+	@Test
+	void handler_is_removed_after_statement_throws_exception(
+	) {
+		Handler[] handlersBefore = Logger.getLogger("").getHandlers();
+
+		ignoreException(
+			() -> tapLogRecords(
+				() -> {
+					throw new Exception("some failure");
+				}
+			)
+		);
+
+		assertThat(Logger.getLogger("").getHandlers())
+			.containsExactly(handlersBefore);
+	}
+
+	@Test
+	void exception_thrown_by_statement_is_rethrown(
+	) {
+		Exception exception = new Exception("some failure");
+
+		Throwable thrown = exceptionThrownBy(
+			() -> tapLogRecords(
+				() -> {
+					throw exception;
+				}
+			)
+		);
+
+		assertThat(thrown).isSameAs(exception);
+	}
+
+	@Test
+	void capacity_must_be_positive(
+	) {
+		Throwable exception = exceptionThrownBy(
+			() -> tapLogRecords(
+				0,
+				() -> {}
+			)
+		);
+
+		assertThat(exception)
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage("The capacity must be positive but it is 0.");
+	}
+}
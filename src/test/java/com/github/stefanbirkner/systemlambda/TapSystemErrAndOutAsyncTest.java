@@ -0,0 +1,73 @@
+package com.github.stefanbirkner.systemlambda;
+
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static com.github.stefanbirkner.fishbowl.Fishbowl.ignoreException;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.tapSystemErrAndOutAsync;
+import static java.lang.System.err;
+import static java.lang.System.out;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class TapSystemErrAndOutAsyncTest {
+
+	@Test
+	void taps_text_that_is_written_to_System_err_and_out_before_stage_completes(
+	) throws Exception {
+		CompletableFuture<Void> stage = new CompletableFuture<>();
+
+		CompletableFuture<String> text = tapSystemErrAndOutAsync(
+			() -> {
+				err.print("word1 ");
+				out.print("word2 ");
+				return stage;
+			}
+		);
+		err.print("word3 ");
+		out.print("word4 ");
+		stage.complete(null);
+
+		assertThat(text.get()).isEqualTo("word1 word2 word3 word4 ");
+	}
+
+	@Nested
+	class System_err_is_same_as_before
+		extends RestoreSystemErrChecks
+	{
+		System_err_is_same_as_before() {
+			super(
+				statement -> ignoreException(
+					() -> tapSystemErrAndOutAsync(
+						() -> {
+							statement.execute();
+							return null;
+						}
+					).get()
+				)
+			);
+		}
+	}
+
+	@Nested
+	class System_out_is_same_as_before
+		extends RestoreSystemOutChecks
+	{
+		System_out_is_same_as_before() {
+			super(
+				statement -> ignoreException(
+					() -> tapSystemErrAndOutAsync(
+						() -> {
+							statement.execute();
+							return null;
+						}
+					).get()
+				)
+			);
+		}
+	}
+}
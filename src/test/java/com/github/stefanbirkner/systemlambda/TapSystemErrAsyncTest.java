@@ -0,0 +1,126 @@
+package com.github.stefanbirkner.systemlambda;
+
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static com.github.stefanbirkner.fishbowl.Fishbowl.exceptionThrownBy;
+import static com.github.stefanbirkner.fishbowl.Fishbowl.ignoreException;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.tapSystemErrAsync;
+import static java.lang.System.err;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class TapSystemErrAsyncTest {
+
+	@Test
+	void taps_text_that_is_written_before_stage_completes(
+	) throws Exception {
+		CompletableFuture<Void> stage = new CompletableFuture<>();
+
+		CompletableFuture<String> text = tapSystemErrAsync(
+			() -> {
+				err.print("first text ");
+				return stage;
+			}
+		);
+		err.print("second text");
+		stage.complete(null);
+
+		assertThat(text.get()).isEqualTo("first text second text");
+	}
+
+	@Test
+	void taps_text_that_is_written_by_another_thread(
+	) throws Exception {
+		CompletableFuture<String> text = tapSystemErrAsync(
+			() -> CompletableFuture.runAsync(
+				() -> err.print("some text")
+			)
+		);
+
+		assertThat(text.get()).isEqualTo("some text");
+	}
+
+	@Test
+	void System_err_is_replaced_until_stage_completes(
+	) throws Exception {
+		PrintStream originalErr = err;
+		CompletableFuture<Void> stage = new CompletableFuture<>();
+
+		CompletableFuture<String> text = tapSystemErrAsync(() -> stage);
+
+		assertThat(System.err).isNotSameAs(originalErr);
+		stage.complete(null);
+		text.get();
+		assertThat(System.err).isSameAs(originalErr);
+	}
+
+	@Test
+	void future_is_completed_exceptionally_when_stage_completes_exceptionally(
+	) {
+		Exception failure = new Exception("some failure");
+		CompletableFuture<Void> stage = new CompletableFuture<>();
+
+		CompletableFuture<String> text = tapSystemErrAsync(() -> stage);
+		stage.completeExceptionally(failure);
+
+		Throwable exception = exceptionThrownBy(text::get);
+		assertThat(exception)
+			.isInstanceOf(ExecutionException.class)
+			.hasCause(failure);
+	}
+
+	@Test
+	void future_is_completed_exceptionally_when_statement_throws_exception(
+	) {
+		Exception failure = new Exception("some failure");
+
+		CompletableFuture<String> text = tapSystemErrAsync(
+			() -> {
+				throw failure;
+			}
+		);
+
+		Throwable exception = exceptionThrownBy(text::get);
+		assertThat(exception)
+			.isInstanceOf(ExecutionException.class)
+			.hasCause(failure);
+	}
+
+	@Test
+	void null_stage_is_treated_as_completed_stage(
+	) throws Exception {
+		CompletableFuture<String> text = tapSystemErrAsync(
+			() -> {
+				err.print("some text");
+				return null;
+			}
+		);
+
+		assertThat(text.get()).isEqualTo("some text");
+	}
+
+	@Nested
+	class System_err_is_same_as_before
+		extends RestoreSystemErrChecks
+	{
+		System_err_is_same_as_before() {
+			super(
+				statement -> ignoreException(
+					() -> tapSystemErrAsync(
+						() -> {
+							statement.execute();
+							return null;
+						}
+					).get()
+				)
+			);
+		}
+	}
+}
@@ -0,0 +1,265 @@
+package com.github.stefanbirkner.systemlambda;
+
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.stefanbirkner.fishbowl.Fishbowl.exceptionThrownBy;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.tapSystemOutAsJsonLines;
+import static java.lang.System.out;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class TapSystemOutAsJsonLinesTest {
+
+	@Test
+	void each_line_is_passed_to_consumer_as_JSON_object(
+	) throws Exception {
+		List<Map<String, Object>> records = new ArrayList<>();
+
+		tapSystemOutAsJsonLines(
+			records::add,
+			() -> {
+				out.println("{\"event\": \"start\"}");
+				out.println("{\"event\": \"stop\"}");
+			}
+		);
+
+		assertThat(records).containsExactly(
+			singletonObject("event", "start"),
+			singletonObject("event", "stop")
+		);
+	}
+
+	@Test
+	void object_is_passed_to_consumer_as_soon_as_line_is_complete(
+	) throws Exception {
+		List<Map<String, Object>> records = new ArrayList<>();
+		List<Integer> numberOfRecordsAfterWrite = new ArrayList<>();
+
+		tapSystemOutAsJsonLines(
+			records::add,
+			() -> {
+				out.print("{\"event\": ");
+				numberOfRecordsAfterWrite.add(records.size());
+				out.print("\"start\"}\n{");
+				numberOfRecordsAfterWrite.add(records.size());
+				out.print("}");
+				numberOfRecordsAfterWrite.add(records.size());
+			}
+		);
+
+		assertThat(numberOfRecordsAfterWrite).containsExactly(0, 1, 1);
+		assertThat(records).hasSize(2);
+	}
+
+	@Test
+	void last_line_without_line_break_is_parsed(
+	) throws Exception {
+		List<Map<String, Object>> records = new ArrayList<>();
+
+		tapSystemOutAsJsonLines(
+			records::add,
+			() -> out.print("{\"event\": \"start\"}")
+		);
+
+		assertThat(records).containsExactly(singletonObject("event", "start"));
+	}
+
+	@Test
+	void JSON_values_are_converted_to_Java_objects(
+	) throws Exception {
+		List<Map<String, Object>> records = new ArrayList<>();
+
+		tapSystemOutAsJsonLines(
+			records::add,
+			() -> out.println(
+				"{\"string\": \"a\\\"b\\u00e4\\n\", \"integer\": -42,"
+					+ " \"large integer\": 12345678901234567890,"
+					+ " \"decimal\": 1.5e2, \"true\": true, \"false\": false,"
+					+ " \"null\": null, \"array\": [1, [], {}],"
+					+ " \"object\": {\"name\": \"value\"}}"
+			)
+		);
+
+		Map<String, Object> record = records.get(0);
+		assertThat(record).containsEntry("string", "a\"b\u00e4\n");
+		assertThat(record).containsEntry("integer", -42L);
+		assertThat(record).containsEntry(
+			"large integer",
+			new BigInteger("12345678901234567890")
+		);
+		assertThat(record).containsEntry("decimal", 150.0);
+		assertThat(record).containsEntry("true", true);
+		assertThat(record).containsEntry("false", false);
+		assertThat(record).containsEntry("null", null);
+		assertThat(record).containsEntry(
+			"array",
+			asList(1L, emptyList(), emptyMap())
+		);
+		assertThat(record).containsEntry(
+			"object",
+			singletonObject("name", "value")
+		);
+	}
+
+	@Test
+	void blank_lines_are_ignored(
+	) throws Exception {
+		List<Map<String, Object>> records = new ArrayList<>();
+
+		tapSystemOutAsJsonLines(
+			records::add,
+			() -> {
+				out.println();
+				out.println("  ");
+				out.println("{}");
+			}
+		);
+
+		assertThat(records).hasSize(1);
+	}
+
+	@Test
+	void malformed_lines_are_reported_with_line_number_and_offset() {
+		List<Map<String, Object>> records = new ArrayList<>();
+
+		Throwable exception = exceptionThrownBy(
+			() -> tapSystemOutAsJsonLines(
+				records::add,
+				() -> {
+					out.print("{\"event\": \"start\"}\n");
+					out.print("{\"event\" \"stop\"}\n");
+					out.print("{}\n");
+					out.print("some text\n");
+				}
+			)
+		);
+
+		assertThat(exception)
+			.isInstanceOf(AssertionError.class)
+			.hasMessage(
+				"Found 2 lines in the output of System.out that are not a"
+					+ " JSON object:" + System.lineSeparator()
+					+ "line 2 (offset 19): Expected ':' at column 10:"
+					+ " {\"event\" \"stop\"}" + System.lineSeparator()
+					+ "line 4 (offset 39): Expected '{' at column 1:"
+					+ " some text"
+			);
+		assertThat(records).hasSize(2);
+	}
+
+	@Test
+	void deeply_nested_line_is_reported_as_malformed() {
+		StringBuilder line = new StringBuilder("{\"a\":");
+		for (int i = 0; i < 10_000; ++i)
+			line.append('[');
+
+		Throwable exception = exceptionThrownBy(
+			() -> tapSystemOutAsJsonLines(
+				record -> {},
+				() -> out.print(line + "\n")
+			)
+		);
+
+		assertThat(exception)
+			.isInstanceOf(AssertionError.class)
+			.hasMessageContaining(
+				"line 1 (offset 0): Objects and arrays are nested deeper than"
+					+ " 512 levels at column 517"
+			);
+	}
+
+	@Test
+	void unicode_escape_sequence_with_sign_is_reported_as_malformed() {
+		Throwable exception = exceptionThrownBy(
+			() -> tapSystemOutAsJsonLines(
+				record -> {},
+				() -> {
+					out.print("{\"a\": \"\\u+04A\"}\n");
+					out.print("{\"a\": \"\\u-04A\"}\n");
+				}
+			)
+		);
+
+		assertThat(exception)
+			.isInstanceOf(AssertionError.class)
+			.hasMessageContaining(
+				"line 1 (offset 0): Invalid unicode escape sequence at"
+					+ " column 10"
+			)
+			.hasMessageContaining(
+				"line 2 (offset 16): Invalid unicode escape sequence at"
+					+ " column 10"
+			);
+	}
+
+	@Test
+	void exception_of_consumer_is_thrown_after_statement_has_been_executed() {
+		RuntimeException failure = new RuntimeException("some failure");
+		List<String> linesOfStatement = new ArrayList<>();
+
+		Throwable exception = exceptionThrownBy(
+			() -> tapSystemOutAsJsonLines(
+				record -> {
+					throw failure;
+				},
+				() -> {
+					out.println("{}");
+					linesOfStatement.add("after first line");
+					out.println("{}");
+					linesOfStatement.add("after second line");
+				}
+			)
+		);
+
+		assertThat(exception).isSameAs(failure);
+		assertThat(linesOfStatement)
+			.containsExactly("after first line", "after second line");
+	}
+
+	@Test
+	void exception_of_statement_is_thrown_although_line_is_malformed() {
+		Exception exceptionOfStatement = new Exception("some exception");
+
+		Throwable exception = exceptionThrownBy(
+			() -> tapSystemOutAsJsonLines(
+				record -> {},
+				() -> {
+					out.println("some text");
+					throw exceptionOfStatement;
+				}
+			)
+		);
+
+		assertThat(exception).isSameAs(exceptionOfStatement);
+	}
+
+	@Nested
+	class System_out_is_same_as_before
+		extends RestoreSystemOutChecks
+	{
+		System_out_is_same_as_before() {
+			super(statement -> tapSystemOutAsJsonLines(record -> {}, statement));
+		}
+	}
+
+	private static Map<String, Object> singletonObject(
+		String name,
+		Object value
+	) {
+		Map<String, Object> object = new LinkedHashMap<>();
+		object.put(name, value);
+		return object;
+	}
+}
@@ -0,0 +1,126 @@
+package com.github.stefanbirkner.systemlambda;
+
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static com.github.stefanbirkner.fishbowl.Fishbowl.exceptionThrownBy;
+import static com.github.stefanbirkner.fishbowl.Fishbowl.ignoreException;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.tapSystemOutAsync;
+import static java.lang.System.out;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class TapSystemOutAsyncTest {
+
+	@Test
+	void taps_text_that_is_written_before_stage_completes(
+	) throws Exception {
+		CompletableFuture<Void> stage = new CompletableFuture<>();
+
+		CompletableFuture<String> text = tapSystemOutAsync(
+			() -> {
+				out.print("first text ");
+				return stage;
+			}
+		);
+		out.print("second text");
+		stage.complete(null);
+
+		assertThat(text.get()).isEqualTo("first text second text");
+	}
+
+	@Test
+	void taps_text_that_is_written_by_another_thread(
+	) throws Exception {
+		CompletableFuture<String> text = tapSystemOutAsync(
+			() -> CompletableFuture.runAsync(
+				() -> out.print("some text")
+			)
+		);
+
+		assertThat(text.get()).isEqualTo("some text");
+	}
+
+	@Test
+	void System_out_is_replaced_until_stage_completes(
+	) throws Exception {
+		PrintStream originalOut = out;
+		CompletableFuture<Void> stage = new CompletableFuture<>();
+
+		CompletableFuture<String> text = tapSystemOutAsync(() -> stage);
+
+		assertThat(System.out).isNotSameAs(originalOut);
+		stage.complete(null);
+		text.get();
+		assertThat(System.out).isSameAs(originalOut);
+	}
+
+	@Test
+	void future_is_completed_exceptionally_when_stage_completes_exceptionally(
+	) {
+		Exception failure = new Exception("some failure");
+		CompletableFuture<Void> stage = new CompletableFuture<>();
+
+		CompletableFuture<String> text = tapSystemOutAsync(() -> stage);
+		stage.completeExceptionally(failure);
+
+		Throwable exception = exceptionThrownBy(text::get);
+		assertThat(exception)
+			.isInstanceOf(ExecutionException.class)
+			.hasCause(failure);
+	}
+
+	@Test
+	void future_is_completed_exceptionally_when_statement_throws_exception(
+	) {
+		Exception failure = new Exception("some failure");
+
+		CompletableFuture<String> text = tapSystemOutAsync(
+			() -> {
+				throw failure;
+			}
+		);
+
+		Throwable exception = exceptionThrownBy(text::get);
+		assertThat(exception)
+			.isInstanceOf(ExecutionException.class)
+			.hasCause(failure);
+	}
+
+	@Test
+	void null_stage_is_treated_as_completed_stage(
+	) throws Exception {
+		CompletableFuture<String> text = tapSystemOutAsync(
+			() -> {
+				out.print("some text");
+				return null;
+			}
+		);
+
+		assertThat(text.get()).isEqualTo("some text");
+	}
+
+	@Nested
+	class System_out_is_same_as_before
+		extends RestoreSystemOutChecks
+	{
+		System_out_is_same_as_before() {
+			super(
+				statement -> ignoreException(
+					() -> tapSystemOutAsync(
+						() -> {
+							statement.execute();
+							return null;
+						}
+					).get()
+				)
+			);
+		}
+	}
+}
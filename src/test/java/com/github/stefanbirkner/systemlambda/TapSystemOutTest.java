@@ -5,6 +5,9 @@ import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
+import java.io.PrintStream;
+
+import static com.github.stefanbirkner.fishbowl.Fishbowl.ignoreException;
 import static com.github.stefanbirkner.systemlambda.SystemLambda.tapSystemOut;
 import static java.lang.System.*;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -34,6 +37,92 @@ class TapSystemOutTest {
 			.isEqualTo("");
 	}
 
+	@Test
+	void nested_tap_taps_only_text_of_inner_statement(
+	) throws Exception {
+		StringBuilder innerText = new StringBuilder();
+
+		String outerText = tapSystemOut(
+			() -> {
+				out.print("outer ");
+				innerText.append(
+					tapSystemOut(
+						() -> out.print("inner")
+					)
+				);
+				out.print("text");
+			}
+		);
+
+		assertThat(outerText).isEqualTo("outer text");
+		assertThat(innerText).hasToString("inner");
+	}
+
+	@Test
+	void tap_works_after_statement_of_previous_tap_closed_System_out(
+	) throws Exception {
+		tapSystemOut(
+			() -> out.close()
+		);
+
+		String text = tapSystemOut(
+			() -> out.print("some text")
+		);
+
+		assertThat(text).isEqualTo("some text");
+	}
+
+	@Test
+	void tap_does_not_contain_text_of_previous_tap_whose_statement_threw_exception(
+	) throws Exception {
+		ignoreException(
+			() -> tapSystemOut(
+				() -> {
+					out.print("first text");
+					throw new Exception("some exception");
+				}
+			)
+		);
+
+		String text = tapSystemOut(
+			() -> out.print("second text")
+		);
+
+		assertThat(text).isEqualTo("second text");
+	}
+
+	@Test
+	void stream_that_was_kept_from_previous_tap_does_not_write_to_later_tap(
+	) throws Exception {
+		PrintStream[] keptStream = new PrintStream[1];
+		tapSystemOut(
+			() -> keptStream[0] = out
+		);
+
+		String text = tapSystemOut(
+			() -> keptStream[0].print("text of previous tap")
+		);
+
+		assertThat(text).isEmpty();
+	}
+
+	@Test
+	void stream_that_was_kept_from_nested_tap_does_not_write_to_enclosing_tap(
+	) throws Exception {
+		PrintStream[] keptStream = new PrintStream[1];
+
+		String text = tapSystemOut(
+			() -> {
+				tapSystemOut(
+					() -> keptStream[0] = out
+				);
+				keptStream[0].print("text of nested tap");
+			}
+		);
+
+		assertThat(text).isEmpty();
+	}
+
 	@Nested
 	class System_out_is_same_as_before
 		extends RestoreSystemOutChecks
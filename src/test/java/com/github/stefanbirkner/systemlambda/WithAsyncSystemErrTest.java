@@ -0,0 +1,253 @@
+package com.github.stefanbirkner.systemlambda;
+
+import com.github.stefanbirkner.systemlambda.SystemLambda.AsyncOutputStatistics;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+
+import static com.github.stefanbirkner.fishbowl.Fishbowl.exceptionThrownBy;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.OverflowPolicy.BLOCK;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.OverflowPolicy.DROP;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.OverflowPolicy.FAIL;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.tapSystemErr;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.withAsyncSystemErr;
+import static java.lang.System.err;
+import static java.lang.System.setErr;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+@Timeout(value = 10, unit = SECONDS)
+class WithAsyncSystemErrTest {
+
+	@Test
+	void text_is_written_to_original_System_err_before_method_returns(
+	) throws Exception {
+		ByteArrayOutputStream console = new ByteArrayOutputStream();
+		setErr(new PrintStream(console));
+
+		withAsyncSystemErr(
+			() -> {
+				err.print("first line\n");
+				err.write('x');
+				err.print("second line");
+			}
+		);
+
+		assertThat(console).hasToString("first line\nxsecond line");
+	}
+
+	@Test
+	void statistics_contain_number_of_queued_and_flushed_bytes(
+	) throws Exception {
+		setErr(new PrintStream(new ByteArrayOutputStream()));
+
+		AsyncOutputStatistics statistics = withAsyncSystemErr(
+			() -> err.print("some text")
+		);
+
+		assertThat(statistics.queuedBytes()).isEqualTo(9);
+		assertThat(statistics.flushedBytes()).isEqualTo(9);
+		assertThat(statistics.droppedBytes()).isZero();
+	}
+
+	@Test
+	void slow_console_does_not_block_statement(
+	) throws Exception {
+		CountDownLatch consoleMayWrite = new CountDownLatch(1);
+		ByteArrayOutputStream console = new ByteArrayOutputStream();
+		setErr(new PrintStream(new BlockingStream(consoleMayWrite, console)));
+
+		withAsyncSystemErr(
+			() -> {
+				err.print("some text");
+				consoleMayWrite.countDown();
+			}
+		);
+
+		assertThat(console).hasToString("some text");
+	}
+
+	@Test
+	void output_is_dropped_when_queue_is_full_and_policy_is_DROP(
+	) throws Exception {
+		CountDownLatch consoleMayWrite = new CountDownLatch(1);
+		ByteArrayOutputStream console = new ByteArrayOutputStream();
+		setErr(new PrintStream(new BlockingStream(consoleMayWrite, console)));
+
+		AsyncOutputStatistics statistics = withAsyncSystemErr(
+			4,
+			DROP,
+			() -> {
+				err.print("abcd");
+				err.print("efgh");
+				consoleMayWrite.countDown();
+			}
+		);
+
+		assertThat(console).hasToString("abcd");
+		assertThat(statistics.queuedBytes()).isEqualTo(4);
+		assertThat(statistics.droppedBytes()).isEqualTo(4);
+		assertThat(statistics.flushedBytes()).isEqualTo(4);
+	}
+
+	@Test
+	void output_is_dropped_and_assertion_error_is_thrown_when_queue_is_full_and_policy_is_FAIL() {
+		CountDownLatch consoleMayWrite = new CountDownLatch(1);
+		ByteArrayOutputStream console = new ByteArrayOutputStream();
+		setErr(new PrintStream(new BlockingStream(consoleMayWrite, console)));
+
+		Throwable exception = exceptionThrownBy(
+			() -> withAsyncSystemErr(
+				4,
+				FAIL,
+				() -> {
+					err.print("abcd");
+					err.print("efgh");
+					consoleMayWrite.countDown();
+				}
+			)
+		);
+
+		assertThat(exception)
+			.isInstanceOf(AssertionError.class)
+			.hasMessage("The queue of 4 bytes was full. Dropped bytes: 4.");
+		assertThat(console).hasToString("abcd");
+	}
+
+	@Test
+	void statement_waits_when_queue_is_full_and_policy_is_BLOCK(
+	) throws Exception {
+		ByteArrayOutputStream console = new ByteArrayOutputStream();
+		setErr(new PrintStream(console));
+
+		AsyncOutputStatistics statistics = withAsyncSystemErr(
+			4,
+			BLOCK,
+			() -> {
+				for (int i = 0; i < 100; ++i)
+					err.print("abcd");
+			}
+		);
+
+		assertThat(console.size()).isEqualTo(400);
+		assertThat(statistics.droppedBytes()).isZero();
+	}
+
+	@Test
+	void statement_does_not_wait_forever_when_console_throws_RuntimeException(
+	) throws Exception {
+		ByteArrayOutputStream console = new ByteArrayOutputStream();
+		setErr(new PrintStream(new FailingStream(console)));
+
+		withAsyncSystemErr(
+			4,
+			BLOCK,
+			() -> {
+				for (int i = 0; i < 100; ++i)
+					err.print("abcd");
+			}
+		);
+
+		assertThat(console.size()).isEqualTo(396);
+	}
+
+	@Test
+	void capacity_must_be_positive() {
+		Throwable exception = exceptionThrownBy(
+			() -> withAsyncSystemErr(0, BLOCK, () -> {})
+		);
+
+		assertThat(exception)
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage("The capacity must be positive but it is 0.");
+	}
+
+	@Test
+	void text_is_written_to_enclosing_tap(
+	) throws Exception {
+		String text = tapSystemErr(
+			() -> withAsyncSystemErr(
+				() -> err.print("some text")
+			)
+		);
+
+		assertThat(text).isEqualTo("some text");
+	}
+
+	@Nested
+	class System_err_is_same_as_before
+		extends RestoreSystemErrChecks
+	{
+		System_err_is_same_as_before() {
+			super(SystemLambda::withAsyncSystemErr);
+		}
+	}
+
+	/*
+	 * Throws a RuntimeException when the first bytes are written.
+	 */
+	private static class FailingStream extends OutputStream {
+		private final OutputStream target;
+		private boolean failed = false;
+
+		FailingStream(
+			OutputStream target
+		) {
+			this.target = target;
+		}
+
+		@Override
+		public void write(
+			int b
+		) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(
+			byte[] b,
+			int off,
+			int len
+		) throws IOException {
+			if (!failed) {
+				failed = true;
+				throw new IllegalStateException("some failure");
+			}
+			target.write(b, off, len);
+		}
+	}
+
+	private static class BlockingStream extends OutputStream {
+		private final CountDownLatch mayWrite;
+		private final OutputStream target;
+
+		BlockingStream(
+			CountDownLatch mayWrite,
+			OutputStream target
+		) {
+			this.mayWrite = mayWrite;
+			this.target = target;
+		}
+
+		@Override
+		public void write(
+			int b
+		) throws IOException {
+			try {
+				mayWrite.await();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			target.write(b);
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package com.github.stefanbirkner.systemlambda;
+
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static com.github.stefanbirkner.systemlambda.SystemLambda.withBufferedOutput;
+import static java.lang.System.err;
+import static java.lang.System.out;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class WithBufferedOutputTest {
+
+	@Test
+	void taps_text_that_is_written_to_System_out_by_statement(
+	) throws Exception {
+		String text = withBufferedOutput().tapSystemOutNormalized(
+			() -> {
+				out.println("first line");
+				out.println("second line");
+			}
+		);
+
+		assertThat(text)
+			.isEqualTo("first line\nsecond line\n");
+	}
+
+	@Test
+	void taps_text_that_is_written_to_System_err_by_statement(
+	) throws Exception {
+		String text = withBufferedOutput().tapSystemErrNormalized(
+			() -> {
+				err.println("first line");
+				err.println("second line");
+			}
+		);
+
+		assertThat(text)
+			.isEqualTo("first line\nsecond line\n");
+	}
+
+	@Test
+	void keeps_order_of_text_that_is_written_to_System_err_and_out(
+	) throws Exception {
+		String text = withBufferedOutput().tapSystemErrAndOut(
+			() -> {
+				err.print("word1 ");
+				out.print("word2 ");
+				err.print("word3 ");
+				out.print("word4 ");
+			}
+		);
+
+		assertThat(text)
+			.isEqualTo("word1 word2 word3 word4 ");
+	}
+
+	@Test
+	void taps_text_that_exceeds_the_buffer(
+	) throws Exception {
+		String text = withBufferedOutput().tapSystemOut(
+			() -> {
+				for (int i = 0; i < 10_000; ++i)
+					out.print("0123456789");
+			}
+		);
+
+		assertThat(text).hasSize(100_000);
+	}
+
+	@Nested
+	class System_err_is_same_as_before
+		extends RestoreSystemErrChecks
+	{
+		System_err_is_same_as_before() {
+			super(withBufferedOutput()::tapSystemErrAndOut);
+		}
+	}
+
+	@Nested
+	class System_out_is_same_as_before
+		extends RestoreSystemOutChecks
+	{
+		System_out_is_same_as_before() {
+			super(withBufferedOutput()::tapSystemErrAndOut);
+		}
+	}
+}
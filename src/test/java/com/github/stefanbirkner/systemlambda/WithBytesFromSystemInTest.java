@@ -0,0 +1,334 @@
+package com.github.stefanbirkner.systemlambda;
+
+import com.github.stefanbirkner.systemlambda.SystemLambda.SystemInStub;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.github.stefanbirkner.fishbowl.Fishbowl.exceptionThrownBy;
+import static com.github.stefanbirkner.fishbowl.Fishbowl.ignoreException;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.withBytesFromSystemIn;
+import static java.lang.System.in;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+@Timeout(value = 10, unit = SECONDS)
+class WithBytesFromSystemInTest {
+
+	@Test
+	void bytes_of_all_buffers_are_available_from_System_in(
+	) throws Exception {
+		Iterator<ByteBuffer> buffers = asList(
+			ByteBuffer.wrap(new byte[] { 1, 2, 3 }),
+			ByteBuffer.wrap(new byte[] { 4, 5 })
+		).iterator();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		withBytesFromSystemIn(() -> buffers.hasNext() ? buffers.next() : null)
+			.execute(() -> copy(in, bytes));
+
+		assertThat(bytes.toByteArray()).containsExactly(1, 2, 3, 4, 5);
+	}
+
+	@Test
+	void empty_buffers_are_skipped(
+	) throws Exception {
+		Iterator<ByteBuffer> buffers = asList(
+			ByteBuffer.allocate(0),
+			ByteBuffer.wrap(new byte[] { 1 }),
+			ByteBuffer.allocate(0),
+			ByteBuffer.wrap(new byte[] { 2 })
+		).iterator();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		withBytesFromSystemIn(() -> buffers.hasNext() ? buffers.next() : null)
+			.execute(() -> copy(in, bytes));
+
+		assertThat(bytes.toByteArray()).containsExactly(1, 2);
+	}
+
+	@Test
+	void supplier_is_called_when_previous_buffer_has_been_read(
+	) throws Exception {
+		AtomicInteger numberOfCalls = new AtomicInteger();
+		AtomicInteger numberOfCallsAfterFirstRead = new AtomicInteger();
+
+		withBytesFromSystemIn(() -> {
+			numberOfCalls.incrementAndGet();
+			return ByteBuffer.wrap(new byte[] { 1, 2 });
+		}).execute(() -> {
+			in.read(new byte[2]);
+			numberOfCallsAfterFirstRead.set(numberOfCalls.get());
+		});
+
+		assertThat(numberOfCallsAfterFirstRead).hasValue(1);
+	}
+
+	@Test
+	void position_of_buffer_is_not_changed(
+	) throws Exception {
+		ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 1, 2, 3 });
+		AtomicInteger numberOfCalls = new AtomicInteger();
+
+		withBytesFromSystemIn(
+			() -> numberOfCalls.incrementAndGet() == 1 ? buffer : null
+		).execute(() -> copy(in, new ByteArrayOutputStream()));
+
+		assertThat(buffer.position()).isZero();
+	}
+
+	@Test
+	void System_in_throws_requested_IOException_after_the_bytes(
+	) throws Exception {
+		IOException exception = new IOException();
+		AtomicInteger numberOfCalls = new AtomicInteger();
+		AtomicReference<Throwable> exceptionCapture = new AtomicReference<>();
+
+		withBytesFromSystemIn(
+			() -> numberOfCalls.incrementAndGet() == 1
+				? ByteBuffer.wrap(new byte[] { 1 })
+				: null
+		).andExceptionThrownOnInputEnd(exception)
+			.execute(() -> {
+				in.read();
+				exceptionCapture.set(exceptionThrownBy(in::read));
+			});
+
+		assertThat(exceptionCapture).hasValue(exception);
+	}
+
+	@Test
+	void all_byte_values_of_array_are_available_from_System_in(
+	) throws Exception {
+		byte[] allValues = new byte[256];
+		for (int i = 0; i < allValues.length; ++i)
+			allValues[i] = (byte) i;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		withBytesFromSystemIn(allValues)
+			.execute(() -> copy(in, bytes));
+
+		assertThat(bytes.toByteArray()).containsExactly(allValues);
+	}
+
+	@Test
+	void single_byte_reads_of_array_return_unsigned_values(
+	) throws Exception {
+		AtomicReference<int[]> values = new AtomicReference<>();
+
+		withBytesFromSystemIn(new byte[] { (byte) 0xca, (byte) 0xfe, 0 })
+			.execute(() -> values.set(
+				new int[] { in.read(), in.read(), in.read(), in.read() }
+			));
+
+		assertThat(values.get()).containsExactly(0xca, 0xfe, 0, -1);
+	}
+
+	@Test
+	void length_prefixed_frame_can_be_read_from_array(
+	) throws Exception {
+		AtomicReference<byte[]> frame = new AtomicReference<>();
+
+		withBytesFromSystemIn(new byte[] { 0, 0, 0, 2, (byte) 0xca, (byte) 0xfe })
+			.execute(() -> {
+				DataInputStream data = new DataInputStream(in);
+				byte[] payload = new byte[data.readInt()];
+				data.readFully(payload);
+				frame.set(payload);
+			});
+
+		assertThat(frame.get()).containsExactly(0xca, 0xfe);
+	}
+
+	@Test
+	void bytes_between_position_and_limit_of_buffer_are_available_from_System_in(
+	) throws Exception {
+		ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 1, 2, 3, 4, 5 });
+		buffer.position(1).limit(4);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		withBytesFromSystemIn(buffer)
+			.execute(() -> copy(in, bytes));
+
+		assertThat(bytes.toByteArray()).containsExactly(2, 3, 4);
+		assertThat(buffer.position()).isEqualTo(1);
+	}
+
+	@Test
+	void bytes_of_direct_buffer_are_available_from_System_in(
+	) throws Exception {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(3);
+		buffer.put(new byte[] { 1, 2, 3 }).flip();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		withBytesFromSystemIn(buffer)
+			.execute(() -> copy(in, bytes));
+
+		assertThat(bytes.toByteArray()).containsExactly(1, 2, 3);
+	}
+
+	@Test
+	void each_execution_reads_the_bytes_from_the_original_position(
+	) throws Exception {
+		ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 1, 2, 3 });
+		SystemInStub stub = withBytesFromSystemIn(buffer);
+		buffer.position(2);
+		ByteArrayOutputStream firstBytes = new ByteArrayOutputStream();
+		ByteArrayOutputStream secondBytes = new ByteArrayOutputStream();
+
+		stub.execute(() -> copy(in, firstBytes));
+		stub.execute(() -> copy(in, secondBytes));
+
+		assertThat(firstBytes.toByteArray()).containsExactly(1, 2, 3);
+		assertThat(secondBytes.toByteArray()).containsExactly(1, 2, 3);
+	}
+
+	@Test
+	void System_in_throws_requested_RuntimeException_after_the_bytes_of_array(
+	) throws Exception {
+		RuntimeException exception = new IllegalStateException();
+		AtomicReference<Throwable> exceptionCapture = new AtomicReference<>();
+
+		withBytesFromSystemIn(new byte[] { 1, 2 })
+			.andExceptionThrownOnInputEnd(exception)
+			.execute(() -> {
+				in.read(new byte[2]);
+				exceptionCapture.set(exceptionThrownBy(() -> in.read(new byte[2])));
+			});
+
+		assertThat(exceptionCapture).hasValue(exception);
+	}
+
+	@Test
+	void line_separator_that_is_split_across_buffers_ends_line_with_one_line_per_read(
+	) throws Exception {
+		Iterator<ByteBuffer> buffers = asList(
+			ByteBuffer.wrap("a\r".getBytes(US_ASCII)),
+			ByteBuffer.wrap("\nb\r".getBytes(US_ASCII)),
+			ByteBuffer.wrap("\n".getBytes(US_ASCII))
+		).iterator();
+		List<String> reads = new ArrayList<>();
+
+		withBytesFromSystemIn(() -> buffers.hasNext() ? buffers.next() : null)
+			.andLineSeparator("\r\n")
+			.andOneLinePerRead()
+			.execute(() -> reads.addAll(reads()));
+
+		assertThat(reads).containsExactly("a\r", "\n", "b\r", "\n");
+	}
+
+	@Test
+	void line_separator_that_is_split_across_reads_ends_line_with_one_line_per_read(
+	) throws Exception {
+		List<String> reads = new ArrayList<>();
+
+		withBytesFromSystemIn("ab\r\ncd\r\n".getBytes(US_ASCII))
+			.andLineSeparator("\r\n")
+			.andOneLinePerRead()
+			.andReadSize(3)
+			.execute(() -> reads.addAll(reads()));
+
+		assertThat(reads).containsExactly("ab\r", "\n", "cd\r", "\n");
+	}
+
+	@Test
+	void System_in_pauses_after_line_separator_that_is_split_across_buffers_of_one_byte(
+	) throws Exception {
+		byte[] input = "a\r\nb\r\nc\r\n".getBytes(US_ASCII);
+		AtomicInteger index = new AtomicInteger();
+		long start = System.nanoTime();
+
+		withBytesFromSystemIn(
+			() -> index.get() < input.length
+				? ByteBuffer.wrap(input, index.getAndIncrement(), 1)
+				: null
+		)
+			.andLineSeparator("\r\n")
+			.andPauseBetweenLines(Duration.ofMillis(50))
+			.execute(() -> reads());
+
+		assertThat(NANOSECONDS.toMillis(System.nanoTime() - start))
+			.isGreaterThanOrEqualTo(100);
+	}
+
+	@Test
+	void line_separator_must_not_be_empty(
+	) {
+		Throwable exception = exceptionThrownBy(
+			() -> withBytesFromSystemIn(new byte[0]).andLineSeparator("")
+		);
+
+		assertThat(exception)
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage("The line separator must not be empty.");
+	}
+
+	@Nested
+	class System_in_is_same_as_before {
+		@Test
+		void after_statement_is_executed(
+		) throws Exception {
+			InputStream originalSystemIn = in;
+
+			withBytesFromSystemIn(() -> null)
+				.execute(() -> {});
+
+			assertThat(System.in).isSameAs(originalSystemIn);
+		}
+
+		@Test
+		void after_statement_throws_exception(
+		) {
+			InputStream originalSystemIn = in;
+
+			ignoreException(
+				() -> withBytesFromSystemIn(() -> null)
+					.execute(
+						() -> {
+							throw new Exception("some exception");
+						}
+					)
+			);
+
+			assertThat(System.in).isSameAs(originalSystemIn);
+		}
+	}
+
+	private static List<String> reads(
+	) throws IOException {
+		List<String> reads = new ArrayList<>();
+		byte[] buffer = new byte[1024];
+		int numberOfBytes;
+		while ((numberOfBytes = in.read(buffer)) != -1)
+			reads.add(new String(buffer, 0, numberOfBytes, US_ASCII));
+		return reads;
+	}
+
+	private static void copy(
+		InputStream source,
+		ByteArrayOutputStream target
+	) throws IOException {
+		byte[] buffer = new byte[4];
+		int numberOfBytes;
+		while ((numberOfBytes = source.read(buffer)) != -1)
+			target.write(buffer, 0, numberOfBytes);
+	}
+}
@@ -12,6 +12,8 @@ import java.lang.reflect.Field;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import static com.github.stefanbirkner.fishbowl.Fishbowl.ignoreException;
 import static com.github.stefanbirkner.systemlambda.SystemLambda.withEnvironmentVariable;
@@ -345,6 +347,74 @@ class WithEnvironmentVariableTest {
 		}
 	}
 
+	@Nested
+	class asynchronous_statement {
+		@Test
+		void sees_environment_variable_until_stage_completes(
+		) throws Exception {
+			CompletableFuture<Void> stage = new CompletableFuture<>();
+
+			CompletableFuture<Void> future = withEnvironmentVariable(
+				"dummy name",
+				"dummy value"
+			).executeAsync(() -> stage);
+
+			assertThat(getenv("dummy name")).isEqualTo("dummy value");
+			stage.complete(null);
+			future.get();
+		}
+
+		@Test
+		void environment_variables_are_the_same_as_before_after_stage_completes(
+		) throws Exception {
+			String originalValue = getenv("dummy name");
+			CompletableFuture<Void> stage = new CompletableFuture<>();
+
+			CompletableFuture<Void> future = withEnvironmentVariable(
+				"dummy name",
+				randomValue()
+			).executeAsync(() -> stage);
+			stage.complete(null);
+			future.get();
+
+			assertThat(getenv("dummy name")).isEqualTo(originalValue);
+		}
+
+		@Test
+		void environment_variables_are_the_same_as_before_after_stage_completes_exceptionally() {
+			String originalValue = getenv("dummy name");
+			CompletableFuture<Void> stage = new CompletableFuture<>();
+
+			CompletableFuture<Void> future = withEnvironmentVariable(
+				"dummy name",
+				randomValue()
+			).executeAsync(() -> stage);
+			stage.completeExceptionally(new Exception("dummy exception"));
+
+			Throwable exception = catchThrowable(future::get);
+			assertThat(exception)
+				.isInstanceOf(ExecutionException.class)
+				.hasMessageContaining("dummy exception");
+			assertThat(getenv("dummy name")).isEqualTo(originalValue);
+		}
+
+		@Test
+		void environment_variables_are_the_same_as_before_after_statement_throws_exception() {
+			String originalValue = getenv("dummy name");
+
+			CompletableFuture<Void> future = withEnvironmentVariable(
+				"dummy name",
+				randomValue()
+			).executeAsync(() -> {
+					throw new Exception("dummy exception");
+				}
+			);
+
+			assertThat(future).isCompletedExceptionally();
+			assertThat(getenv("dummy name")).isEqualTo(originalValue);
+		}
+	}
+
 	private boolean javaIsVersion15OrOlder() {
 		String javaVersion = System.getProperty("java.version");
 		String majorVersion = substringBefore(javaVersion, ".");
@@ -0,0 +1,260 @@
+package com.github.stefanbirkner.systemlambda;
+
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.github.stefanbirkner.fishbowl.Fishbowl.exceptionThrownBy;
+import static com.github.stefanbirkner.fishbowl.Fishbowl.ignoreException;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.withFileAsSystemIn;
+import static java.lang.System.in;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class WithFileAsSystemInTest {
+	private static final long MAPPING_SIZE = 1 << 28;
+
+	@TempDir
+	Path folder;
+
+	@Test
+	void content_of_file_is_available_from_System_in(
+	) throws Exception {
+		Path file = fileWithContent("first line\nsecond line\n");
+		List<String> lines = new ArrayList<>();
+
+		withFileAsSystemIn(file)
+			.execute(() -> {
+				BufferedReader reader = new BufferedReader(
+					new InputStreamReader(in, UTF_8));
+				String line;
+				while ((line = reader.readLine()) != null)
+					lines.add(line);
+			});
+
+		assertThat(lines).containsExactly("first line", "second line");
+	}
+
+	@Test
+	void empty_file_provides_no_bytes(
+	) throws Exception {
+		Path file = fileWithContent("");
+		AtomicInteger byteCapture = new AtomicInteger();
+
+		withFileAsSystemIn(file)
+			.execute(() -> byteCapture.set(in.read()));
+
+		assertThat(byteCapture).hasValue(-1);
+	}
+
+	@Test
+	void available_returns_number_of_bytes_that_have_not_been_read(
+	) throws Exception {
+		Path file = fileWithContent("some text");
+		AtomicInteger availableBeforeRead = new AtomicInteger();
+		AtomicInteger availableAfterRead = new AtomicInteger();
+
+		withFileAsSystemIn(file)
+			.execute(() -> {
+				availableBeforeRead.set(in.available());
+				in.read(new byte[4]);
+				availableAfterRead.set(in.available());
+			});
+
+		assertThat(availableBeforeRead).hasValue(9);
+		assertThat(availableAfterRead).hasValue(5);
+	}
+
+	@Test
+	void skipped_bytes_are_not_read(
+	) throws Exception {
+		Path file = fileWithContent("some text");
+		AtomicLong skipped = new AtomicLong();
+		AtomicInteger byteCapture = new AtomicInteger();
+
+		withFileAsSystemIn(file)
+			.execute(() -> {
+				skipped.set(in.skip(5));
+				byteCapture.set(in.read());
+			});
+
+		assertThat(skipped).hasValue(5);
+		assertThat(byteCapture).hasValue('t');
+	}
+
+	@Test
+	void skip_stops_at_end_of_file(
+	) throws Exception {
+		Path file = fileWithContent("some text");
+		AtomicLong skipped = new AtomicLong();
+		AtomicInteger byteCapture = new AtomicInteger();
+
+		withFileAsSystemIn(file)
+			.execute(() -> {
+				in.read();
+				skipped.set(in.skip(100));
+				byteCapture.set(in.read());
+			});
+
+		assertThat(skipped).hasValue(8);
+		assertThat(byteCapture).hasValue(-1);
+	}
+
+	@Test
+	void reset_continues_at_marked_position(
+	) throws Exception {
+		Path file = fileWithContent("some text");
+		AtomicReference<String> textCapture = new AtomicReference<>();
+		AtomicReference<Boolean> markSupported = new AtomicReference<>();
+
+		withFileAsSystemIn(file)
+			.execute(() -> {
+				markSupported.set(in.markSupported());
+				in.skip(5);
+				in.mark(0);
+				in.read(new byte[4]);
+				in.reset();
+				byte[] text = new byte[4];
+				new DataInputStream(in).readFully(text);
+				textCapture.set(new String(text, UTF_8));
+			});
+
+		assertThat(markSupported).hasValue(true);
+		assertThat(textCapture).hasValue("text");
+	}
+
+	@Test
+	void mark_and_reset_can_be_called_for_each_record(
+	) throws Exception {
+		Path file = fileWithContent("some text");
+		AtomicInteger numberOfCorrectReads = new AtomicInteger();
+
+		withFileAsSystemIn(file)
+			.execute(() -> {
+				in.skip(5);
+				byte[] text = new byte[4];
+				for (int i = 0; i < 100_000; ++i) {
+					in.mark(4);
+					in.read(text);
+					in.reset();
+					if (new String(text, UTF_8).equals("text"))
+						numberOfCorrectReads.incrementAndGet();
+				}
+			});
+
+		assertThat(numberOfCorrectReads).hasValue(100_000);
+	}
+
+	@Test
+	void bytes_are_read_across_mappings(
+	) throws Exception {
+		Path file = folder.resolve("large-file");
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(
+			file.toFile(), "rw")
+		) {
+			randomAccessFile.setLength(MAPPING_SIZE + 2);
+			randomAccessFile.seek(MAPPING_SIZE - 2);
+			randomAccessFile.write(new byte[] { 1, 2, 3, 4 });
+		}
+		byte[] bytes = new byte[4];
+		AtomicInteger byteAfterEnd = new AtomicInteger();
+
+		withFileAsSystemIn(file)
+			.execute(() -> {
+				in.skip(MAPPING_SIZE - 2);
+				new DataInputStream(in).readFully(bytes);
+				byteAfterEnd.set(in.read());
+			});
+
+		assertThat(bytes).containsExactly(1, 2, 3, 4);
+		assertThat(byteAfterEnd).hasValue(-1);
+	}
+
+	@Test
+	void System_in_throws_requested_IOException_after_the_file_is_read(
+	) throws Exception {
+		Path file = fileWithContent("x");
+		IOException exception = new IOException();
+		AtomicReference<Throwable> exceptionCapture = new AtomicReference<>();
+
+		withFileAsSystemIn(file)
+			.andExceptionThrownOnInputEnd(exception)
+			.execute(() -> {
+				in.read();
+				exceptionCapture.set(exceptionThrownBy(in::read));
+			});
+
+		assertThat(exceptionCapture).hasValue(exception);
+	}
+
+	@Test
+	void missing_file_causes_exception(
+	) {
+		Path file = folder.resolve("missing-file");
+
+		Throwable exception = exceptionThrownBy(
+			() -> withFileAsSystemIn(file).execute(() -> {})
+		);
+
+		assertThat(exception).isInstanceOf(IOException.class);
+	}
+
+	@Nested
+	class System_in_is_same_as_before {
+		@Test
+		void after_statement_is_executed(
+		) throws Exception {
+			Path file = fileWithContent("some text");
+			InputStream originalSystemIn = in;
+
+			withFileAsSystemIn(file)
+				.execute(() -> {});
+
+			assertThat(System.in).isSameAs(originalSystemIn);
+		}
+
+		@Test
+		void after_statement_throws_exception(
+		) throws Exception {
+			Path file = fileWithContent("some text");
+			InputStream originalSystemIn = in;
+
+			ignoreException(
+				() -> withFileAsSystemIn(file)
+					.execute(
+						() -> {
+							throw new Exception("some exception");
+						}
+					)
+			);
+
+			assertThat(System.in).isSameAs(originalSystemIn);
+		}
+	}
+
+	private Path fileWithContent(
+		String content
+	) throws IOException {
+		return Files.write(
+			folder.resolve("input.txt"),
+			content.getBytes(UTF_8)
+		);
+	}
+}
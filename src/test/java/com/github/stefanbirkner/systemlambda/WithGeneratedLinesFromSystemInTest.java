@@ -0,0 +1,235 @@
+package com.github.stefanbirkner.systemlambda;
+
+import com.github.stefanbirkner.systemlambda.SystemLambda.SystemInStub;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.stefanbirkner.fishbowl.Fishbowl.exceptionThrownBy;
+import static com.github.stefanbirkner.fishbowl.Fishbowl.ignoreException;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.withGeneratedLinesFromSystemIn;
+import static java.nio.charset.StandardCharsets.UTF_16;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class WithGeneratedLinesFromSystemInTest {
+
+	@Test
+	void the_specified_number_of_lines_is_provided(
+	) throws Exception {
+		List<String> lines = new ArrayList<>();
+
+		withGeneratedLinesFromSystemIn(42L, 20_000, "line {int}")
+			.execute(() -> lines.addAll(readLines()));
+
+		assertThat(lines).hasSize(20_000);
+	}
+
+	@Test
+	void no_line_is_provided_when_number_of_lines_is_zero(
+	) throws Exception {
+		withGeneratedLinesFromSystemIn(42L, 0, "line {int}")
+			.execute(() -> assertThat(System.in.read()).isEqualTo(-1));
+	}
+
+	@Test
+	void fields_are_replaced_with_random_values(
+	) throws Exception {
+		List<String> lines = new ArrayList<>();
+
+		withGeneratedLinesFromSystemIn(
+			42L,
+			1_000,
+			"{timestamp} user={word} id={int} row={csv:3}"
+		).execute(() -> lines.addAll(readLines()));
+
+		assertThat(lines).allMatch(
+			line -> line.matches(
+				"\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\.\\d{3}Z"
+					+ " user=[a-z]+ id=\\d+ row=(\\d+|[a-z]+)(,(\\d+|[a-z]+)){2}"
+			)
+		);
+	}
+
+	@Test
+	void text_that_is_not_a_field_is_copied_to_each_line(
+	) throws Exception {
+		List<String> lines = new ArrayList<>();
+
+		withGeneratedLinesFromSystemIn(
+			42L,
+			2,
+			"{\"name\": \"{unknown}\", \"caf\u00e9\": {csv:0}}"
+		).andCharset(UTF_8)
+			.execute(() -> lines.addAll(readLines()));
+
+		assertThat(lines).containsExactly(
+			"{\"name\": \"{unknown}\", \"caf\u00e9\": {csv:0}}",
+			"{\"name\": \"{unknown}\", \"caf\u00e9\": {csv:0}}"
+		);
+	}
+
+	@Test
+	void timestamps_start_at_2020_and_increase(
+	) throws Exception {
+		List<String> lines = new ArrayList<>();
+
+		withGeneratedLinesFromSystemIn(42L, 1_000, "{timestamp}")
+			.execute(() -> lines.addAll(readLines()));
+
+		assertThat(lines.get(0)).startsWith("2020-01-01T00:00:0");
+		assertThat(lines).isSorted();
+	}
+
+	@Test
+	void lines_are_the_same_for_the_same_seed(
+	) throws Exception {
+		List<String> firstLines = new ArrayList<>();
+		List<String> secondLines = new ArrayList<>();
+
+		withGeneratedLinesFromSystemIn(42L, 100, "{word} {int}")
+			.execute(() -> firstLines.addAll(readLines()));
+		withGeneratedLinesFromSystemIn(42L, 100, "{word} {int}")
+			.execute(() -> secondLines.addAll(readLines()));
+
+		assertThat(firstLines).isEqualTo(secondLines);
+	}
+
+	@Test
+	void lines_differ_for_different_seeds(
+	) throws Exception {
+		List<String> firstLines = new ArrayList<>();
+		List<String> secondLines = new ArrayList<>();
+
+		withGeneratedLinesFromSystemIn(42L, 100, "{word} {int}")
+			.execute(() -> firstLines.addAll(readLines()));
+		withGeneratedLinesFromSystemIn(43L, 100, "{word} {int}")
+			.execute(() -> secondLines.addAll(readLines()));
+
+		assertThat(firstLines).isNotEqualTo(secondLines);
+	}
+
+	@Test
+	void each_execution_reads_the_same_lines(
+	) throws Exception {
+		SystemInStub stub = withGeneratedLinesFromSystemIn(
+			42L, 100, "{word} {int}");
+		List<String> firstLines = new ArrayList<>();
+		List<String> secondLines = new ArrayList<>();
+
+		stub.execute(() -> firstLines.addAll(readLines()));
+		stub.execute(() -> secondLines.addAll(readLines()));
+
+		assertThat(firstLines).isEqualTo(secondLines);
+	}
+
+	@Test
+	@Timeout(value = 10, unit = SECONDS)
+	void a_large_amount_of_lines_is_generated_quickly(
+	) throws Exception {
+		long[] numberOfBytes = new long[1];
+
+		withGeneratedLinesFromSystemIn(
+			42L,
+			2_000_000,
+			"{timestamp} INFO {csv:8}"
+		).execute(() -> {
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = System.in.read(buffer)) != -1)
+				numberOfBytes[0] += n;
+		});
+
+		assertThat(numberOfBytes[0]).isGreaterThan(100_000_000L);
+	}
+
+	@Test
+	void exception_is_thrown_after_the_lines_have_been_read(
+	) {
+		Throwable exception = exceptionThrownBy(
+			() -> withGeneratedLinesFromSystemIn(42L, 3, "{int}")
+				.andExceptionThrownOnInputEnd(new IllegalStateException())
+				.execute(() -> readLines())
+		);
+
+		assertThat(exception).isInstanceOf(IllegalStateException.class);
+	}
+
+	@Test
+	void number_of_lines_must_not_be_negative(
+	) {
+		Throwable exception = exceptionThrownBy(
+			() -> withGeneratedLinesFromSystemIn(42L, -1, "{int}")
+		);
+
+		assertThat(exception)
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage("The number of lines must not be negative but it is -1.");
+	}
+
+	@Test
+	void charset_must_encode_ASCII_characters_like_ASCII(
+	) {
+		Throwable exception = exceptionThrownBy(
+			() -> withGeneratedLinesFromSystemIn(42L, 1, "{int}")
+				.andCharset(UTF_16)
+				.execute(() -> {})
+		);
+
+		assertThat(exception)
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage(
+				"Lines cannot be generated with the charset UTF-16 because it"
+					+ " does not encode ASCII characters like ASCII does.");
+	}
+
+	@Nested
+	class System_in_is_same_as_before {
+		@Test
+		void after_statement_is_executed(
+		) throws Exception {
+			InputStream originalSystemIn = System.in;
+
+			withGeneratedLinesFromSystemIn(42L, 10, "{int}")
+				.execute(() -> {});
+
+			assertThat(System.in).isSameAs(originalSystemIn);
+		}
+
+		@Test
+		void after_statement_throws_exception(
+		) {
+			InputStream originalSystemIn = System.in;
+
+			ignoreException(
+				() -> withGeneratedLinesFromSystemIn(42L, 10, "{int}")
+					.execute(() -> {
+						throw new Exception("some exception");
+					})
+			);
+
+			assertThat(System.in).isSameAs(originalSystemIn);
+		}
+	}
+
+	private static List<String> readLines(
+	) throws Exception {
+		BufferedReader reader = new BufferedReader(
+			new InputStreamReader(System.in, UTF_8));
+		List<String> lines = new ArrayList<>();
+		String line;
+		while ((line = reader.readLine()) != null)
+			lines.add(line);
+		return lines;
+	}
+}
@@ -0,0 +1,197 @@
+package com.github.stefanbirkner.systemlambda;
+
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.github.stefanbirkner.fishbowl.Fishbowl.exceptionThrownBy;
+import static com.github.stefanbirkner.fishbowl.Fishbowl.ignoreException;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.withLinesFromSystemIn;
+import static java.lang.System.in;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+@Timeout(value = 10, unit = SECONDS)
+class WithLinesFromSystemInTest {
+
+	@Test
+	void lines_of_iterator_are_available_from_System_in(
+	) throws Exception {
+		List<String> lines = new ArrayList<>();
+
+		withLinesFromSystemIn(asList("first line", "second line").iterator())
+			.execute(() -> readLines(lines));
+
+		assertThat(lines).containsExactly("first line", "second line");
+	}
+
+	@Test
+	void lines_of_stream_are_available_from_System_in(
+	) throws Exception {
+		List<String> lines = new ArrayList<>();
+
+		withLinesFromSystemIn(Stream.of("first line", "second line"))
+			.execute(() -> readLines(lines));
+
+		assertThat(lines).containsExactly("first line", "second line");
+	}
+
+	@Test
+	void many_lines_are_available_from_System_in(
+	) throws Exception {
+		AtomicInteger numberOfLines = new AtomicInteger();
+		AtomicReference<String> lastLine = new AtomicReference<>();
+
+		withLinesFromSystemIn(
+			IntStream.range(0, 100_000).mapToObj(i -> "line " + i)
+		).execute(() -> {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				numberOfLines.incrementAndGet();
+				lastLine.set(line);
+			}
+		});
+
+		assertThat(numberOfLines).hasValue(100_000);
+		assertThat(lastLine).hasValue("line 99999");
+	}
+
+	@Test
+	void lines_are_taken_from_iterator_when_they_are_read(
+	) throws Exception {
+		AtomicInteger numberOfTakenLines = new AtomicInteger();
+		AtomicReference<String> firstLine = new AtomicReference<>();
+
+		withLinesFromSystemIn(
+			Stream.generate(() -> "line " + numberOfTakenLines.incrementAndGet())
+		).execute(() -> {
+			Scanner scanner = new Scanner(in);
+			firstLine.set(scanner.nextLine());
+		});
+
+		assertThat(firstLine).hasValue("line 1");
+		assertThat(numberOfTakenLines.get()).isLessThan(10_000);
+	}
+
+	@Test
+	void line_that_is_larger_than_a_chunk_is_available_from_System_in(
+	) throws Exception {
+		StringBuilder longLine = new StringBuilder();
+		for (int i = 0; i < 10_000; ++i)
+			longLine.append(i);
+		List<String> lines = new ArrayList<>();
+
+		withLinesFromSystemIn(
+			asList("first line", longLine.toString(), "last line").iterator()
+		).execute(() -> readLines(lines));
+
+		assertThat(lines)
+			.containsExactly("first line", longLine.toString(), "last line");
+	}
+
+	@Test
+	void lines_are_encoded_with_specified_charset(
+	) throws Exception {
+		AtomicReference<String> lineCapture = new AtomicReference<>();
+
+		withLinesFromSystemIn(Stream.of("\u00e4\u20ac"))
+			.andCharset(UTF_8)
+			.execute(() -> {
+				Scanner scanner = new Scanner(in, "UTF-8");
+				lineCapture.set(scanner.nextLine());
+			});
+
+		assertThat(lineCapture).hasValue("\u00e4\u20ac");
+	}
+
+	@Test
+	void System_in_throws_requested_IOException_after_the_lines(
+	) throws Exception {
+		IOException exception = new IOException();
+		List<String> lines = new ArrayList<>();
+		AtomicReference<Throwable> exceptionCapture = new AtomicReference<>();
+
+		withLinesFromSystemIn(Stream.of("some line"))
+			.andExceptionThrownOnInputEnd(exception)
+			.execute(() -> exceptionCapture.set(
+				exceptionThrownBy(() -> readLines(lines))
+			));
+
+		assertThat(lines).containsExactly("some line");
+		assertThat(exceptionCapture).hasValue(exception);
+	}
+
+	@Test
+	void System_in_throws_requested_RuntimeException_after_the_lines(
+	) throws Exception {
+		RuntimeException exception = new RuntimeException();
+		AtomicReference<Throwable> exceptionCapture = new AtomicReference<>();
+
+		withLinesFromSystemIn(Stream.of("some line"))
+			.andExceptionThrownOnInputEnd(exception)
+			.execute(() -> {
+				in.skip(Long.MAX_VALUE);
+				exceptionCapture.set(exceptionThrownBy(in::read));
+			});
+
+		assertThat(exceptionCapture).hasValue(exception);
+	}
+
+	@Nested
+	class System_in_is_same_as_before {
+		@Test
+		void after_statement_is_executed(
+		) throws Exception {
+			InputStream originalSystemIn = in;
+
+			withLinesFromSystemIn(Stream.of("some line"))
+				.execute(() -> {});
+
+			assertThat(System.in).isSameAs(originalSystemIn);
+		}
+
+		@Test
+		void after_statement_throws_exception(
+		) {
+			InputStream originalSystemIn = in;
+
+			ignoreException(
+				() -> withLinesFromSystemIn(Stream.of("some line"))
+					.execute(
+						() -> {
+							throw new Exception("some exception");
+						}
+					)
+			);
+
+			assertThat(System.in).isSameAs(originalSystemIn);
+		}
+	}
+
+	private static void readLines(
+		List<String> lines
+	) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+		String line;
+		while ((line = reader.readLine()) != null)
+			lines.add(line);
+	}
+}
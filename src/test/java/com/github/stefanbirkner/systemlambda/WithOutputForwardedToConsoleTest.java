@@ -0,0 +1,136 @@
+package com.github.stefanbirkner.systemlambda;
+
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+
+import static com.github.stefanbirkner.systemlambda.SystemLambda.tapSystemOut;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.withOutputForwardedToConsole;
+import static java.lang.System.*;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+@Timeout(value = 10, unit = SECONDS)
+class WithOutputForwardedToConsoleTest {
+
+	@Test
+	void taps_text_and_forwards_it_to_original_System_out(
+	) throws Exception {
+		ByteArrayOutputStream console = new ByteArrayOutputStream();
+		setOut(new PrintStream(console));
+
+		String text = withOutputForwardedToConsole().tapSystemOut(
+			() -> out.print("some text")
+		);
+
+		assertThat(text).isEqualTo("some text");
+		assertThat(console).hasToString("some text");
+	}
+
+	@Test
+	void forwards_text_of_System_err_and_out_to_their_original_streams(
+	) throws Exception {
+		ByteArrayOutputStream originalErr = new ByteArrayOutputStream();
+		ByteArrayOutputStream originalOut = new ByteArrayOutputStream();
+		setErr(new PrintStream(originalErr));
+		setOut(new PrintStream(originalOut));
+
+		String text = withOutputForwardedToConsole().tapSystemErrAndOut(
+			() -> {
+				err.print("text from err ");
+				out.print("text from out");
+			}
+		);
+
+		assertThat(text).isEqualTo("text from err text from out");
+		assertThat(originalErr).hasToString("text from err ");
+		assertThat(originalOut).hasToString("text from out");
+	}
+
+	@Test
+	void buffered_tap_forwards_text_to_original_System_out(
+	) throws Exception {
+		ByteArrayOutputStream console = new ByteArrayOutputStream();
+		setOut(new PrintStream(console));
+
+		String text = withOutputForwardedToConsole().andBuffered().tapSystemOut(
+			() -> out.print("some text")
+		);
+
+		assertThat(text).isEqualTo("some text");
+		assertThat(console).hasToString("some text");
+	}
+
+	@Test
+	void slow_console_does_not_block_statement(
+	) throws Exception {
+		CountDownLatch consoleMayWrite = new CountDownLatch(1);
+		ByteArrayOutputStream console = new ByteArrayOutputStream();
+		setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(
+				int b
+			) {
+				try {
+					consoleMayWrite.await();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				console.write(b);
+			}
+		}));
+
+		String text = withOutputForwardedToConsole().tapSystemOut(
+			() -> {
+				out.print("some text");
+				consoleMayWrite.countDown();
+			}
+		);
+
+		assertThat(text).isEqualTo("some text");
+		assertThat(console).hasToString("some text");
+	}
+
+	@Test
+	void nested_tap_forwards_text_to_enclosing_tap(
+	) throws Exception {
+		StringBuilder innerText = new StringBuilder();
+
+		String outerText = tapSystemOut(
+			() -> innerText.append(
+				withOutputForwardedToConsole().tapSystemOut(
+					() -> out.print("some text")
+				)
+			)
+		);
+
+		assertThat(innerText).hasToString("some text");
+		assertThat(outerText).isEqualTo("some text");
+	}
+
+	@Nested
+	class System_err_is_same_as_before
+		extends RestoreSystemErrChecks
+	{
+		System_err_is_same_as_before() {
+			super(withOutputForwardedToConsole()::tapSystemErrAndOut);
+		}
+	}
+
+	@Nested
+	class System_out_is_same_as_before
+		extends RestoreSystemOutChecks
+	{
+		System_out_is_same_as_before() {
+			super(withOutputForwardedToConsole()::tapSystemErrAndOut);
+		}
+	}
+}
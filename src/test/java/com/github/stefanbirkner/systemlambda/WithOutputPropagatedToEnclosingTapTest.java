@@ -0,0 +1,217 @@
+package com.github.stefanbirkner.systemlambda;
+
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static com.github.stefanbirkner.fishbowl.Fishbowl.ignoreException;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.tapSystemErr;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.tapSystemErrAndOut;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.tapSystemOut;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.withBufferedOutput;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.withOutputPropagatedToEnclosingTap;
+import static java.lang.System.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+class WithOutputPropagatedToEnclosingTapTest {
+
+	@Test
+	void text_of_nested_tap_is_part_of_enclosing_tap(
+	) throws Exception {
+		StringBuilder innerText = new StringBuilder();
+
+		String outerText = tapSystemOut(
+			() -> {
+				out.print("first ");
+				innerText.append(
+					withOutputPropagatedToEnclosingTap().tapSystemOut(
+						() -> out.print("second ")
+					)
+				);
+				out.print("third");
+			}
+		);
+
+		assertThat(innerText).hasToString("second ");
+		assertThat(outerText).isEqualTo("first second third");
+	}
+
+	@Test
+	void text_of_nested_tap_is_not_part_of_enclosing_tap_without_propagation(
+	) throws Exception {
+		String outerText = tapSystemOut(
+			() -> {
+				out.print("first ");
+				tapSystemOut(
+					() -> out.print("second ")
+				);
+				out.print("third");
+			}
+		);
+
+		assertThat(outerText).isEqualTo("first third");
+	}
+
+	@Test
+	void text_is_propagated_through_multiple_levels(
+	) throws Exception {
+		String outerText = tapSystemOut(
+			() -> withOutputPropagatedToEnclosingTap().tapSystemOut(
+				() -> withOutputPropagatedToEnclosingTap().tapSystemOut(
+					() -> out.print("some text")
+				)
+			)
+		);
+
+		assertThat(outerText).isEqualTo("some text");
+	}
+
+	@Test
+	void large_text_of_nested_tap_is_part_of_enclosing_tap(
+	) throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 300_000; ++i)
+			text.append(i);
+
+		String outerText = tapSystemOut(
+			() -> {
+				out.print("first ");
+				withOutputPropagatedToEnclosingTap().tapSystemOut(
+					() -> out.print(text)
+				);
+				out.print(" last");
+			}
+		);
+
+		assertThat(outerText).isEqualTo("first " + text + " last");
+	}
+
+	@Test
+	void text_is_propagated_when_statement_throws_exception(
+	) throws Exception {
+		String outerText = tapSystemOut(
+			() -> ignoreException(
+				() -> withOutputPropagatedToEnclosingTap().tapSystemOut(
+					() -> {
+						out.print("some text");
+						throw new Exception("some exception");
+					}
+				)
+			)
+		);
+
+		assertThat(outerText).isEqualTo("some text");
+	}
+
+	@Test
+	void text_of_nested_tap_of_System_err_and_out_is_propagated_to_tap_of_System_out(
+	) throws Exception {
+		String outerText = tapSystemOut(
+			() -> withOutputPropagatedToEnclosingTap().tapSystemErrAndOut(
+				() -> {
+					err.print("text from err ");
+					out.print("text from out");
+				}
+			)
+		);
+
+		assertThat(outerText).isEqualTo("text from err text from out");
+	}
+
+	@Test
+	void text_of_nested_tap_of_System_err_and_out_is_propagated_to_tap_of_System_err_if_System_out_is_not_tapped(
+	) throws Exception {
+		setOut(new PrintStream(new ByteArrayOutputStream()));
+
+		String outerText = tapSystemErr(
+			() -> withOutputPropagatedToEnclosingTap().tapSystemErrAndOut(
+				() -> {
+					err.print("text from err ");
+					out.print("text from out");
+				}
+			)
+		);
+
+		assertThat(outerText).isEqualTo("text from err text from out");
+	}
+
+	@Test
+	void text_of_nested_tap_of_System_err_and_out_is_propagated_to_tap_of_System_err_and_out(
+	) throws Exception {
+		String outerText = tapSystemErrAndOut(
+			() -> withOutputPropagatedToEnclosingTap().tapSystemErrAndOut(
+				() -> {
+					err.print("text from err ");
+					out.print("text from out");
+				}
+			)
+		);
+
+		assertThat(outerText).isEqualTo("text from err text from out");
+	}
+
+	@Test
+	void text_is_propagated_to_buffered_tap(
+	) throws Exception {
+		String outerText = withBufferedOutput().tapSystemOut(
+			() -> {
+				out.print("first ");
+				withOutputPropagatedToEnclosingTap().tapSystemOut(
+					() -> out.print("second")
+				);
+			}
+		);
+
+		assertThat(outerText).isEqualTo("first second");
+	}
+
+	@Test
+	void text_is_written_to_System_out_if_it_is_not_tapped(
+	) throws Exception {
+		ByteArrayOutputStream console = new ByteArrayOutputStream();
+		setOut(new PrintStream(console));
+
+		withOutputPropagatedToEnclosingTap().tapSystemOut(
+			() -> out.print("some text")
+		);
+
+		assertThat(console).hasToString("some text");
+	}
+
+	@Test
+	void text_that_is_forwarded_to_console_is_not_propagated_twice(
+	) throws Exception {
+		String outerText = tapSystemOut(
+			() -> withOutputPropagatedToEnclosingTap()
+				.andForwardedToConsole()
+				.tapSystemOut(
+					() -> out.print("some text")
+				)
+		);
+
+		assertThat(outerText).isEqualTo("some text");
+	}
+
+	@Nested
+	class System_err_is_same_as_before
+		extends RestoreSystemErrChecks
+	{
+		System_err_is_same_as_before() {
+			super(withOutputPropagatedToEnclosingTap()::tapSystemErrAndOut);
+		}
+	}
+
+	@Nested
+	class System_out_is_same_as_before
+		extends RestoreSystemOutChecks
+	{
+		System_out_is_same_as_before() {
+			super(withOutputPropagatedToEnclosingTap()::tapSystemErrAndOut);
+		}
+	}
+}
@@ -0,0 +1,343 @@
+package com.github.stefanbirkner.systemlambda;
+
+import com.github.stefanbirkner.systemlambda.SystemLambda.SystemInPipe;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.stefanbirkner.fishbowl.Fishbowl.exceptionThrownBy;
+import static com.github.stefanbirkner.fishbowl.Fishbowl.ignoreException;
+import static com.github.stefanbirkner.systemlambda.SystemLambda.withSystemInPipe;
+import static java.lang.System.in;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayNameGeneration(ReplaceUnderscores.class)
+@Timeout(value = 10, unit = SECONDS)
+class WithSystemInPipeTest {
+
+	@Test
+	void lines_that_are_written_to_pipe_are_read_from_System_in(
+	) throws Exception {
+		List<String> lines = new CopyOnWriteArrayList<>();
+
+		withSystemInPipe(
+			pipe -> {
+				pipe.writeLine("first line");
+				pipe.writeLine("second line");
+			},
+			() -> readLines(lines)
+		);
+
+		assertThat(lines).containsExactly("first line", "second line");
+	}
+
+	@Test
+	void statement_can_answer_each_line_before_next_line_is_written(
+	) throws Exception {
+		BlockingQueue<String> answers = new LinkedBlockingQueue<>();
+		List<String> answersSeenByFeeder = new CopyOnWriteArrayList<>();
+
+		withSystemInPipe(
+			pipe -> {
+				pipe.writeLine("1");
+				answersSeenByFeeder.add(answers.take());
+				pipe.writeLine("2");
+				answersSeenByFeeder.add(answers.take());
+			},
+			() -> {
+				BufferedReader reader = new BufferedReader(
+					new InputStreamReader(in));
+				String line;
+				while ((line = reader.readLine()) != null)
+					answers.add("answer " + line);
+			}
+		);
+
+		assertThat(answersSeenByFeeder)
+			.containsExactly("answer 1", "answer 2");
+	}
+
+	@Test
+	void input_that_is_larger_than_the_buffer_is_read_completely(
+	) throws Exception {
+		AtomicInteger numberOfBytes = new AtomicInteger();
+
+		withSystemInPipe(
+			16,
+			pipe -> {
+				for (int i = 0; i < 1000; ++i)
+					pipe.write("0123456789");
+			},
+			() -> {
+				byte[] buffer = new byte[7];
+				int n;
+				while ((n = in.read(buffer)) != -1)
+					numberOfBytes.addAndGet(n);
+			}
+		);
+
+		assertThat(numberOfBytes).hasValue(10_000);
+	}
+
+	@Test
+	void single_bytes_are_read_as_unsigned_values(
+	) throws Exception {
+		AtomicInteger byteCapture = new AtomicInteger();
+
+		withSystemInPipe(
+			pipe -> pipe.write(new byte[] { (byte) 0xC3 }),
+			() -> byteCapture.set(in.read())
+		);
+
+		assertThat(byteCapture).hasValue(0xC3);
+	}
+
+	@Test
+	void System_in_provides_end_of_input_after_pipe_is_closed(
+	) throws Exception {
+		AtomicInteger byteCapture = new AtomicInteger();
+
+		withSystemInPipe(
+			SystemInPipe::close,
+			() -> byteCapture.set(in.read())
+		);
+
+		assertThat(byteCapture).hasValue(-1);
+	}
+
+	@Test
+	void latency_of_each_line_is_reported(
+	) throws Exception {
+		SystemInPipe pipe = withSystemInPipe(
+			feeder -> {
+				feeder.writeLine("first line");
+				feeder.writeLine("second line");
+			},
+			() -> readLines(new CopyOnWriteArrayList<>())
+		);
+
+		assertThat(pipe.lineLatencies())
+			.hasSize(2)
+			.allSatisfy(latency -> assertThat(latency).isPositive());
+	}
+
+	@Test
+	void latency_is_not_reported_for_lines_that_have_not_been_read(
+	) throws Exception {
+		SystemInPipe pipe = withSystemInPipe(
+			feeder -> feeder.writeLine("some line"),
+			() -> {}
+		);
+
+		assertThat(pipe.lineLatencies()).isEmpty();
+	}
+
+	@Test
+	void writing_to_closed_pipe_fails(
+	) {
+		Throwable exception = exceptionThrownBy(
+			() -> withSystemInPipe(
+				pipe -> {
+					pipe.close();
+					pipe.write("some text");
+				},
+				() -> {}
+			)
+		);
+
+		assertThat(exception)
+			.isInstanceOf(IllegalStateException.class)
+			.hasMessage("The pipe has been closed.");
+	}
+
+	@Test
+	void writing_after_statement_has_been_executed_fails(
+	) {
+		Throwable exception = exceptionThrownBy(
+			() -> withSystemInPipe(
+				1,
+				pipe -> {
+					while (true)
+						pipe.write("some text");
+				},
+				() -> {}
+			)
+		);
+
+		assertThat(exception)
+			.isInstanceOf(IllegalStateException.class)
+			.hasMessage(
+				"The statement has been executed and does not read from"
+					+ " System.in anymore."
+			);
+	}
+
+	@Test
+	void exception_thrown_by_statement_is_rethrown(
+	) {
+		Exception exception = new Exception("some failure");
+
+		Throwable thrown = exceptionThrownBy(
+			() -> withSystemInPipe(
+				pipe -> {},
+				() -> {
+					throw exception;
+				}
+			)
+		);
+
+		assertThat(thrown).isSameAs(exception);
+	}
+
+	@Test
+	void exception_thrown_by_feeder_is_rethrown(
+	) {
+		Exception exception = new Exception("some failure");
+
+		Throwable thrown = exceptionThrownBy(
+			() -> withSystemInPipe(
+				pipe -> {
+					throw exception;
+				},
+				() -> in.read()
+			)
+		);
+
+		assertThat(thrown).isSameAs(exception);
+	}
+
+	@Test
+	void statement_that_does_not_finish_after_feeder_has_returned_is_interrupted_and_assertion_error_is_thrown(
+	) throws Exception {
+		CountDownLatch interrupted = new CountDownLatch(1);
+
+		Throwable error = exceptionThrownBy(
+			() -> withSystemInPipe(
+				16,
+				Duration.ofMillis(100),
+				pipe -> {},
+				() -> {
+					try {
+						new CountDownLatch(1).await();
+					} catch (InterruptedException e) {
+						interrupted.countDown();
+					}
+				}
+			)
+		);
+
+		assertThat(error)
+			.isInstanceOf(AssertionError.class)
+			.hasMessage(
+				"The statement did not finish within 100 ms after the feeder"
+					+ " had returned. It has been interrupted."
+			);
+		assertThat(interrupted.await(1, SECONDS)).isTrue();
+	}
+
+	@Test
+	void capacity_must_be_positive(
+	) {
+		Throwable exception = exceptionThrownBy(
+			() -> withSystemInPipe(
+				0,
+				pipe -> {},
+				() -> {}
+			)
+		);
+
+		assertThat(exception)
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage("The capacity must be positive but it is 0.");
+	}
+
+	@Test
+	void timeout_must_be_positive(
+	) {
+		Throwable exception = exceptionThrownBy(
+			() -> withSystemInPipe(
+				16,
+				Duration.ZERO,
+				pipe -> {},
+				() -> {}
+			)
+		);
+
+		assertThat(exception)
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage("The timeout must be positive but it is PT0S.");
+	}
+
+	@Nested
+	class System_in_is_same_as_before {
+		@Test
+		void after_statement_is_executed(
+		) throws Exception {
+			InputStream originalSystemIn = in;
+
+			withSystemInPipe(
+				pipe -> pipe.writeLine("some line"),
+				() -> {}
+			);
+
+			assertThat(System.in).isSameAs(originalSystemIn);
+		}
+
+		@Test
+		void after_statement_throws_exception(
+		) {
+			InputStream originalSystemIn = in;
+
+			ignoreException(
+				() -> withSystemInPipe(
+					pipe -> {},
+					() -> {
+						throw new Exception("some exception");
+					}
+				)
+			);
+
+			assertThat(System.in).isSameAs(originalSystemIn);
+		}
+
+		@Test
+		void after_feeder_throws_exception(
+		) {
+			InputStream originalSystemIn = in;
+
+			ignoreException(
+				() -> withSystemInPipe(
+					pipe -> {
+						throw new Exception("some exception");
+					},
+					() -> {}
+				)
+			);
+
+			assertThat(System.in).isSameAs(originalSystemIn);
+		}
+	}
+
+	private static void readLines(
+		List<String> lines
+	) throws Exception {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+		String line;
+		while ((line = reader.readLine()) != null)
+			lines.add(line);
+	}
+}
@@ -1,10 +1,15 @@
 package com.github.stefanbirkner.systemlambda;
 
+import com.github.stefanbirkner.systemlambda.SystemLambda.SystemInStub;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.DisplayNameGenerator.ReplaceUnderscores;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Scanner;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -13,6 +18,10 @@ import static com.github.stefanbirkner.fishbowl.Fishbowl.exceptionThrownBy;
 import static com.github.stefanbirkner.systemlambda.SystemLambda.withTextFromSystemIn;
 import static java.lang.String.format;
 import static java.lang.System.in;
+import static java.lang.System.lineSeparator;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.catchThrowable;
@@ -52,6 +61,268 @@ class WithTextFromSystemInTest {
 		assertThat(secondLineCapture).hasValue("second line");
 	}
 
+	@Test
+	void all_remaining_bytes_are_read_by_a_single_read_with_bulk_reads(
+	) throws Exception {
+		byte[] buffer = new byte[1024];
+		AtomicInteger numberOfBytesCapture = new AtomicInteger();
+
+		withTextFromSystemIn("first line", "second line")
+			.andBulkReads()
+			.execute(() -> numberOfBytesCapture.set(in.read(buffer)));
+
+		assertThat(new String(buffer, 0, numberOfBytesCapture.get()))
+			.isEqualTo(format("first line%nsecond line%n"));
+	}
+
+	@Test
+	void a_single_read_provides_at_most_one_line_by_default(
+	) throws Exception {
+		byte[] buffer = new byte[1024];
+		AtomicReference<String> firstReadCapture = new AtomicReference<>();
+		AtomicReference<String> secondReadCapture = new AtomicReference<>();
+
+		withTextFromSystemIn("first line", "second line")
+			.execute(() -> {
+				int numberOfBytes = in.read(buffer);
+				firstReadCapture.set(new String(buffer, 0, numberOfBytes));
+				numberOfBytes = in.read(buffer);
+				secondReadCapture.set(new String(buffer, 0, numberOfBytes));
+			});
+
+		assertThat(firstReadCapture).hasValue(format("first line%n"));
+		assertThat(secondReadCapture).hasValue(format("second line%n"));
+	}
+
+	@Test
+	void available_returns_number_of_bytes_that_have_not_been_read(
+	) throws Exception {
+		AtomicInteger availableBeforeRead = new AtomicInteger();
+		AtomicInteger availableAfterRead = new AtomicInteger();
+
+		withTextFromSystemIn("some text")
+			.andBulkReads()
+			.execute(() -> {
+				availableBeforeRead.set(in.available());
+				in.read(new byte[4]);
+				availableAfterRead.set(in.available());
+			});
+
+		int numberOfBytes = format("some text%n").length();
+		assertThat(availableBeforeRead).hasValue(numberOfBytes);
+		assertThat(availableAfterRead).hasValue(numberOfBytes - 4);
+	}
+
+	@Test
+	void skipped_bytes_are_not_read(
+	) throws Exception {
+		AtomicInteger charCapture = new AtomicInteger();
+
+		withTextFromSystemIn("some text")
+			.execute(() -> {
+				in.skip(5);
+				charCapture.set(in.read());
+			});
+
+		assertThat(charCapture).hasValue('t');
+	}
+
+	@Test
+	void text_is_encoded_with_specified_charset(
+	) throws Exception {
+		AtomicReference<String> lineCapture = new AtomicReference<>();
+
+		withTextFromSystemIn("\u00e4\u20ac")
+			.andCharset(UTF_8)
+			.execute(() -> {
+				Scanner scanner = new Scanner(in, "UTF-8");
+				lineCapture.set(scanner.nextLine());
+			});
+
+		assertThat(lineCapture).hasValue("\u00e4\u20ac");
+	}
+
+	@Test
+	void bytes_are_provided_as_unsigned_values_by_single_byte_read(
+	) throws Exception {
+		AtomicInteger byteCapture = new AtomicInteger();
+
+		withTextFromSystemIn("\u00e4")
+			.andCharset(UTF_8)
+			.execute(() -> byteCapture.set(in.read()));
+
+		assertThat(byteCapture).hasValue(0xC3);
+	}
+
+	@Test
+	void a_single_read_provides_at_most_the_read_size(
+	) throws Exception {
+		List<Integer> readSizes = new ArrayList<>();
+
+		withTextFromSystemIn("0123456789")
+			.andReadSize(4)
+			.execute(() -> readSizes.addAll(sizesOfReads(1024)));
+
+		assertThat(readSizes)
+			.containsExactly(4, 4, 2 + lineSeparator().length());
+	}
+
+	@Test
+	void random_read_sizes_are_within_bounds_and_repeatable(
+	) throws Exception {
+		List<Integer> firstReadSizes = new ArrayList<>();
+		List<Integer> secondReadSizes = new ArrayList<>();
+		String text = String.join("", Collections.nCopies(100, "0123456789"));
+
+		withTextFromSystemIn(text)
+			.andRandomReadSizes(1, 7, 42)
+			.execute(() -> firstReadSizes.addAll(sizesOfReads(1024)));
+		withTextFromSystemIn(text)
+			.andRandomReadSizes(1, 7, 42)
+			.execute(() -> secondReadSizes.addAll(sizesOfReads(1024)));
+
+		assertThat(firstReadSizes).allSatisfy(
+			size -> assertThat(size).isBetween(1, 7));
+		assertThat(firstReadSizes).isEqualTo(secondReadSizes);
+	}
+
+	@Test
+	void random_read_sizes_are_repeated_when_stub_is_executed_again(
+	) throws Exception {
+		List<Integer> firstReadSizes = new ArrayList<>();
+		List<Integer> secondReadSizes = new ArrayList<>();
+		String text = String.join("", Collections.nCopies(100, "0123456789"));
+		SystemInStub stub = withTextFromSystemIn(text)
+			.andRandomReadSizes(1, 7, 42);
+
+		stub.execute(() -> firstReadSizes.addAll(sizesOfReads(1024)));
+		stub.execute(() -> secondReadSizes.addAll(sizesOfReads(1024)));
+
+		assertThat(firstReadSizes).isEqualTo(secondReadSizes);
+	}
+
+	@Test
+	void bytes_are_provided_at_specified_rate(
+	) throws Exception {
+		String text = String.join("", Collections.nCopies(10, "0123456789"));
+		long start = System.nanoTime();
+
+		withTextFromSystemIn(text)
+			.andBytesPerSecond(1000)
+			.execute(() -> sizesOfReads(1024));
+
+		assertThat(NANOSECONDS.toMillis(System.nanoTime() - start))
+			.isGreaterThanOrEqualTo(100);
+	}
+
+	@Test
+	void System_in_waits_between_lines(
+	) throws Exception {
+		List<Integer> readSizes = new ArrayList<>();
+		long start = System.nanoTime();
+
+		withTextFromSystemIn("first", "second", "third")
+			.andPauseBetweenLines(Duration.ofMillis(50))
+			.execute(() -> readSizes.addAll(sizesOfReads(1024)));
+
+		assertThat(NANOSECONDS.toMillis(System.nanoTime() - start))
+			.isGreaterThanOrEqualTo(100);
+		int separatorLength = lineSeparator().length();
+		assertThat(readSizes).containsExactly(
+			5 + separatorLength, 6 + separatorLength, 5 + separatorLength);
+	}
+
+	@Test
+	void single_byte_reads_are_throttled(
+	) throws Exception {
+		long start = System.nanoTime();
+
+		withTextFromSystemIn("0123456789")
+			.andBytesPerSecond(100)
+			.execute(() -> {
+				while (in.read() != -1);
+			});
+
+		assertThat(NANOSECONDS.toMillis(System.nanoTime() - start))
+			.isGreaterThanOrEqualTo(100);
+	}
+
+	@Test
+	void byte_rate_must_be_positive() {
+		Throwable exception = exceptionThrownBy(
+			() -> withTextFromSystemIn().andBytesPerSecond(0)
+		);
+
+		assertThat(exception)
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage("The byte rate must be positive but it is 0.");
+	}
+
+	@Test
+	void read_size_must_be_positive() {
+		Throwable exception = exceptionThrownBy(
+			() -> withTextFromSystemIn().andReadSize(0)
+		);
+
+		assertThat(exception)
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage("The read size must be positive but it is 0.");
+	}
+
+	@Test
+	void minimum_read_size_must_not_be_greater_than_maximum_read_size() {
+		Throwable exception = exceptionThrownBy(
+			() -> withTextFromSystemIn().andRandomReadSizes(5, 4, 42)
+		);
+
+		assertThat(exception)
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage(
+				"The minimum read size 5 is greater than the maximum read"
+					+ " size 4.");
+	}
+
+	@Test
+	void pause_between_lines_must_not_be_negative() {
+		Throwable exception = exceptionThrownBy(
+			() -> withTextFromSystemIn()
+				.andPauseBetweenLines(Duration.ofMillis(-1))
+		);
+
+		assertThat(exception)
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage("The pause must not be negative but it is PT-0.001S.");
+	}
+
+	@Test
+	void stub_provides_the_whole_text_for_each_execution(
+	) throws Exception {
+		SystemInStub stub = withTextFromSystemIn("first line", "second line");
+		List<String> texts = new ArrayList<>();
+
+		for (int i = 0; i < 3; ++i)
+			stub.execute(() -> texts.add(readText()));
+
+		assertThat(texts).containsOnly(format("first line%nsecond line%n"));
+	}
+
+	@Test
+	void stub_encodes_text_again_when_charset_is_changed(
+	) throws Exception {
+		SystemInStub stub = withTextFromSystemIn("\u00e4").andBulkReads();
+		AtomicInteger firstNumberOfBytes = new AtomicInteger();
+		AtomicInteger secondNumberOfBytes = new AtomicInteger();
+
+		stub.andCharset(ISO_8859_1)
+			.execute(() -> firstNumberOfBytes.set(in.available()));
+		stub.andCharset(UTF_8)
+			.execute(() -> secondNumberOfBytes.set(in.available()));
+
+		int separatorLength = lineSeparator().length();
+		assertThat(firstNumberOfBytes).hasValue(1 + separatorLength);
+		assertThat(secondNumberOfBytes).hasValue(2 + separatorLength);
+	}
+
 	@Test
 	void no_text_is_available_from_system_in_if_no_text_has_been_provided(
 	) throws Exception {
@@ -290,6 +561,27 @@ class WithTextFromSystemInTest {
 		}
 	}
 
+	private static String readText(
+	) throws IOException {
+		StringBuilder text = new StringBuilder();
+		byte[] buffer = new byte[4];
+		int numberOfBytes;
+		while ((numberOfBytes = in.read(buffer)) != -1)
+			text.append(new String(buffer, 0, numberOfBytes));
+		return text.toString();
+	}
+
+	private static List<Integer> sizesOfReads(
+		int bufferSize
+	) throws IOException {
+		List<Integer> sizes = new ArrayList<>();
+		byte[] buffer = new byte[bufferSize];
+		int numberOfBytes;
+		while ((numberOfBytes = in.read(buffer)) != -1)
+			sizes.add(numberOfBytes);
+		return sizes;
+	}
+
 	private static void assertSystemInProvidesText(
 		String text
 	) throws IOException {